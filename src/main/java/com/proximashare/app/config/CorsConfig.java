@@ -24,6 +24,8 @@ public class CorsConfig {
                         )
                         .allowedMethods("GET", "POST", "PUT", "DELETE", "OPTIONS")
                         .allowedHeaders("*")
+                        // Next-page links of paginated listings
+                        .exposedHeaders("Link")
                         .allowCredentials(true);
             }
         };
@@ -0,0 +1,233 @@
+package com.proximashare.app.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "app.download")
+public class DownloadConfig {
+
+    private int sessionWindowMinutes = 30;  // Requests of one client for one file within this window count once
+    private int maxTrackedSessions = 100_000;  // Upper bound on remembered download sessions per node
+    private int maxRanges = 16;  // Range headers with more ranges are ignored and the whole file is sent
+
+    private boolean zeroCopy = true;  // Use the container's sendfile support when it has one
+    private long zeroCopyMinSize = 49_152L;  // 48KB; smaller bodies are cheaper to copy (Tomcat's own default)
+
+    private boolean leaseEnabled = false;  // Node-local download allowance leases for hot public files
+    private int leaseSize = 100;  // Downloads taken from the database per lease (at most half of what is left)
+    private int leaseTtlSeconds = 30;  // Unused allowance goes back to the database after this
+    private int leaseHotThreshold = 5;  // Counted downloads of a file within one TTL before it is leased
+    private int leaseMinSize = 2;  // Smallest block worth a lease; near the limit downloads are counted one by one
+
+    private boolean cacheEnabled = false;  // Serve small popular files from off-heap memory
+    private long cacheMaxBytes = 67_108_864L;  // 64MB of direct memory for cached bodies
+    private long cacheMaxEntrySize = 1_048_576L;  // 1MB; larger files are left to sendfile and the page cache
+
+    private int zipMaxFiles = 1000;  // Files per streamed ZIP archive
+
+    private boolean shapingEnabled = false;  // Token-bucket bandwidth shaping of download bodies
+    private long connectionRate = 0;  // Bytes/second per download; 0 = unlimited
+    private long userRate = 0;  // Bytes/second across all downloads of one user; 0 = unlimited
+    private long anonymousRate = 0;  // Bytes/second across all anonymous downloads from one address; 0 = unlimited
+    private long nodeRate = 0;  // Bytes/second across all downloads on this node, shared fairly; 0 = unlimited
+    private long shapingBurst = 262_144L;  // 256KB may go out at once after an idle period
+    private int maxStreamsPerFile = 0;  // Concurrent downloads of one file on this node; 0 = unlimited
+    private int busyRetryAfterSeconds = 5;  // Retry-After sent when a file has too many streams
+
+    private String ticketSecret = "";  // HMAC key of download tickets, shared by all nodes; derived from the JWT secret when empty
+    private int ticketTtlSeconds = 300;  // How long a minted download ticket can be used
+
+    // Getters and Setters
+    public int getSessionWindowMinutes() {
+        return sessionWindowMinutes;
+    }
+
+    public void setSessionWindowMinutes(int sessionWindowMinutes) {
+        this.sessionWindowMinutes = sessionWindowMinutes;
+    }
+
+    public int getMaxTrackedSessions() {
+        return maxTrackedSessions;
+    }
+
+    public void setMaxTrackedSessions(int maxTrackedSessions) {
+        this.maxTrackedSessions = maxTrackedSessions;
+    }
+
+    public int getMaxRanges() {
+        return maxRanges;
+    }
+
+    public void setMaxRanges(int maxRanges) {
+        this.maxRanges = maxRanges;
+    }
+
+    public boolean isZeroCopy() {
+        return zeroCopy;
+    }
+
+    public void setZeroCopy(boolean zeroCopy) {
+        this.zeroCopy = zeroCopy;
+    }
+
+    public long getZeroCopyMinSize() {
+        return zeroCopyMinSize;
+    }
+
+    public void setZeroCopyMinSize(long zeroCopyMinSize) {
+        this.zeroCopyMinSize = zeroCopyMinSize;
+    }
+
+    public boolean isLeaseEnabled() {
+        return leaseEnabled;
+    }
+
+    public void setLeaseEnabled(boolean leaseEnabled) {
+        this.leaseEnabled = leaseEnabled;
+    }
+
+    public int getLeaseSize() {
+        return leaseSize;
+    }
+
+    public void setLeaseSize(int leaseSize) {
+        this.leaseSize = leaseSize;
+    }
+
+    public int getLeaseTtlSeconds() {
+        return leaseTtlSeconds;
+    }
+
+    public void setLeaseTtlSeconds(int leaseTtlSeconds) {
+        this.leaseTtlSeconds = leaseTtlSeconds;
+    }
+
+    public int getLeaseHotThreshold() {
+        return leaseHotThreshold;
+    }
+
+    public void setLeaseHotThreshold(int leaseHotThreshold) {
+        this.leaseHotThreshold = leaseHotThreshold;
+    }
+
+    public int getLeaseMinSize() {
+        return leaseMinSize;
+    }
+
+    public void setLeaseMinSize(int leaseMinSize) {
+        this.leaseMinSize = leaseMinSize;
+    }
+
+    public boolean isCacheEnabled() {
+        return cacheEnabled;
+    }
+
+    public void setCacheEnabled(boolean cacheEnabled) {
+        this.cacheEnabled = cacheEnabled;
+    }
+
+    public long getCacheMaxBytes() {
+        return cacheMaxBytes;
+    }
+
+    public void setCacheMaxBytes(long cacheMaxBytes) {
+        this.cacheMaxBytes = cacheMaxBytes;
+    }
+
+    public long getCacheMaxEntrySize() {
+        return cacheMaxEntrySize;
+    }
+
+    public void setCacheMaxEntrySize(long cacheMaxEntrySize) {
+        this.cacheMaxEntrySize = cacheMaxEntrySize;
+    }
+
+    public int getZipMaxFiles() {
+        return zipMaxFiles;
+    }
+
+    public void setZipMaxFiles(int zipMaxFiles) {
+        this.zipMaxFiles = zipMaxFiles;
+    }
+
+    public boolean isShapingEnabled() {
+        return shapingEnabled;
+    }
+
+    public void setShapingEnabled(boolean shapingEnabled) {
+        this.shapingEnabled = shapingEnabled;
+    }
+
+    public long getConnectionRate() {
+        return connectionRate;
+    }
+
+    public void setConnectionRate(long connectionRate) {
+        this.connectionRate = connectionRate;
+    }
+
+    public long getUserRate() {
+        return userRate;
+    }
+
+    public void setUserRate(long userRate) {
+        this.userRate = userRate;
+    }
+
+    public long getAnonymousRate() {
+        return anonymousRate;
+    }
+
+    public void setAnonymousRate(long anonymousRate) {
+        this.anonymousRate = anonymousRate;
+    }
+
+    public long getNodeRate() {
+        return nodeRate;
+    }
+
+    public void setNodeRate(long nodeRate) {
+        this.nodeRate = nodeRate;
+    }
+
+    public long getShapingBurst() {
+        return shapingBurst;
+    }
+
+    public void setShapingBurst(long shapingBurst) {
+        this.shapingBurst = shapingBurst;
+    }
+
+    public int getMaxStreamsPerFile() {
+        return maxStreamsPerFile;
+    }
+
+    public void setMaxStreamsPerFile(int maxStreamsPerFile) {
+        this.maxStreamsPerFile = maxStreamsPerFile;
+    }
+
+    public int getBusyRetryAfterSeconds() {
+        return busyRetryAfterSeconds;
+    }
+
+    public void setBusyRetryAfterSeconds(int busyRetryAfterSeconds) {
+        this.busyRetryAfterSeconds = busyRetryAfterSeconds;
+    }
+
+    public String getTicketSecret() {
+        return ticketSecret;
+    }
+
+    public void setTicketSecret(String ticketSecret) {
+        this.ticketSecret = ticketSecret;
+    }
+
+    public int getTicketTtlSeconds() {
+        return ticketTtlSeconds;
+    }
+
+    public void setTicketTtlSeconds(int ticketTtlSeconds) {
+        this.ticketTtlSeconds = ticketTtlSeconds;
+    }
+}
@@ -0,0 +1,135 @@
+package com.proximashare.app.config;
+
+import com.proximashare.service.ContentCoding;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.List;
+
+@Configuration
+@ConfigurationProperties(prefix = "app.storage")
+public class FileStorageConfig {
+
+    public enum HashMode {
+        STREAMING,  // one SHA-256 over the whole stream, on the upload thread
+        TREE        // fixed-size leaves hashed in parallel, combined into a Merkle root
+    }
+
+    public enum SyncPolicy {
+        NONE,        // leave flushing to the OS page cache
+        ON_CLOSE,    // fsync once a file (or chunk) is completely written
+        EVERY_N_MB   // fsync every sync-interval-mb while writing, and at the end
+    }
+
+    private HashMode hashMode = HashMode.STREAMING;
+    private int treeLeafSize = 4 * 1024 * 1024;  // 4MB leaves
+    private int hashParallelism = Runtime.getRuntime().availableProcessors();
+    private long minFreeSpace = 1_073_741_824L;  // Uploads are refused rather than eat into the last 1GB
+
+    private int writeBufferSize = 256 * 1024;  // Direct buffer per write in progress
+    private int writeBufferPoolSize = 64;  // Idle direct buffers kept for reuse
+    private SyncPolicy syncPolicy = SyncPolicy.NONE;
+    private int syncIntervalMb = 64;  // Used by EVERY_N_MB
+
+    private boolean variantsEnabled = false;  // Store precompressed variants of compressible uploads
+    private List<ContentCoding> variantCodings = List.of(ContentCoding.GZIP);  // Codings a variant is stored in; downloads prefer gzip
+    private long variantMinSize = 1024;  // Smaller files gain too little to be worth a second copy
+    private double variantMaxRatio = 0.9;  // A variant is kept only when at most this fraction of the original
+
+    // Getters and Setters
+    public HashMode getHashMode() {
+        return hashMode;
+    }
+
+    public void setHashMode(HashMode hashMode) {
+        this.hashMode = hashMode;
+    }
+
+    public int getTreeLeafSize() {
+        return treeLeafSize;
+    }
+
+    public void setTreeLeafSize(int treeLeafSize) {
+        this.treeLeafSize = treeLeafSize;
+    }
+
+    public int getHashParallelism() {
+        return hashParallelism;
+    }
+
+    public void setHashParallelism(int hashParallelism) {
+        this.hashParallelism = hashParallelism;
+    }
+
+    public long getMinFreeSpace() {
+        return minFreeSpace;
+    }
+
+    public void setMinFreeSpace(long minFreeSpace) {
+        this.minFreeSpace = minFreeSpace;
+    }
+
+    public int getWriteBufferSize() {
+        return writeBufferSize;
+    }
+
+    public void setWriteBufferSize(int writeBufferSize) {
+        this.writeBufferSize = writeBufferSize;
+    }
+
+    public int getWriteBufferPoolSize() {
+        return writeBufferPoolSize;
+    }
+
+    public void setWriteBufferPoolSize(int writeBufferPoolSize) {
+        this.writeBufferPoolSize = writeBufferPoolSize;
+    }
+
+    public SyncPolicy getSyncPolicy() {
+        return syncPolicy;
+    }
+
+    public void setSyncPolicy(SyncPolicy syncPolicy) {
+        this.syncPolicy = syncPolicy;
+    }
+
+    public int getSyncIntervalMb() {
+        return syncIntervalMb;
+    }
+
+    public void setSyncIntervalMb(int syncIntervalMb) {
+        this.syncIntervalMb = syncIntervalMb;
+    }
+
+    public boolean isVariantsEnabled() {
+        return variantsEnabled;
+    }
+
+    public void setVariantsEnabled(boolean variantsEnabled) {
+        this.variantsEnabled = variantsEnabled;
+    }
+
+    public List<ContentCoding> getVariantCodings() {
+        return variantCodings;
+    }
+
+    public void setVariantCodings(List<ContentCoding> variantCodings) {
+        this.variantCodings = variantCodings;
+    }
+
+    public long getVariantMinSize() {
+        return variantMinSize;
+    }
+
+    public void setVariantMinSize(long variantMinSize) {
+        this.variantMinSize = variantMinSize;
+    }
+
+    public double getVariantMaxRatio() {
+        return variantMaxRatio;
+    }
+
+    public void setVariantMaxRatio(double variantMaxRatio) {
+        this.variantMaxRatio = variantMaxRatio;
+    }
+}
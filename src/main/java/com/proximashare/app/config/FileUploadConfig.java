@@ -3,6 +3,9 @@ package com.proximashare.app.config;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.HashMap;
+import java.util.Map;
+
 @Configuration
 @ConfigurationProperties(prefix = "app.upload")
 public class FileUploadConfig {
@@ -15,6 +18,24 @@ public class FileUploadConfig {
     private int userExpiryDays = 30;
     private int userMaxDownloads = 100;  // Higher limit for authenticated users
 
+    private long userStorageQuota = 0;  // Bytes a user may keep stored across all files; 0 = unlimited
+    private long userFileQuota = 0;  // Files a user may keep; 0 = unlimited
+    private Map<String, Long> roleStorageQuota = new HashMap<>();  // By role name (USER, ADMIN); replaces userStorageQuota
+    private Map<String, Long> roleFileQuota = new HashMap<>();  // By role name; replaces userFileQuota
+
+    private int sessionExpiryHours = 24;  // Resumable upload sessions
+    private int sessionMaxOpenPerClient = 4;  // Unexpired sessions one user or anonymous address may hold
+    private long publicSessionMaxBytesPerClient = 2_147_483_648L;  // Declared bytes of one address's public sessions
+
+    private int batchMaxFiles = 100;  // Files accepted by one batch upload request
+    private int batchParallelism = 4;  // Files of a batch written to storage at the same time
+    private int batchQueueCapacity = 100;  // Files waiting for a writer; past it the request thread writes its own files
+
+    private int processingParallelism = 2;  // Post-upload pipeline workers
+    private int processingQueueCapacity = 1000;  // Files waiting for a worker; the rest wait for the requeue
+    private int processingMaxAttempts = 3;  // Tries before a file is marked FAILED
+    private int processingClaimTimeoutMinutes = 30;  // A claim not renewed for this long belongs to a dead node
+
     // Getters and Setters
     public long getPublicMaxSize() {
         return publicMaxSize;
@@ -63,4 +84,116 @@ public class FileUploadConfig {
     public void setUserMaxDownloads(int userMaxDownloads) {
         this.userMaxDownloads = userMaxDownloads;
     }
-}
\ No newline at end of file
+
+    public long getUserStorageQuota() {
+        return userStorageQuota;
+    }
+
+    public void setUserStorageQuota(long userStorageQuota) {
+        this.userStorageQuota = userStorageQuota;
+    }
+
+    public long getUserFileQuota() {
+        return userFileQuota;
+    }
+
+    public void setUserFileQuota(long userFileQuota) {
+        this.userFileQuota = userFileQuota;
+    }
+
+    public Map<String, Long> getRoleStorageQuota() {
+        return roleStorageQuota;
+    }
+
+    public void setRoleStorageQuota(Map<String, Long> roleStorageQuota) {
+        this.roleStorageQuota = roleStorageQuota;
+    }
+
+    public Map<String, Long> getRoleFileQuota() {
+        return roleFileQuota;
+    }
+
+    public void setRoleFileQuota(Map<String, Long> roleFileQuota) {
+        this.roleFileQuota = roleFileQuota;
+    }
+
+    public int getSessionExpiryHours() {
+        return sessionExpiryHours;
+    }
+
+    public void setSessionExpiryHours(int sessionExpiryHours) {
+        this.sessionExpiryHours = sessionExpiryHours;
+    }
+
+    public int getSessionMaxOpenPerClient() {
+        return sessionMaxOpenPerClient;
+    }
+
+    public void setSessionMaxOpenPerClient(int sessionMaxOpenPerClient) {
+        this.sessionMaxOpenPerClient = sessionMaxOpenPerClient;
+    }
+
+    public long getPublicSessionMaxBytesPerClient() {
+        return publicSessionMaxBytesPerClient;
+    }
+
+    public void setPublicSessionMaxBytesPerClient(long publicSessionMaxBytesPerClient) {
+        this.publicSessionMaxBytesPerClient = publicSessionMaxBytesPerClient;
+    }
+
+    public int getBatchMaxFiles() {
+        return batchMaxFiles;
+    }
+
+    public void setBatchMaxFiles(int batchMaxFiles) {
+        this.batchMaxFiles = batchMaxFiles;
+    }
+
+    public int getBatchParallelism() {
+        return batchParallelism;
+    }
+
+    public void setBatchParallelism(int batchParallelism) {
+        this.batchParallelism = batchParallelism;
+    }
+
+    public int getProcessingParallelism() {
+        return processingParallelism;
+    }
+
+    public void setProcessingParallelism(int processingParallelism) {
+        this.processingParallelism = processingParallelism;
+    }
+
+    public int getBatchQueueCapacity() {
+        return batchQueueCapacity;
+    }
+
+    public void setBatchQueueCapacity(int batchQueueCapacity) {
+        this.batchQueueCapacity = batchQueueCapacity;
+    }
+
+    public int getProcessingQueueCapacity() {
+        return processingQueueCapacity;
+    }
+
+    public void setProcessingQueueCapacity(int processingQueueCapacity) {
+        this.processingQueueCapacity = processingQueueCapacity;
+    }
+
+    public int getProcessingMaxAttempts() {
+        return processingMaxAttempts;
+    }
+
+    public void setProcessingMaxAttempts(int processingMaxAttempts) {
+        this.processingMaxAttempts = processingMaxAttempts;
+    }
+
+    public int getProcessingClaimTimeoutMinutes() {
+        return processingClaimTimeoutMinutes;
+    }
+
+    public void setProcessingClaimTimeoutMinutes(int processingClaimTimeoutMinutes) {
+        this.processingClaimTimeoutMinutes = processingClaimTimeoutMinutes;
+    }
+}
@@ -0,0 +1,29 @@
+package com.proximashare.app.config;
+
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.Ordered;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.proximashare.app.security.UploadAdmissionFilter;
+import com.proximashare.service.UploadAdmissionService;
+
+@Configuration
+@Profile("!test")
+public class FilterConfig {
+
+    // Ahead of the security filter chain, so rejected uploads skip JWT parsing and user lookup
+    @Bean
+    public FilterRegistrationBean<UploadAdmissionFilter> uploadAdmissionFilter(
+            UploadAdmissionService admissionService,
+            UploadAdmissionConfig admissionConfig,
+            ObjectMapper objectMapper) {
+        FilterRegistrationBean<UploadAdmissionFilter> registration = new FilterRegistrationBean<>(
+                new UploadAdmissionFilter(admissionService, admissionConfig, objectMapper));
+        registration.addUrlPatterns("/api/public/files/*", "/user/files/*");
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 10);
+        return registration;
+    }
+}
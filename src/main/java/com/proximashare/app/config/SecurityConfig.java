@@ -8,6 +8,7 @@ import org.springframework.security.authentication.AuthenticationProvider;
 import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
 import org.springframework.security.config.annotation.authentication.configuration.AuthenticationConfiguration;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
+import org.springframework.security.config.annotation.web.configuration.WebSecurityCustomizer;
 import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
@@ -18,6 +19,7 @@ import org.springframework.security.web.authentication.UsernamePasswordAuthentic
 import com.proximashare.app.security.JwtAuthenticationFilter;
 import com.proximashare.app.security.UserDetailsImpl;
 import com.proximashare.repository.UserRepository;
+import com.proximashare.service.DownloadTicketService;
 
 @Configuration
 @Profile("!test")
@@ -51,6 +53,12 @@ public class SecurityConfig {
                 .build();
     }
 
+    // Ticket downloads carry their own signed authorization; they skip the filter chain entirely
+    @Bean
+    public WebSecurityCustomizer ticketDownloadCustomizer() {
+        return web -> web.ignoring().requestMatchers(DownloadTicketService.DOWNLOAD_PATH + "**");
+    }
+
     @Bean
     public UserDetailsService userDetailsService(UserRepository userRepository) {
         return username -> userRepository.findByUsername(username)
@@ -0,0 +1,83 @@
+package com.proximashare.app.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "app.upload.admission")
+public class UploadAdmissionConfig {
+
+    private boolean enabled = true;
+    private int maxConcurrentUploads = 16;
+    private long maxBytesInFlight = 8_589_934_592L;  // 8GB of declared request bodies
+    private int maxUploadsPerClient = 2;
+    private int maxChunksPerSession = 8;  // Parallel chunk PUTs of one upload session
+    private int maxChunksPerClient = 16;  // Parallel chunk PUTs of one client across its sessions, instead of the upload cap
+    private long unknownLengthBytes = 1_073_741_824L;  // Counted for bodies without Content-Length
+    private int retryAfterSeconds = 5;
+
+    // Getters and Setters
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getMaxConcurrentUploads() {
+        return maxConcurrentUploads;
+    }
+
+    public void setMaxConcurrentUploads(int maxConcurrentUploads) {
+        this.maxConcurrentUploads = maxConcurrentUploads;
+    }
+
+    public long getMaxBytesInFlight() {
+        return maxBytesInFlight;
+    }
+
+    public void setMaxBytesInFlight(long maxBytesInFlight) {
+        this.maxBytesInFlight = maxBytesInFlight;
+    }
+
+    public int getMaxUploadsPerClient() {
+        return maxUploadsPerClient;
+    }
+
+    public void setMaxUploadsPerClient(int maxUploadsPerClient) {
+        this.maxUploadsPerClient = maxUploadsPerClient;
+    }
+
+    public int getMaxChunksPerSession() {
+        return maxChunksPerSession;
+    }
+
+    public void setMaxChunksPerSession(int maxChunksPerSession) {
+        this.maxChunksPerSession = maxChunksPerSession;
+    }
+
+    public int getMaxChunksPerClient() {
+        return maxChunksPerClient;
+    }
+
+    public void setMaxChunksPerClient(int maxChunksPerClient) {
+        this.maxChunksPerClient = maxChunksPerClient;
+    }
+
+    public long getUnknownLengthBytes() {
+        return unknownLengthBytes;
+    }
+
+    public void setUnknownLengthBytes(long unknownLengthBytes) {
+        this.unknownLengthBytes = unknownLengthBytes;
+    }
+
+    public int getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+
+    public void setRetryAfterSeconds(int retryAfterSeconds) {
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+}
@@ -12,6 +12,7 @@ import org.springframework.security.web.authentication.WebAuthenticationDetailsS
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
+import com.proximashare.service.DownloadTicketService;
 import com.proximashare.service.JwtService;
 
 import jakarta.servlet.FilterChain;
@@ -30,6 +31,13 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         this.userDetailsService = userDetailsService;
     }
 
+    // Also registered as a plain servlet filter; ticket downloads never need a user
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        return path.startsWith(DownloadTicketService.DOWNLOAD_PATH);
+    }
+
     @Override
     protected void doFilterInternal(
             HttpServletRequest request,
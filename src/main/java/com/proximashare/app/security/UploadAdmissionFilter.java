@@ -0,0 +1,101 @@
+package com.proximashare.app.security;
+
+import java.io.IOException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.proximashare.app.config.UploadAdmissionConfig;
+import com.proximashare.dto.ErrorDetails;
+import com.proximashare.service.UploadAdmissionService;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+// Runs before authentication and multipart parsing, so a rejected upload costs no body read
+public class UploadAdmissionFilter extends OncePerRequestFilter {
+    private static final String SESSIONS_SEGMENT = "/files/upload-sessions/";
+    private static final Logger logger = LoggerFactory.getLogger(UploadAdmissionFilter.class);
+    private final UploadAdmissionService admissionService;
+    private final UploadAdmissionConfig admissionConfig;
+    private final ObjectMapper objectMapper;
+
+    public UploadAdmissionFilter(UploadAdmissionService admissionService,
+                                 UploadAdmissionConfig admissionConfig,
+                                 ObjectMapper objectMapper) {
+        this.admissionService = admissionService;
+        this.admissionConfig = admissionConfig;
+        this.objectMapper = objectMapper;
+    }
+
+    // Requests that carry an upload body or reserve space for one: POST .../upload[/...],
+    // POST .../upload-sessions and PUT chunks of upload sessions
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        if (!admissionConfig.isEnabled()) {
+            return true;
+        }
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        if ("POST".equals(request.getMethod())) {
+            return !(path.endsWith("/files/upload") || path.contains("/files/upload/")
+                    || path.endsWith("/files/upload-sessions"));
+        }
+        if ("PUT".equals(request.getMethod())) {
+            return !path.contains(SESSIONS_SEGMENT);
+        }
+        return true;
+    }
+
+    @Override
+    protected void doFilterInternal(
+            HttpServletRequest request,
+            HttpServletResponse response,
+            FilterChain filterChain
+    ) throws ServletException, IOException {
+        // Behind a proxy, set server.forward-headers-strategy so this is the real client address
+        String clientId = request.getRemoteAddr();
+
+        // Chunks of a session are sent in parallel by design: they have their own per-session and per-client caps
+        String sessionId = chunkSessionId(request);
+        UploadAdmissionService.Admission admission = sessionId != null
+                ? admissionService.tryAcquireChunk(clientId, sessionId, request.getContentLengthLong())
+                : admissionService.tryAcquire(clientId, request.getContentLengthLong());
+        if (!admission.isAdmitted()) {
+            logger.debug("Upload from {} rejected: {}", clientId, admission.rejectReason());
+            reject(response);
+            return;
+        }
+
+        try (UploadAdmissionService.Permit permit = admission.permit()) {
+            filterChain.doFilter(request, response);
+        }
+    }
+
+    // Session id of a chunk PUT, or null for any other upload
+    private String chunkSessionId(HttpServletRequest request) {
+        if (!"PUT".equals(request.getMethod())) {
+            return null;
+        }
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        String rest = path.substring(path.indexOf(SESSIONS_SEGMENT) + SESSIONS_SEGMENT.length());
+        int end = rest.indexOf('/');
+        return end < 0 ? rest : rest.substring(0, end);
+    }
+
+    private void reject(HttpServletResponse response) throws IOException {
+        response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(admissionConfig.getRetryAfterSeconds()));
+        // The unread body would otherwise keep the connection busy
+        response.setHeader(HttpHeaders.CONNECTION, "close");
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        objectMapper.writeValue(response.getOutputStream(),
+                new ErrorDetails("Server is busy with other uploads, please retry later"));
+    }
+}
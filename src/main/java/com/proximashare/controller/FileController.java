@@ -1,31 +1,61 @@
 package com.proximashare.controller;
 
-import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.util.Map;
 
 // import org.springframework.boot.autoconfigure.web.ServerProperties.Tomcat.Resource;
+import com.proximashare.dto.ContentHashesResponse;
 import com.proximashare.dto.FileMetadataResponse;
-import org.springframework.core.io.FileSystemResource;
+import com.proximashare.dto.UploadSessionRequest;
+import com.proximashare.dto.UploadSessionResponse;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.validation.Valid;
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import com.proximashare.entity.FileMetadata;
+import com.proximashare.service.BandwidthShaper;
+import com.proximashare.service.DownloadSessionTracker;
+import com.proximashare.service.DownloadTicketService;
+import com.proximashare.service.FileDownloadWriter;
 import com.proximashare.service.FileService;
+import com.proximashare.service.UploadSessionService;
+import com.proximashare.service.processing.PostUploadPipeline;
 
 @RestController
 @RequestMapping("/api/public/files")
 public class FileController {
     private final FileService fileService;
+    private final UploadSessionService uploadSessionService;
+    private final PostUploadPipeline postUploadPipeline;
+    private final FileDownloadWriter fileDownloadWriter;
+    private final BandwidthShaper bandwidthShaper;
+    private final DownloadTicketService downloadTicketService;
 
-    public FileController(FileService fileService) {
+    public FileController(FileService fileService, UploadSessionService uploadSessionService,
+                          PostUploadPipeline postUploadPipeline, FileDownloadWriter fileDownloadWriter,
+                          BandwidthShaper bandwidthShaper, DownloadTicketService downloadTicketService) {
         this.fileService = fileService;
+        this.uploadSessionService = uploadSessionService;
+        this.postUploadPipeline = postUploadPipeline;
+        this.fileDownloadWriter = fileDownloadWriter;
+        this.bandwidthShaper = bandwidthShaper;
+        this.downloadTicketService = downloadTicketService;
     }
 
     @PostMapping("/upload")
@@ -44,19 +74,125 @@ public class FileController {
         return ResponseEntity.ok(response);
     }
 
+    // Raw request body (not multipart), written once straight into storage
+    @PostMapping("/upload/stream")
+    public ResponseEntity<Map<String, String>> uploadFileStream(
+            @RequestParam("filename") String filename,
+            HttpServletRequest request) throws IOException {
+
+        FileMetadata metadata = fileService.uploadFileStream(
+                request.getInputStream(),
+                filename,
+                request.getContentType(),
+                request.getContentLengthLong(),
+                null);
+
+        return ResponseEntity.ok(Map.of("uuid", metadata.getUuid()));
+    }
+
+    @PostMapping("/upload-sessions")
+    public ResponseEntity<UploadSessionResponse> createUploadSession(@Valid @RequestBody UploadSessionRequest request,
+                                                                     HttpServletRequest httpRequest) {
+        return ResponseEntity.ok(uploadSessionService.createSession(request, null, httpRequest.getRemoteAddr()));
+    }
+
+    @PutMapping("/upload-sessions/{sessionId}")
+    public ResponseEntity<UploadSessionResponse> uploadChunk(
+            @PathVariable String sessionId,
+            @RequestParam("offset") long offset,
+            @RequestHeader(value = "X-Chunk-SHA256", required = false) String chunkSha256,
+            HttpServletRequest request) throws IOException, IllegalAccessException {
+        return ResponseEntity.ok(uploadSessionService.writeChunk(
+                sessionId, offset, request.getInputStream(), chunkSha256, null));
+    }
+
+    @GetMapping("/upload-sessions/{sessionId}")
+    public ResponseEntity<UploadSessionResponse> getUploadSession(@PathVariable String sessionId)
+            throws FileNotFoundException, IllegalAccessException {
+        return ResponseEntity.ok(uploadSessionService.getSessionStatus(sessionId, null));
+    }
+
+    @PostMapping("/upload-sessions/{sessionId}/complete")
+    public ResponseEntity<Map<String, String>> completeUploadSession(@PathVariable String sessionId)
+            throws FileNotFoundException, IllegalAccessException {
+        FileMetadata metadata = uploadSessionService.completeSession(sessionId, null);
+        return ResponseEntity.ok(Map.of("uuid", metadata.getUuid()));
+    }
+
     @GetMapping("/{uuid}")
     public ResponseEntity<FileMetadataResponse> getFileMetadata(@PathVariable String uuid) throws FileNotFoundException {
-        FileMetadata metadata = fileService.getFileMetadata(uuid);
-        return ResponseEntity.ok(FileMetadataResponse.from(metadata));
+        FileMetadataResponse response = fileService.getFileMetadataResponse(uuid);
+        // With an ETag on the entity, Spring answers a matching If-None-Match with 304
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.noCache())
+                .eTag(response.entityTag())
+                .body(response);
+    }
+
+    @GetMapping("/{uuid}/hashes")
+    public ResponseEntity<ContentHashesResponse> getContentHashes(@PathVariable String uuid) throws FileNotFoundException {
+        return ResponseEntity.ok(fileService.getContentHashes(uuid));
+    }
+
+    // Poll the post-upload processing state
+    @GetMapping("/{uuid}/status")
+    public ResponseEntity<Map<String, String>> getProcessingStatus(@PathVariable String uuid) throws FileNotFoundException {
+        return ResponseEntity.ok(Map.of(
+                "uuid", uuid,
+                "processingState", postUploadPipeline.getState(uuid).name()));
+    }
+
+    // Server-sent "processing" events until the file is READY or FAILED
+    @GetMapping(value = "/{uuid}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter subscribeProcessingEvents(@PathVariable String uuid) throws FileNotFoundException {
+        return postUploadPipeline.subscribe(uuid);
     }
 
+    // Public files only; Range and If-Range aware, requests of one download session are counted once
     @GetMapping("/download/{uuid}")
-    public ResponseEntity<FileSystemResource> downloadFile(@PathVariable String uuid) throws FileNotFoundException, IllegalAccessException {
-        File file = fileService.downloadFile(uuid);
-        FileMetadata metadata = fileService.getFileMetadata(uuid);
+    public void downloadFile(@PathVariable String uuid, HttpServletRequest request, HttpServletResponse response)
+            throws IOException, IllegalAccessException {
+        // Revalidating a copy the client already holds is not a download
+        if (FileDownloadWriter.isConditional(request)
+                && fileDownloadWriter.checkNotModified(request, response, fileService.getDownloadMetadata(uuid, null))) {
+            return;
+        }
 
-        return ResponseEntity.ok()
-                .header("Content-Disposition", "attachment; filename=\"" + metadata.getFilename() + "\"")
-                .body(new FileSystemResource(file));
+        // A file with too many streams is refused before the download is counted
+        try (BandwidthShaper.Stream stream = bandwidthShaper.open(uuid, request)) {
+            FileMetadata metadata = fileService.authorizeDownload(uuid, null, DownloadSessionTracker.clientKey(request, null));
+
+            fileDownloadWriter.write(request, response, metadata, fileService.getStoredFile(metadata));
+        }
+    }
+
+    // Signed ticket from POST /user/files/{uuid}/ticket: no security filter, user or metadata lookups, only the count
+    @GetMapping("/download/ticket/{ticket}")
+    public void downloadWithTicket(@PathVariable String ticket, HttpServletRequest request, HttpServletResponse response)
+            throws IOException, IllegalAccessException {
+        DownloadTicketService.Ticket verified = downloadTicketService.verify(ticket);
+        FileMetadata metadata = verified.metadata();
+        if (FileDownloadWriter.isConditional(request)
+                && fileDownloadWriter.checkNotModified(request, response, metadata)) {
+            return;
+        }
+
+        HttpServletRequest restricted = downloadTicketService.restrictRange(request, verified);
+        try (BandwidthShaper.Stream stream = bandwidthShaper.open(metadata.getUuid(), verified.username(), restricted)) {
+            fileService.authorizeDownload(metadata, verified.username(),
+                    DownloadSessionTracker.clientKey(request, verified.username()));
+
+            fileDownloadWriter.write(restricted, response, metadata, fileService.getStoredFile(metadata));
+        }
+    }
+
+    // Size, type and validators from the metadata; the file is not read and nothing is counted
+    @RequestMapping(value = "/download/{uuid}", method = RequestMethod.HEAD)
+    public void headFile(@PathVariable String uuid, HttpServletRequest request, HttpServletResponse response)
+            throws FileNotFoundException, IllegalAccessException {
+        FileMetadata metadata = fileService.getDownloadMetadata(uuid, null);
+        if (!fileDownloadWriter.checkNotModified(request, response, metadata)) {
+            fileDownloadWriter.writeHead(response, metadata);
+        }
     }
 }
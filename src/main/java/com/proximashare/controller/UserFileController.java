@@ -1,11 +1,27 @@
 package com.proximashare.controller;
 
+import com.proximashare.dto.BatchUploadResponse;
+import com.proximashare.dto.DownloadTicketResponse;
 import com.proximashare.dto.FileMetadataResponse;
+import com.proximashare.dto.FileSearchRequest;
+import com.proximashare.dto.UploadSessionRequest;
+import com.proximashare.dto.UploadSessionResponse;
 import com.proximashare.entity.FileMetadata;
 import com.proximashare.entity.User;
 import com.proximashare.repository.UserRepository;
+import com.proximashare.service.BandwidthShaper;
+import com.proximashare.service.BatchUploadService;
+import com.proximashare.service.DownloadSessionTracker;
+import com.proximashare.service.DownloadTicketService;
+import com.proximashare.service.FileDownloadWriter;
 import com.proximashare.service.FileService;
-import org.springframework.core.io.FileSystemResource;
+import com.proximashare.service.UploadSessionService;
+import com.proximashare.service.ZipDownloadService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.validation.Valid;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.AuthenticationException;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
@@ -13,9 +29,10 @@ import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
-import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
@@ -25,10 +42,25 @@ import java.util.stream.Collectors;
 public class UserFileController {
     private final FileService fileService;
     private final UserRepository userRepository;
+    private final UploadSessionService uploadSessionService;
+    private final BatchUploadService batchUploadService;
+    private final FileDownloadWriter fileDownloadWriter;
+    private final ZipDownloadService zipDownloadService;
+    private final BandwidthShaper bandwidthShaper;
+    private final DownloadTicketService downloadTicketService;
 
-    public UserFileController(FileService fileService, UserRepository userRepository) {
+    public UserFileController(FileService fileService, UserRepository userRepository,
+                              UploadSessionService uploadSessionService, BatchUploadService batchUploadService,
+                              FileDownloadWriter fileDownloadWriter, ZipDownloadService zipDownloadService,
+                              BandwidthShaper bandwidthShaper, DownloadTicketService downloadTicketService) {
         this.fileService = fileService;
         this.userRepository = userRepository;
+        this.uploadSessionService = uploadSessionService;
+        this.batchUploadService = batchUploadService;
+        this.fileDownloadWriter = fileDownloadWriter;
+        this.zipDownloadService = zipDownloadService;
+        this.bandwidthShaper = bandwidthShaper;
+        this.downloadTicketService = downloadTicketService;
     }
 
     @PostMapping("/upload")
@@ -53,20 +85,133 @@ public class UserFileController {
         return ResponseEntity.ok(response);
     }
 
+    // Many files in one request; each file gets its own result
+    @PostMapping("/upload/batch")
+    public ResponseEntity<BatchUploadResponse> uploadFiles(
+            @RequestParam("files") List<MultipartFile> files,
+            @AuthenticationPrincipal UserDetails userDetails) {
+
+        User user = userRepository.findByUsername(userDetails.getUsername())
+                .orElseThrow(() -> new UsernameNotFoundException("User not found"));
+
+        return ResponseEntity.ok(batchUploadService.uploadFilesForUser(files, user));
+    }
+
+    // Raw request body (not multipart), written once straight into storage
+    @PostMapping("/upload/stream")
+    public ResponseEntity<Map<String, String>> uploadFileStream(
+            @RequestParam("filename") String filename,
+            HttpServletRequest request,
+            @AuthenticationPrincipal UserDetails userDetails) throws IOException {
+
+        User user = userRepository.findByUsername(userDetails.getUsername())
+                .orElseThrow(() -> new UsernameNotFoundException("User not found"));
+
+        FileMetadata metadata = fileService.uploadFileStream(
+                request.getInputStream(),
+                filename,
+                request.getContentType(),
+                request.getContentLengthLong(),
+                user);
+
+        Map<String, String> response = Map.of(
+                "uuid", metadata.getUuid(),
+                "message", "File uploaded successfully"
+        );
+
+        return ResponseEntity.ok(response);
+    }
+
+    @PostMapping("/upload-sessions")
+    public ResponseEntity<UploadSessionResponse> createUploadSession(
+            @Valid @RequestBody UploadSessionRequest request,
+            @AuthenticationPrincipal UserDetails userDetails,
+            HttpServletRequest httpRequest) {
+
+        User user = userRepository.findByUsername(userDetails.getUsername())
+                .orElseThrow(() -> new UsernameNotFoundException("User not found"));
+
+        return ResponseEntity.ok(uploadSessionService.createSession(request, user, httpRequest.getRemoteAddr()));
+    }
+
+    @PutMapping("/upload-sessions/{sessionId}")
+    public ResponseEntity<UploadSessionResponse> uploadChunk(
+            @PathVariable String sessionId,
+            @RequestParam("offset") long offset,
+            @RequestHeader(value = "X-Chunk-SHA256", required = false) String chunkSha256,
+            HttpServletRequest request,
+            @AuthenticationPrincipal UserDetails userDetails) throws IOException, IllegalAccessException {
+
+        User user = userRepository.findByUsername(userDetails.getUsername())
+                .orElseThrow(() -> new UsernameNotFoundException("User not found"));
+
+        return ResponseEntity.ok(uploadSessionService.writeChunk(
+                sessionId, offset, request.getInputStream(), chunkSha256, user));
+    }
+
+    @GetMapping("/upload-sessions/{sessionId}")
+    public ResponseEntity<UploadSessionResponse> getUploadSession(
+            @PathVariable String sessionId,
+            @AuthenticationPrincipal UserDetails userDetails) throws FileNotFoundException, IllegalAccessException {
+
+        User user = userRepository.findByUsername(userDetails.getUsername())
+                .orElseThrow(() -> new UsernameNotFoundException("User not found"));
+
+        return ResponseEntity.ok(uploadSessionService.getSessionStatus(sessionId, user));
+    }
+
+    @PostMapping("/upload-sessions/{sessionId}/complete")
+    public ResponseEntity<Map<String, String>> completeUploadSession(
+            @PathVariable String sessionId,
+            @AuthenticationPrincipal UserDetails userDetails) throws FileNotFoundException, IllegalAccessException {
+
+        User user = userRepository.findByUsername(userDetails.getUsername())
+                .orElseThrow(() -> new UsernameNotFoundException("User not found"));
+
+        FileMetadata metadata = uploadSessionService.completeSession(sessionId, user);
+
+        Map<String, String> response = Map.of(
+                "uuid", metadata.getUuid(),
+                "message", "File uploaded successfully"
+        );
+
+        return ResponseEntity.ok(response);
+    }
+
+    // Newest first, one page at a time; the next page's URL is in the Link header (rel="next")
     @GetMapping
     public ResponseEntity<List<FileMetadataResponse>> getUserFiles(
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "limit", required = false) Integer limit,
             @AuthenticationPrincipal UserDetails userDetails) {
 
         User user = userRepository.findByUsername(userDetails.getUsername())
                 .orElseThrow(() -> new UsernameNotFoundException("User not found"));
 
-        List<FileMetadata> files = fileService.getUserFiles(user);
+        FileService.FilePage page = fileService.getUserFiles(user, cursor, limit);
+
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok();
+        if (page.nextCursor() != null) {
+            String next = ServletUriComponentsBuilder.fromCurrentRequest()
+                    .replaceQueryParam("cursor", page.nextCursor())
+                    .toUriString();
+            builder.header(HttpHeaders.LINK, "<" + next + ">; rel=\"next\"");
+        }
+        return builder.body(page.files());
+    }
+
+    // Filtered by type, size and expiry, sorted by upload date, expiry or size; see FileSearchRequest
+    @GetMapping("/search")
+    public ResponseEntity<List<FileMetadataResponse>> searchUserFiles(
+            @ModelAttribute FileSearchRequest searchRequest,
+            @AuthenticationPrincipal UserDetails userDetails) {
+
+        User user = userRepository.findByUsername(userDetails.getUsername())
+                .orElseThrow(() -> new UsernameNotFoundException("User not found"));
 
-        // Convert to DTO
-        List<FileMetadataResponse> response = files.stream()
+        List<FileMetadataResponse> response = fileService.searchUserFiles(user, searchRequest).stream()
                 .map(FileMetadataResponse::from)
                 .collect(Collectors.toList());
-
         return ResponseEntity.ok(response);
     }
 
@@ -74,41 +219,89 @@ public class UserFileController {
     public ResponseEntity<FileMetadataResponse> getFileMetadata(
             @PathVariable String uuid) throws FileNotFoundException {
 
-        FileMetadata metadata = fileService.getFileMetadata(uuid);
-        return ResponseEntity.ok(FileMetadataResponse.from(metadata));
+        FileMetadataResponse response = fileService.getFileMetadataResponse(uuid);
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.noCache())
+                .eTag(response.entityTag())
+                .body(response);
     }
 
-    @GetMapping("/download/{uuid}")
-    public ResponseEntity<FileSystemResource> downloadFile(
+    // Short-lived signed download URL for a file the caller may download, optionally for bytes first..last only
+    @PostMapping("/{uuid}/ticket")
+    public ResponseEntity<DownloadTicketResponse> createDownloadTicket(
             @PathVariable String uuid,
-            @AuthenticationPrincipal UserDetails userDetails
-    ) throws FileNotFoundException, IllegalAccessException, UsernameNotFoundException {
+            @RequestParam(value = "first", required = false) Long first,
+            @RequestParam(value = "last", required = false) Long last,
+            @AuthenticationPrincipal UserDetails userDetails) throws FileNotFoundException, IllegalAccessException {
 
-        File file = fileService.downloadFile(uuid);
-        FileMetadata metadata = fileService.getFileMetadata(uuid);
+        String username = userDetails.getUsername();
+        FileMetadata metadata = fileService.getDownloadMetadata(uuid, username);
+        return ResponseEntity.ok(downloadTicketService.mint(metadata, username, first, last));
+    }
+
+    // One ZIP of the listed files, or of all the caller's files, streamed while it is built
+    @GetMapping("/download/zip")
+    public void downloadZip(
+            @RequestParam(value = "uuids", required = false) List<String> uuids,
+            @AuthenticationPrincipal UserDetails userDetails,
+            HttpServletRequest request,
+            HttpServletResponse response
+    ) throws IOException, IllegalAccessException {
 
-        // Allow download if file is public
-        if (metadata.isPublic()) {
-            return ResponseEntity.ok()
-                    .header("Content-Disposition", "attachment; filename=\"" + metadata.getFilename() + "\"")
-                    .body(new FileSystemResource(file));
+        String username = userDetails.getUsername();
+        List<FileMetadata> files;
+        if (uuids == null || uuids.isEmpty()) {
+            User user = userRepository.findByUsername(username)
+                    .orElseThrow(() -> new UsernameNotFoundException("User not found"));
+            files = fileService.getUserFiles(user);
+        } else {
+            files = zipDownloadService.resolveFiles(uuids, username);
         }
 
-        // For non-public files, check ownership
-        if (userDetails == null) {
-            throw new IllegalAccessException("Authentication required to download this file");
+        try (BandwidthShaper.Stream stream = bandwidthShaper.open(null, request)) {
+            zipDownloadService.write(request, response, files, username, DownloadSessionTracker.clientKey(request, username));
         }
+    }
 
-        User user = userRepository.findByUsername(userDetails.getUsername())
-                .orElseThrow(() -> new UsernameNotFoundException("User not found"));
+    // Public files, or the caller's own; ownership is checked before anything is counted
+    @GetMapping("/download/{uuid}")
+    public void downloadFile(
+            @PathVariable String uuid,
+            @AuthenticationPrincipal UserDetails userDetails,
+            HttpServletRequest request,
+            HttpServletResponse response
+    ) throws IOException, IllegalAccessException {
 
-        if (!metadata.getOwner().equals(user)) {
-            throw new IllegalAccessException("Not authorized to download this file");
+        String username = userDetails == null ? null : userDetails.getUsername();
+        // Revalidating a copy the client already holds is not a download
+        if (FileDownloadWriter.isConditional(request)
+                && fileDownloadWriter.checkNotModified(request, response, fileService.getDownloadMetadata(uuid, username))) {
+            return;
         }
 
-        return ResponseEntity.ok()
-                .header("Content-Disposition", "attachment; filename=\"" + metadata.getFilename() + "\"")
-                .body(new FileSystemResource(file));
+        // A file with too many streams is refused before the download is counted
+        try (BandwidthShaper.Stream stream = bandwidthShaper.open(uuid, request)) {
+            FileMetadata metadata = fileService.authorizeDownload(
+                    uuid, username, DownloadSessionTracker.clientKey(request, username));
+
+            fileDownloadWriter.write(request, response, metadata, fileService.getStoredFile(metadata));
+        }
+    }
+
+    // Size, type and validators from the metadata; the file is not read and nothing is counted
+    @RequestMapping(value = "/download/{uuid}", method = RequestMethod.HEAD)
+    public void headFile(
+            @PathVariable String uuid,
+            @AuthenticationPrincipal UserDetails userDetails,
+            HttpServletRequest request,
+            HttpServletResponse response
+    ) throws FileNotFoundException, IllegalAccessException {
+
+        String username = userDetails == null ? null : userDetails.getUsername();
+        FileMetadata metadata = fileService.getDownloadMetadata(uuid, username);
+        if (!fileDownloadWriter.checkNotModified(request, response, metadata)) {
+            fileDownloadWriter.writeHead(response, metadata);
+        }
     }
 
     @DeleteMapping("/{uuid}")
@@ -0,0 +1,49 @@
+package com.proximashare.dto;
+
+import lombok.Getter;
+
+import java.util.List;
+
+@Getter
+public class BatchUploadResponse {
+    private int uploaded;
+    private int failed;
+    private List<FileResult> results;  // same order as the request parts
+
+    public BatchUploadResponse() {
+    }
+
+    public BatchUploadResponse(List<FileResult> results) {
+        this.results = results;
+        this.uploaded = (int) results.stream().filter(FileResult::isSuccess).count();
+        this.failed = results.size() - uploaded;
+    }
+
+    @Getter
+    public static class FileResult {
+        private String filename;
+        private boolean success;
+        private String uuid;  // null when the file failed
+        private String message;
+
+        public FileResult() {
+        }
+
+        public static FileResult uploaded(String filename, String uuid) {
+            FileResult result = new FileResult();
+            result.filename = filename;
+            result.success = true;
+            result.uuid = uuid;
+            result.message = "File uploaded successfully";
+            return result;
+        }
+
+        public static FileResult failed(String filename, String message) {
+            FileResult result = new FileResult();
+            result.filename = filename;
+            result.success = false;
+            result.message = message;
+            return result;
+        }
+    }
+}
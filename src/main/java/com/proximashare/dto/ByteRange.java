@@ -0,0 +1,5 @@
+package com.proximashare.dto;
+
+// Received byte range of an upload session, start inclusive and end exclusive
+public record ByteRange(long start, long end) {
+}
@@ -0,0 +1,40 @@
+package com.proximashare.dto;
+
+import com.proximashare.entity.FileBlob;
+import com.proximashare.service.TreeHasher;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+
+// Merkle root and leaf hashes of a file, so a client can verify any downloaded segment
+@Getter
+public class ContentHashesResponse {
+    private String uuid;
+    private String algorithm;
+    private String root;
+    private long size;
+    private int leafSize;
+    private List<String> leafHashes;
+
+    public ContentHashesResponse() {
+    }
+
+    public static ContentHashesResponse from(String uuid, FileBlob blob) {
+        ContentHashesResponse response = new ContentHashesResponse();
+        response.uuid = uuid;
+        response.algorithm = "sha256-tree";
+        response.root = blob.getDigest();
+        response.size = blob.getSize();
+        response.leafSize = blob.getLeafSize();
+
+        byte[] hashes = blob.getLeafHashes();
+        response.leafHashes = new ArrayList<>(hashes.length / TreeHasher.HASH_LENGTH);
+        for (int i = 0; i < hashes.length; i += TreeHasher.HASH_LENGTH) {
+            response.leafHashes.add(HexFormat.of().formatHex(Arrays.copyOfRange(hashes, i, i + TreeHasher.HASH_LENGTH)));
+        }
+        return response;
+    }
+}
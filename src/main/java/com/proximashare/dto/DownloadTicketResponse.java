@@ -0,0 +1,21 @@
+package com.proximashare.dto;
+
+import lombok.Getter;
+
+import java.time.LocalDateTime;
+
+@Getter
+public class DownloadTicketResponse {
+    private String ticket;
+    private String downloadUrl;  // Relative to the API host; needs no Authorization header
+    private LocalDateTime expiresAt;
+
+    public DownloadTicketResponse() {
+    }
+
+    public DownloadTicketResponse(String ticket, String downloadUrl, LocalDateTime expiresAt) {
+        this.ticket = ticket;
+        this.downloadUrl = downloadUrl;
+        this.expiresAt = expiresAt;
+    }
+}
@@ -1,10 +1,13 @@
 package com.proximashare.dto;
 
 import com.proximashare.entity.FileMetadata;
+import com.proximashare.entity.ProcessingState;
 import lombok.Getter;
 import lombok.Setter;
 import org.hibernate.Hibernate;
+import org.springframework.util.DigestUtils;
 
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 
 @Getter
@@ -19,10 +22,28 @@ public class FileMetadataResponse {
     private boolean isPublic;
     private String ownerUsername;  // Only username, not entire User object
     private String mimeType;
+    private ProcessingState processingState;
 
     public FileMetadataResponse() {
     }
 
+    // Projection constructor: FileMetadataRepository selects exactly these columns, without loading entities
+    public FileMetadataResponse(String uuid, String filename, long size, LocalDateTime uploadDate,
+                                LocalDateTime expiryDate, int downloadCount, boolean isPublic,
+                                String ownerUsername, String mimeType, ProcessingState processingState) {
+        this.uuid = uuid;
+        this.filename = filename;
+        this.size = size;
+        this.uploadDate = uploadDate;
+        this.expiryDate = expiryDate;
+        this.downloadCount = downloadCount;
+        this.isPublic = isPublic;
+        this.ownerUsername = ownerUsername;
+        this.mimeType = mimeType;
+        // Files stored before the pipeline existed have no state and are served as they are
+        this.processingState = processingState == null ? ProcessingState.READY : processingState;
+    }
+
     // Constructor from entity
     public static FileMetadataResponse from(FileMetadata metadata) {
         FileMetadataResponse response = new FileMetadataResponse();
@@ -34,6 +55,9 @@ public class FileMetadataResponse {
         response.downloadCount = metadata.getDownloadCount();
         response.isPublic = metadata.isPublic();
         response.mimeType = metadata.getMimeType();
+        // Files stored before the pipeline existed have no state and are served as they are
+        response.processingState = metadata.getProcessingState() == null
+                ? ProcessingState.READY : metadata.getProcessingState();
 
         if (metadata.getOwner() != null && Hibernate.isInitialized(metadata.getOwner())) {
             response.ownerUsername = metadata.getOwner().getUsername();
@@ -44,4 +68,11 @@ public class FileMetadataResponse {
         return response;
     }
 
+    // Weak validator over everything the response shows, so a count or state change makes it stale
+    public String entityTag() {
+        String state = String.join("|", uuid, filename, String.valueOf(size), String.valueOf(uploadDate),
+                String.valueOf(expiryDate), String.valueOf(downloadCount), String.valueOf(isPublic),
+                String.valueOf(ownerUsername), String.valueOf(mimeType), String.valueOf(processingState));
+        return "W/\"" + DigestUtils.md5DigestAsHex(state.getBytes(StandardCharsets.UTF_8)) + "\"";
+    }
 }
\ No newline at end of file
@@ -0,0 +1,29 @@
+package com.proximashare.dto;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.format.annotation.DateTimeFormat;
+
+import java.time.LocalDateTime;
+
+// Query parameters of GET /user/files/search; every filter is optional
+@Getter
+@Setter
+public class FileSearchRequest {
+    private String mimeType;  // exact ("text/csv") or a whole top-level type ("image/*")
+
+    private Long minSize;
+    private Long maxSize;
+
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+    private LocalDateTime expiresAfter;
+
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+    private LocalDateTime expiresBefore;
+
+    private Integer expiringWithinHours;  // still live, but gone within this many hours
+
+    private String sort = "uploadDate";  // uploadDate, expiryDate or size
+    private String direction = "desc";
+    private Integer limit;
+}
@@ -0,0 +1,16 @@
+package com.proximashare.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// One row of UserStats.byMimeType, built by a GROUP BY query rather than from loaded files
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MimeTypeStats {
+    private String mimeType; // null for files whose type was never sent or sniffed
+    private Long fileCount;
+    private Long totalSize; // in bytes
+    private Long totalDownloads;
+}
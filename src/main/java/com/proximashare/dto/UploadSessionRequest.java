@@ -0,0 +1,18 @@
+package com.proximashare.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Positive;
+import lombok.Getter;
+import lombok.Setter;
+
+@Getter
+@Setter
+public class UploadSessionRequest {
+    @NotBlank(message = "Filename is required")
+    private String filename;
+
+    private String mimeType;
+
+    @Positive(message = "File size must be greater than zero")
+    private long size;
+}
@@ -0,0 +1,35 @@
+package com.proximashare.dto;
+
+import com.proximashare.entity.UploadSession;
+import lombok.Getter;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Getter
+public class UploadSessionResponse {
+    private String sessionId;
+    private String filename;
+    private long size;
+    private LocalDateTime expiresAt;
+    private long receivedBytes;
+    private List<ByteRange> receivedRanges;
+    private boolean complete;
+
+    public UploadSessionResponse() {
+    }
+
+    public static UploadSessionResponse from(UploadSession session, List<ByteRange> receivedRanges) {
+        UploadSessionResponse response = new UploadSessionResponse();
+        response.sessionId = session.getId();
+        response.filename = session.getFilename();
+        response.size = session.getTotalSize();
+        response.expiresAt = session.getExpiresAt();
+        response.receivedRanges = receivedRanges;
+        response.receivedBytes = receivedRanges.stream()
+                .mapToLong(range -> range.end() - range.start())
+                .sum();
+        response.complete = response.receivedBytes == session.getTotalSize();
+        return response;
+    }
+}
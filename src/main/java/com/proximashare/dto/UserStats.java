@@ -5,12 +5,17 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.util.List;
+
 @Data
 @Builder
 @NoArgsConstructor
 @AllArgsConstructor
 public class UserStats {
-    private Integer totalFilesUploaded;
+    private Long totalFilesUploaded;
     private Long totalStorageUsed; // in bytes
-    private Integer totalDownloads; // total download count across all files
-}
\ No newline at end of file
+    private Long totalDownloads; // total download count across all files
+    private List<MimeTypeStats> byMimeType; // most files first
+    private Long storageQuota; // in bytes; null when unlimited
+    private Long fileQuota; // null when unlimited
+}
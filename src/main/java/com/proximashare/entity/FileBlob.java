@@ -0,0 +1,59 @@
+package com.proximashare.entity;
+
+import jakarta.persistence.*;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.data.domain.Persistable;
+
+import java.time.LocalDateTime;
+
+// Stored bytes, keyed by content digest and shared by every FileMetadata with the same content
+@Entity
+@Getter
+@Setter
+public class FileBlob implements Persistable<String> {
+    @Id
+    @Column(length = 64)
+    private String digest;  // hex SHA-256 of the content
+    private long size;
+    private int refCount;
+    private LocalDateTime createdAt;
+
+    // Tree-hashed blobs: digest is the Merkle root over leafSize leaves; 0 for a plain streaming SHA-256
+    private int leafSize;
+    @Column(length = 1_048_576)
+    private byte[] leafHashes;  // consecutive 32-byte SHA-256 leaf hashes
+
+    // Assigned ids: without this, save() would merge (SELECT + UPDATE) instead of failing on a duplicate insert
+    @Transient
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private boolean newEntity = true;
+
+    public FileBlob() {
+    }
+
+    public FileBlob(String digest, long size, int refCount, LocalDateTime createdAt) {
+        this.digest = digest;
+        this.size = size;
+        this.refCount = refCount;
+        this.createdAt = createdAt;
+    }
+
+    @Override
+    public String getId() {
+        return digest;
+    }
+
+    @Override
+    public boolean isNew() {
+        return newEntity;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markNotNew() {
+        this.newEntity = false;
+    }
+}
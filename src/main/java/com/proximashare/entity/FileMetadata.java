@@ -1,15 +1,26 @@
 package com.proximashare.entity;
 
 import jakarta.persistence.*;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.Setter;
+import org.springframework.data.domain.Persistable;
 
 import java.time.LocalDateTime;
 
 @Entity
+// One index per listing order/filter, all led by the owner so a user's files are a contiguous range;
+// the processing index serves the oldest-first PENDING/PROCESSING polls of the pipeline
+@Table(indexes = {
+        @Index(name = "idx_file_metadata_owner_upload", columnList = "user_id, upload_date DESC, uuid DESC"),
+        @Index(name = "idx_file_metadata_owner_expiry", columnList = "user_id, expiry_date"),
+        @Index(name = "idx_file_metadata_owner_size", columnList = "user_id, size"),
+        @Index(name = "idx_file_metadata_owner_mime", columnList = "user_id, mime_type"),
+        @Index(name = "idx_file_metadata_processing", columnList = "processing_state, upload_date")
+})
 @Getter
 @Setter
-public class FileMetadata {
+public class FileMetadata implements Persistable<String> {
     @Id
     private String uuid;
     private String filename;
@@ -18,6 +29,8 @@ public class FileMetadata {
     private LocalDateTime uploadDate;
     private LocalDateTime expiryDate;
     private int downloadCount;
+    @Column(length = 64)
+    private String blobDigest;  // content-addressed blob; null for files stored as uuid + extension
 
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "user_id")
@@ -25,6 +38,20 @@ public class FileMetadata {
 
     private boolean isPublic;  // true = public, false = user upload
 
+    @Enumerated(EnumType.STRING)
+    @Column(length = 20)
+    private ProcessingState processingState;  // null for files uploaded before the pipeline existed
+    private int processingAttempts;
+    @Column(length = 64)
+    private String processingClaimedBy;  // node whose worker holds the PROCESSING claim
+    private LocalDateTime processingClaimedAt;  // renewed between stages; a claim left to age is taken over
+
+    // Assigned ids: lets save()/saveAll() insert new rows directly instead of SELECT + INSERT per row
+    @Transient
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private boolean newEntity = true;
+
     public FileMetadata() {
     }
 
@@ -51,6 +78,22 @@ public class FileMetadata {
         this.isPublic = isPublic;
     }
 
+    @Override
+    public String getId() {
+        return uuid;
+    }
+
+    @Override
+    public boolean isNew() {
+        return newEntity;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markNotNew() {
+        this.newEntity = false;
+    }
+
     @Override
     public String toString() {
         return "uuid = " + getUuid()
@@ -0,0 +1,9 @@
+package com.proximashare.entity;
+
+// Post-upload processing of a file; the bytes are downloadable in every state
+public enum ProcessingState {
+    PENDING,     // stored, waiting for (or retrying) the processing stages
+    PROCESSING,  // claimed by a worker
+    READY,       // every stage finished
+    FAILED       // a stage kept failing after all attempts
+}
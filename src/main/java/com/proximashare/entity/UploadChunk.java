@@ -0,0 +1,33 @@
+package com.proximashare.entity;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+
+// One row per received chunk, so parallel chunk uploads never update the same row
+@Entity
+@Table(indexes = @Index(name = "idx_upload_chunk_session", columnList = "session_id"))
+@Getter
+@Setter
+public class UploadChunk {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "session_id", nullable = false)
+    private String sessionId;
+
+    private long chunkOffset;
+    private long chunkLength;
+    @Column(length = 64)
+    private String sha256;  // hex SHA-256 of the chunk as written
+
+    public UploadChunk() {
+    }
+
+    public UploadChunk(String sessionId, long chunkOffset, long chunkLength) {
+        this.sessionId = sessionId;
+        this.chunkOffset = chunkOffset;
+        this.chunkLength = chunkLength;
+    }
+}
@@ -0,0 +1,35 @@
+package com.proximashare.entity;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Table(indexes = @Index(name = "idx_upload_session_client", columnList = "client_key, expires_at"))
+@Getter
+@Setter
+public class UploadSession {
+    @Id
+    private String id;
+    private String filename;
+    private String mimeType;
+    private long totalSize;
+    private LocalDateTime createdAt;
+    private LocalDateTime expiresAt;
+    @Column(name = "client_key", length = 64)
+    private String clientKey;  // user:<id>, or anon:<address> for public sessions; limits open sessions per client
+    private long receivedBytes;  // distinct bytes covered by recorded chunks, taken off the disk space reservation
+
+    @Enumerated(EnumType.STRING)
+    @Column(length = 20)
+    private UploadSessionStatus status = UploadSessionStatus.OPEN;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "user_id")
+    private User owner;  // null for public upload sessions
+
+    public UploadSession() {
+    }
+}
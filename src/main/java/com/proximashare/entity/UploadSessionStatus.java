@@ -0,0 +1,8 @@
+package com.proximashare.entity;
+
+// Lifecycle of a resumable upload session
+public enum UploadSessionStatus {
+    OPEN,        // accepting chunks
+    COMPLETING,  // claimed by one complete request, which is assembling the file
+    FAILED       // the part file was adopted but the file could not be registered; kept until it expires
+}
@@ -0,0 +1,51 @@
+package com.proximashare.entity;
+
+import jakarta.persistence.*;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.data.domain.Persistable;
+
+import java.time.LocalDateTime;
+
+// Running totals of a user's files, kept in step with file_metadata so quotas and stats never scan it
+@Entity
+@Table(name = "user_usage")
+@Getter
+@Setter
+public class UserUsage implements Persistable<Long> {
+    @Id
+    private Long userId;  // users.id; not mapped as a relation, so counter updates never touch the users row
+    private long bytesStored;
+    private long fileCount;
+    private LocalDateTime reconciledAt;  // last time the counters were recomputed from file_metadata
+
+    // Assigned ids: lets save() insert a new row directly instead of SELECT + INSERT
+    @Transient
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private boolean newEntity = true;
+
+    public UserUsage() {
+    }
+
+    public UserUsage(Long userId) {
+        this.userId = userId;
+    }
+
+    @Override
+    public Long getId() {
+        return userId;
+    }
+
+    @Override
+    public boolean isNew() {
+        return newEntity;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markNotNew() {
+        this.newEntity = false;
+    }
+}
@@ -0,0 +1,14 @@
+package com.proximashare.exception;
+
+public class DownloadBusyException extends RuntimeException {
+    private final int retryAfterSeconds;
+
+    public DownloadBusyException(String message, int retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public int getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -5,6 +5,7 @@ import java.util.HashMap;
 import java.util.Map;
 
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.AuthenticationException;
@@ -54,6 +55,26 @@ public class GlobalExceptionHandler {
         return ResponseEntity.status(HttpStatus.FORBIDDEN).body(errorDetails);
     }
 
+    /**
+     * Handles InsufficientStorageException, returning HTTP 507 (INSUFFICIENT_STORAGE).
+     */
+    @ExceptionHandler(InsufficientStorageException.class)
+    public ResponseEntity<ErrorDetails> handleInsufficientStorageException(InsufficientStorageException e) {
+        ErrorDetails errorDetails = new ErrorDetails(e.getMessage(), (!isProductionEnvironment && includeStackTrace) ? getStackTraceAsString(e) : null);
+        return ResponseEntity.status(HttpStatus.INSUFFICIENT_STORAGE).body(errorDetails);
+    }
+
+    /**
+     * Handles DownloadBusyException, returning HTTP 503 (SERVICE_UNAVAILABLE) with Retry-After.
+     */
+    @ExceptionHandler(DownloadBusyException.class)
+    public ResponseEntity<ErrorDetails> handleDownloadBusyException(DownloadBusyException e) {
+        ErrorDetails errorDetails = new ErrorDetails(e.getMessage(), (!isProductionEnvironment && includeStackTrace) ? getStackTraceAsString(e) : null);
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                .body(errorDetails);
+    }
+
     /**
      * Handles MaxUploadSizeExceededException, returning HTTP 400 (BAD_REQUEST).
      * Provides a more user-friendly error message.
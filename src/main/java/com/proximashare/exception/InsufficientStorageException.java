@@ -0,0 +1,7 @@
+package com.proximashare.exception;
+
+public class InsufficientStorageException extends RuntimeException {
+    public InsufficientStorageException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,36 @@
+package com.proximashare.repository;
+
+import com.proximashare.entity.FileBlob;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Optional;
+
+public interface FileBlobRepository extends JpaRepository<FileBlob, String> {
+    // Returns 0 when the blob does not exist yet
+    @Modifying
+    @Transactional
+    @Query("UPDATE FileBlob b SET b.refCount = b.refCount + 1 WHERE b.digest = :digest")
+    int incrementRefCount(@Param("digest") String digest);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE FileBlob b SET b.refCount = b.refCount - 1 WHERE b.digest = :digest AND b.refCount > 0")
+    int decrementRefCount(@Param("digest") String digest);
+
+    // Returns 1 when the last reference was gone and the row was removed
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM FileBlob b WHERE b.digest = :digest AND b.refCount <= 0")
+    int deleteIfUnreferenced(@Param("digest") String digest);
+
+    // Holds off reference changes of the blob on every node until the caller's transaction ends
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT b FROM FileBlob b WHERE b.digest = :digest")
+    Optional<FileBlob> findForUpdate(@Param("digest") String digest);
+}
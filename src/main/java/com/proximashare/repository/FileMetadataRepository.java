@@ -1,25 +1,162 @@
 package com.proximashare.repository;
 
+import com.proximashare.dto.FileMetadataResponse;
+import com.proximashare.dto.MimeTypeStats;
 import com.proximashare.entity.FileMetadata;
+import com.proximashare.entity.ProcessingState;
 import com.proximashare.entity.User;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
-public interface FileMetadataRepository extends JpaRepository<FileMetadata, String> {
+public interface FileMetadataRepository extends JpaRepository<FileMetadata, String>, JpaSpecificationExecutor<FileMetadata> {
     // Find all files for a specific user
     List<FileMetadata> findByOwnerOrderByUploadDateDesc(User owner);
 
+    // Read-only view for the metadata and listing endpoints: only the columns FileMetadataResponse
+    // shows, the owner's username included, with no managed entity, snapshot or role fetch behind it
+    String RESPONSE_PROJECTION = "SELECT new com.proximashare.dto.FileMetadataResponse(" +
+            "f.uuid, f.filename, f.size, f.uploadDate, f.expiryDate, f.downloadCount, f.isPublic, " +
+            "o.username, f.mimeType, f.processingState) FROM FileMetadata f LEFT JOIN f.owner o ";
+
+    @Query(RESPONSE_PROJECTION + "WHERE f.uuid = :uuid")
+    Optional<FileMetadataResponse> findResponseById(@Param("uuid") String uuid);
+
+    // First page of a user's files, newest first; uuid breaks ties so the order is total
+    @Query(RESPONSE_PROJECTION + "WHERE f.owner = :owner ORDER BY f.uploadDate DESC, f.uuid DESC")
+    List<FileMetadataResponse> findResponsesByOwner(@Param("owner") User owner, Limit limit);
+
+    // Keyset page after (uploadDate, uuid), read from idx_file_metadata_owner_upload without an offset scan
+    @Query(RESPONSE_PROJECTION + "WHERE f.owner = :owner " +
+            "AND (f.uploadDate < :uploadDate OR (f.uploadDate = :uploadDate AND f.uuid < :uuid)) " +
+            "ORDER BY f.uploadDate DESC, f.uuid DESC")
+    List<FileMetadataResponse> findResponsesByOwnerAfter(@Param("owner") User owner,
+                                                         @Param("uploadDate") LocalDateTime uploadDate,
+                                                         @Param("uuid") String uuid,
+                                                         Limit limit);
+
+    // Count and totals per MIME type in one grouped read of idx_file_metadata_owner_mime, however many files there are
+    @Query("SELECT new com.proximashare.dto.MimeTypeStats(f.mimeType, COUNT(f), SUM(f.size), SUM(f.downloadCount)) " +
+            "FROM FileMetadata f WHERE f.owner.id = :ownerId GROUP BY f.mimeType ORDER BY COUNT(f) DESC, f.mimeType")
+    List<MimeTypeStats> getMimeTypeStats(@Param("ownerId") Long ownerId);
+
     // Find file by UUID and owner (for ownership verification)
     Optional<FileMetadata> findByUuidAndOwner(String uuid, User owner);
 
     // Existing method for cleanup
     List<FileMetadata> findByExpiryDateBefore(LocalDateTime dateTime);
 
+    // Files stored before the blob store existed
+    List<FileMetadata> findByBlobDigestIsNull();
+
+    // Point a legacy file's row at its blob; only that column, so a download counted meanwhile is kept
+    @Modifying
+    @Transactional
+    @Query("UPDATE FileMetadata f SET f.blobDigest = :digest WHERE f.uuid = :uuid AND f.blobDigest IS NULL")
+    int setBlobDigestIfMissing(@Param("uuid") String uuid, @Param("digest") String digest);
+
+    // Oldest files still waiting for post-upload processing
+    List<FileMetadata> findTop500ByProcessingStateOrderByUploadDateAsc(ProcessingState processingState);
+
+    // Compare-and-set from PENDING to PROCESSING, so only one worker in the cluster claims a file
+    @Modifying
+    @Transactional
+    @Query("UPDATE FileMetadata f SET f.processingState = :processing, f.processingClaimedBy = :node, " +
+            "f.processingClaimedAt = :now WHERE f.uuid = :uuid AND f.processingState = :pending")
+    int claimProcessing(@Param("uuid") String uuid,
+                        @Param("node") String node,
+                        @Param("now") LocalDateTime now,
+                        @Param("pending") ProcessingState pending,
+                        @Param("processing") ProcessingState processing);
+
+    // Keep a claim alive between stages; 0 when another node took it over meanwhile
+    @Modifying
+    @Transactional
+    @Query("UPDATE FileMetadata f SET f.processingClaimedAt = :now " +
+            "WHERE f.uuid = :uuid AND f.processingState = :processing AND f.processingClaimedBy = :node")
+    int renewProcessingClaim(@Param("uuid") String uuid,
+                             @Param("node") String node,
+                             @Param("now") LocalDateTime now,
+                             @Param("processing") ProcessingState processing);
+
+    // Back to PENDING: claims not renewed since staleBefore (their node died), and claims without a time
+    // (made before claims were timed); live claims of other nodes are left alone
+    @Modifying
+    @Transactional
+    @Query("UPDATE FileMetadata f SET f.processingState = :pending, f.processingClaimedBy = NULL, f.processingClaimedAt = NULL " +
+            "WHERE f.processingState = :processing AND (f.processingClaimedAt IS NULL OR f.processingClaimedAt < :staleBefore)")
+    int releaseStaleProcessingClaims(@Param("staleBefore") LocalDateTime staleBefore,
+                                     @Param("pending") ProcessingState pending,
+                                     @Param("processing") ProcessingState processing);
+
+    // Back to PENDING: claims of this node's previous process, whose workers died with it
+    @Modifying
+    @Transactional
+    @Query("UPDATE FileMetadata f SET f.processingState = :pending, f.processingClaimedBy = NULL, f.processingClaimedAt = NULL " +
+            "WHERE f.processingState = :processing AND f.processingClaimedBy = :node")
+    int releaseProcessingClaimsOf(@Param("node") String node,
+                                  @Param("pending") ProcessingState pending,
+                                  @Param("processing") ProcessingState processing);
+
+    // Only the columns processing owns, so concurrent changes (e.g. download counts) are kept; only while
+    // this node still holds the claim, so a worker that lost it cannot overwrite the new owner's result
+    @Modifying
+    @Transactional
+    @Query("UPDATE FileMetadata f SET f.processingState = :state, f.mimeType = :mimeType, " +
+            "f.processingClaimedBy = NULL, f.processingClaimedAt = NULL " +
+            "WHERE f.uuid = :uuid AND f.processingClaimedBy = :node")
+    int completeProcessing(@Param("uuid") String uuid,
+                           @Param("node") String node,
+                           @Param("state") ProcessingState state,
+                           @Param("mimeType") String mimeType);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE FileMetadata f SET f.processingState = :state, f.processingAttempts = f.processingAttempts + 1, " +
+            "f.processingClaimedBy = NULL, f.processingClaimedAt = NULL " +
+            "WHERE f.uuid = :uuid AND f.processingClaimedBy = :node")
+    int recordFailedProcessingAttempt(@Param("uuid") String uuid,
+                                      @Param("node") String node,
+                                      @Param("state") ProcessingState state);
+
+    // Count one download only if the file is unexpired, under its limit and readable by the caller
+    // (public, or owned by username), all in one statement so concurrent downloads cannot overshoot
+    @Modifying
+    @Transactional
+    @Query("UPDATE FileMetadata f SET f.downloadCount = f.downloadCount + 1 " +
+            "WHERE f.uuid = :uuid AND f.expiryDate > :now " +
+            "AND f.downloadCount < CASE WHEN f.isPublic = true THEN :publicMax ELSE :userMax END " +
+            "AND (f.isPublic = true OR f.owner IN (SELECT u FROM User u WHERE u.username = :username))")
+    int reserveDownload(@Param("uuid") String uuid,
+                        @Param("now") LocalDateTime now,
+                        @Param("publicMax") int publicMaxDownloads,
+                        @Param("userMax") int userMaxDownloads,
+                        @Param("username") String username);
+
+    // Move a block of a public file's remaining allowance into a node-local lease, never past the limit
+    @Modifying
+    @Transactional
+    @Query("UPDATE FileMetadata f SET f.downloadCount = f.downloadCount + :block " +
+            "WHERE f.uuid = :uuid AND f.isPublic = true AND f.expiryDate > :now AND f.downloadCount + :block <= :maxDownloads")
+    int leaseDownloads(@Param("uuid") String uuid,
+                       @Param("block") int block,
+                       @Param("maxDownloads") int maxDownloads,
+                       @Param("now") LocalDateTime now);
+
+    // Give back the part of a lease that was not used
+    @Modifying
+    @Transactional
+    @Query("UPDATE FileMetadata f SET f.downloadCount = f.downloadCount - :unused WHERE f.uuid = :uuid AND f.downloadCount >= :unused")
+    int returnLeasedDownloads(@Param("uuid") String uuid, @Param("unused") int unused);
+
     // Fetch owner eagerly when finding by UUID
     @Query("SELECT f FROM FileMetadata f LEFT JOIN FETCH f.owner WHERE f.uuid = :uuid")
     Optional<FileMetadata> findByIdWithOwner(String uuid);
@@ -0,0 +1,73 @@
+package com.proximashare.repository;
+
+import com.proximashare.entity.FileMetadata;
+import com.proximashare.entity.User;
+import jakarta.persistence.criteria.JoinType;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.time.LocalDateTime;
+
+/**
+ * Filters for FileMetadataRepository#findBy. Each is a plain comparison on one column so it
+ * combines with the owner predicate into a range on one of the (user_id, ...) indexes of
+ * file_metadata; a null argument leaves the filter out.
+ */
+public final class FileMetadataSpecifications {
+    private FileMetadataSpecifications() {
+    }
+
+    public static Specification<FileMetadata> ownedBy(User owner) {
+        return (root, query, cb) -> cb.equal(root.get("owner"), owner);
+    }
+
+    // Loads the owner with the rows, so responses carry ownerUsername without a lazy proxy; adds no filter
+    public static Specification<FileMetadata> fetchOwner() {
+        return (root, query, cb) -> {
+            if (query.getResultType() != Long.class && query.getResultType() != long.class) {
+                root.fetch("owner", JoinType.LEFT);
+            }
+            return null;
+        };
+    }
+
+    // "type/*" becomes a prefix match, which still reads the index as a range
+    public static Specification<FileMetadata> hasMimeType(String mimeType) {
+        if (mimeType == null || mimeType.isBlank()) {
+            return null;
+        }
+        if (mimeType.endsWith("/*")) {
+            String prefix = mimeType.substring(0, mimeType.length() - 1);
+            return (root, query, cb) -> cb.like(root.get("mimeType"), prefix.replace("%", "\\%").replace("_", "\\_") + "%", '\\');
+        }
+        return (root, query, cb) -> cb.equal(root.get("mimeType"), mimeType);
+    }
+
+    public static Specification<FileMetadata> sizeBetween(Long minSize, Long maxSize) {
+        if (minSize == null && maxSize == null) {
+            return null;
+        }
+        if (maxSize == null) {
+            return (root, query, cb) -> cb.ge(root.get("size"), minSize);
+        }
+        if (minSize == null) {
+            return (root, query, cb) -> cb.le(root.get("size"), maxSize);
+        }
+        return (root, query, cb) -> cb.between(root.get("size"), minSize, maxSize);
+    }
+
+    // Exclusive after, inclusive before
+    public static Specification<FileMetadata> expiresBetween(LocalDateTime after, LocalDateTime before) {
+        if (after == null && before == null) {
+            return null;
+        }
+        if (before == null) {
+            return (root, query, cb) -> cb.greaterThan(root.get("expiryDate"), after);
+        }
+        if (after == null) {
+            return (root, query, cb) -> cb.lessThanOrEqualTo(root.get("expiryDate"), before);
+        }
+        return (root, query, cb) -> cb.and(
+                cb.greaterThan(root.get("expiryDate"), after),
+                cb.lessThanOrEqualTo(root.get("expiryDate"), before));
+    }
+}
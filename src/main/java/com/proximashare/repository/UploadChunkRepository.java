@@ -0,0 +1,19 @@
+package com.proximashare.repository;
+
+import com.proximashare.entity.UploadChunk;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+public interface UploadChunkRepository extends JpaRepository<UploadChunk, Long> {
+    List<UploadChunk> findBySessionIdOrderByChunkOffsetAsc(String sessionId);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM UploadChunk c WHERE c.sessionId = :sessionId")
+    void deleteBySessionId(@Param("sessionId") String sessionId);
+}
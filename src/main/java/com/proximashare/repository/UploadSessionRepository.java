@@ -0,0 +1,40 @@
+package com.proximashare.repository;
+
+import com.proximashare.entity.UploadSession;
+import com.proximashare.entity.UploadSessionStatus;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+public interface UploadSessionRepository extends JpaRepository<UploadSession, String> {
+    // Abandoned sessions for cleanup
+    List<UploadSession> findByExpiresAtBefore(LocalDateTime dateTime);
+
+    long countByClientKeyAndExpiresAtAfter(String clientKey, LocalDateTime now);
+
+    // Disk space still reserved for a client's unexpired sessions
+    @Query("SELECT COALESCE(SUM(s.totalSize - s.receivedBytes), 0) FROM UploadSession s " +
+            "WHERE s.clientKey = :clientKey AND s.expiresAt > :now")
+    long sumReservedBytes(@Param("clientKey") String clientKey, @Param("now") LocalDateTime now);
+
+    // Serializes recording chunks of one session, so overlapping chunks are counted once
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s FROM UploadSession s WHERE s.id = :id")
+    Optional<UploadSession> findForUpdate(@Param("id") String id);
+
+    // Compare-and-set on the status, so only one request completes a session
+    @Modifying
+    @Transactional
+    @Query("UPDATE UploadSession s SET s.status = :to WHERE s.id = :id AND s.status = :from")
+    int transitionStatus(@Param("id") String id,
+                         @Param("from") UploadSessionStatus from,
+                         @Param("to") UploadSessionStatus to);
+}
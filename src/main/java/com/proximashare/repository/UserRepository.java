@@ -1,8 +1,10 @@
 package com.proximashare.repository;
 
+import java.util.List;
 import java.util.Optional;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 
 import com.proximashare.entity.User;
 
@@ -20,4 +22,8 @@ public interface UserRepository extends JpaRepository<User, Long> {
     boolean existsByEmail(String email);
 
     Optional<User> findByEmailVerificationToken(String token);
+
+    // Ids only, without loading users and their roles
+    @Query("SELECT u.id FROM User u")
+    List<Long> findAllIds();
 }
@@ -0,0 +1,38 @@
+package com.proximashare.repository;
+
+import com.proximashare.entity.UserUsage;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Optional;
+
+public interface UserUsageRepository extends JpaRepository<UserUsage, Long> {
+    // Add an upload only while bytes and files both stay within the quota, as one statement so
+    // concurrent uploads cannot overshoot it; 0 when over quota or the user has no row yet
+    @Modifying
+    @Transactional
+    @Query("UPDATE UserUsage u SET u.bytesStored = u.bytesStored + :bytes, u.fileCount = u.fileCount + :files " +
+            "WHERE u.userId = :userId AND u.bytesStored + :bytes <= :maxBytes AND u.fileCount + :files <= :maxFiles")
+    int reserve(@Param("userId") Long userId,
+                @Param("bytes") long bytes,
+                @Param("files") int files,
+                @Param("maxBytes") long maxBytes,
+                @Param("maxFiles") long maxFiles);
+
+    // Take a file's share off its owner's counters; run before the file's row is deleted
+    @Modifying
+    @Transactional
+    @Query("UPDATE UserUsage u SET u.bytesStored = u.bytesStored - :bytes, u.fileCount = u.fileCount - 1 " +
+            "WHERE u.userId = (SELECT f.owner.id FROM FileMetadata f WHERE f.uuid = :uuid)")
+    int release(@Param("uuid") String uuid, @Param("bytes") long bytes);
+
+    // Holds off uploads and deletes of the user while the counters are recomputed
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT u FROM UserUsage u WHERE u.userId = :userId")
+    Optional<UserUsage> findForUpdate(@Param("userId") Long userId);
+}
@@ -0,0 +1,230 @@
+package com.proximashare.service;
+
+import com.proximashare.app.config.DownloadConfig;
+import com.proximashare.exception.DownloadBusyException;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Paces download bodies with token buckets so that one fast client cannot take a node's
+ * whole egress. Every chunk of a download is paid for in up to three buckets: its own
+ * (app.download.connection-rate), its user's or anonymous address's (user-rate,
+ * anonymous-rate, shared by all of their downloads) and the node's (node-rate). Chunks are
+ * small and buckets serve reservations in order, so active downloads share a limit fairly.
+ * <p>
+ * It also caps concurrent downloads of one file (max-streams-per-file) to damp stampedes on
+ * freshly shared links; the cap is checked before anything is counted.
+ * <p>
+ * A download opens a {@link Stream} and keeps it open while it writes; the stream is found
+ * through a request attribute by whatever writes the body. Shaped bodies go through the
+ * JVM, so they are never handed to sendfile; neither are bodies holding a file slot, since
+ * sendfile finishes after the stream is closed and the slot would be freed too early.
+ */
+@Component
+public class BandwidthShaper {
+    static final String STREAM_ATTR = BandwidthShaper.class.getName() + ".stream";
+    private static final int CHUNK_SIZE = 16 * 1024;
+
+    private final DownloadConfig downloadConfig;
+    private final Map<String, Integer> fileStreams = new ConcurrentHashMap<>();
+    private final Map<String, SharedBucket> principalBuckets = new ConcurrentHashMap<>();
+    private final AtomicInteger activeStreams = new AtomicInteger();
+    private final AtomicLong waitedNanos = new AtomicLong();
+    private TokenBucket nodeBucket;
+    private long nodeBucketRate;
+
+    public BandwidthShaper(DownloadConfig downloadConfig, ObjectProvider<MeterRegistry> meterRegistry) {
+        this.downloadConfig = downloadConfig;
+        meterRegistry.ifAvailable(this::registerMetrics);
+    }
+
+    // Start a download on behalf of the request's principal, if any
+    public Stream open(String uuid, HttpServletRequest request) {
+        Principal principal = request.getUserPrincipal();
+        return open(uuid, principal != null ? principal.getName() : null, request);
+    }
+
+    /**
+     * Start a download of the file (null for downloads not tied to one file, e.g. archives) for
+     * the user, or for the request's address when username is null. Throws
+     * DownloadBusyException when the file already has max-streams-per-file downloads.
+     */
+    public Stream open(String uuid, String username, HttpServletRequest request) {
+        String fileSlot = null;
+        if (uuid != null && downloadConfig.getMaxStreamsPerFile() > 0) {
+            int streams = fileStreams.merge(uuid, 1, Integer::sum);
+            if (streams > downloadConfig.getMaxStreamsPerFile()) {
+                releaseFile(uuid);
+                throw new DownloadBusyException("Too many downloads of this file in progress, please retry later",
+                        downloadConfig.getBusyRetryAfterSeconds());
+            }
+            fileSlot = uuid;
+        }
+
+        List<TokenBucket> buckets = new ArrayList<>(3);
+        String principalKey = null;
+        if (downloadConfig.isShapingEnabled()) {
+            long burst = downloadConfig.getShapingBurst();
+            if (downloadConfig.getConnectionRate() > 0) {
+                buckets.add(new TokenBucket(downloadConfig.getConnectionRate(), burst));
+            }
+
+            long principalRate = username != null ? downloadConfig.getUserRate() : downloadConfig.getAnonymousRate();
+            if (principalRate > 0) {
+                principalKey = username != null ? "user:" + username : "anon:" + request.getRemoteAddr();
+                buckets.add(principalBuckets.compute(principalKey, (key, shared) -> {
+                    SharedBucket bucket = shared != null ? shared : new SharedBucket(new TokenBucket(principalRate, burst));
+                    bucket.streams++;
+                    return bucket;
+                }).bucket);
+            }
+
+            if (downloadConfig.getNodeRate() > 0) {
+                buckets.add(nodeBucket(downloadConfig.getNodeRate(), burst));
+            }
+        }
+
+        Stream stream = new Stream(fileSlot, principalKey, buckets);
+        activeStreams.incrementAndGet();
+        request.setAttribute(STREAM_ATTR, stream);
+        return stream;
+    }
+
+    // The body stream of the request's download, paced if it is shaped
+    public static OutputStream shape(HttpServletRequest request, OutputStream out) {
+        Stream stream = (Stream) request.getAttribute(STREAM_ATTR);
+        return stream == null || stream.buckets.isEmpty() ? out : stream.new ThrottledOutputStream(out);
+    }
+
+    // Whether the body must be written through the JVM: it is paced, or it holds a file slot
+    public static boolean isShaped(HttpServletRequest request) {
+        Stream stream = (Stream) request.getAttribute(STREAM_ATTR);
+        return stream != null && (!stream.buckets.isEmpty() || stream.uuid != null);
+    }
+
+    public int getActiveStreams() {
+        return activeStreams.get();
+    }
+
+    // HELPER METHODS
+    private synchronized TokenBucket nodeBucket(long rate, long burst) {
+        if (nodeBucket == null || nodeBucketRate != rate) {
+            nodeBucket = new TokenBucket(rate, burst);
+            nodeBucketRate = rate;
+        }
+        return nodeBucket;
+    }
+
+    private void releaseFile(String uuid) {
+        fileStreams.computeIfPresent(uuid, (key, streams) -> streams <= 1 ? null : streams - 1);
+    }
+
+    private void releasePrincipal(String principalKey) {
+        principalBuckets.computeIfPresent(principalKey, (key, shared) -> --shared.streams == 0 ? null : shared);
+    }
+
+    private void registerMetrics(MeterRegistry registry) {
+        Gauge.builder("proxima.download.streams.active", activeStreams, AtomicInteger::get)
+                .description("Downloads currently being written")
+                .register(registry);
+        FunctionCounter.builder("proxima.download.shaping.wait", waitedNanos, nanos -> nanos.get() / 1e9)
+                .description("Time download bodies were held back by bandwidth shaping")
+                .baseUnit("seconds")
+                .register(registry);
+    }
+
+    private static final class SharedBucket {
+        private final TokenBucket bucket;
+        private int streams;
+
+        private SharedBucket(TokenBucket bucket) {
+            this.bucket = bucket;
+        }
+    }
+
+    public final class Stream implements AutoCloseable {
+        private final String uuid;
+        private final String principalKey;
+        private final List<TokenBucket> buckets;
+        private boolean closed;
+
+        private Stream(String uuid, String principalKey, List<TokenBucket> buckets) {
+            this.uuid = uuid;
+            this.principalKey = principalKey;
+            this.buckets = buckets;
+        }
+
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            activeStreams.decrementAndGet();
+            if (uuid != null) {
+                releaseFile(uuid);
+            }
+            if (principalKey != null) {
+                releasePrincipal(principalKey);
+            }
+        }
+
+        // Wait until every bucket has the bytes
+        private void pace(int bytes) throws IOException {
+            long now = System.nanoTime();
+            long wait = 0;
+            for (TokenBucket bucket : buckets) {
+                wait = Math.max(wait, bucket.reserve(bytes, now));
+            }
+            if (wait <= 0) {
+                return;
+            }
+            waitedNanos.addAndGet(wait);
+            try {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while shaping download");
+            }
+        }
+
+        private final class ThrottledOutputStream extends FilterOutputStream {
+            private ThrottledOutputStream(OutputStream out) {
+                super(out);
+            }
+
+            @Override
+            public void write(int b) throws IOException {
+                write(new byte[]{(byte) b}, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                while (len > 0) {
+                    int chunk = Math.min(len, CHUNK_SIZE);
+                    pace(chunk);
+                    out.write(b, off, chunk);
+                    off += chunk;
+                    len -= chunk;
+                }
+            }
+        }
+    }
+}
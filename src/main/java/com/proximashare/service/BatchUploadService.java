@@ -0,0 +1,140 @@
+package com.proximashare.service;
+
+import com.proximashare.app.config.FileUploadConfig;
+import com.proximashare.dto.BatchUploadResponse;
+import com.proximashare.entity.FileMetadata;
+import com.proximashare.entity.User;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Many files in one request: the parts are written to storage concurrently on a
+ * bounded pool with a bounded queue, then every metadata row is inserted with one batched saveAll.
+ * A failing file is reported in its result and never aborts the others.
+ */
+@Service
+public class BatchUploadService {
+    private static final Logger logger = LoggerFactory.getLogger(BatchUploadService.class);
+
+    private final FileService fileService;
+    private final FileUploadConfig uploadConfig;
+    private final ExecutorService executor;
+
+    public BatchUploadService(FileService fileService,
+                              FileUploadConfig uploadConfig) {
+        this.fileService = fileService;
+        this.uploadConfig = uploadConfig;
+
+        // Shared by all batch requests, so concurrent batches cannot multiply the disk writers. Once the
+        // queue is full the submitting request writes the file itself, which slows down the batches
+        // that fill it instead of queueing their files without limit
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(
+                uploadConfig.getBatchParallelism(),
+                uploadConfig.getBatchParallelism(),
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(uploadConfig.getBatchQueueCapacity()),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "batch-upload-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    public BatchUploadResponse uploadFilesForUser(List<MultipartFile> files, User user) {
+        if (files == null || files.isEmpty()) {
+            throw new IllegalArgumentException("File is missing");
+        }
+        if (files.size() > uploadConfig.getBatchMaxFiles()) {
+            throw new IllegalArgumentException("Too many files in one request (Max. " + uploadConfig.getBatchMaxFiles() + ")");
+        }
+
+        // Write every part to storage concurrently
+        List<Future<FileMetadata>> pending = new ArrayList<>(files.size());
+        for (MultipartFile file : files) {
+            pending.add(executor.submit(() -> {
+                if (file.isEmpty()) {
+                    throw new IllegalArgumentException("File is missing");
+                }
+                return fileService.prepareUserUpload(file, user);
+            }));
+        }
+
+        BatchUploadResponse.FileResult[] results = new BatchUploadResponse.FileResult[files.size()];
+        List<FileMetadata> prepared = new ArrayList<>(files.size());
+        List<Integer> preparedIndexes = new ArrayList<>(files.size());
+        for (int i = 0; i < files.size(); i++) {
+            String filename = files.get(i).getOriginalFilename();
+            try {
+                prepared.add(pending.get(i).get());
+                preparedIndexes.add(i);
+            } catch (ExecutionException e) {
+                results[i] = BatchUploadResponse.FileResult.failed(filename, failureMessage(e.getCause()));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                results[i] = BatchUploadResponse.FileResult.failed(filename, "Upload interrupted");
+            }
+        }
+
+        List<FileMetadata> saved = saveAll(prepared);
+        for (int i = 0; i < prepared.size(); i++) {
+            int index = preparedIndexes.get(i);
+            FileMetadata metadata = saved.get(i);
+            results[index] = metadata != null
+                    ? BatchUploadResponse.FileResult.uploaded(metadata.getFilename(), metadata.getUuid())
+                    : BatchUploadResponse.FileResult.failed(prepared.get(i).getFilename(), "Failed to save file");
+        }
+
+        return new BatchUploadResponse(List.of(results));
+    }
+
+    // One JDBC batch for all rows; if it fails, fall back to row by row so only the bad rows are lost
+    private List<FileMetadata> saveAll(List<FileMetadata> prepared) {
+        if (prepared.isEmpty()) {
+            return List.of();
+        }
+        try {
+            return fileService.saveUploads(prepared);
+        } catch (RuntimeException e) {
+            logger.warn("Batched insert of {} files failed, saving them one by one", prepared.size(), e);
+        }
+
+        List<FileMetadata> saved = new ArrayList<>(prepared.size());
+        for (FileMetadata metadata : prepared) {
+            try {
+                saved.add(fileService.saveUpload(metadata));
+            } catch (RuntimeException e) {
+                logger.warn("Failed to save file: UUID = {}", metadata.getUuid(), e);
+                saved.add(null);  // saveUpload already released the blob
+            }
+        }
+        return saved;
+    }
+
+    private String failureMessage(Throwable cause) {
+        if (cause instanceof IllegalArgumentException) {
+            return cause.getMessage();
+        }
+        logger.warn("Failed to store file in batch upload", cause);
+        return "Failed to store file";
+    }
+}
@@ -0,0 +1,311 @@
+package com.proximashare.service;
+
+import com.proximashare.app.config.FileStorageConfig;
+import com.proximashare.entity.FileBlob;
+import com.proximashare.repository.FileBlobRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Content-addressed storage. Every distinct content is written once under its
+ * SHA-256 digest and reference counted; FileMetadata rows point at a blob by digest.
+ * In TREE hash mode the digest is the Merkle root computed by {@link TreeHasher}.
+ * <p>
+ * Releasing the last reference locks the blob's row and moves the bytes aside before the row
+ * delete commits, so another node storing the same content meanwhile waits for the row and
+ * writes its file only after the old one is out of the way.
+ */
+@Service
+public class BlobStore {
+    private static final Logger logger = LoggerFactory.getLogger(BlobStore.class);
+    private static final String BLOB_DIR = "blobs";
+    private static final String INCOMING_DIR = ".incoming";
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int LOCK_STRIPES = 64;
+    private static final String RELEASED_SUFFIX = ".released";
+
+    private final FileBlobRepository fileBlobRepository;
+    private final FileStorageConfig storageConfig;
+    private final TreeHasher treeHasher;
+    private final StorageWriter storageWriter;
+    private final TransactionTemplate transactionTemplate;
+    private final String storagePath;
+    // Serializes ref-count changes and file moves/deletes for the same digest on this node
+    private final Object[] locks = new Object[LOCK_STRIPES];
+
+    public record StoredBlob(String digest, long size) {
+    }
+
+    public BlobStore(FileBlobRepository fileBlobRepository,
+                     FileStorageConfig storageConfig,
+                     TreeHasher treeHasher,
+                     StorageWriter storageWriter,
+                     TransactionTemplate transactionTemplate,
+                     @Value("${file.storage.path}") String storagePath) {
+        this.fileBlobRepository = fileBlobRepository;
+        this.storageConfig = storageConfig;
+        this.treeHasher = treeHasher;
+        this.storageWriter = storageWriter;
+        this.transactionTemplate = transactionTemplate;
+        this.storagePath = storagePath;
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    // Stream into the store, hashing and counting on the way; the body is cut off once it passes maxSize
+    public StoredBlob store(InputStream inputStream, long maxSize) {
+        Path incomingFile = newIncomingFile();
+        boolean treeMode = isTreeMode();
+        // In TREE mode the written file is hashed afterwards, in parallel
+        MessageDigest digest = treeMode ? null : newDigest();
+        long written;
+
+        try (FileChannel channel = FileChannel.open(incomingFile, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            written = storageWriter.write(inputStream, channel, 0, maxSize, digest);
+        } catch (StorageWriter.SizeLimitExceededException e) {
+            deleteQuietly(incomingFile);
+            throw new IllegalArgumentException("File size exceeds " + (maxSize / 1_073_741_824) + "GB limit");
+        } catch (IOException e) {
+            deleteQuietly(incomingFile);
+            throw new RuntimeException("Failed to store file", e);
+        }
+
+        if (treeMode) {
+            return commitTree(incomingFile, written);
+        }
+        return commit(incomingFile, HexFormat.of().formatHex(digest.digest()), written, null);
+    }
+
+    // Adopt a file that already sits in the storage volume (assembled upload or legacy file)
+    public StoredBlob storeFile(Path file) {
+        if (isTreeMode()) {
+            try {
+                return commitTree(file, Files.size(file));
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to store file", e);
+            }
+        }
+
+        MessageDigest digest = newDigest();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        long size = 0;
+
+        try (InputStream in = Files.newInputStream(file)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+                size += read;
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to store file", e);
+        }
+
+        return commit(file, HexFormat.of().formatHex(digest.digest()), size, null);
+    }
+
+    // Like storeFile, but the original stays in place: a hard link (or a copy where links are not supported) is adopted
+    public StoredBlob storeCopy(Path file) {
+        Path incomingFile = newIncomingFile();
+        try {
+            try {
+                Files.createLink(incomingFile, file);
+            } catch (UnsupportedOperationException | IOException e) {
+                Files.copy(file, incomingFile);
+            }
+            return storeFile(incomingFile);
+        } catch (IOException e) {
+            deleteQuietly(incomingFile);
+            throw new RuntimeException("Failed to store file", e);
+        } catch (RuntimeException e) {
+            deleteQuietly(incomingFile);
+            throw e;
+        }
+    }
+
+    // Drop one reference; the bytes are deleted together with the last one
+    public void release(String digest) {
+        synchronized (lockFor(digest)) {
+            List<Path> movedAside = new ArrayList<>();
+            try {
+                transactionTemplate.executeWithoutResult(status -> {
+                    fileBlobRepository.findForUpdate(digest);
+                    fileBlobRepository.decrementRefCount(digest);
+                    if (fileBlobRepository.deleteIfUnreferenced(digest) > 0) {
+                        // While the row is locked no node can store this digest, so the bytes are still ours
+                        movedAside.addAll(moveAside(digest));
+                    }
+                });
+            } catch (RuntimeException e) {
+                // The row is still there, so its bytes must be too
+                movedAside.forEach(this::restore);
+                throw e;
+            }
+
+            if (!movedAside.isEmpty()) {
+                logger.debug("Deleting unreferenced blob: {}", digest);
+                movedAside.forEach(this::deleteQuietly);
+            }
+        }
+    }
+
+    // Put an encoded copy of a blob next to it; dropped if the blob was released meanwhile
+    public void storeVariant(String digest, ContentCoding coding, Path encodedFile) {
+        synchronized (lockFor(digest)) {
+            Path blobFile = resolve(digest);
+            if (!Files.exists(blobFile)) {
+                deleteQuietly(encodedFile);
+                return;
+            }
+            try {
+                Files.move(encodedFile, coding.variantOf(blobFile),
+                        StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                deleteQuietly(encodedFile);
+                throw new RuntimeException("Failed to store " + coding.token() + " variant", e);
+            }
+        }
+    }
+
+    public Path resolve(String digest) {
+        return Path.of(storagePath, BLOB_DIR, digest.substring(0, 2), digest.substring(2, 4), digest);
+    }
+
+    public Optional<FileBlob> findBlob(String digest) {
+        return fileBlobRepository.findById(digest);
+    }
+
+    // HELPER METHODS
+    private boolean isTreeMode() {
+        return storageConfig.getHashMode() == FileStorageConfig.HashMode.TREE;
+    }
+
+    // The file is fully written, so its leaves can be read back and hashed on all cores
+    private StoredBlob commitTree(Path source, long size) {
+        TreeHasher.TreeDigest tree;
+        try {
+            tree = treeHasher.hash(source);
+        } catch (RuntimeException e) {
+            deleteQuietly(source);
+            throw e;
+        }
+        return commit(source, tree.root(), size, tree);
+    }
+
+    private StoredBlob commit(Path source, String digest, long size, TreeHasher.TreeDigest tree) {
+        synchronized (lockFor(digest)) {
+            // Same content already stored: just take a reference and drop the new copy
+            if (fileBlobRepository.incrementRefCount(digest) > 0) {
+                deleteQuietly(source);
+                return new StoredBlob(digest, size);
+            }
+
+            Path blobFile = resolve(digest);
+            try {
+                Files.createDirectories(blobFile.getParent());
+                Files.move(source, blobFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                deleteQuietly(source);
+                throw new RuntimeException("Failed to store file", e);
+            }
+
+            try {
+                FileBlob blob = new FileBlob(digest, size, 1, LocalDateTime.now());
+                if (tree != null) {
+                    blob.setLeafSize(tree.leafSize());
+                    blob.setLeafHashes(tree.leafHashes());
+                }
+                fileBlobRepository.saveAndFlush(blob);
+            } catch (DataIntegrityViolationException e) {
+                // Another node registered the same content concurrently; the bytes are identical
+                fileBlobRepository.incrementRefCount(digest);
+            }
+            return new StoredBlob(digest, size);
+        }
+    }
+
+    // The blob and its variants renamed out of the way, to be deleted once the row delete commits
+    private List<Path> moveAside(String digest) {
+        Path blobFile = resolve(digest);
+        List<Path> files = new ArrayList<>();
+        files.add(blobFile);
+        for (ContentCoding coding : ContentCoding.values()) {
+            files.add(coding.variantOf(blobFile));
+        }
+
+        List<Path> moved = new ArrayList<>();
+        try {
+            for (Path file : files) {
+                if (Files.exists(file)) {
+                    Path released = file.resolveSibling(file.getFileName() + RELEASED_SUFFIX);
+                    Files.move(file, released, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                    moved.add(released);
+                }
+            }
+        } catch (IOException e) {
+            moved.forEach(this::restore);
+            throw new RuntimeException("Failed to delete blob " + digest, e);
+        }
+        return moved;
+    }
+
+    private void restore(Path released) {
+        String name = released.getFileName().toString();
+        Path original = released.resolveSibling(name.substring(0, name.length() - RELEASED_SUFFIX.length()));
+        try {
+            Files.move(released, original, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            logger.error("Failed to restore released blob file: {}", released, e);
+        }
+    }
+
+    private Path newIncomingFile() {
+        Path incomingDir = Path.of(storagePath, INCOMING_DIR);
+        try {
+            Files.createDirectories(incomingDir);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to store file", e);
+        }
+        return incomingDir.resolve(UUID.randomUUID() + ".tmp");
+    }
+
+    private MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private Object lockFor(String digest) {
+        return locks[Math.floorMod(digest.hashCode(), LOCK_STRIPES)];
+    }
+
+    private void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            logger.warn("Failed to delete file: {}", file, e);
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.proximashare.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Content codings a blob may have a precompressed variant in. A variant is stored next to its
+ * blob under the blob's name plus the coding's extension, so it is found (and deleted) by path
+ * alone. Brotli and zstd need native libraries and are not offered.
+ */
+public enum ContentCoding {
+    GZIP("gzip", ".gz"),
+    DEFLATE("deflate", ".zz");  // zlib-wrapped, as HTTP's "deflate" coding is defined
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    // Worth compressing: text and structured text, by type or +json/+xml suffix
+    private static final Set<String> COMPRESSIBLE_TYPES = Set.of(
+            "application/json",
+            "application/xml",
+            "application/javascript",
+            "application/x-ndjson",
+            "application/x-yaml",
+            "application/yaml",
+            "application/sql",
+            "application/csv",
+            "image/svg+xml");
+
+    private final String token;
+    private final String extension;
+
+    ContentCoding(String token, String extension) {
+        this.token = token;
+        this.extension = extension;
+    }
+
+    // The Content-Encoding / Accept-Encoding token
+    public String token() {
+        return token;
+    }
+
+    public Path variantOf(Path blob) {
+        return blob.resolveSibling(blob.getFileName() + extension);
+    }
+
+    // Variants are compressed once and served many times, so the best level is worth it
+    public OutputStream encode(OutputStream out) throws IOException {
+        if (this == GZIP) {
+            return new GZIPOutputStream(out, BUFFER_SIZE) {
+                {
+                    def.setLevel(Deflater.BEST_COMPRESSION);
+                }
+            };
+        }
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        return new DeflaterOutputStream(out, deflater, BUFFER_SIZE) {
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    deflater.end();
+                }
+            }
+        };
+    }
+
+    public static boolean isCompressible(String mimeType) {
+        if (mimeType == null) {
+            return false;
+        }
+        String type = mimeType.toLowerCase(Locale.ROOT);
+        int parameters = type.indexOf(';');
+        if (parameters >= 0) {
+            type = type.substring(0, parameters).trim();
+        }
+        return type.startsWith("text/")
+                || type.endsWith("+json")
+                || type.endsWith("+xml")
+                || COMPRESSIBLE_TYPES.contains(type);
+    }
+
+    /**
+     * The first of the candidates the client accepts (q > 0) per its Accept-Encoding header,
+     * or null when it accepts none of them. "*" stands for any coding not listed explicitly.
+     */
+    public static ContentCoding negotiate(String acceptEncoding, List<ContentCoding> candidates) {
+        if (acceptEncoding == null || acceptEncoding.isBlank()) {
+            return null;
+        }
+        for (ContentCoding candidate : candidates) {
+            Double quality = null;
+            Double wildcard = null;
+            for (String element : acceptEncoding.split(",")) {
+                String[] parts = element.split(";");
+                String coding = parts[0].trim().toLowerCase(Locale.ROOT);
+                double q = quality(parts);
+                if (coding.equals(candidate.token) || (candidate == GZIP && coding.equals("x-gzip"))) {
+                    quality = q;
+                } else if (coding.equals("*")) {
+                    wildcard = q;
+                }
+            }
+            double effective = quality != null ? quality : wildcard != null ? wildcard : 0;
+            if (effective > 0) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    private static double quality(String[] parts) {
+        for (int i = 1; i < parts.length; i++) {
+            String parameter = parts[i].trim();
+            if (parameter.startsWith("q=")) {
+                try {
+                    return Double.parseDouble(parameter.substring(2));
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 1;
+    }
+}
@@ -0,0 +1,126 @@
+package com.proximashare.service;
+
+import com.proximashare.app.config.FileStorageConfig;
+import com.proximashare.exception.InsufficientStorageException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Reservations against the free space of the storage volume. An upload reserves its
+ * declared size before its body is read; bytes that reach the disk are taken off the
+ * reservation (the file system already counts them), and the rest is given back when
+ * the upload ends. A new reservation is refused once free space minus everything still
+ * reserved would drop below app.storage.min-free-space.
+ */
+@Service
+public class DiskSpaceLedger {
+    private final FileStorageConfig storageConfig;
+    private final String storagePath;
+    private final Map<String, Reservation> namedReservations = new ConcurrentHashMap<>();
+    private long outstanding;  // guarded by this
+
+    public DiskSpaceLedger(FileStorageConfig storageConfig,
+                           @Value("${file.storage.path}") String storagePath) {
+        this.storageConfig = storageConfig;
+        this.storagePath = storagePath;
+    }
+
+    public class Reservation implements AutoCloseable {
+        private long remaining;  // guarded by the ledger
+
+        private Reservation(long bytes) {
+            this.remaining = bytes;
+        }
+
+        // Bytes written to disk are now part of the used space, so they stop counting here
+        public void consume(long bytes) {
+            synchronized (DiskSpaceLedger.this) {
+                long taken = Math.min(bytes, remaining);
+                remaining -= taken;
+                outstanding -= taken;
+            }
+        }
+
+        // Consume the reservation as the stream is read into storage
+        public InputStream track(InputStream inputStream) {
+            return new FilterInputStream(inputStream) {
+                @Override
+                public int read() throws IOException {
+                    int b = super.read();
+                    if (b != -1) {
+                        consume(1);
+                    }
+                    return b;
+                }
+
+                @Override
+                public int read(byte[] buffer, int offset, int length) throws IOException {
+                    int read = super.read(buffer, offset, length);
+                    if (read > 0) {
+                        consume(read);
+                    }
+                    return read;
+                }
+            };
+        }
+
+        @Override
+        public void close() {
+            synchronized (DiskSpaceLedger.this) {
+                outstanding -= remaining;
+                remaining = 0;
+            }
+        }
+    }
+
+    public synchronized Reservation reserve(long bytes) {
+        long available = getUsableSpace() - outstanding - storageConfig.getMinFreeSpace();
+        if (bytes > available) {
+            throw new InsufficientStorageException("Not enough storage space for this upload, please try again later");
+        }
+        outstanding += bytes;
+        return new Reservation(bytes);
+    }
+
+    // Reservations that outlive a request, e.g. for a resumable upload session
+    public void reserve(String key, long bytes) {
+        namedReservations.put(key, reserve(bytes));
+    }
+
+    public void consume(String key, long bytes) {
+        Reservation reservation = namedReservations.get(key);
+        if (reservation != null) {
+            reservation.consume(bytes);
+        }
+    }
+
+    public void release(String key) {
+        Reservation reservation = namedReservations.remove(key);
+        if (reservation != null) {
+            reservation.close();
+        }
+    }
+
+    public synchronized long getOutstandingBytes() {
+        return outstanding;
+    }
+
+    // HELPER METHODS
+    long getUsableSpace() {
+        try {
+            Path storageDir = Path.of(storagePath);
+            Files.createDirectories(storageDir);
+            return Files.getFileStore(storageDir).getUsableSpace();
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to read free space of the storage volume", e);
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package com.proximashare.service;
+
+import com.proximashare.app.config.DownloadConfig;
+import com.proximashare.app.config.FileUploadConfig;
+import com.proximashare.entity.FileMetadata;
+import com.proximashare.repository.FileMetadataRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Node-local download allowance for hot public files. Counting every download with its own
+ * UPDATE serializes a viral file on one row lock, so once a file has been counted
+ * app.download.lease-hot-threshold times within a lease TTL this node moves a block of its
+ * remaining allowance into a lease with one conditional UPDATE, and serves the next
+ * downloads from an in-memory counter. Unused allowance goes back to the database when the
+ * lease expires.
+ * <p>
+ * The database count includes leased downloads, so the limit holds across nodes: a lease is
+ * taken only if the whole block still fits, and a block is never more than half of what is
+ * left so other nodes are not starved. If a node dies holding a lease, its unused part stays
+ * counted; the file ends up under its limit, never over it.
+ * <p>
+ * Leases only pay off for files with a large allowance: a file must be counted
+ * lease-hot-threshold times and still have two lease-min-size blocks left, which the default
+ * public-max-downloads=3 never allows. A warning is logged when leases are enabled but
+ * cannot apply.
+ */
+@Component
+public class DownloadLeaseManager {
+    private static final Logger logger = LoggerFactory.getLogger(DownloadLeaseManager.class);
+
+    private final FileMetadataRepository fileMetadataRepository;
+    private final DownloadConfig downloadConfig;
+    private final FileUploadConfig uploadConfig;
+    private final Map<String, Lease> leases = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> recentDownloads = new ConcurrentHashMap<>();
+
+    public DownloadLeaseManager(FileMetadataRepository fileMetadataRepository,
+                                DownloadConfig downloadConfig,
+                                FileUploadConfig uploadConfig) {
+        this.fileMetadataRepository = fileMetadataRepository;
+        this.downloadConfig = downloadConfig;
+        this.uploadConfig = uploadConfig;
+        if (downloadConfig.isLeaseEnabled() && !isLeasePossible()) {
+            logger.warn("Download leases are enabled but app.upload.public-max-downloads={} leaves no block of {} "
+                            + "after {} counted downloads; every download is counted in the database",
+                    uploadConfig.getPublicMaxDownloads(), downloadConfig.getLeaseMinSize(),
+                    downloadConfig.getLeaseHotThreshold());
+        }
+    }
+
+    // Whether any public file can get hot and still have two minimum blocks of allowance left
+    public boolean isLeasePossible() {
+        int leftWhenHot = uploadConfig.getPublicMaxDownloads() - downloadConfig.getLeaseHotThreshold();
+        return leftWhenHot / 2 >= Math.max(1, downloadConfig.getLeaseMinSize());
+    }
+
+    /**
+     * Count a download against this node's lease of the file, without touching the database.
+     * Returns the metadata the lease was taken with, or null when there is no usable lease.
+     */
+    public FileMetadata tryConsume(String uuid) {
+        Lease lease = leases.get(uuid);
+        if (lease == null) {
+            return null;
+        }
+        if (lease.isExpired(System.currentTimeMillis())
+                || lease.metadata.getExpiryDate().isBefore(LocalDateTime.now())) {
+            close(uuid, lease);
+            return null;
+        }
+        if (!lease.tryTake()) {
+            leases.remove(uuid, lease);
+            return null;
+        }
+        return lease.metadata;
+    }
+
+    /**
+     * Called after a download of a public file was counted directly in the database. Once the
+     * file is hot on this node, takes a lease on part of its remaining allowance.
+     */
+    public void onCounted(FileMetadata metadata) {
+        if (!downloadConfig.isLeaseEnabled() || !metadata.isPublic()) {
+            return;
+        }
+        String uuid = metadata.getUuid();
+        int recent = recentDownloads.computeIfAbsent(uuid, key -> new AtomicInteger()).incrementAndGet();
+        if (recent < downloadConfig.getLeaseHotThreshold() || leases.containsKey(uuid)) {
+            return;
+        }
+
+        int maxDownloads = uploadConfig.getPublicMaxDownloads();
+        int block = Math.min(downloadConfig.getLeaseSize(), (maxDownloads - metadata.getDownloadCount()) / 2);
+        if (block < Math.max(1, downloadConfig.getLeaseMinSize())) {
+            return;  // Not worth a lease; the last downloads are counted one by one
+        }
+        if (fileMetadataRepository.leaseDownloads(uuid, block, maxDownloads, LocalDateTime.now()) != 1) {
+            return;
+        }
+
+        long expiresAt = System.currentTimeMillis() + downloadConfig.getLeaseTtlSeconds() * 1000L;
+        Lease lease = new Lease(metadata, block, expiresAt);
+        Lease existing = leases.putIfAbsent(uuid, lease);
+        if (existing != null) {
+            // Another request leased the file first; hand this block straight back
+            returnUnused(uuid, lease);
+        }
+    }
+
+    // The file is gone; its remaining allowance no longer matters
+    public void evict(String uuid) {
+        leases.remove(uuid);
+        recentDownloads.remove(uuid);
+    }
+
+    @Scheduled(fixedDelay = 5_000)
+    public void expireLeases() {
+        long now = System.currentTimeMillis();
+        leases.forEach((uuid, lease) -> {
+            if (lease.isExpired(now)) {
+                close(uuid, lease);
+            }
+        });
+        recentDownloads.clear();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        leases.forEach(this::close);
+    }
+
+    public int getActiveLeases() {
+        return leases.size();
+    }
+
+    // HELPER METHODS
+    private void close(String uuid, Lease lease) {
+        if (leases.remove(uuid, lease)) {
+            returnUnused(uuid, lease);
+        }
+    }
+
+    private void returnUnused(String uuid, Lease lease) {
+        int unused = lease.drain();
+        if (unused <= 0) {
+            return;
+        }
+        try {
+            fileMetadataRepository.returnLeasedDownloads(uuid, unused);
+        } catch (RuntimeException e) {
+            // Leaving the allowance counted only makes the file reach its limit early
+            logger.warn("Failed to return {} leased downloads of {}", unused, uuid, e);
+        }
+    }
+
+    private static final class Lease {
+        private final FileMetadata metadata;
+        private final AtomicInteger remaining;
+        private final long expiresAt;
+
+        private Lease(FileMetadata metadata, int size, long expiresAt) {
+            this.metadata = metadata;
+            this.remaining = new AtomicInteger(size);
+            this.expiresAt = expiresAt;
+        }
+
+        private boolean isExpired(long now) {
+            return now >= expiresAt;
+        }
+
+        // Lock-free: a download is granted only while the counter is still positive
+        private boolean tryTake() {
+            int current;
+            do {
+                current = remaining.get();
+                if (current <= 0) {
+                    return false;
+                }
+            } while (!remaining.compareAndSet(current, current - 1));
+            return true;
+        }
+
+        // Closes the lease to further downloads and returns what was left of it
+        private int drain() {
+            return remaining.getAndSet(0);
+        }
+    }
+}
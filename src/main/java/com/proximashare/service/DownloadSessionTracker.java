@@ -0,0 +1,88 @@
+package com.proximashare.service;
+
+import com.proximashare.app.config.DownloadConfig;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Groups the HTTP requests of one logical download. Resumed transfers, parallel segments of
+ * a download accelerator and the range requests of a video player all come from the same
+ * client for the same file within a short window, so only the first of them is counted
+ * against the file's download limit.
+ * <p>
+ * The window runs from the first counted request and is not extended by later ones, so a
+ * client that keeps fetching a file is counted again every window. Sessions are kept in the
+ * order they started, at most max-tracked-sessions of them; dropping the oldest early only
+ * means its next request is counted.
+ */
+@Component
+public class DownloadSessionTracker {
+    private final DownloadConfig downloadConfig;
+    private final LinkedHashMap<String, Long> sessionStarts = new LinkedHashMap<>();
+
+    public DownloadSessionTracker(DownloadConfig downloadConfig) {
+        this.downloadConfig = downloadConfig;
+    }
+
+    // Authenticated users are one client wherever they connect from; anonymous ones are address + agent
+    public static String clientKey(HttpServletRequest request, String username) {
+        if (username != null) {
+            return "user:" + username;
+        }
+        return request.getRemoteAddr() + "|" + request.getHeader("User-Agent");
+    }
+
+    /**
+     * Record a request and return true if it starts a new download session, i.e. the client
+     * has no session for this file that started within the session window.
+     */
+    public boolean touch(String uuid, String clientKey) {
+        return touch(uuid, clientKey, System.currentTimeMillis());
+    }
+
+    synchronized boolean touch(String uuid, String clientKey, long now) {
+        String key = uuid + "#" + clientKey;
+        Long started = sessionStarts.get(key);
+        if (started != null && now - started <= window()) {
+            return false;
+        }
+
+        // Re-inserted, so the map stays ordered by session start
+        sessionStarts.remove(key);
+        sessionStarts.put(key, now);
+        Iterator<Long> oldest = sessionStarts.values().iterator();
+        while (sessionStarts.size() > downloadConfig.getMaxTrackedSessions()) {
+            oldest.next();
+            oldest.remove();
+        }
+        return true;
+    }
+
+    // A session that was refused (e.g. limit reached) must not let later requests through uncounted
+    public synchronized void forget(String uuid, String clientKey) {
+        sessionStarts.remove(uuid + "#" + clientKey);
+    }
+
+    @Scheduled(fixedDelay = 300_000) // every 5 minutes
+    public synchronized void evictExpired() {
+        long cutoff = System.currentTimeMillis() - window();
+        Iterator<Long> oldest = sessionStarts.values().iterator();
+        while (oldest.hasNext() && oldest.next() < cutoff) {
+            oldest.remove();
+        }
+    }
+
+    public synchronized int getTrackedSessions() {
+        return sessionStarts.size();
+    }
+
+    // HELPER METHODS
+    private long window() {
+        return downloadConfig.getSessionWindowMinutes() * 60_000L;
+    }
+}
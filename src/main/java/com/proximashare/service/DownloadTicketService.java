@@ -0,0 +1,205 @@
+package com.proximashare.service;
+
+import com.proximashare.app.config.DownloadConfig;
+import com.proximashare.dto.ByteRange;
+import com.proximashare.dto.DownloadTicketResponse;
+import com.proximashare.entity.FileMetadata;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Mints and verifies download tickets: short-lived, HMAC-signed URLs for one file. A ticket
+ * carries everything a download needs (file, user, expiry, allowed byte range and the stored
+ * file's metadata), so redeeming it skips the security filter chain, the user lookups and the
+ * metadata reads; only the download count is reserved in the database. Browsers, curl and
+ * CDNs can fetch it like any plain URL.
+ * <p>
+ * Tickets are {@code base64url(payload) "." base64url(HMAC-SHA256(payload))}. Every node
+ * needs the same app.download.ticket-secret to accept tickets minted by the others.
+ */
+@Service
+public class DownloadTicketService {
+    public static final String DOWNLOAD_PATH = "/api/public/files/download/ticket/";
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final String VERSION = "1";
+    private static final int FIELDS = 11;
+
+    private final DownloadConfig downloadConfig;
+    private final SecretKeySpec key;
+
+    public DownloadTicketService(DownloadConfig downloadConfig,
+                                 @Value("${application.security.jwt.secret}") String jwtSecret) {
+        this.downloadConfig = downloadConfig;
+        String ticketSecret = downloadConfig.getTicketSecret();
+        this.key = ticketSecret == null || ticketSecret.isBlank()
+                ? new SecretKeySpec(hmac(new SecretKeySpec(jwtSecret.getBytes(StandardCharsets.UTF_8), ALGORITHM),
+                        "proxima-download-ticket".getBytes(StandardCharsets.UTF_8)), ALGORITHM)
+                : new SecretKeySpec(ticketSecret.getBytes(StandardCharsets.UTF_8), ALGORITHM);
+    }
+
+    // A verified ticket; range is null when the whole file may be downloaded
+    public record Ticket(FileMetadata metadata, String username, Instant expiresAt, ByteRange range) {
+    }
+
+    /**
+     * Ticket for a file the caller may download (access is checked by the caller), optionally
+     * limited to the bytes first..last (inclusive, as in a Range header).
+     */
+    public DownloadTicketResponse mint(FileMetadata metadata, String username, Long first, Long last) {
+        ByteRange range = allowedRange(metadata.getSize(), first, last);
+        Instant expiresAt = Instant.now().plusSeconds(downloadConfig.getTicketTtlSeconds());
+
+        String payload = String.join("\n",
+                VERSION,
+                metadata.getUuid(),
+                orEmpty(username),
+                String.valueOf(expiresAt.getEpochSecond()),
+                range == null ? "" : String.valueOf(range.start()),
+                range == null ? "" : String.valueOf(range.end()),
+                String.valueOf(metadata.getSize()),
+                metadata.getUploadDate().toString(),
+                orEmpty(metadata.getBlobDigest()),
+                orEmpty(metadata.getMimeType()),
+                metadata.getFilename());
+        byte[] payloadBytes = payload.getBytes(StandardCharsets.UTF_8);
+
+        Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+        String ticket = encoder.encodeToString(payloadBytes) + "." + encoder.encodeToString(hmac(key, payloadBytes));
+        return new DownloadTicketResponse(ticket, DOWNLOAD_PATH + ticket,
+                LocalDateTime.ofInstant(expiresAt, ZoneId.systemDefault()));
+    }
+
+    // Signature and expiry only; whether the file still exists and has downloads left is up to the count
+    public Ticket verify(String ticket) throws IllegalAccessException {
+        int dot = ticket.indexOf('.');
+        if (dot < 0) {
+            throw new IllegalAccessException("Invalid download ticket");
+        }
+
+        byte[] payloadBytes;
+        byte[] signature;
+        try {
+            Base64.Decoder decoder = Base64.getUrlDecoder();
+            payloadBytes = decoder.decode(ticket.substring(0, dot));
+            signature = decoder.decode(ticket.substring(dot + 1));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalAccessException("Invalid download ticket");
+        }
+        if (!MessageDigest.isEqual(signature, hmac(key, payloadBytes))) {
+            throw new IllegalAccessException("Invalid download ticket");
+        }
+
+        String[] fields = new String(payloadBytes, StandardCharsets.UTF_8).split("\n", FIELDS);
+        if (fields.length != FIELDS || !VERSION.equals(fields[0])) {
+            throw new IllegalAccessException("Invalid download ticket");
+        }
+        Instant expiresAt = Instant.ofEpochSecond(Long.parseLong(fields[3]));
+        if (expiresAt.isBefore(Instant.now())) {
+            throw new IllegalAccessException("Download ticket expired");
+        }
+
+        // Only what the download writer reads; the expiry and count live in the database
+        FileMetadata metadata = new FileMetadata();
+        metadata.setUuid(fields[1]);
+        metadata.setSize(Long.parseLong(fields[6]));
+        metadata.setUploadDate(LocalDateTime.parse(fields[7]));
+        metadata.setBlobDigest(emptyToNull(fields[8]));
+        metadata.setMimeType(emptyToNull(fields[9]));
+        metadata.setFilename(fields[10]);
+
+        ByteRange range = fields[4].isEmpty() ? null
+                : new ByteRange(Long.parseLong(fields[4]), Long.parseLong(fields[5]));
+        return new Ticket(metadata, emptyToNull(fields[2]), expiresAt, range);
+    }
+
+    /**
+     * The request as the download writer should see it: a ticket limited to a range serves that
+     * range when no (usable) Range header is sent, and refuses ranges outside it. If-Range is
+     * dropped, since a failed validator would otherwise turn the request into a whole-file GET.
+     */
+    public HttpServletRequest restrictRange(HttpServletRequest request, Ticket ticket) throws IllegalAccessException {
+        ByteRange allowed = ticket.range();
+        if (allowed == null) {
+            return request;
+        }
+
+        String header = request.getHeader(HttpHeaders.RANGE);
+        List<ByteRange> requested = header == null ? null
+                : FileDownloadWriter.parseRanges(header, ticket.metadata().getSize(), downloadConfig.getMaxRanges());
+        if (requested == null) {
+            header = "bytes=" + allowed.start() + "-" + (allowed.end() - 1);
+        } else {
+            for (ByteRange range : requested) {
+                if (range.start() < allowed.start() || range.end() > allowed.end()) {
+                    throw new IllegalAccessException("Requested range is outside what the download ticket allows");
+                }
+            }
+        }
+        return new RangeRequest(request, header);
+    }
+
+    // HELPER METHODS
+    private ByteRange allowedRange(long size, Long first, Long last) {
+        if (first == null && last == null) {
+            return null;
+        }
+        long start = first == null ? 0 : first;
+        long end = last == null ? size : last + 1;
+        if (start < 0 || end <= start || end > size) {
+            throw new IllegalArgumentException("Invalid ticket range: the file has " + size + " bytes");
+        }
+        return new ByteRange(start, end);
+    }
+
+    private static byte[] hmac(SecretKeySpec key, byte[] data) {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            return mac.doFinal(data);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HMAC-SHA256 not available", e);
+        }
+    }
+
+    private static String orEmpty(String value) {
+        return value == null ? "" : value;
+    }
+
+    private static String emptyToNull(String value) {
+        return value.isEmpty() ? null : value;
+    }
+
+    private static final class RangeRequest extends HttpServletRequestWrapper {
+        private final String range;
+
+        private RangeRequest(HttpServletRequest request, String range) {
+            super(request);
+            this.range = range;
+        }
+
+        @Override
+        public String getHeader(String name) {
+            if (HttpHeaders.RANGE.equalsIgnoreCase(name)) {
+                return range;
+            }
+            if (HttpHeaders.IF_RANGE.equalsIgnoreCase(name)) {
+                return null;
+            }
+            return super.getHeader(name);
+        }
+    }
+}
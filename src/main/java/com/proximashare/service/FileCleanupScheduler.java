@@ -8,18 +8,35 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import com.proximashare.entity.FileMetadata;
 import com.proximashare.repository.FileMetadataRepository;
 
 @Component
 public class FileCleanupScheduler {
   private static final Logger logger = LoggerFactory.getLogger(FileCleanupScheduler.class);
   private final FileMetadataRepository fileMetadataRepository;
+  private final BlobStore blobStore;
+  private final HotFileCache hotFileCache;
+  private final DownloadLeaseManager downloadLeaseManager;
+  private final UserUsageService userUsageService;
+  private final TransactionTemplate transactionTemplate;
   private final String storagePath;
 
   public FileCleanupScheduler(FileMetadataRepository fileMetadataRepository,
+      BlobStore blobStore,
+      HotFileCache hotFileCache,
+      DownloadLeaseManager downloadLeaseManager,
+      UserUsageService userUsageService,
+      TransactionTemplate transactionTemplate,
       @Value("${file.storage.path}") String storagePath) {
     this.fileMetadataRepository = fileMetadataRepository;
+    this.blobStore = blobStore;
+    this.hotFileCache = hotFileCache;
+    this.downloadLeaseManager = downloadLeaseManager;
+    this.userUsageService = userUsageService;
+    this.transactionTemplate = transactionTemplate;
     this.storagePath = storagePath;
   }
 
@@ -29,13 +46,33 @@ public class FileCleanupScheduler {
     fileMetadataRepository.findAll().stream()
       .filter(metadata -> metadata.getExpiryDate().isBefore(LocalDateTime.now()))
       .forEach(metadata -> {
-        File file = new File(storagePath, metadata.getUuid());
-        if (file.exists()) {
-          logger.debug("Deleting file: UUID = {}, Filename = {}", metadata.getUuid(), file.getName());
-          file.delete();
+        // The owner's usage drops with the row, in the same transaction
+        transactionTemplate.executeWithoutResult(status -> {
+          userUsageService.release(metadata);
+          fileMetadataRepository.delete(metadata);
+        });
+        hotFileCache.invalidate(HotFileCache.keyOf(metadata));
+        // A lease of a deleted file must not grant further downloads
+        downloadLeaseManager.evict(metadata.getUuid());
+        if (metadata.getBlobDigest() != null) {
+          // Shared content is only removed with its last reference
+          blobStore.release(metadata.getBlobDigest());
+        } else {
+          deleteLegacyFile(metadata);
         }
-        fileMetadataRepository.delete(metadata);
       });
     System.out.println("ProximaShare Auto Delete Utility ENDED...");
   }
-}
\ No newline at end of file
+
+  // Files stored before the blob store: uuid + extension, or the bare uuid
+  private void deleteLegacyFile(FileMetadata metadata) {
+    String filename = metadata.getFilename();
+    String extension = filename != null && filename.contains(".") ? filename.substring(filename.lastIndexOf(".")) : "";
+    for (File file : new File[]{new File(storagePath, metadata.getUuid() + extension), new File(storagePath, metadata.getUuid())}) {
+      if (file.exists()) {
+        logger.debug("Deleting file: UUID = {}, Filename = {}", metadata.getUuid(), file.getName());
+        file.delete();
+      }
+    }
+  }
+}
@@ -0,0 +1,477 @@
+package com.proximashare.service;
+
+import com.proximashare.app.config.DownloadConfig;
+import com.proximashare.dto.ByteRange;
+import com.proximashare.entity.FileMetadata;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Writes a stored file to a download response, honoring Range and If-Range: one satisfiable
+ * range is sent as 206 with Content-Range, several as 206 multipart/byteranges, none as 416.
+ * A Range header that cannot be parsed, lists more than app.download.max-ranges ranges, or
+ * fails its If-Range validator is ignored and the whole file is sent, as RFC 9110 allows.
+ * <p>
+ * The whole file and single ranges are handed to the container's sendfile support when it
+ * offers it (Tomcat NIO without TLS), so the kernel moves the bytes from the page cache to
+ * the socket without copying them through the JVM. Multipart responses, containers without
+ * sendfile and downloads paced by the {@link BandwidthShaper} fall back to a buffered copy.
+ * Bodies held by the {@link HotFileCache} are written from memory instead.
+ * <p>
+ * Whole-file GETs of compressible files are answered with a precompressed variant (see
+ * {@link ContentCoding}) when one is stored and Accept-Encoding allows it; the variant has its
+ * own ETag, and ranges always refer to the uncompressed bytes.
+ * <p>
+ * Every response carries a strong ETag and Last-Modified. Conditional GETs (If-None-Match,
+ * If-Modified-Since) and HEAD are answered from the metadata alone, without opening the file.
+ */
+@Component
+public class FileDownloadWriter {
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+    private static final String CRLF = "\r\n";
+
+    // Request attributes of Tomcat's sendfile support (org.apache.catalina.Globals)
+    static final String SENDFILE_SUPPORTED_ATTR = "org.apache.tomcat.sendfile.support";
+    static final String SENDFILE_FILENAME_ATTR = "org.apache.tomcat.sendfile.filename";
+    static final String SENDFILE_START_ATTR = "org.apache.tomcat.sendfile.start";
+    static final String SENDFILE_END_ATTR = "org.apache.tomcat.sendfile.end";
+
+    private final DownloadConfig downloadConfig;
+    private final HotFileCache hotFileCache;
+    private Counter sendfileBytes;
+    private Counter copiedBytes;
+    private Counter memoryBytes;
+    private Counter variantSavedBytes;
+
+    public FileDownloadWriter(DownloadConfig downloadConfig, HotFileCache hotFileCache,
+                              ObjectProvider<MeterRegistry> meterRegistry) {
+        this.downloadConfig = downloadConfig;
+        this.hotFileCache = hotFileCache;
+        meterRegistry.ifAvailable(this::registerMetrics);
+    }
+
+    public void write(HttpServletRequest request, HttpServletResponse response,
+                      FileMetadata metadata, File file) throws IOException {
+        if (!file.isFile()) {
+            throw new FileNotFoundException("File not found or expired");
+        }
+
+        long length = file.length();
+        String contentType = contentType(metadata);
+        String entityTag = entityTag(metadata);
+        long lastModified = lastModified(metadata);
+        writeRepresentationHeaders(response, metadata);
+
+        List<ByteRange> ranges = requestedRanges(request, length, entityTag, lastModified);
+
+        if (ranges != null && ranges.isEmpty()) {
+            response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+            response.setContentLengthLong(0);
+            return;
+        }
+
+        if (ranges == null && sendVariant(request, response, metadata, file, contentType, entityTag)) {
+            return;
+        }
+
+        ByteBuffer cached = hotFileCache.get(HotFileCache.keyOf(metadata), file);
+        if (ranges == null) {
+            response.setStatus(HttpServletResponse.SC_OK);
+            response.setContentType(contentType);
+            response.setContentLengthLong(length);
+            sendRange(request, response, file, cached, 0, length);
+            return;
+        }
+
+        response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+        if (ranges.size() == 1) {
+            ByteRange range = ranges.get(0);
+            response.setContentType(contentType);
+            response.setHeader(HttpHeaders.CONTENT_RANGE, contentRange(range, length));
+            response.setContentLengthLong(range.end() - range.start());
+            sendRange(request, response, file, cached, range.start(), range.end());
+            return;
+        }
+        if (cached != null) {
+            writeMultipart(request, response, null, cached, ranges, length, contentType);
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            writeMultipart(request, response, channel, null, ranges, length, contentType);
+        }
+    }
+
+    // HEAD: the headers a GET of the whole file would have, without reading it
+    public void writeHead(HttpServletResponse response, FileMetadata metadata) {
+        writeRepresentationHeaders(response, metadata);
+        response.setStatus(HttpServletResponse.SC_OK);
+        response.setContentType(contentType(metadata));
+        response.setContentLengthLong(metadata.getSize());
+    }
+
+    public static boolean isConditional(HttpServletRequest request) {
+        return request.getHeader(HttpHeaders.IF_NONE_MATCH) != null
+                || request.getHeader(HttpHeaders.IF_MODIFIED_SINCE) != null;
+    }
+
+    /**
+     * Answers with 304 Not Modified, and returns true, when the client's copy is current.
+     * If-None-Match takes precedence; If-Modified-Since is only looked at without it (RFC 9110).
+     */
+    public boolean checkNotModified(HttpServletRequest request, HttpServletResponse response, FileMetadata metadata) {
+        String entityTag = entityTag(metadata);
+        long lastModified = lastModified(metadata);
+
+        // The tag of the representation the client holds, which may be an encoded variant
+        String currentTag;
+        String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+        if (ifNoneMatch != null) {
+            currentTag = matchingTag(ifNoneMatch, entityTag);
+        } else {
+            currentTag = modifiedSince(request) >= lastModified ? entityTag : null;
+        }
+        if (currentTag == null) {
+            return false;
+        }
+
+        response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+        response.setHeader(HttpHeaders.ETAG, currentTag);
+        response.setDateHeader(HttpHeaders.LAST_MODIFIED, lastModified);
+        return true;
+    }
+
+    /**
+     * Satisfiable ranges of the request, sorted and coalesced; an empty list when none is
+     * satisfiable, and null when the whole file should be sent instead.
+     */
+    List<ByteRange> requestedRanges(HttpServletRequest request, long length, String entityTag, long lastModified) {
+        String header = request.getHeader(HttpHeaders.RANGE);
+        if (header == null || !ifRangeMatches(request, entityTag, lastModified)) {
+            return null;
+        }
+        return parseRanges(header, length, downloadConfig.getMaxRanges());
+    }
+
+    static List<ByteRange> parseRanges(String header, long length, int maxRanges) {
+        if (!header.startsWith("bytes=")) {
+            return null;
+        }
+        String[] specs = header.substring("bytes=".length()).split(",");
+        if (specs.length > maxRanges) {
+            return null;
+        }
+
+        List<ByteRange> ranges = new ArrayList<>(specs.length);
+        try {
+            for (String spec : specs) {
+                String trimmed = spec.trim();
+                int dash = trimmed.indexOf('-');
+                if (dash < 0) {
+                    return null;
+                }
+                String first = trimmed.substring(0, dash).trim();
+                String last = trimmed.substring(dash + 1).trim();
+
+                if (first.isEmpty()) {
+                    // Suffix range: the final N bytes
+                    if (last.isEmpty()) {
+                        return null;
+                    }
+                    long suffix = Long.parseLong(last);
+                    if (suffix > 0 && length > 0) {
+                        ranges.add(new ByteRange(Math.max(0, length - suffix), length));
+                    }
+                    continue;
+                }
+
+                long start = Long.parseLong(first);
+                long end = last.isEmpty() ? Long.MAX_VALUE : Long.parseLong(last) + 1;
+                if (start < 0 || end <= start) {
+                    return null;
+                }
+                if (start < length) {
+                    ranges.add(new ByteRange(start, Math.min(end, length)));
+                }
+            }
+        } catch (NumberFormatException e) {
+            return null;
+        }
+
+        return coalesce(ranges);
+    }
+
+    // HELPER METHODS
+    private void writeRepresentationHeaders(HttpServletResponse response, FileMetadata metadata) {
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + metadata.getFilename() + "\"");
+        response.setHeader(HttpHeaders.ETAG, entityTag(metadata));
+        response.setDateHeader(HttpHeaders.LAST_MODIFIED, lastModified(metadata));
+        if (mayHaveVariants(metadata)) {
+            response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        }
+    }
+
+    private boolean mayHaveVariants(FileMetadata metadata) {
+        return metadata.getBlobDigest() != null && ContentCoding.isCompressible(metadata.getMimeType());
+    }
+
+    // The whole file as a stored precompressed variant, if there is one the client accepts
+    private boolean sendVariant(HttpServletRequest request, HttpServletResponse response, FileMetadata metadata,
+                                File file, String contentType, String entityTag) throws IOException {
+        String acceptEncoding = request.getHeader(HttpHeaders.ACCEPT_ENCODING);
+        if (acceptEncoding == null || !mayHaveVariants(metadata)) {
+            return false;
+        }
+
+        List<ContentCoding> stored = new ArrayList<>(2);
+        for (ContentCoding coding : ContentCoding.values()) {
+            if (Files.isRegularFile(coding.variantOf(file.toPath()))) {
+                stored.add(coding);
+            }
+        }
+        ContentCoding coding = ContentCoding.negotiate(acceptEncoding, stored);
+        if (coding == null) {
+            return false;
+        }
+
+        File variant = coding.variantOf(file.toPath()).toFile();
+        long length = variant.length();
+        response.setStatus(HttpServletResponse.SC_OK);
+        response.setContentType(contentType);
+        response.setHeader(HttpHeaders.CONTENT_ENCODING, coding.token());
+        response.setHeader(HttpHeaders.ETAG, variantTag(entityTag, coding));
+        response.setContentLengthLong(length);
+        sendRange(request, response, variant, null, 0, length);
+        increment(variantSavedBytes, Math.max(0, file.length() - length));
+        return true;
+    }
+
+    // "digest" becomes "digest-gzip": a different representation, so a different strong validator
+    private String variantTag(String entityTag, ContentCoding coding) {
+        return entityTag.substring(0, entityTag.length() - 1) + "-" + coding.token() + "\"";
+    }
+
+    // If-None-Match uses weak comparison: W/"x" matches "x"; the tags of encoded variants match too
+    private String matchingTag(String ifNoneMatch, String entityTag) {
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = stripWeak(candidate.trim());
+            if (tag.equals("*") || tag.equals(entityTag)) {
+                return entityTag;
+            }
+            for (ContentCoding coding : ContentCoding.values()) {
+                if (tag.equals(variantTag(entityTag, coding))) {
+                    return tag;
+                }
+            }
+        }
+        return null;
+    }
+
+    private String stripWeak(String tag) {
+        return tag.startsWith("W/") ? tag.substring(2) : tag;
+    }
+
+    private long modifiedSince(HttpServletRequest request) {
+        try {
+            return request.getDateHeader(HttpHeaders.IF_MODIFIED_SINCE);
+        } catch (IllegalArgumentException e) {
+            return -1;
+        }
+    }
+
+    // Overlapping or adjacent ranges are sent as one part, so a client cannot make us send bytes twice
+    private static List<ByteRange> coalesce(List<ByteRange> ranges) {
+        if (ranges.size() < 2) {
+            return ranges;
+        }
+        ranges.sort(Comparator.comparingLong(ByteRange::start));
+        List<ByteRange> merged = new ArrayList<>(ranges.size());
+        ByteRange current = ranges.get(0);
+        for (ByteRange next : ranges.subList(1, ranges.size())) {
+            if (next.start() <= current.end()) {
+                current = new ByteRange(current.start(), Math.max(current.end(), next.end()));
+            } else {
+                merged.add(current);
+                current = next;
+            }
+        }
+        merged.add(current);
+        return merged;
+    }
+
+    // If-Range holds either a strong entity tag or the Last-Modified date of the representation
+    private boolean ifRangeMatches(HttpServletRequest request, String entityTag, long lastModified) {
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange == null) {
+            return true;
+        }
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            return ifRange.equals(entityTag);
+        }
+        try {
+            return request.getDateHeader(HttpHeaders.IF_RANGE) == lastModified;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    // Parts come from the cached body when there is one, else from the channel
+    private void writeMultipart(HttpServletRequest request, HttpServletResponse response, FileChannel channel, ByteBuffer cached,
+                                List<ByteRange> ranges, long length, String contentType) throws IOException {
+        String boundary = UUID.randomUUID().toString().replace("-", "");
+        List<byte[]> partHeaders = new ArrayList<>(ranges.size());
+        long contentLength = 0;
+        for (ByteRange range : ranges) {
+            byte[] partHeader = (CRLF + "--" + boundary + CRLF
+                    + HttpHeaders.CONTENT_TYPE + ": " + contentType + CRLF
+                    + HttpHeaders.CONTENT_RANGE + ": " + contentRange(range, length) + CRLF
+                    + CRLF).getBytes(StandardCharsets.US_ASCII);
+            partHeaders.add(partHeader);
+            contentLength += partHeader.length + (range.end() - range.start());
+        }
+        byte[] closing = (CRLF + "--" + boundary + "--" + CRLF).getBytes(StandardCharsets.US_ASCII);
+        contentLength += closing.length;
+
+        response.setContentType("multipart/byteranges; boundary=" + boundary);
+        response.setContentLengthLong(contentLength);
+
+        OutputStream out = BandwidthShaper.shape(request, response.getOutputStream());
+        for (int i = 0; i < ranges.size(); i++) {
+            ByteRange range = ranges.get(i);
+            out.write(partHeaders.get(i));
+            if (cached != null) {
+                copy(cached, range.start(), range.end(), out);
+                increment(memoryBytes, range.end() - range.start());
+            } else {
+                copy(channel, range.start(), range.end() - range.start(), out);
+                increment(copiedBytes, range.end() - range.start());
+            }
+        }
+        out.write(closing);
+    }
+
+    // Bytes [start, end) of the file as the whole body: from memory, by sendfile when supported, else a copy
+    private void sendRange(HttpServletRequest request, HttpServletResponse response,
+                           File file, ByteBuffer cached, long start, long end) throws IOException {
+        long count = end - start;
+        if (cached != null) {
+            copy(cached, start, end, BandwidthShaper.shape(request, response.getOutputStream()));
+            increment(memoryBytes, count);
+            return;
+        }
+        if (downloadConfig.isZeroCopy()
+                && !BandwidthShaper.isShaped(request)
+                && count >= downloadConfig.getZeroCopyMinSize()
+                && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTED_ATTR))) {
+            request.setAttribute(SENDFILE_FILENAME_ATTR, file.getCanonicalPath());
+            request.setAttribute(SENDFILE_START_ATTR, start);
+            request.setAttribute(SENDFILE_END_ATTR, end);  // exclusive
+            increment(sendfileBytes, count);
+            return;
+        }
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            copy(channel, start, count, BandwidthShaper.shape(request, response.getOutputStream()));
+        }
+        increment(copiedBytes, count);
+    }
+
+    private void copy(FileChannel channel, long position, long count, OutputStream out) throws IOException {
+        byte[] buffer = new byte[(int) Math.min(COPY_BUFFER_SIZE, Math.max(count, 1))];
+        ByteBuffer byteBuffer = ByteBuffer.wrap(buffer);
+        long remaining = count;
+        while (remaining > 0) {
+            byteBuffer.clear().limit((int) Math.min(buffer.length, remaining));
+            int read = channel.read(byteBuffer, position);
+            if (read < 0) {
+                throw new EOFException("File ended before the requested range");
+            }
+            out.write(buffer, 0, read);
+            position += read;
+            remaining -= read;
+        }
+    }
+
+    // Direct buffers have no backing array; stage through a small heap buffer
+    private void copy(ByteBuffer body, long start, long end, OutputStream out) throws IOException {
+        ByteBuffer slice = body.duplicate();
+        slice.limit((int) end).position((int) start);
+        byte[] buffer = new byte[(int) Math.min(COPY_BUFFER_SIZE, Math.max(end - start, 1))];
+        while (slice.hasRemaining()) {
+            int chunk = Math.min(buffer.length, slice.remaining());
+            slice.get(buffer, 0, chunk);
+            out.write(buffer, 0, chunk);
+        }
+    }
+
+    private String contentRange(ByteRange range, long length) {
+        return "bytes " + range.start() + "-" + (range.end() - 1) + "/" + length;
+    }
+
+    private String contentType(FileMetadata metadata) {
+        String mimeType = metadata.getMimeType();
+        return mimeType == null || mimeType.isBlank() ? MediaType.APPLICATION_OCTET_STREAM_VALUE : mimeType;
+    }
+
+    // Stored bytes never change: the blob digest (or, for legacy files, the uuid) is a strong validator
+    private String entityTag(FileMetadata metadata) {
+        return "\"" + (metadata.getBlobDigest() != null ? metadata.getBlobDigest() : metadata.getUuid()) + "\"";
+    }
+
+    // HTTP dates have second precision
+    private long lastModified(FileMetadata metadata) {
+        long millis = metadata.getUploadDate().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        return millis / 1000 * 1000;
+    }
+
+    private void increment(Counter counter, long bytes) {
+        if (counter != null) {
+            counter.increment(bytes);
+        }
+    }
+
+    private void registerMetrics(MeterRegistry registry) {
+        sendfileBytes = Counter.builder("proxima.download.bytes")
+                .description("Download body bytes, by how they were sent")
+                .baseUnit("bytes")
+                .tag("mode", "sendfile")
+                .register(registry);
+        copiedBytes = Counter.builder("proxima.download.bytes")
+                .description("Download body bytes, by how they were sent")
+                .baseUnit("bytes")
+                .tag("mode", "copy")
+                .register(registry);
+        memoryBytes = Counter.builder("proxima.download.bytes")
+                .description("Download body bytes, by how they were sent")
+                .baseUnit("bytes")
+                .tag("mode", "memory")
+                .register(registry);
+        variantSavedBytes = Counter.builder("proxima.download.variant.saved")
+                .description("Body bytes not sent because a precompressed variant was served")
+                .baseUnit("bytes")
+                .register(registry);
+    }
+}
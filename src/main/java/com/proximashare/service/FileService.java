@@ -1,85 +1,203 @@
 package com.proximashare.service;
 
 import com.proximashare.app.config.FileUploadConfig;
+import com.proximashare.dto.ContentHashesResponse;
+import com.proximashare.dto.FileMetadataResponse;
+import com.proximashare.dto.FileSearchRequest;
+import com.proximashare.entity.FileBlob;
 import com.proximashare.entity.FileMetadata;
+import com.proximashare.entity.ProcessingState;
 import com.proximashare.entity.User;
 import com.proximashare.repository.FileMetadataRepository;
+import com.proximashare.repository.FileMetadataSpecifications;
+import com.proximashare.service.processing.FileUploadedEvent;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
 import java.util.List;
-import java.util.UUID;
+import java.util.Set;
 
 @Service
 public class FileService {
+    public static final int DEFAULT_PAGE_SIZE = 50;
+    public static final int MAX_PAGE_SIZE = 200;
+    // Columns a search may be ordered by; each has an index behind the owner
+    private static final Set<String> SORTABLE = Set.of("uploadDate", "expiryDate", "size");
+
     private final FileMetadataRepository fileMetadataRepository;
     private final FileUploadConfig uploadConfig;
+    private final BlobStore blobStore;
+    private final TimeOrderedIdGenerator idGenerator;
+    private final DiskSpaceLedger diskSpaceLedger;
+    private final DownloadSessionTracker downloadSessionTracker;
+    private final DownloadLeaseManager downloadLeaseManager;
+    private final HotFileCache hotFileCache;
+    private final ApplicationEventPublisher eventPublisher;
+    private final UserUsageService userUsageService;
+    private final TransactionTemplate transactionTemplate;
     private final String storagePath;
 
     public FileService(FileMetadataRepository fileMetadataRepository,
                        FileUploadConfig uploadConfig,
+                       BlobStore blobStore,
+                       TimeOrderedIdGenerator idGenerator,
+                       DiskSpaceLedger diskSpaceLedger,
+                       DownloadSessionTracker downloadSessionTracker,
+                       DownloadLeaseManager downloadLeaseManager,
+                       HotFileCache hotFileCache,
+                       ApplicationEventPublisher eventPublisher,
+                       UserUsageService userUsageService,
+                       TransactionTemplate transactionTemplate,
                        @Value("${file.storage.path}") String storagePath) {
         this.fileMetadataRepository = fileMetadataRepository;
         this.uploadConfig = uploadConfig;
+        this.blobStore = blobStore;
+        this.idGenerator = idGenerator;
+        this.diskSpaceLedger = diskSpaceLedger;
+        this.downloadSessionTracker = downloadSessionTracker;
+        this.downloadLeaseManager = downloadLeaseManager;
+        this.hotFileCache = hotFileCache;
+        this.eventPublisher = eventPublisher;
+        this.userUsageService = userUsageService;
+        this.transactionTemplate = transactionTemplate;
         this.storagePath = storagePath;
     }
 
     @SuppressWarnings("null")
     public FileMetadata uploadFile(MultipartFile file) {
-        if (file.getSize() > uploadConfig.getPublicMaxSize()) {
-            throw new IllegalArgumentException("File size exceeds " +
-                    (uploadConfig.getPublicMaxSize() / 1_073_741_824) + "GB limit");
-        }
+        validateUploadSize(file.getSize(), null);
 
         String uuid = generateUniqueUuid();
         String originalFilename = getOriginalFilename(file);
-        String storedFilename = uuid + getFileExtension(originalFilename);
-
-        saveFileToDisk(file, storedFilename);
-
-        FileMetadata metadata = new FileMetadata(
-                uuid,
-                originalFilename,
-                file.getSize(),
-                LocalDateTime.now(),
-                LocalDateTime.now().plusDays(uploadConfig.getPublicExpiryDays()),
-                0);
-        metadata.setPublic(true);  // Mark as public
+
+        BlobStore.StoredBlob blob = saveFileToStore(file, uploadConfig.getPublicMaxSize());
+
+        FileMetadata metadata = buildMetadata(uuid, originalFilename, blob.size(), null);  // public
         metadata.setMimeType(file.getContentType());
+        metadata.setBlobDigest(blob.digest());
 
-        return fileMetadataRepository.save(metadata);
+        return saveMetadata(metadata);
     }
 
     // Authenticated User Upload
     @SuppressWarnings("null")
     public FileMetadata uploadFileForUser(MultipartFile file, User user) {
-        if (file.getSize() > uploadConfig.getUserMaxSize()) {
-            throw new IllegalArgumentException("File size exceeds " +
-                    (uploadConfig.getUserMaxSize() / 1_073_741_824) + "GB limit");
-        }
+        return saveMetadata(prepareUserUpload(file, user));
+    }
+
+    // Store the bytes and build the (unsaved) metadata, so batch uploads can insert all rows at once
+    public FileMetadata prepareUserUpload(MultipartFile file, User user) {
+        validateUploadSize(file.getSize(), user);
 
         String uuid = generateUniqueUuid();
         String originalFilename = getOriginalFilename(file);
-        String storedFilename = uuid + getFileExtension(originalFilename);
-
-        saveFileToDisk(file, storedFilename);
-
-        FileMetadata metadata = new FileMetadata(
-                uuid,
-                originalFilename,
-                file.getSize(),
-                LocalDateTime.now(),
-                LocalDateTime.now().plusDays(uploadConfig.getUserExpiryDays()),
-                0,
-                user,
-                false);  // Not public, owned by user
+
+        BlobStore.StoredBlob blob = saveFileToStore(file, uploadConfig.getUserMaxSize());
+
+        FileMetadata metadata = buildMetadata(uuid, originalFilename, blob.size(), user);  // owned by user
         metadata.setMimeType(file.getContentType());
+        metadata.setBlobDigest(blob.digest());
+
+        return metadata;
+    }
+
+    // Save metadata built by prepareUserUpload; its blob reference is dropped if the insert fails
+    public FileMetadata saveUpload(FileMetadata metadata) {
+        return saveMetadata(metadata);
+    }
+
+    // Insert prepared uploads in one batch; callers handle a failed batch row by row
+    public List<FileMetadata> saveUploads(List<FileMetadata> metadata) {
+        List<FileMetadata> saved = transactionTemplate.execute(status -> {
+            // A batch belongs to one user, so the whole of it is counted against their quota at once
+            userUsageService.reserve(metadata.get(0).getOwner(),
+                    metadata.stream().mapToLong(FileMetadata::getSize).sum(), metadata.size());
+            return fileMetadataRepository.saveAll(metadata);
+        });
+        saved.forEach(this::publishUploaded);
+        return saved;
+    }
+
+    // Drop the stored bytes of a prepared upload that will not be saved
+    public void discardUpload(FileMetadata metadata) {
+        blobStore.release(metadata.getBlobDigest());
+    }
+
+    // Size and quota check shared by direct uploads and upload sessions (user == null for public uploads)
+    public void validateUploadSize(long size, User user) {
+        long maxSize = user == null ? uploadConfig.getPublicMaxSize() : uploadConfig.getUserMaxSize();
+        if (size > maxSize) {
+            throw new IllegalArgumentException("File size exceeds " + (maxSize / 1_073_741_824) + "GB limit");
+        }
+        if (user != null) {
+            userUsageService.checkQuota(user, size);
+        }
+    }
+
+    // Register a file that was assembled in the storage volume (e.g. by an upload session).
+    // Limits are checked before the blob store adopts the file, so a refusal leaves it in place
+    @SuppressWarnings("null")
+    public FileMetadata storeAssembledFile(Path assembledFile, String filename, String mimeType, User user) {
+        try {
+            validateUploadSize(Files.size(assembledFile), user);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to read assembled file", e);
+        }
+        BlobStore.StoredBlob blob = blobStore.storeFile(assembledFile);
+
+        FileMetadata metadata = buildMetadata(generateUniqueUuid(), filename, blob.size(), user);
+        metadata.setMimeType(mimeType);
+        metadata.setBlobDigest(blob.digest());
+
+        return saveMetadata(metadata);
+    }
 
-        return fileMetadataRepository.save(metadata);
+    // Streaming upload: the request body is read once, straight into the storage directory
+    @SuppressWarnings("null")
+    public FileMetadata uploadFileStream(InputStream inputStream, String filename, String mimeType,
+                                         long contentLength, User user) {
+        // Reject a declared oversize body before reading it
+        if (contentLength >= 0) {
+            validateUploadSize(contentLength, user);
+        } else if (user != null) {
+            userUsageService.checkQuota(user, 0);
+        }
+
+        String uuid = generateUniqueUuid();
+        String originalFilename = (filename == null || filename.trim().isEmpty()) ? "unknown" : filename;
+
+        long maxSize = user == null ? uploadConfig.getPublicMaxSize() : uploadConfig.getUserMaxSize();
+        BlobStore.StoredBlob blob;
+        // Without a Content-Length the body may be as large as the limit allows
+        try (DiskSpaceLedger.Reservation reservation = diskSpaceLedger.reserve(contentLength >= 0 ? contentLength : maxSize)) {
+            blob = blobStore.store(reservation.track(inputStream), maxSize);
+        }
+        if (blob.size() == 0) {
+            blobStore.release(blob.digest());
+            throw new IllegalArgumentException("File is missing");
+        }
+
+        FileMetadata metadata = buildMetadata(uuid, originalFilename, blob.size(), user);
+        metadata.setMimeType(mimeType);
+        metadata.setBlobDigest(blob.digest());
+
+        return saveMetadata(metadata);
     }
 
     // Get all files for a user
@@ -87,6 +205,73 @@ public class FileService {
         return fileMetadataRepository.findByOwnerOrderByUploadDateDesc(user);
     }
 
+    // One page of a user's files; nextCursor is null on the last page
+    public record FilePage(List<FileMetadataResponse> files, String nextCursor) {
+    }
+
+    /**
+     * A page of the user's files, newest first, starting after the cursor of the previous page.
+     * Pages are keyset reads on (uploadDate, uuid), so each costs the same however many files
+     * the user has; limit is capped at MAX_PAGE_SIZE.
+     */
+    public FilePage getUserFiles(User user, String cursor, Integer limit) {
+        int pageSize = pageSize(limit);
+        // One row more than the page tells whether there is a next one
+        Limit fetch = Limit.of(pageSize + 1);
+
+        List<FileMetadataResponse> files;
+        if (cursor == null || cursor.isBlank()) {
+            files = fileMetadataRepository.findResponsesByOwner(user, fetch);
+        } else {
+            String[] position = decodeCursor(cursor);
+            files = fileMetadataRepository.findResponsesByOwnerAfter(user, LocalDateTime.parse(position[0]), position[1], fetch);
+        }
+
+        if (files.size() <= pageSize) {
+            return new FilePage(files, null);
+        }
+        List<FileMetadataResponse> page = files.subList(0, pageSize);
+        return new FilePage(page, encodeCursor(page.get(pageSize - 1)));
+    }
+
+    /**
+     * The user's files matching the request's filters, in the requested order, at most limit of
+     * them (capped at MAX_PAGE_SIZE). The owner predicate plus one filter or the sort column maps
+     * onto one of the (user_id, ...) indexes of file_metadata; uuid breaks ties in the order.
+     */
+    public List<FileMetadata> searchUserFiles(User user, FileSearchRequest request) {
+        if (!SORTABLE.contains(request.getSort())) {
+            throw new IllegalArgumentException("Cannot sort by " + request.getSort() + "; use one of " + SORTABLE);
+        }
+        Sort.Direction direction = Sort.Direction.fromOptionalString(request.getDirection())
+                .orElseThrow(() -> new IllegalArgumentException("Sort direction must be asc or desc"));
+        if (request.getMinSize() != null && request.getMaxSize() != null && request.getMinSize() > request.getMaxSize()) {
+            throw new IllegalArgumentException("minSize must not be greater than maxSize");
+        }
+
+        LocalDateTime expiresAfter = request.getExpiresAfter();
+        LocalDateTime expiresBefore = request.getExpiresBefore();
+        if (request.getExpiringWithinHours() != null) {
+            if (request.getExpiringWithinHours() <= 0) {
+                throw new IllegalArgumentException("expiringWithinHours must be positive");
+            }
+            LocalDateTime now = LocalDateTime.now();
+            LocalDateTime horizon = now.plusHours(request.getExpiringWithinHours());
+            expiresAfter = expiresAfter == null || expiresAfter.isBefore(now) ? now : expiresAfter;
+            expiresBefore = expiresBefore == null || expiresBefore.isAfter(horizon) ? horizon : expiresBefore;
+        }
+
+        Specification<FileMetadata> spec = Specification.where(FileMetadataSpecifications.ownedBy(user))
+                .and(FileMetadataSpecifications.fetchOwner())
+                .and(FileMetadataSpecifications.hasMimeType(request.getMimeType()))
+                .and(FileMetadataSpecifications.sizeBetween(request.getMinSize(), request.getMaxSize()))
+                .and(FileMetadataSpecifications.expiresBetween(expiresAfter, expiresBefore));
+        Sort sort = Sort.by(direction, request.getSort()).and(Sort.by(direction, "uuid"));
+        int limit = pageSize(request.getLimit());
+
+        return fileMetadataRepository.findBy(spec, query -> query.sortBy(sort).limit(limit).all());
+    }
+
     // Delete file with ownership check
     public void deleteUserFile(String uuid, User user) throws FileNotFoundException, IllegalAccessException {
         FileMetadata metadata = fileMetadataRepository.findByUuidAndOwner(uuid, user)
@@ -98,15 +283,23 @@ public class FileService {
         //     throw new IllegalAccessException("Not authorized to delete this file");
         // }
 
-        // Delete physical file
-        String extension = getFileExtension(metadata.getFilename());
-        File physicalFile = new File(storagePath, uuid + extension);
-        if (physicalFile.exists()) {
-            physicalFile.delete();
-        }
+        // Delete metadata, and take the file off the owner's usage in the same transaction
+        transactionTemplate.executeWithoutResult(status -> {
+            userUsageService.release(metadata);
+            fileMetadataRepository.delete(metadata);
+        });
+        downloadLeaseManager.evict(uuid);
+        hotFileCache.invalidate(HotFileCache.keyOf(metadata));
 
-        // Delete metadata
-        fileMetadataRepository.delete(metadata);
+        // Delete physical file (shared blobs only once the last reference is gone)
+        if (metadata.getBlobDigest() != null) {
+            blobStore.release(metadata.getBlobDigest());
+        } else {
+            File physicalFile = getStoredFile(metadata);
+            if (physicalFile.exists()) {
+                physicalFile.delete();
+            }
+        }
     }
 
     // Get metadata (works for both public and user files)
@@ -121,33 +314,132 @@ public class FileService {
         return metadata;
     }
 
-    // Download with download limit check
-    public File downloadFile(String uuid) throws FileNotFoundException, IllegalAccessException {
+    // Same checks as getFileMetadata, answered from a projection for the metadata endpoints
+    public FileMetadataResponse getFileMetadataResponse(String uuid) throws FileNotFoundException {
+        FileMetadataResponse response = fileMetadataRepository.findResponseById(uuid)
+                .orElseThrow(() -> new FileNotFoundException("File not found or expired"));
+
+        if (response.getExpiryDate().isBefore(LocalDateTime.now())) {
+            throw new IllegalArgumentException("File expired");
+        }
+
+        return response;
+    }
+
+    // Leaf hashes are only kept for blobs stored in TREE hash mode
+    public ContentHashesResponse getContentHashes(String uuid) throws FileNotFoundException {
         FileMetadata metadata = getFileMetadata(uuid);
 
-        // Different limits for public vs user files
-        int maxDownloads = metadata.isPublic() ?
-                uploadConfig.getPublicMaxDownloads() :
-                uploadConfig.getUserMaxDownloads();
+        FileBlob blob = metadata.getBlobDigest() == null ? null
+                : blobStore.findBlob(metadata.getBlobDigest()).orElse(null);
+        if (blob == null || blob.getLeafHashes() == null) {
+            throw new FileNotFoundException("No content hashes stored for this file");
+        }
+
+        return ContentHashesResponse.from(uuid, blob);
+    }
 
-        if (metadata.getDownloadCount() >= maxDownloads) {
-            throw new IllegalAccessException("File download limit reached for this file. (Max. " + maxDownloads + " Times)");
+    /**
+     * Authorize and count one download. Expiry, limit and ownership are checked by the same
+     * conditional UPDATE that increments the count, so concurrent downloads cannot overshoot
+     * the limit; the row is read only afterwards, for the response or to explain a refusal.
+     * Requests continuing a download session that was already counted are not counted again.
+     */
+    public FileMetadata authorizeDownload(String uuid, String username, String clientKey)
+            throws FileNotFoundException, IllegalAccessException {
+        if (clientKey != null && !downloadSessionTracker.touch(uuid, clientKey)) {
+            FileMetadata metadata = getFileMetadata(uuid);
+            checkDownloadAccess(metadata, username);
+            return metadata;
         }
 
-        metadata.setDownloadCount(metadata.getDownloadCount() + 1);
-        fileMetadataRepository.save(metadata);
+        // Hot public files are counted against this node's lease, without a database write
+        FileMetadata leased = downloadLeaseManager.tryConsume(uuid);
+        if (leased != null) {
+            return leased;
+        }
+
+        int counted = fileMetadataRepository.reserveDownload(uuid, LocalDateTime.now(),
+                uploadConfig.getPublicMaxDownloads(), uploadConfig.getUserMaxDownloads(), username);
+        if (counted == 1) {
+            FileMetadata metadata = fileMetadataRepository.findByIdWithOwner(uuid)
+                    .orElseThrow(() -> new FileNotFoundException("File not found or expired"));
+            downloadLeaseManager.onCounted(metadata);
+            return metadata;
+        }
 
-        String extension = getFileExtension(metadata.getFilename());
-        return new File(storagePath, uuid + extension);
+        throw downloadRefused(uuid, username, clientKey);
+    }
+
+    /**
+     * Count one download of a file whose metadata the caller already has from a signed
+     * download ticket: nothing is read unless the download is refused, and then only to
+     * explain why.
+     */
+    public FileMetadata authorizeDownload(FileMetadata metadata, String username, String clientKey)
+            throws FileNotFoundException, IllegalAccessException {
+        String uuid = metadata.getUuid();
+        if (clientKey != null && !downloadSessionTracker.touch(uuid, clientKey)) {
+            return metadata;
+        }
+        if (downloadLeaseManager.tryConsume(uuid) != null) {
+            return metadata;
+        }
+
+        int counted = fileMetadataRepository.reserveDownload(uuid, LocalDateTime.now(),
+                uploadConfig.getPublicMaxDownloads(), uploadConfig.getUserMaxDownloads(), username);
+        if (counted == 1) {
+            return metadata;
+        }
+        throw downloadRefused(uuid, username, clientKey);
+    }
+
+    /**
+     * Metadata of a file the caller may download, without counting a download: for HEAD and for
+     * revalidating a copy the client already holds, neither of which transfers the file.
+     */
+    public FileMetadata getDownloadMetadata(String uuid, String username)
+            throws FileNotFoundException, IllegalAccessException {
+        FileMetadata metadata = getFileMetadata(uuid);
+        checkDownloadAccess(metadata, username);
+        return metadata;
+    }
+
+    // Where the bytes of a file live: its blob, or uuid + extension for files stored before the blob store
+    public File getStoredFile(FileMetadata metadata) {
+        if (metadata.getBlobDigest() != null) {
+            return blobStore.resolve(metadata.getBlobDigest()).toFile();
+        }
+        return new File(storagePath, metadata.getUuid() + getFileExtension(metadata.getFilename()));
     }
 
     // HELPER METHODS
+    // Monotonic UUIDv7 with 73 random bits; a collision is too unlikely for an existsById round-trip
     private String generateUniqueUuid() {
-        String uuid = UUID.randomUUID().toString();
-        while (fileMetadataRepository.existsById(uuid)) {
-            uuid = UUID.randomUUID().toString();
+        return idGenerator.generate();
+    }
+
+    private int pageSize(Integer limit) {
+        return limit == null ? DEFAULT_PAGE_SIZE : Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+    }
+
+    // Opaque to clients: base64url of "uploadDate|uuid" of the last file on a page
+    private String encodeCursor(FileMetadataResponse last) {
+        String position = last.getUploadDate() + "|" + last.getUuid();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(position.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private String[] decodeCursor(String cursor) {
+        try {
+            String[] position = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("\\|", 2);
+            if (position.length == 2) {
+                LocalDateTime.parse(position[0]);
+                return position;
+            }
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            // fall through
         }
-        return uuid;
+        throw new IllegalArgumentException("Invalid cursor");
     }
 
     private String getOriginalFilename(MultipartFile file) {
@@ -165,12 +457,90 @@ public class FileService {
         return "";
     }
 
-    private void saveFileToDisk(MultipartFile file, String storedFilename) {
-        File targetFile = new File(storagePath, storedFilename);
+    // Why a download was not counted: gone, expired, not the caller's, or out of downloads
+    private IllegalAccessException downloadRefused(String uuid, String username, String clientKey)
+            throws FileNotFoundException, IllegalAccessException {
+        // A session that was never counted must not let later requests through
+        if (clientKey != null) {
+            downloadSessionTracker.forget(uuid, clientKey);
+        }
+        FileMetadata metadata = getFileMetadata(uuid);
+        checkDownloadAccess(metadata, username);
+
+        // Different limits for public vs user files
+        int maxDownloads = metadata.isPublic() ?
+                uploadConfig.getPublicMaxDownloads() :
+                uploadConfig.getUserMaxDownloads();
+        return new IllegalAccessException("File download limit reached for this file. (Max. " + maxDownloads + " Times)");
+    }
+
+    // Public files are open to everyone, private files only to their owner
+    private void checkDownloadAccess(FileMetadata metadata, String username) throws IllegalAccessException {
+        if (metadata.isPublic()) {
+            return;
+        }
+        if (username == null) {
+            throw new IllegalAccessException("Authentication required to download this file");
+        }
+        if (metadata.getOwner() == null || !username.equals(metadata.getOwner().getUsername())) {
+            throw new IllegalAccessException("Not authorized to download this file");
+        }
+    }
+
+    private FileMetadata buildMetadata(String uuid, String filename, long size, User user) {
+        FileMetadata metadata;
+        if (user == null) {
+            metadata = new FileMetadata(
+                    uuid,
+                    filename,
+                    size,
+                    LocalDateTime.now(),
+                    LocalDateTime.now().plusDays(uploadConfig.getPublicExpiryDays()),
+                    0);
+            metadata.setPublic(true);  // Mark as public
+        } else {
+            metadata = new FileMetadata(
+                    uuid,
+                    filename,
+                    size,
+                    LocalDateTime.now(),
+                    LocalDateTime.now().plusDays(uploadConfig.getUserExpiryDays()),
+                    0,
+                    user,
+                    false);  // Not public, owned by user
+        }
+        metadata.setProcessingState(ProcessingState.PENDING);  // post-upload stages run after the response
+        return metadata;
+    }
+
+    // A failed insert (or a full quota) must not leave a dangling blob reference behind
+    private FileMetadata saveMetadata(FileMetadata metadata) {
+        FileMetadata saved;
         try {
-            file.transferTo(targetFile);
-        } catch (Exception e) {
+            saved = transactionTemplate.execute(status -> {
+                userUsageService.reserve(metadata.getOwner(), metadata.getSize(), 1);
+                return fileMetadataRepository.save(metadata);
+            });
+        } catch (RuntimeException e) {
+            blobStore.release(metadata.getBlobDigest());
+            throw e;
+        }
+        publishUploaded(saved);
+        return saved;
+    }
+
+    // Hand the file to the post-upload pipeline once its row is in place
+    private void publishUploaded(FileMetadata metadata) {
+        eventPublisher.publishEvent(new FileUploadedEvent(metadata.getUuid()));
+    }
+
+    // Space is reserved before the first byte is written and given back once the blob is stored
+    private BlobStore.StoredBlob saveFileToStore(MultipartFile file, long maxSize) {
+        try (DiskSpaceLedger.Reservation reservation = diskSpaceLedger.reserve(file.getSize());
+             InputStream inputStream = file.getInputStream()) {
+            return blobStore.store(reservation.track(inputStream), maxSize);
+        } catch (IOException e) {
             throw new RuntimeException("Failed to store file", e);
         }
     }
-}
\ No newline at end of file
+}
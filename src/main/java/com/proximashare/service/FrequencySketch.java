@@ -0,0 +1,64 @@
+package com.proximashare.service;
+
+/**
+ * Count-Min sketch of recent access frequencies with saturating 4-bit-range counters, as used
+ * by TinyLFU admission. All counters are halved once the number of recorded accesses reaches
+ * ten times the table width, so popularity from long ago fades out.
+ * <p>
+ * Not thread-safe; the owning cache serializes access.
+ */
+final class FrequencySketch {
+    private static final int DEPTH = 4;
+    private static final int MAX_COUNT = 15;
+    private static final int[] SEEDS = {0x9E3779B9, 0x85EBCA6B, 0xC2B2AE35, 0x27D4EB2F};
+
+    private final byte[][] table;
+    private final int mask;
+    private final int sampleSize;
+    private int additions;
+
+    FrequencySketch(int expectedEntries) {
+        int width = Integer.highestOneBit(Math.max(16, expectedEntries - 1) << 1);
+        this.table = new byte[DEPTH][width];
+        this.mask = width - 1;
+        this.sampleSize = 10 * width;
+    }
+
+    void increment(String key) {
+        int hash = key.hashCode();
+        for (int row = 0; row < DEPTH; row++) {
+            int index = index(hash, row);
+            if (table[row][index] < MAX_COUNT) {
+                table[row][index]++;
+            }
+        }
+        if (++additions >= sampleSize) {
+            reset();
+        }
+    }
+
+    int frequency(String key) {
+        int hash = key.hashCode();
+        int min = MAX_COUNT;
+        for (int row = 0; row < DEPTH; row++) {
+            min = Math.min(min, table[row][index(hash, row)]);
+        }
+        return min;
+    }
+
+    // HELPER METHODS
+    private int index(int hash, int row) {
+        int h = hash * SEEDS[row];
+        h ^= h >>> 16;
+        return h & mask;
+    }
+
+    private void reset() {
+        for (byte[] counters : table) {
+            for (int i = 0; i < counters.length; i++) {
+                counters[i] = (byte) (counters[i] >>> 1);
+            }
+        }
+        additions /= 2;
+    }
+}
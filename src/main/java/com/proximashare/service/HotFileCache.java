@@ -0,0 +1,193 @@
+package com.proximashare.service;
+
+import com.proximashare.app.config.DownloadConfig;
+import com.proximashare.entity.FileMetadata;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bodies of small, popular downloads held in direct (off-heap) buffers, within a byte budget.
+ * <p>
+ * Admission follows TinyLFU: every lookup is recorded in a {@link FrequencySketch}, and on a
+ * miss a body only replaces cached bodies if it has been requested more often than all of the
+ * ones it would evict. The decision is made before anything is read, so a body that is not
+ * admitted never gets a direct buffer: it is served straight from the file. One-off downloads
+ * therefore neither push out the files that carry most of the traffic nor churn direct memory.
+ * <p>
+ * Entries are keyed by stored content (blob digest, or uuid for legacy files), which never
+ * changes; deleting or expiring a file invalidates its entry. Evicted buffers are reclaimed
+ * by the garbage collector, so -XX:MaxDirectMemorySize must leave room above the budget.
+ */
+@Component
+public class HotFileCache {
+    private final DownloadConfig downloadConfig;
+    private final FrequencySketch sketch;
+    private final LinkedHashMap<String, ByteBuffer> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private long cachedBytes;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public HotFileCache(DownloadConfig downloadConfig, ObjectProvider<MeterRegistry> meterRegistry) {
+        this.downloadConfig = downloadConfig;
+        // One sketch slot per 4KB of budget is plenty for the small files this cache is for
+        this.sketch = new FrequencySketch((int) Math.min(1 << 20, Math.max(1024, downloadConfig.getCacheMaxBytes() / 4096)));
+        meterRegistry.ifAvailable(this::registerMetrics);
+    }
+
+    public static String keyOf(FileMetadata metadata) {
+        return metadata.getBlobDigest() != null ? metadata.getBlobDigest() : metadata.getUuid();
+    }
+
+    /**
+     * The cached body of the file as a read-only buffer, loading it on a miss if it is small
+     * enough and popular enough to be cached; null when the cache is off or the body is not
+     * admitted, and the caller serves it from the file.
+     */
+    public ByteBuffer get(String key, File file) throws IOException {
+        if (!downloadConfig.isCacheEnabled()) {
+            return null;
+        }
+
+        ByteBuffer cached;
+        long size = file.length();
+        synchronized (this) {
+            sketch.increment(key);
+            cached = entries.get(key);
+            if (cached == null) {
+                misses.incrementAndGet();
+                if (size == 0 || size > downloadConfig.getCacheMaxEntrySize() || size > downloadConfig.getCacheMaxBytes()) {
+                    return null;
+                }
+                if (victimsFor(key, size) == null) {
+                    evictions.incrementAndGet();
+                    return null;  // Not admitted: nothing is allocated
+                }
+            }
+        }
+        if (cached != null) {
+            hits.incrementAndGet();
+            return cached.asReadOnlyBuffer();
+        }
+
+        ByteBuffer loaded = load(file, (int) size);
+        synchronized (this) {
+            // Decided again: other requests may have changed the cache while the file was read
+            if (!admit(key, loaded)) {
+                ByteBuffer concurrent = entries.get(key);
+                return concurrent != null ? concurrent.asReadOnlyBuffer() : loaded.asReadOnlyBuffer();
+            }
+        }
+        return loaded.asReadOnlyBuffer();
+    }
+
+    public synchronized void invalidate(String key) {
+        ByteBuffer removed = entries.remove(key);
+        if (removed != null) {
+            cachedBytes -= removed.capacity();
+        }
+    }
+
+    public synchronized long getCachedBytes() {
+        return cachedBytes;
+    }
+
+    public synchronized int getEntries() {
+        return entries.size();
+    }
+
+    public double getHitRatio() {
+        long requests = hits.get() + misses.get();
+        return requests == 0 ? 0.0 : (double) hits.get() / requests;
+    }
+
+    // HELPER METHODS
+    // Keys to evict so a body of this size fits, or null if the body is not admitted: TinyLFU lets
+    // it in only if it is more popular than every least recently used body it would push out
+    private List<String> victimsFor(String key, long size) {
+        int candidateFrequency = sketch.frequency(key);
+        List<String> victims = new ArrayList<>();
+        long freed = 0;
+        Iterator<Map.Entry<String, ByteBuffer>> lru = entries.entrySet().iterator();
+        while (cachedBytes - freed + size > downloadConfig.getCacheMaxBytes() && lru.hasNext()) {
+            Map.Entry<String, ByteBuffer> victim = lru.next();
+            if (sketch.frequency(victim.getKey()) >= candidateFrequency) {
+                return null;
+            }
+            victims.add(victim.getKey());
+            freed += victim.getValue().capacity();
+        }
+        return victims;
+    }
+
+    private boolean admit(String key, ByteBuffer body) {
+        if (entries.containsKey(key)) {
+            return false;  // Loaded concurrently by another request
+        }
+        List<String> victims = victimsFor(key, body.capacity());
+        if (victims == null) {
+            evictions.incrementAndGet();
+            return false;
+        }
+        for (String victim : victims) {
+            cachedBytes -= entries.remove(victim).capacity();
+            evictions.incrementAndGet();
+        }
+        entries.put(key, body);
+        cachedBytes += body.capacity();
+        return true;
+    }
+
+    private ByteBuffer load(File file, int size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(size);
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) {
+                    throw new EOFException("File ended before its recorded size");
+                }
+            }
+        }
+        return buffer.flip();
+    }
+
+    private void registerMetrics(MeterRegistry registry) {
+        FunctionCounter.builder("proxima.download.cache.requests", hits, AtomicLong::get)
+                .description("Hot file cache lookups")
+                .tag("result", "hit")
+                .register(registry);
+        FunctionCounter.builder("proxima.download.cache.requests", misses, AtomicLong::get)
+                .description("Hot file cache lookups")
+                .tag("result", "miss")
+                .register(registry);
+        FunctionCounter.builder("proxima.download.cache.evictions", evictions, AtomicLong::get)
+                .description("Bodies evicted or refused admission by the hot file cache")
+                .register(registry);
+        Gauge.builder("proxima.download.cache.hit.ratio", this, HotFileCache::getHitRatio)
+                .description("Share of hot file cache lookups served from memory")
+                .register(registry);
+        Gauge.builder("proxima.download.cache.size", this, HotFileCache::getCachedBytes)
+                .description("Off-heap bytes held by the hot file cache")
+                .baseUnit("bytes")
+                .register(registry);
+        Gauge.builder("proxima.download.cache.entries", this, HotFileCache::getEntries)
+                .description("Bodies held by the hot file cache")
+                .register(registry);
+    }
+}
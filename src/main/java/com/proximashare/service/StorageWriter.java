@@ -0,0 +1,125 @@
+package com.proximashare.service;
+
+import com.proximashare.app.config.FileStorageConfig;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Copies upload bodies into storage through a {@link FileChannel}. Bytes are gathered
+ * in pooled direct buffers of app.storage.write-buffer-size, so each write hands the
+ * kernel one large block without an extra heap-to-native copy, and the configured
+ * {@link FileStorageConfig.SyncPolicy} decides when data is forced to the device.
+ */
+@Component
+public class StorageWriter {
+    private static final int READ_CHUNK_SIZE = 64 * 1024;
+    private static final ThreadLocal<byte[]> READ_CHUNK = ThreadLocal.withInitial(() -> new byte[READ_CHUNK_SIZE]);
+
+    private final FileStorageConfig storageConfig;
+    private final Queue<ByteBuffer> bufferPool = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pooledBuffers = new AtomicInteger();
+
+    // Thrown when the input holds more than the caller allowed; callers turn it into their own message
+    public static class SizeLimitExceededException extends RuntimeException {
+        public SizeLimitExceededException() {
+            super("Input exceeds the size limit");
+        }
+    }
+
+    public StorageWriter(FileStorageConfig storageConfig) {
+        this.storageConfig = storageConfig;
+    }
+
+    /**
+     * Write the whole stream at position, at most maxBytes, updating digest (if given) with
+     * every byte written. Returns the number of bytes written.
+     */
+    public long write(InputStream in, FileChannel channel, long position, long maxBytes,
+                      MessageDigest digest) throws IOException {
+        FileStorageConfig.SyncPolicy syncPolicy = storageConfig.getSyncPolicy();
+        long syncInterval = storageConfig.getSyncIntervalMb() * 1024L * 1024L;
+        byte[] chunk = READ_CHUNK.get();
+        ByteBuffer buffer = acquireBuffer();
+        long written = 0;
+        long unsynced = 0;
+
+        try {
+            int read;
+            while ((read = in.read(chunk)) != -1) {
+                if (written + buffer.position() + read > maxBytes) {
+                    throw new SizeLimitExceededException();
+                }
+                if (digest != null) {
+                    digest.update(chunk, 0, read);
+                }
+
+                int offset = 0;
+                while (offset < read) {
+                    int length = Math.min(buffer.remaining(), read - offset);
+                    buffer.put(chunk, offset, length);
+                    offset += length;
+                    if (!buffer.hasRemaining()) {
+                        int flushed = flush(buffer, channel, position + written);
+                        written += flushed;
+                        unsynced += flushed;
+                    }
+                }
+
+                if (syncPolicy == FileStorageConfig.SyncPolicy.EVERY_N_MB && unsynced >= syncInterval) {
+                    channel.force(false);
+                    unsynced = 0;
+                }
+            }
+
+            written += flush(buffer, channel, position + written);
+
+            if (syncPolicy == FileStorageConfig.SyncPolicy.ON_CLOSE
+                    || (syncPolicy == FileStorageConfig.SyncPolicy.EVERY_N_MB && written > 0)) {
+                channel.force(false);
+            }
+            return written;
+        } finally {
+            releaseBuffer(buffer);
+        }
+    }
+
+    // HELPER METHODS
+    private int flush(ByteBuffer buffer, FileChannel channel, long position) throws IOException {
+        buffer.flip();
+        int length = buffer.remaining();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, position + buffer.position());
+        }
+        buffer.clear();
+        return length;
+    }
+
+    private ByteBuffer acquireBuffer() {
+        ByteBuffer buffer = bufferPool.poll();
+        if (buffer != null) {
+            pooledBuffers.decrementAndGet();
+            if (buffer.capacity() == storageConfig.getWriteBufferSize()) {
+                return buffer;
+            }
+        }
+        return ByteBuffer.allocateDirect(storageConfig.getWriteBufferSize());
+    }
+
+    // Keep at most write-buffer-pool-size idle buffers; the rest are left to the GC
+    private void releaseBuffer(ByteBuffer buffer) {
+        buffer.clear();
+        if (pooledBuffers.incrementAndGet() <= storageConfig.getWriteBufferPoolSize()) {
+            bufferPool.offer(buffer);
+        } else {
+            pooledBuffers.decrementAndGet();
+        }
+    }
+}
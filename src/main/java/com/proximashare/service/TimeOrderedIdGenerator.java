@@ -0,0 +1,60 @@
+package com.proximashare.service;
+
+import org.springframework.stereotype.Component;
+
+import java.security.SecureRandom;
+import java.util.UUID;
+
+/**
+ * RFC 9562 UUIDv7 file ids: strictly increasing, so new rows land at the end of the file_metadata
+ * primary key index, and collision free without a database check. Ids of the same millisecond
+ * are ordered by a counter (RFC 9562 6.2, method 2) that starts at a random value each
+ * millisecond; a file id is also the capability in its share link, so the tail after the counter
+ * is fresh SecureRandom in every id and the next id cannot be derived from the previous one:
+ * <pre>
+ *  48 bits  unix epoch milliseconds
+ *   4 bits  version (7)
+ *  12 bits  counter, high bits
+ *   2 bits  variant
+ *  18 bits  counter, low bits
+ *  44 bits  random
+ * </pre>
+ * The counter is seeded with 29 random bits, its top bit left clear so a busy millisecond does
+ * not overflow it; if it does, the id borrows the next millisecond. A clock that steps back
+ * keeps the last millisecond and counts on. Ids carry no node id: ids of different nodes are
+ * unique by their 73 random bits alone.
+ */
+@Component
+public class TimeOrderedIdGenerator {
+    private static final int COUNTER_BITS = 30;
+    private static final long COUNTER_MAX = (1L << COUNTER_BITS) - 1;
+    private static final int COUNTER_LOW_BITS = 18;
+    private static final int RANDOM_BITS = 44;
+
+    private final SecureRandom random = new SecureRandom();
+    private long lastMillis;
+    private long counter;
+
+    public synchronized String generate() {
+        long millis = Math.max(System.currentTimeMillis(), lastMillis);
+        if (millis > lastMillis) {
+            counter = seed();
+        } else if (++counter > COUNTER_MAX) {
+            millis++;
+            counter = seed();
+        }
+        lastMillis = millis;
+
+        long mostSignificant = (millis << 16) | (0x7L << 12) | (counter >>> COUNTER_LOW_BITS);
+        long leastSignificant = (0x2L << 62)
+                | ((counter & ((1L << COUNTER_LOW_BITS) - 1)) << RANDOM_BITS)
+                | (random.nextLong() >>> (64 - RANDOM_BITS));
+        return new UUID(mostSignificant, leastSignificant).toString();
+    }
+
+    // HELPER METHODS
+
+    private long seed() {
+        return random.nextLong() >>> (64 - COUNTER_BITS + 1);
+    }
+}
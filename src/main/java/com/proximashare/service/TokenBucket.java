@@ -0,0 +1,28 @@
+package com.proximashare.service;
+
+/**
+ * Token bucket in its GCRA form: instead of a token count it keeps the theoretical time at
+ * which everything reserved so far has been paid for. A reservation moves that time forward
+ * by the cost of the bytes and returns how long the caller has to wait before sending them;
+ * up to the burst size can go out without waiting after an idle period.
+ * <p>
+ * Reservations are served in the order they are made, so streams taking turns with small
+ * chunks get equal shares of the rate.
+ */
+final class TokenBucket {
+    private final double nanosPerByte;
+    private final long burstNanos;
+    private long theoreticalArrival;
+
+    TokenBucket(long bytesPerSecond, long burstBytes) {
+        this.nanosPerByte = 1_000_000_000d / bytesPerSecond;
+        this.burstNanos = (long) (burstBytes * nanosPerByte);
+        this.theoreticalArrival = Long.MIN_VALUE / 2;
+    }
+
+    // Nanoseconds to wait before the bytes may be sent
+    synchronized long reserve(long bytes, long nowNanos) {
+        theoreticalArrival = Math.max(theoreticalArrival, nowNanos) + (long) (bytes * nanosPerByte);
+        return Math.max(0, theoreticalArrival - nowNanos - burstNanos);
+    }
+}
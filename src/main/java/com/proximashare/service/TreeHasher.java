@@ -0,0 +1,163 @@
+package com.proximashare.service;
+
+import com.proximashare.app.config.FileStorageConfig;
+import jakarta.annotation.PreDestroy;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Merkle tree SHA-256: the file is cut into fixed-size leaves that are hashed in
+ * parallel, then combined pairwise into a root. Leaf and node hashes carry a
+ * one-byte prefix (0x00 / 0x01) so a leaf can never be passed off as a node.
+ */
+@Component
+public class TreeHasher {
+    public static final int HASH_LENGTH = 32;
+    private static final byte LEAF_PREFIX = 0x00;
+    private static final byte NODE_PREFIX = 0x01;
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+    private static final ThreadLocal<ByteBuffer> READ_BUFFER =
+            ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(READ_BUFFER_SIZE));
+
+    private final ForkJoinPool pool;
+    private final int leafSize;
+
+    // leafHashes holds leafCount consecutive 32-byte leaf hashes
+    public record TreeDigest(String root, int leafSize, byte[] leafHashes) {
+        public int leafCount() {
+            return leafHashes.length / HASH_LENGTH;
+        }
+    }
+
+    public TreeHasher(FileStorageConfig storageConfig) {
+        this.leafSize = storageConfig.getTreeLeafSize();
+        this.pool = new ForkJoinPool(storageConfig.getHashParallelism());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    public TreeDigest hash(Path file) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            int leafCount = (int) Math.max(1, (size + leafSize - 1) / leafSize);
+            byte[] leafHashes = new byte[leafCount * HASH_LENGTH];
+
+            pool.invoke(new LeafTask(channel, size, leafHashes, 0, leafCount));
+
+            return new TreeDigest(HexFormat.of().formatHex(root(leafHashes)), leafSize, leafHashes);
+        } catch (IOException | UncheckedIOException e) {
+            throw new RuntimeException("Failed to hash file", e);
+        }
+    }
+
+    // Hash of one leaf, e.g. to check a downloaded segment against the stored leaf hashes
+    public static byte[] leafHash(byte[] data, int offset, int length) {
+        MessageDigest digest = newDigest();
+        digest.update(LEAF_PREFIX);
+        digest.update(data, offset, length);
+        return digest.digest();
+    }
+
+    public static byte[] root(byte[] leafHashes) {
+        List<byte[]> level = new ArrayList<>();
+        for (int i = 0; i < leafHashes.length; i += HASH_LENGTH) {
+            level.add(Arrays.copyOfRange(leafHashes, i, i + HASH_LENGTH));
+        }
+
+        while (level.size() > 1) {
+            List<byte[]> next = new ArrayList<>((level.size() + 1) / 2);
+            for (int i = 0; i < level.size(); i += 2) {
+                if (i + 1 == level.size()) {
+                    next.add(level.get(i));  // odd node is promoted unchanged
+                } else {
+                    MessageDigest digest = newDigest();
+                    digest.update(NODE_PREFIX);
+                    digest.update(level.get(i));
+                    digest.update(level.get(i + 1));
+                    next.add(digest.digest());
+                }
+            }
+            level = next;
+        }
+        return level.get(0);
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    // Splits the leaf range until single leaves; positional reads let leaves share one channel
+    private class LeafTask extends RecursiveAction {
+        private final FileChannel channel;
+        private final long size;
+        private final byte[] leafHashes;
+        private final int from;
+        private final int to;
+
+        LeafTask(FileChannel channel, long size, byte[] leafHashes, int from, int to) {
+            this.channel = channel;
+            this.size = size;
+            this.leafHashes = leafHashes;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= 1) {
+                hashLeaf(from);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new LeafTask(channel, size, leafHashes, from, mid),
+                    new LeafTask(channel, size, leafHashes, mid, to));
+        }
+
+        private void hashLeaf(int index) {
+            MessageDigest digest = newDigest();
+            digest.update(LEAF_PREFIX);
+
+            ByteBuffer buffer = READ_BUFFER.get();
+            long position = (long) index * leafSize;
+            long end = Math.min(size, position + leafSize);
+            try {
+                while (position < end) {
+                    buffer.clear();
+                    buffer.limit((int) Math.min(buffer.capacity(), end - position));
+                    int read = channel.read(buffer, position);
+                    if (read < 0) {
+                        break;
+                    }
+                    buffer.flip();
+                    digest.update(buffer);
+                    position += read;
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+
+            System.arraycopy(digest.digest(), 0, leafHashes, index * HASH_LENGTH, HASH_LENGTH);
+        }
+    }
+}
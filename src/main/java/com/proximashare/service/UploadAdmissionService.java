@@ -0,0 +1,188 @@
+package com.proximashare.service;
+
+import com.proximashare.app.config.UploadAdmissionConfig;
+import com.proximashare.repository.UploadSessionRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Admission control for upload requests: a global cap on concurrent uploads and on
+ * declared bytes in flight, plus a per-client cap. Chunks of a resumable upload session are
+ * meant to be sent in parallel, so they have caps of their own: per session, and a higher
+ * per-client one across all of the client's sessions. Only sessions that exist get chunk
+ * slots; a chunk for an unknown session counts as a regular upload of the client.
+ * Requests over a limit are turned away at once instead of tying up a container thread
+ * while they stream to disk.
+ */
+@Service
+public class UploadAdmissionService {
+
+    public enum RejectReason {
+        CONCURRENT_UPLOADS,
+        BYTES_IN_FLIGHT,
+        CLIENT_UPLOADS,
+        SESSION_CHUNKS,
+        CLIENT_CHUNKS
+    }
+
+    // Held for the duration of one admitted upload; closing it gives the capacity back
+    public interface Permit extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    // Either a permit or the limit that was hit
+    public record Admission(Permit permit, RejectReason rejectReason) {
+        public boolean isAdmitted() {
+            return permit != null;
+        }
+    }
+
+    private final UploadAdmissionConfig admissionConfig;
+    private final UploadSessionRepository uploadSessionRepository;
+    private final AtomicInteger activeUploads = new AtomicInteger();
+    private final AtomicLong bytesInFlight = new AtomicLong();
+    private final Map<String, Integer> uploadsPerClient = new ConcurrentHashMap<>();
+    private final Map<String, Integer> chunksPerSession = new ConcurrentHashMap<>();
+    private final Map<String, Integer> chunksPerClient = new ConcurrentHashMap<>();
+    private final Map<RejectReason, Counter> rejectedCounters = new ConcurrentHashMap<>();
+
+    public UploadAdmissionService(UploadAdmissionConfig admissionConfig,
+                                  UploadSessionRepository uploadSessionRepository,
+                                  ObjectProvider<MeterRegistry> meterRegistry) {
+        this.admissionConfig = admissionConfig;
+        this.uploadSessionRepository = uploadSessionRepository;
+        meterRegistry.ifAvailable(this::registerMetrics);
+    }
+
+    public Admission tryAcquire(String clientId, long declaredBytes) {
+        return tryAcquire(declaredBytes,
+                new Slot(uploadsPerClient, clientId, admissionConfig.getMaxUploadsPerClient(), RejectReason.CLIENT_UPLOADS));
+    }
+
+    // One chunk PUT of an upload session; the global caps apply as for any upload
+    public Admission tryAcquireChunk(String clientId, String sessionId, long declaredBytes) {
+        // Made-up session ids must not open fresh slots
+        if (!uploadSessionRepository.existsById(sessionId)) {
+            return tryAcquire(clientId, declaredBytes);
+        }
+        return tryAcquire(declaredBytes,
+                new Slot(chunksPerClient, clientId, admissionConfig.getMaxChunksPerClient(), RejectReason.CLIENT_CHUNKS),
+                new Slot(chunksPerSession, sessionId, admissionConfig.getMaxChunksPerSession(), RejectReason.SESSION_CHUNKS));
+    }
+
+    public int getActiveUploads() {
+        return activeUploads.get();
+    }
+
+    public long getBytesInFlight() {
+        return bytesInFlight.get();
+    }
+
+    public int getActiveClients() {
+        return uploadsPerClient.size();
+    }
+
+    // HELPER METHODS
+    // A per-key cap (client or session) that an admission holds one slot of
+    private record Slot(Map<String, Integer> active, String key, int maxPerKey, RejectReason reason) {
+    }
+
+    private Admission tryAcquire(long declaredBytes, Slot... slots) {
+        long bytes = declaredBytes >= 0 ? declaredBytes : admissionConfig.getUnknownLengthBytes();
+
+        if (activeUploads.incrementAndGet() > admissionConfig.getMaxConcurrentUploads()) {
+            activeUploads.decrementAndGet();
+            return reject(RejectReason.CONCURRENT_UPLOADS);
+        }
+
+        // A single body larger than the whole budget is still admitted when nothing else is in flight
+        long inFlight = bytesInFlight.addAndGet(bytes);
+        if (inFlight > admissionConfig.getMaxBytesInFlight() && inFlight != bytes) {
+            bytesInFlight.addAndGet(-bytes);
+            activeUploads.decrementAndGet();
+            return reject(RejectReason.BYTES_IN_FLIGHT);
+        }
+
+        for (int i = 0; i < slots.length; i++) {
+            if (!acquireKey(slots[i].active(), slots[i].key(), slots[i].maxPerKey())) {
+                for (int j = 0; j < i; j++) {
+                    releaseKey(slots[j].active(), slots[j].key());
+                }
+                bytesInFlight.addAndGet(-bytes);
+                activeUploads.decrementAndGet();
+                return reject(slots[i].reason());
+            }
+        }
+
+        return new Admission(new Permit() {
+            private boolean closed;
+
+            @Override
+            public synchronized void close() {
+                if (!closed) {
+                    closed = true;
+                    for (Slot slot : slots) {
+                        releaseKey(slot.active(), slot.key());
+                    }
+                    bytesInFlight.addAndGet(-bytes);
+                    activeUploads.decrementAndGet();
+                }
+            }
+        }, null);
+    }
+
+    private Admission reject(RejectReason reason) {
+        Counter counter = rejectedCounters.get(reason);
+        if (counter != null) {
+            counter.increment();
+        }
+        return new Admission(null, reason);
+    }
+
+    // Check and increment in one atomic step on the client's (or session's) map entry
+    private boolean acquireKey(Map<String, Integer> active, String key, int maxPerKey) {
+        boolean[] acquired = {false};
+        active.compute(key, (id, count) -> {
+            int current = count == null ? 0 : count;
+            if (current >= maxPerKey) {
+                return count;
+            }
+            acquired[0] = true;
+            return current + 1;
+        });
+        return acquired[0];
+    }
+
+    // Entries are dropped at zero so the map only holds clients (or sessions) with an upload in progress
+    private void releaseKey(Map<String, Integer> active, String key) {
+        active.computeIfPresent(key, (id, count) -> count <= 1 ? null : count - 1);
+    }
+
+    private void registerMetrics(MeterRegistry registry) {
+        Gauge.builder("proxima.upload.admission.active", activeUploads, AtomicInteger::get)
+                .description("Uploads currently admitted")
+                .register(registry);
+        Gauge.builder("proxima.upload.admission.bytes.in.flight", bytesInFlight, AtomicLong::get)
+                .description("Declared bytes of uploads currently admitted")
+                .baseUnit("bytes")
+                .register(registry);
+        Gauge.builder("proxima.upload.admission.clients", uploadsPerClient, Map::size)
+                .description("Clients with an upload in progress")
+                .register(registry);
+        for (RejectReason reason : RejectReason.values()) {
+            rejectedCounters.put(reason, Counter.builder("proxima.upload.admission.rejected")
+                    .description("Uploads turned away by admission control")
+                    .tag("reason", reason.name().toLowerCase())
+                    .register(registry));
+        }
+    }
+}
@@ -0,0 +1,363 @@
+package com.proximashare.service;
+
+import com.proximashare.app.config.FileUploadConfig;
+import com.proximashare.dto.ByteRange;
+import com.proximashare.dto.UploadSessionRequest;
+import com.proximashare.dto.UploadSessionResponse;
+import com.proximashare.entity.FileMetadata;
+import com.proximashare.entity.UploadChunk;
+import com.proximashare.entity.UploadSession;
+import com.proximashare.entity.UploadSessionStatus;
+import com.proximashare.entity.User;
+import com.proximashare.exception.InsufficientStorageException;
+import com.proximashare.repository.UploadChunkRepository;
+import com.proximashare.repository.UploadSessionRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Resumable uploads: a session is created with the declared size, chunks are
+ * written by offset into a part file (in parallel if the client wants), and
+ * the part file becomes a regular {@link FileMetadata} once every byte arrived.
+ * <p>
+ * Chunk writes hold their session's read lock and completion takes the write lock to claim
+ * the session, so no write is still landing in the part file when it is hashed and adopted.
+ * The locks are local to this node, like the part file the session's requests write to.
+ */
+@Service
+public class UploadSessionService {
+    private static final Logger logger = LoggerFactory.getLogger(UploadSessionService.class);
+    private static final String SESSION_DIR = ".upload-sessions";
+
+    private final UploadSessionRepository uploadSessionRepository;
+    private final UploadChunkRepository uploadChunkRepository;
+    private final FileService fileService;
+    private final FileUploadConfig uploadConfig;
+    private final DiskSpaceLedger diskSpaceLedger;
+    private final StorageWriter storageWriter;
+    private final TransactionTemplate transactionTemplate;
+    private final String storagePath;
+    private final Map<String, ReentrantReadWriteLock> sessionLocks = new ConcurrentHashMap<>();
+
+    public UploadSessionService(UploadSessionRepository uploadSessionRepository,
+                                UploadChunkRepository uploadChunkRepository,
+                                FileService fileService,
+                                FileUploadConfig uploadConfig,
+                                DiskSpaceLedger diskSpaceLedger,
+                                StorageWriter storageWriter,
+                                TransactionTemplate transactionTemplate,
+                                @Value("${file.storage.path}") String storagePath) {
+        this.uploadSessionRepository = uploadSessionRepository;
+        this.uploadChunkRepository = uploadChunkRepository;
+        this.fileService = fileService;
+        this.uploadConfig = uploadConfig;
+        this.diskSpaceLedger = diskSpaceLedger;
+        this.storageWriter = storageWriter;
+        this.transactionTemplate = transactionTemplate;
+        this.storagePath = storagePath;
+    }
+
+    // All limits are checked here, before the client sends a single byte; clientAddress identifies public clients
+    public UploadSessionResponse createSession(UploadSessionRequest request, User user, String clientAddress) {
+        fileService.validateUploadSize(request.getSize(), user);
+        String clientKey = user != null ? "user:" + user.getId() : "anon:" + clientAddress;
+        checkClientSessions(clientKey, request.getSize(), user == null);
+
+        UploadSession session = new UploadSession();
+        session.setId(UUID.randomUUID().toString());
+        session.setFilename(request.getFilename());
+        session.setMimeType(request.getMimeType());
+        session.setTotalSize(request.getSize());
+        session.setOwner(user);
+        session.setClientKey(clientKey);
+        session.setCreatedAt(LocalDateTime.now());
+        session.setExpiresAt(LocalDateTime.now().plusHours(uploadConfig.getSessionExpiryHours()));
+
+        // Held until the session completes or expires; written chunks are taken off as they land
+        diskSpaceLedger.reserve(reservationKey(session.getId()), request.getSize());
+
+        // setLength only sizes the part file (sparse on most file systems); the ledger holds the space
+        Path partFile = getPartFile(session.getId());
+        try {
+            Files.createDirectories(partFile.getParent());
+            try (RandomAccessFile file = new RandomAccessFile(partFile.toFile(), "rw")) {
+                file.setLength(request.getSize());
+            }
+        } catch (IOException e) {
+            diskSpaceLedger.release(reservationKey(session.getId()));
+            throw new RuntimeException("Failed to create upload session", e);
+        }
+
+        uploadSessionRepository.save(session);
+        return UploadSessionResponse.from(session, List.of());
+    }
+
+    // Write one chunk at the given offset; chunks may arrive in any order and in parallel.
+    // expectedSha256 (optional) is the client's hex SHA-256 of the chunk; a mismatch is not recorded
+    public UploadSessionResponse writeChunk(String sessionId, long offset, InputStream body,
+                                            String expectedSha256, User user)
+            throws FileNotFoundException, IllegalAccessException {
+        UploadSession session = getActiveSession(sessionId, user);
+        requireOpen(session);
+
+        if (offset < 0 || offset >= session.getTotalSize()) {
+            throw new IllegalArgumentException("Chunk offset is outside the declared file size");
+        }
+
+        // Completion waits for this write; checked again under the lock in case it claimed the session first
+        Lock inFlight = sessionLock(sessionId).readLock();
+        inFlight.lock();
+        try {
+            requireOpen(uploadSessionRepository.findById(sessionId)
+                    .orElseThrow(() -> new FileNotFoundException("Upload session not found or already completed")));
+            return writeLockedChunk(session, offset, body, expectedSha256);
+        } finally {
+            inFlight.unlock();
+        }
+    }
+
+    public UploadSessionResponse getSessionStatus(String sessionId, User user)
+            throws FileNotFoundException, IllegalAccessException {
+        return getStatus(getActiveSession(sessionId, user));
+    }
+
+    public FileMetadata completeSession(String sessionId, User user)
+            throws FileNotFoundException, IllegalAccessException {
+        UploadSession session = getActiveSession(sessionId, user);
+
+        UploadSessionResponse status = getStatus(session);
+        if (!status.isComplete()) {
+            throw new IllegalArgumentException("Upload is incomplete: received " + status.getReceivedBytes()
+                    + " of " + session.getTotalSize() + " bytes");
+        }
+
+        // Claim the session first, so a concurrent complete cannot assemble a second file; the
+        // write lock waits out chunk writes in flight, and later ones see the claim
+        Lock claimLock = sessionLock(sessionId).writeLock();
+        claimLock.lock();
+        try {
+            if (uploadSessionRepository.transitionStatus(sessionId, UploadSessionStatus.OPEN, UploadSessionStatus.COMPLETING) == 0) {
+                throw new IllegalArgumentException("Upload session is already being completed");
+            }
+        } finally {
+            claimLock.unlock();
+        }
+
+        Path partFile = getPartFile(sessionId);
+        FileMetadata metadata;
+        try {
+            metadata = fileService.storeAssembledFile(partFile, session.getFilename(), session.getMimeType(), user);
+        } catch (RuntimeException e) {
+            if (Files.exists(partFile)) {
+                // Refused before the part file was adopted, e.g. over quota: the client may retry
+                uploadSessionRepository.transitionStatus(sessionId, UploadSessionStatus.COMPLETING, UploadSessionStatus.OPEN);
+            } else {
+                // The bytes are gone, so no retry can succeed: give the space back now
+                uploadSessionRepository.transitionStatus(sessionId, UploadSessionStatus.COMPLETING, UploadSessionStatus.FAILED);
+                diskSpaceLedger.release(reservationKey(sessionId));
+                sessionLocks.remove(sessionId);
+            }
+            throw e;
+        }
+
+        uploadChunkRepository.deleteBySessionId(sessionId);
+        uploadSessionRepository.delete(session);
+        diskSpaceLedger.release(reservationKey(sessionId));
+        sessionLocks.remove(sessionId);
+
+        return metadata;
+    }
+
+    @Scheduled(cron = "0 0 * * * ?") // hourly
+    public void cleanupExpiredSessions() {
+        uploadSessionRepository.findByExpiresAtBefore(LocalDateTime.now())
+                .forEach(session -> {
+                    logger.debug("Discarding expired upload session: {}", session.getId());
+                    try {
+                        Files.deleteIfExists(getPartFile(session.getId()));
+                    } catch (IOException e) {
+                        logger.warn("Failed to delete part file for upload session {}", session.getId(), e);
+                    }
+                    uploadChunkRepository.deleteBySessionId(session.getId());
+                    uploadSessionRepository.delete(session);
+                    diskSpaceLedger.release(reservationKey(session.getId()));
+                    sessionLocks.remove(session.getId());
+                });
+    }
+
+    // HELPER METHODS
+    private UploadSession getActiveSession(String sessionId, User user)
+            throws FileNotFoundException, IllegalAccessException {
+        UploadSession session = uploadSessionRepository.findById(sessionId)
+                .orElseThrow(() -> new FileNotFoundException("Upload session not found"));
+
+        if (session.getExpiresAt().isBefore(LocalDateTime.now())) {
+            throw new IllegalArgumentException("Upload session expired");
+        }
+
+        // Public sessions are only reachable through the public API, user sessions only by their owner
+        if (user == null ? session.getOwner() != null
+                : session.getOwner() == null || !session.getOwner().getId().equals(user.getId())) {
+            throw new IllegalAccessException("Not authorized to access this upload session");
+        }
+
+        return session;
+    }
+
+    // The chunk's bytes, checked and recorded; runs under the session's read lock
+    private UploadSessionResponse writeLockedChunk(UploadSession session, long offset, InputStream body,
+                                                   String expectedSha256) throws FileNotFoundException {
+        String sessionId = session.getId();
+        MessageDigest digest = newDigest();
+        long written;
+        try (FileChannel channel = FileChannel.open(getPartFile(sessionId), StandardOpenOption.WRITE)) {
+            written = storageWriter.write(body, channel, offset, session.getTotalSize() - offset, digest);
+        } catch (StorageWriter.SizeLimitExceededException e) {
+            throw new IllegalArgumentException("Chunk exceeds the declared file size");
+        } catch (NoSuchFileException e) {
+            throw new FileNotFoundException("Upload session not found or already completed");
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to store chunk", e);
+        }
+
+        if (written == 0) {
+            throw new IllegalArgumentException("Chunk is empty");
+        }
+
+        String sha256 = HexFormat.of().formatHex(digest.digest());
+        if (expectedSha256 != null && !expectedSha256.equalsIgnoreCase(sha256)) {
+            throw new IllegalArgumentException("Chunk checksum mismatch, please re-send the chunk");
+        }
+
+        // Only recorded once the bytes are written, so a dropped chunk is simply re-sent
+        UploadChunk chunk = new UploadChunk(sessionId, offset, written);
+        chunk.setSha256(sha256);
+        long advanced = recordChunk(chunk);
+
+        // Re-sent and overlapping chunks only take off the bytes they newly cover
+        diskSpaceLedger.consume(reservationKey(sessionId), advanced);
+
+        return getStatus(session);
+    }
+
+    // Sessions reserve their declared size up front, so one client must not be able to hold all free space
+    private void checkClientSessions(String clientKey, long size, boolean isPublic) {
+        LocalDateTime now = LocalDateTime.now();
+        if (uploadSessionRepository.countByClientKeyAndExpiresAtAfter(clientKey, now) >= uploadConfig.getSessionMaxOpenPerClient()) {
+            throw new InsufficientStorageException("Too many open upload sessions, complete or let one expire first");
+        }
+        if (isPublic && uploadSessionRepository.sumReservedBytes(clientKey, now) + size
+                > uploadConfig.getPublicSessionMaxBytesPerClient()) {
+            throw new InsufficientStorageException("Open upload sessions already hold too much space");
+        }
+    }
+
+    private static void requireOpen(UploadSession session) {
+        if (session.getStatus() == UploadSessionStatus.FAILED) {
+            throw new IllegalArgumentException("Upload session failed, please start a new one");
+        }
+        if (session.getStatus() != UploadSessionStatus.OPEN) {
+            throw new IllegalArgumentException("Upload session is already being completed");
+        }
+    }
+
+    private ReentrantReadWriteLock sessionLock(String sessionId) {
+        return sessionLocks.computeIfAbsent(sessionId, id -> new ReentrantReadWriteLock());
+    }
+
+    /**
+     * Save the chunk under the session's row lock and return how many bytes it added to the
+     * distinct bytes received. Concurrent chunks of the session are recorded one at a time, so
+     * bytes covered by several chunks are counted once.
+     */
+    private long recordChunk(UploadChunk chunk) {
+        Long advanced = transactionTemplate.execute(status -> {
+            UploadSession session = uploadSessionRepository.findForUpdate(chunk.getSessionId())
+                    .orElseThrow(() -> new IllegalArgumentException("Upload session not found or already completed"));
+            if (session.getStatus() != UploadSessionStatus.OPEN) {
+                throw new IllegalArgumentException("Upload session is already being completed");
+            }
+
+            uploadChunkRepository.save(chunk);
+            long received = mergeRanges(uploadChunkRepository.findBySessionIdOrderByChunkOffsetAsc(session.getId()))
+                    .stream()
+                    .mapToLong(range -> range.end() - range.start())
+                    .sum();
+            long added = Math.max(0, received - session.getReceivedBytes());
+            session.setReceivedBytes(received);
+            uploadSessionRepository.save(session);
+            return added;
+        });
+        return advanced != null ? advanced : 0;
+    }
+
+    private UploadSessionResponse getStatus(UploadSession session) {
+        List<UploadChunk> chunks = uploadChunkRepository.findBySessionIdOrderByChunkOffsetAsc(session.getId());
+        return UploadSessionResponse.from(session, mergeRanges(chunks));
+    }
+
+    // Collapse (possibly overlapping or re-sent) chunks into disjoint ranges
+    static List<ByteRange> mergeRanges(List<UploadChunk> chunks) {
+        List<ByteRange> ranges = new ArrayList<>();
+        long start = -1;
+        long end = -1;
+        for (UploadChunk chunk : chunks) {
+            long chunkEnd = chunk.getChunkOffset() + chunk.getChunkLength();
+            if (start < 0) {
+                start = chunk.getChunkOffset();
+                end = chunkEnd;
+            } else if (chunk.getChunkOffset() <= end) {
+                end = Math.max(end, chunkEnd);
+            } else {
+                ranges.add(new ByteRange(start, end));
+                start = chunk.getChunkOffset();
+                end = chunkEnd;
+            }
+        }
+        if (start >= 0) {
+            ranges.add(new ByteRange(start, end));
+        }
+        return ranges;
+    }
+
+    private MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private String reservationKey(String sessionId) {
+        return "upload-session:" + sessionId;
+    }
+
+    private Path getPartFile(String sessionId) {
+        return Path.of(storagePath, SESSION_DIR, sessionId + ".part");
+    }
+}
@@ -1,10 +1,11 @@
 package com.proximashare.service;
 
 import com.proximashare.dto.UserProfileResponse;
+import com.proximashare.dto.MimeTypeStats;
 import com.proximashare.dto.UserStats;
-import com.proximashare.entity.FileMetadata;
 import com.proximashare.entity.Role;
 import com.proximashare.entity.User;
+import com.proximashare.repository.FileMetadataRepository;
 import com.proximashare.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
@@ -26,6 +27,8 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class UserService {
     private final UserRepository userRepository;
+    private final FileMetadataRepository fileMetadataRepository;
+    private final UserUsageService userUsageService;
     private final EmailService emailService;
     private static final String PROFILE_PICTURES_DIR = "uploads/profile-pictures/";
     private static final long MAX_FILE_SIZE = 5 * 1024 * 1024; // 5MB
@@ -206,29 +209,25 @@ public class UserService {
             throw new IllegalArgumentException("Account is deactivated");
         }
 
-        List<FileMetadata> files = user.getUploadedFiles();
-
-        // Calculate total files
-        int totalFiles = files != null ? files.size() : 0;
-
-        // Calculate total storage used (sum of all file sizes)
-        long totalStorage = files != null
-                ? files.stream()
-                .mapToLong(FileMetadata::getSize)
-                .sum()
-                : 0L;
-
-        // Calculate total downloads (sum of all download counts)
-        int totalDownloads = files != null
-                ? files.stream()
-                .mapToInt(FileMetadata::getDownloadCount)
-                .sum()
-                : 0;
+        // Totals are summed from the grouped rows, so they always agree with the breakdown
+        UserUsageService.Quota quota = userUsageService.quotaFor(user);
+        List<MimeTypeStats> byMimeType = fileMetadataRepository.getMimeTypeStats(user.getId());
+        long files = 0;
+        long bytes = 0;
+        long downloads = 0;
+        for (MimeTypeStats type : byMimeType) {
+            files += type.getFileCount();
+            bytes += type.getTotalSize();
+            downloads += type.getTotalDownloads();
+        }
 
         return UserStats.builder()
-                .totalFilesUploaded(totalFiles)
-                .totalStorageUsed(totalStorage)
-                .totalDownloads(totalDownloads)
+                .totalFilesUploaded(files)
+                .totalStorageUsed(bytes)
+                .totalDownloads(downloads)
+                .byMimeType(byMimeType)
+                .storageQuota(quota.maxBytes() == 0 ? null : quota.maxBytes())
+                .fileQuota(quota.maxFiles() == 0 ? null : quota.maxFiles())
                 .build();
     }
 
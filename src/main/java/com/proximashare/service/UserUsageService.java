@@ -0,0 +1,215 @@
+package com.proximashare.service;
+
+import com.proximashare.app.config.FileUploadConfig;
+import com.proximashare.dto.MimeTypeStats;
+import com.proximashare.entity.FileMetadata;
+import com.proximashare.entity.Role;
+import com.proximashare.entity.User;
+import com.proximashare.entity.UserUsage;
+import com.proximashare.exception.InsufficientStorageException;
+import com.proximashare.repository.FileMetadataRepository;
+import com.proximashare.repository.UserRepository;
+import com.proximashare.repository.UserUsageRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+/**
+ * Per-user usage counters (bytes stored, file count) in user_usage, and the storage quotas
+ * checked against them. Uploads and deletes change the counters in the same transaction as
+ * the file_metadata row, so enforcing a quota reads one row however many files the user has
+ * (/user/stats totals its per-type breakdown instead). Downloads are not counted here: they
+ * would all update the owner's one row. A nightly pass recomputes every user's counters from
+ * file_metadata to correct drift (rows written outside FileService, counters of users who
+ * uploaded before the table existed).
+ */
+@Service
+public class UserUsageService {
+    private static final Logger logger = LoggerFactory.getLogger(UserUsageService.class);
+
+    private final UserUsageRepository userUsageRepository;
+    private final FileMetadataRepository fileMetadataRepository;
+    private final UserRepository userRepository;
+    private final FileUploadConfig uploadConfig;
+    private final TransactionTemplate transactionTemplate;
+
+    public UserUsageService(UserUsageRepository userUsageRepository,
+                            FileMetadataRepository fileMetadataRepository,
+                            UserRepository userRepository,
+                            FileUploadConfig uploadConfig,
+                            PlatformTransactionManager transactionManager) {
+        this.userUsageRepository = userUsageRepository;
+        this.fileMetadataRepository = fileMetadataRepository;
+        this.userRepository = userRepository;
+        this.uploadConfig = uploadConfig;
+        // Reconciling commits on its own, also when asked from inside an upload or a read-only transaction
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    // Limits of one user; 0 means unlimited
+    public record Quota(long maxBytes, long maxFiles) {
+    }
+
+    // The user's counters, created from file_metadata the first time they are asked for
+    public UserUsage getUsage(User user) {
+        return userUsageRepository.findById(user.getId())
+                .orElseGet(() -> reconcile(user.getId()));
+    }
+
+    /**
+     * The most generous quota among the user's roles that have one configured, or the default
+     * user quota when none has. Roles are matched with or without the ROLE_ prefix.
+     */
+    public Quota quotaFor(User user) {
+        Long maxBytes = null;
+        Long maxFiles = null;
+        if (user.getRoles() != null) {
+            for (Role role : user.getRoles()) {
+                String name = roleName(role);
+                maxBytes = moreGenerous(maxBytes, uploadConfig.getRoleStorageQuota(), name);
+                maxFiles = moreGenerous(maxFiles, uploadConfig.getRoleFileQuota(), name);
+            }
+        }
+        return new Quota(maxBytes != null ? maxBytes : uploadConfig.getUserStorageQuota(),
+                maxFiles != null ? maxFiles : uploadConfig.getUserFileQuota());
+    }
+
+    // Early refusal before an upload is stored; reserve() makes the binding check when its row is inserted
+    public void checkQuota(User user, long bytes) {
+        Quota quota = quotaFor(user);
+        if (quota.maxBytes() == 0 && quota.maxFiles() == 0) {
+            return;
+        }
+        UserUsage usage = getUsage(user);
+        if (usage.getBytesStored() + bytes > limit(quota.maxBytes()) || usage.getFileCount() + 1 > limit(quota.maxFiles())) {
+            throw quotaExceeded(quota, usage);
+        }
+    }
+
+    /**
+     * Count new files of the user against the quota. Call it in the transaction that inserts
+     * their rows, before the insert: the conditional UPDATE locks the counter row, so a
+     * reconcile pass cannot see the rows without the counts or the counts without the rows.
+     */
+    public void reserve(User owner, long bytes, int files) {
+        if (owner == null) {
+            return;  // public uploads have no owner to count against
+        }
+        Quota quota = quotaFor(owner);
+        if (userUsageRepository.reserve(owner.getId(), bytes, files, limit(quota.maxBytes()), limit(quota.maxFiles())) == 1) {
+            return;
+        }
+
+        // No row yet (first upload since the table existed): create it from file_metadata and try again
+        UserUsage usage = userUsageRepository.findById(owner.getId()).orElse(null);
+        if (usage == null) {
+            usage = reconcile(owner.getId());
+            if (userUsageRepository.reserve(owner.getId(), bytes, files, limit(quota.maxBytes()), limit(quota.maxFiles())) == 1) {
+                return;
+            }
+        }
+        throw quotaExceeded(quota, usage);
+    }
+
+    // Call in the transaction that deletes the file's row, before the delete
+    public void release(FileMetadata metadata) {
+        if (metadata.getOwner() == null) {
+            return;
+        }
+        userUsageRepository.release(metadata.getUuid(), metadata.getSize());
+    }
+
+    @Scheduled(cron = "0 30 3 * * ?") // daily at 03:30
+    public void reconcileAll() {
+        int users = 0;
+        for (Long userId : userRepository.findAllIds()) {
+            try {
+                reconcile(userId);
+                users++;
+            } catch (RuntimeException e) {
+                logger.warn("Failed to reconcile usage of user {}", userId, e);
+            }
+        }
+        logger.info("Usage counters of {} user(s) reconciled", users);
+    }
+
+    /**
+     * Recompute one user's counters from file_metadata with a grouped read of the user's
+     * index range, in a transaction of its own. The counter row is locked first, so uploads
+     * and deletes of the user wait, and none is counted twice or lost. When two requests both
+     * find no row, the one whose insert loses runs again against the row the other created.
+     */
+    public UserUsage reconcile(Long userId) {
+        try {
+            return transactionTemplate.execute(status -> recompute(userId));
+        } catch (DataIntegrityViolationException e) {
+            logger.debug("Usage row of user {} was created concurrently, reconciling it again", userId);
+            return transactionTemplate.execute(status -> recompute(userId));
+        }
+    }
+
+    // HELPER METHODS
+    private UserUsage recompute(Long userId) {
+        UserUsage usage = userUsageRepository.findForUpdate(userId).orElse(null);
+        boolean created = usage == null;
+        if (created) {
+            usage = new UserUsage(userId);
+        }
+
+        long bytes = 0;
+        long files = 0;
+        for (MimeTypeStats type : fileMetadataRepository.getMimeTypeStats(userId)) {
+            bytes += type.getTotalSize();
+            files += type.getFileCount();
+        }
+
+        if (!created && (usage.getBytesStored() != bytes || usage.getFileCount() != files)) {
+            logger.info("Usage of user {} drifted: {} bytes / {} files counted, {} / {} stored",
+                    userId, usage.getBytesStored(), usage.getFileCount(), bytes, files);
+        }
+        usage.setBytesStored(bytes);
+        usage.setFileCount(files);
+        usage.setReconciledAt(LocalDateTime.now());
+        // A new row is flushed here, so a concurrent insert of it fails inside this pass
+        return created ? userUsageRepository.saveAndFlush(usage) : userUsageRepository.save(usage);
+    }
+
+    private static String roleName(Role role) {
+        String name = role.getName().toUpperCase();
+        return name.startsWith("ROLE_") ? name.substring("ROLE_".length()) : name;
+    }
+
+    // 0 is unlimited, so it beats any number
+    private static Long moreGenerous(Long current, Map<String, Long> quotas, String role) {
+        Long quota = quotas.get(role);
+        if (quota == null) {
+            return current;
+        }
+        if (current == null) {
+            return quota;
+        }
+        return current == 0 || quota == 0 ? 0 : Math.max(current, quota);
+    }
+
+    private static long limit(long quota) {
+        return quota == 0 ? Long.MAX_VALUE : quota;
+    }
+
+    private static InsufficientStorageException quotaExceeded(Quota quota, UserUsage usage) {
+        if (quota.maxFiles() != 0 && usage.getFileCount() >= quota.maxFiles()) {
+            return new InsufficientStorageException("File quota exceeded: " + usage.getFileCount()
+                    + " of " + quota.maxFiles() + " files stored");
+        }
+        return new InsufficientStorageException("Storage quota exceeded: " + usage.getBytesStored()
+                + " of " + quota.maxBytes() + " bytes used");
+    }
+}
@@ -0,0 +1,174 @@
+package com.proximashare.service;
+
+import com.proximashare.app.config.DownloadConfig;
+import com.proximashare.entity.FileMetadata;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Service;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Streams several files as one ZIP archive, built while it is sent: nothing is staged on
+ * disk or in memory, and a fixed copy buffer is all the archive costs however large it gets.
+ * ZipOutputStream switches to Zip64 records by itself for entries over 4GB and archives of
+ * more than 65535 entries.
+ * <p>
+ * Every file is authorized and counted through {@link FileService#authorizeDownload} right
+ * before it is written, like a single download. A file refused at that point (limit reached,
+ * expired, removed meanwhile) is left out and named in a SKIPPED.txt entry, since the status
+ * line has long been sent.
+ */
+@Service
+public class ZipDownloadService {
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+    // Deflating these only costs CPU; they are stored as they are
+    private static final Set<String> COMPRESSED_TYPES = Set.of(
+            "image/jpeg", "image/png", "image/gif", "image/webp", "image/avif", "image/heic",
+            "audio/mpeg", "audio/aac", "audio/ogg", "audio/opus", "audio/flac", "audio/mp4", "audio/webm",
+            "application/zip", "application/gzip", "application/x-gzip", "application/x-7z-compressed",
+            "application/x-rar-compressed", "application/vnd.rar", "application/x-bzip2", "application/x-xz",
+            "application/zstd", "application/java-archive", "application/epub+zip",
+            "application/vnd.openxmlformats-officedocument.wordprocessingml.document",
+            "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet",
+            "application/vnd.openxmlformats-officedocument.presentationml.presentation"
+    );
+
+    private final FileService fileService;
+    private final DownloadConfig downloadConfig;
+
+    public ZipDownloadService(FileService fileService, DownloadConfig downloadConfig) {
+        this.fileService = fileService;
+        this.downloadConfig = downloadConfig;
+    }
+
+    // Unknown or foreign files fail the request here, before any byte is sent
+    public List<FileMetadata> resolveFiles(List<String> uuids, String username)
+            throws FileNotFoundException, IllegalAccessException {
+        List<String> distinct = uuids.stream().distinct().toList();
+        checkArchiveSize(distinct.size());
+        List<FileMetadata> files = new ArrayList<>(distinct.size());
+        for (String uuid : distinct) {
+            files.add(fileService.getDownloadMetadata(uuid, username));
+        }
+        return files;
+    }
+
+    public void write(HttpServletRequest request, HttpServletResponse response, List<FileMetadata> files,
+                      String username, String clientKey) throws IOException {
+        checkArchiveSize(files.size());
+
+        response.setStatus(HttpServletResponse.SC_OK);
+        response.setContentType("application/zip");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                "attachment; filename=\"proximashare-" + LocalDate.now() + ".zip\"");
+
+        Set<String> usedNames = new HashSet<>();
+        List<String> skipped = new ArrayList<>();
+        byte[] buffer = new byte[COPY_BUFFER_SIZE];
+
+        try (ZipOutputStream zip = new ZipOutputStream(BandwidthShaper.shape(request, response.getOutputStream()))) {
+            for (FileMetadata candidate : files) {
+                FileMetadata metadata;
+                File file;
+                try {
+                    metadata = fileService.authorizeDownload(candidate.getUuid(), username, clientKey);
+                    file = fileService.getStoredFile(metadata);
+                    if (!file.isFile()) {
+                        throw new FileNotFoundException("File not found or expired");
+                    }
+                } catch (FileNotFoundException | IllegalAccessException | IllegalArgumentException e) {
+                    skipped.add(candidate.getFilename() + " (" + candidate.getUuid() + "): " + e.getMessage());
+                    continue;
+                }
+                writeEntry(zip, uniqueName(metadata.getFilename(), usedNames), metadata, file, buffer);
+            }
+
+            if (!skipped.isEmpty()) {
+                zip.putNextEntry(new ZipEntry(uniqueName("SKIPPED.txt", usedNames)));
+                zip.write(String.join("\n", skipped).getBytes(StandardCharsets.UTF_8));
+                zip.closeEntry();
+            }
+        }
+    }
+
+    static boolean isCompressed(String mimeType) {
+        return mimeType != null && (COMPRESSED_TYPES.contains(mimeType) || mimeType.startsWith("video/"));
+    }
+
+    // HELPER METHODS
+    private void checkArchiveSize(int files) {
+        if (files == 0) {
+            throw new IllegalArgumentException("No files to download");
+        }
+        if (files > downloadConfig.getZipMaxFiles()) {
+            throw new IllegalArgumentException("Too many files for one archive (Max. " + downloadConfig.getZipMaxFiles() + ")");
+        }
+    }
+
+    private void writeEntry(ZipOutputStream zip, String name, FileMetadata metadata, File file, byte[] buffer)
+            throws IOException {
+        ZipEntry entry = new ZipEntry(name);
+        entry.setTime(metadata.getUploadDate().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli());
+        if (isCompressed(metadata.getMimeType())) {
+            // A STORED entry needs its size and CRC in the local header: one extra read, no buffering
+            entry.setMethod(ZipEntry.STORED);
+            entry.setSize(file.length());
+            entry.setCompressedSize(file.length());
+            entry.setCrc(crc32(file, buffer));
+        }
+
+        zip.putNextEntry(entry);
+        try (InputStream in = Files.newInputStream(file.toPath())) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                zip.write(buffer, 0, read);
+            }
+        }
+        zip.closeEntry();
+    }
+
+    private long crc32(File file, byte[] buffer) throws IOException {
+        CRC32 crc = new CRC32();
+        try (InputStream in = Files.newInputStream(file.toPath())) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                crc.update(buffer, 0, read);
+            }
+        }
+        return crc.getValue();
+    }
+
+    // Entry names must be unique and must not reach outside the archive root
+    private String uniqueName(String filename, Set<String> usedNames) {
+        String name = filename == null || filename.isBlank() ? "unknown" : filename.replaceAll("[\\\\/]", "_");
+        if (usedNames.add(name)) {
+            return name;
+        }
+        int dot = name.lastIndexOf('.');
+        String base = dot > 0 ? name.substring(0, dot) : name;
+        String extension = dot > 0 ? name.substring(dot) : "";
+        for (int i = 2; ; i++) {
+            String candidate = base + " (" + i + ")" + extension;
+            if (usedNames.add(candidate)) {
+                return candidate;
+            }
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.proximashare.service.initializers;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import com.proximashare.entity.FileMetadata;
+import com.proximashare.repository.FileMetadataRepository;
+import com.proximashare.service.BlobStore;
+
+/**
+ * One-off move of files stored as uuid + extension into the blob store. Each legacy file is
+ * deleted only after its row points at the blob.
+ * Enable with app.storage.migrate-legacy-files=true; already migrated rows are skipped,
+ * so it is safe to leave on until the log reports nothing left to migrate.
+ */
+@Service
+@Profile("!test")
+@ConditionalOnProperty(name = "app.storage.migrate-legacy-files", havingValue = "true")
+public class LegacyFileMigrator {
+    private static final Logger logger = LoggerFactory.getLogger(LegacyFileMigrator.class);
+    private final FileMetadataRepository fileMetadataRepository;
+    private final BlobStore blobStore;
+    private final String storagePath;
+
+    public LegacyFileMigrator(FileMetadataRepository fileMetadataRepository,
+                              BlobStore blobStore,
+                              @Value("${file.storage.path}") String storagePath) {
+        this.fileMetadataRepository = fileMetadataRepository;
+        this.blobStore = blobStore;
+        this.storagePath = storagePath;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void migrate() {
+        int migrated = 0;
+        for (FileMetadata metadata : fileMetadataRepository.findByBlobDigestIsNull()) {
+            Path legacyFile = findLegacyFile(metadata);
+            if (legacyFile == null) {
+                logger.warn("No stored file found for UUID = {}, skipping", metadata.getUuid());
+                continue;
+            }
+
+            // The legacy file stays until the row points at the blob, so a failure never loses the only copy
+            BlobStore.StoredBlob blob;
+            try {
+                blob = blobStore.storeCopy(legacyFile);
+            } catch (RuntimeException e) {
+                logger.error("Failed to migrate UUID = {}", metadata.getUuid(), e);
+                continue;
+            }
+
+            try {
+                if (fileMetadataRepository.setBlobDigestIfMissing(metadata.getUuid(), blob.digest()) == 0) {
+                    // Deleted, or migrated by another node, since it was read
+                    blobStore.release(blob.digest());
+                    continue;
+                }
+            } catch (RuntimeException e) {
+                blobStore.release(blob.digest());
+                logger.error("Failed to migrate UUID = {}", metadata.getUuid(), e);
+                continue;
+            }
+
+            try {
+                Files.deleteIfExists(legacyFile);
+            } catch (IOException e) {
+                logger.warn("Migrated UUID = {} but failed to delete its legacy file: {}", metadata.getUuid(), legacyFile, e);
+            }
+            migrated++;
+        }
+        logger.info("Legacy file migration finished, {} file(s) moved into the blob store", migrated);
+    }
+
+    private Path findLegacyFile(FileMetadata metadata) {
+        String filename = metadata.getFilename();
+        String extension = filename != null && filename.contains(".") ? filename.substring(filename.lastIndexOf(".")) : "";
+        Path withExtension = Path.of(storagePath, metadata.getUuid() + extension);
+        if (Files.exists(withExtension)) {
+            return withExtension;
+        }
+        Path bare = Path.of(storagePath, metadata.getUuid());
+        return Files.exists(bare) ? bare : null;
+    }
+}
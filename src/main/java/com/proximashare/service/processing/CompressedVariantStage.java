@@ -0,0 +1,103 @@
+package com.proximashare.service.processing;
+
+import com.proximashare.app.config.FileStorageConfig;
+import com.proximashare.entity.FileMetadata;
+import com.proximashare.service.BlobStore;
+import com.proximashare.service.ContentCoding;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Stores precompressed variants of compressible uploads next to their blob, so downloads can
+ * send fewer bytes without compressing on every request. Only types that are text by nature
+ * are tried, and a variant is kept only if it is at most app.storage.variant-max-ratio of the
+ * original; a sample of the file is compressed first so incompressible content costs little.
+ * Runs after content sniffing, which may have filled in the MIME type.
+ */
+@Component
+@Order(10)
+public class CompressedVariantStage implements PostUploadStage {
+    private static final Logger logger = LoggerFactory.getLogger(CompressedVariantStage.class);
+    private static final int SAMPLE_SIZE = 64 * 1024;
+
+    private final BlobStore blobStore;
+    private final FileStorageConfig storageConfig;
+
+    public CompressedVariantStage(BlobStore blobStore, FileStorageConfig storageConfig) {
+        this.blobStore = blobStore;
+        this.storageConfig = storageConfig;
+    }
+
+    @Override
+    public String name() {
+        return "compressed-variants";
+    }
+
+    @Override
+    public void process(ProcessingContext context) throws Exception {
+        FileMetadata metadata = context.getMetadata();
+        // Files stored before the blob store have no blob to put a variant next to
+        if (!storageConfig.isVariantsEnabled()
+                || metadata.getBlobDigest() == null
+                || metadata.getSize() < storageConfig.getVariantMinSize()
+                || !ContentCoding.isCompressible(context.getMimeType())) {
+            return;
+        }
+
+        Path source = context.getFile();
+        if (sampleRatio(source) > storageConfig.getVariantMaxRatio()) {
+            return;
+        }
+
+        for (ContentCoding coding : storageConfig.getVariantCodings()) {
+            // Blobs are shared: another file with the same content may have been done already
+            if (Files.exists(coding.variantOf(source))) {
+                continue;
+            }
+
+            Path encoded = Files.createTempFile(source.getParent(), metadata.getBlobDigest(), ".tmp");
+            try {
+                try (InputStream in = Files.newInputStream(source);
+                     OutputStream out = coding.encode(Files.newOutputStream(encoded))) {
+                    in.transferTo(out);
+                }
+
+                double ratio = (double) Files.size(encoded) / metadata.getSize();
+                if (ratio > storageConfig.getVariantMaxRatio()) {
+                    logger.debug("Not keeping {} variant of file {}: ratio {}", coding.token(), metadata.getUuid(), ratio);
+                    continue;
+                }
+                blobStore.storeVariant(metadata.getBlobDigest(), coding, encoded);
+            } finally {
+                Files.deleteIfExists(encoded);
+            }
+        }
+    }
+
+    // HELPER METHODS
+    // Compressed size of the first SAMPLE_SIZE bytes over their size
+    private double sampleRatio(Path source) throws IOException {
+        byte[] sample;
+        try (InputStream in = Files.newInputStream(source)) {
+            sample = in.readNBytes(SAMPLE_SIZE);
+        }
+        if (sample.length == 0) {
+            return 1;
+        }
+
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(sample.length);
+        try (OutputStream out = ContentCoding.GZIP.encode(compressed)) {
+            out.write(sample);
+        }
+        return (double) compressed.size() / sample.length;
+    }
+}
@@ -0,0 +1,40 @@
+package com.proximashare.service.processing;
+
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.InputStream;
+import java.net.URLConnection;
+import java.nio.file.Files;
+
+// Fills in a missing or generic MIME type from the file's leading bytes, then its name
+@Component
+@Order(0)
+public class ContentTypeSniffingStage implements PostUploadStage {
+    private static final String GENERIC_TYPE = "application/octet-stream";
+
+    @Override
+    public String name() {
+        return "content-type";
+    }
+
+    @Override
+    public void process(ProcessingContext context) throws Exception {
+        String declared = context.getMimeType();
+        if (declared != null && !declared.isBlank() && !GENERIC_TYPE.equals(declared)) {
+            return;
+        }
+
+        String sniffed;
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(context.getFile()))) {
+            sniffed = URLConnection.guessContentTypeFromStream(in);
+        }
+        if (sniffed == null) {
+            sniffed = URLConnection.guessContentTypeFromName(context.getMetadata().getFilename());
+        }
+        if (sniffed != null) {
+            context.setMimeType(sniffed);
+        }
+    }
+}
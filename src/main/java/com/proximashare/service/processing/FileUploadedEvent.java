@@ -0,0 +1,5 @@
+package com.proximashare.service.processing;
+
+// Published once a file's bytes and metadata are stored; starts post-upload processing
+public record FileUploadedEvent(String uuid) {
+}
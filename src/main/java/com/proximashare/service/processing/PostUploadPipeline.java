@@ -0,0 +1,228 @@
+package com.proximashare.service.processing;
+
+import com.proximashare.app.config.FileUploadConfig;
+import com.proximashare.entity.FileMetadata;
+import com.proximashare.entity.ProcessingState;
+import com.proximashare.repository.FileMetadataRepository;
+import com.proximashare.service.FileService;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Post-upload processing off the request thread. The state lives on FileMetadata, so
+ * work survives restarts: a file stays PENDING until a worker claims it, and PENDING
+ * files that missed the in-memory queue (full queue, restart, retry) are picked up by
+ * the periodic requeue. A claim records its node and time and is renewed between stages;
+ * claims left to age past app.upload.processing-claim-timeout-minutes belong to a dead
+ * node and go back to PENDING, while live claims of other nodes are never touched.
+ * Clients poll the state or subscribe to it over SSE.
+ */
+@Service
+public class PostUploadPipeline {
+    private static final Logger logger = LoggerFactory.getLogger(PostUploadPipeline.class);
+    private static final long SSE_TIMEOUT_MILLIS = 5 * 60 * 1000L;
+
+    private final FileMetadataRepository fileMetadataRepository;
+    private final FileService fileService;
+    private final List<PostUploadStage> stages;
+    private final FileUploadConfig uploadConfig;
+    private final String nodeName;
+    private final ThreadPoolExecutor executor;
+    // Files queued or running on this node, so the requeue does not submit them twice
+    private final Set<String> inFlight = ConcurrentHashMap.newKeySet();
+    private final Map<String, List<SseEmitter>> subscribers = new ConcurrentHashMap<>();
+
+    public PostUploadPipeline(FileMetadataRepository fileMetadataRepository,
+                              FileService fileService,
+                              List<PostUploadStage> stages,
+                              FileUploadConfig uploadConfig,
+                              @Value("${app.node-name:}") String nodeName) {
+        this.fileMetadataRepository = fileMetadataRepository;
+        this.fileService = fileService;
+        this.stages = stages;
+        this.uploadConfig = uploadConfig;
+        this.nodeName = nodeName.isBlank() ? "node-" + UUID.randomUUID() : nodeName;
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(
+                uploadConfig.getProcessingParallelism(),
+                uploadConfig.getProcessingParallelism(),
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(uploadConfig.getProcessingQueueCapacity()),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "post-upload-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    @EventListener
+    public void onFileUploaded(FileUploadedEvent event) {
+        submit(event.uuid());
+    }
+
+    // Claims of workers that died with this node's previous process go back to the queue at once
+    // (with a stable app.node-name); claims of other dead nodes once they are stale
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeInterrupted() {
+        int resumed = fileMetadataRepository.releaseProcessingClaimsOf(
+                nodeName, ProcessingState.PENDING, ProcessingState.PROCESSING);
+        if (resumed > 0) {
+            logger.info("Resuming {} file(s) whose processing was interrupted by the last shutdown", resumed);
+        }
+        requeuePending();
+    }
+
+    @Scheduled(fixedDelay = 60_000) // every minute
+    public void requeuePending() {
+        LocalDateTime staleBefore = LocalDateTime.now().minusMinutes(uploadConfig.getProcessingClaimTimeoutMinutes());
+        int taken = fileMetadataRepository.releaseStaleProcessingClaims(
+                staleBefore, ProcessingState.PENDING, ProcessingState.PROCESSING);
+        if (taken > 0) {
+            logger.warn("Taking over {} file(s) whose processing claim went stale", taken);
+        }
+        fileMetadataRepository.findTop500ByProcessingStateOrderByUploadDateAsc(ProcessingState.PENDING)
+                .forEach(metadata -> submit(metadata.getUuid()));
+    }
+
+    public ProcessingState getState(String uuid) throws FileNotFoundException {
+        ProcessingState state = fileService.getFileMetadata(uuid).getProcessingState();
+        return state == null ? ProcessingState.READY : state;
+    }
+
+    // Sends the current state right away and again on every change, until READY or FAILED
+    public SseEmitter subscribe(String uuid) throws FileNotFoundException {
+        ProcessingState state = getState(uuid);
+        SseEmitter emitter = new SseEmitter(SSE_TIMEOUT_MILLIS);
+
+        if (isFinal(state)) {
+            send(emitter, state);
+            emitter.complete();
+            return emitter;
+        }
+
+        List<SseEmitter> emitters = subscribers.computeIfAbsent(uuid, id -> new CopyOnWriteArrayList<>());
+        emitters.add(emitter);
+        emitter.onCompletion(() -> emitters.remove(emitter));
+        emitter.onTimeout(() -> emitters.remove(emitter));
+        send(emitter, state);
+        return emitter;
+    }
+
+    // HELPER METHODS
+    private void submit(String uuid) {
+        if (!inFlight.add(uuid)) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    process(uuid);
+                } finally {
+                    inFlight.remove(uuid);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Queue is full: the file stays PENDING and the next requeue picks it up
+            inFlight.remove(uuid);
+            logger.debug("Processing queue full, deferring file: {}", uuid);
+        }
+    }
+
+    void process(String uuid) {
+        if (fileMetadataRepository.claimProcessing(uuid, nodeName, LocalDateTime.now(),
+                ProcessingState.PENDING, ProcessingState.PROCESSING) == 0) {
+            return;  // already claimed, finished or deleted
+        }
+        notifySubscribers(uuid, ProcessingState.PROCESSING);
+
+        FileMetadata metadata = null;
+        ProcessingContext context;
+        String step = "load";
+        try {
+            metadata = fileMetadataRepository.findById(uuid).orElse(null);
+            if (metadata == null) {
+                return;
+            }
+            context = new ProcessingContext(metadata, fileService.getStoredFile(metadata).toPath());
+
+            for (PostUploadStage stage : stages) {
+                step = stage.name();
+                if (fileMetadataRepository.renewProcessingClaim(uuid, nodeName, LocalDateTime.now(),
+                        ProcessingState.PROCESSING) == 0) {
+                    logger.warn("Lost the processing claim on file {} before stage {}", uuid, step);
+                    return;
+                }
+                stage.process(context);
+            }
+        } catch (Exception e) {
+            // Every failure after the claim counts as an attempt, so no file is left in PROCESSING
+            int attempts = metadata != null ? metadata.getProcessingAttempts() + 1 : 1;
+            boolean retry = attempts < uploadConfig.getProcessingMaxAttempts();
+            ProcessingState next = retry ? ProcessingState.PENDING : ProcessingState.FAILED;
+            logger.warn("Processing step {} failed for file {} (attempt {}), {}", step, uuid,
+                    attempts, retry ? "will retry" : "giving up", e);
+            fileMetadataRepository.recordFailedProcessingAttempt(uuid, nodeName, next);
+            if (!retry) {
+                notifySubscribers(uuid, ProcessingState.FAILED);
+            }
+            return;
+        }
+
+        if (fileMetadataRepository.completeProcessing(uuid, nodeName, ProcessingState.READY, context.getMimeType()) > 0) {
+            notifySubscribers(uuid, ProcessingState.READY);
+        }
+    }
+
+    private void notifySubscribers(String uuid, ProcessingState state) {
+        List<SseEmitter> emitters = isFinal(state) ? subscribers.remove(uuid) : subscribers.get(uuid);
+        if (emitters == null) {
+            return;
+        }
+        for (SseEmitter emitter : emitters) {
+            send(emitter, state);
+            if (isFinal(state)) {
+                emitter.complete();
+            }
+        }
+    }
+
+    private void send(SseEmitter emitter, ProcessingState state) {
+        try {
+            emitter.send(SseEmitter.event().name("processing").data(state.name()));
+        } catch (IOException | IllegalStateException e) {
+            emitter.completeWithError(e);
+        }
+    }
+
+    private boolean isFinal(ProcessingState state) {
+        return state == ProcessingState.READY || state == ProcessingState.FAILED;
+    }
+}
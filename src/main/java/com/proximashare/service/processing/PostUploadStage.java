@@ -0,0 +1,13 @@
+package com.proximashare.service.processing;
+
+/**
+ * One step of post-upload processing (content sniffing, scanning, derived files, ...).
+ * Stages run in {@link org.springframework.core.annotation.Order} order on the pipeline's
+ * worker pool and must be idempotent: a failed file is retried from the first stage.
+ */
+public interface PostUploadStage {
+
+    String name();
+
+    void process(ProcessingContext context) throws Exception;
+}
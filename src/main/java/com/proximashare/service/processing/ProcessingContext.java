@@ -0,0 +1,34 @@
+package com.proximashare.service.processing;
+
+import com.proximashare.entity.FileMetadata;
+
+import java.nio.file.Path;
+
+// What a stage sees of the file, and the results it may hand back to the pipeline
+public class ProcessingContext {
+    private final FileMetadata metadata;
+    private final Path file;
+    private String mimeType;
+
+    public ProcessingContext(FileMetadata metadata, Path file) {
+        this.metadata = metadata;
+        this.file = file;
+        this.mimeType = metadata.getMimeType();
+    }
+
+    public FileMetadata getMetadata() {
+        return metadata;
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    public String getMimeType() {
+        return mimeType;
+    }
+
+    public void setMimeType(String mimeType) {
+        this.mimeType = mimeType;
+    }
+}
@@ -4,4 +4,112 @@ DROP CONSTRAINT fkhfh9dx7w3ubf1co1vdev94g3f;
 
 ALTER TABLE user_roles
 ADD CONSTRAINT fkhfh9dx7w3ubf1co1vdev94g3f
-FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE;
\ No newline at end of file
+FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE;
+
+-- Content-addressed blob store: one row per distinct content, shared by file_metadata rows
+CREATE TABLE IF NOT EXISTS file_blob (
+    digest VARCHAR(64) PRIMARY KEY,
+    size BIGINT NOT NULL,
+    ref_count INTEGER NOT NULL,
+    created_at TIMESTAMP(6)
+);
+
+ALTER TABLE file_metadata
+ADD COLUMN IF NOT EXISTS blob_digest VARCHAR(64);
+
+-- Same width as file_blob.digest, also where the column was first added as VARCHAR(255)
+ALTER TABLE file_metadata
+ALTER COLUMN blob_digest TYPE VARCHAR(64);
+-- Existing rows keep blob_digest = NULL and are served from uuid + extension until
+-- app.storage.migrate-legacy-files=true moves their bytes into the blob store.
+
+-- Tree-hashed blobs (app.storage.hash-mode=TREE) keep their per-leaf hashes for segment verification
+ALTER TABLE file_blob
+ADD COLUMN IF NOT EXISTS leaf_size INTEGER NOT NULL DEFAULT 0;
+
+ALTER TABLE file_blob
+ADD COLUMN IF NOT EXISTS leaf_hashes BYTEA;
+
+-- Post-upload processing pipeline; existing rows keep NULL and count as processed
+ALTER TABLE file_metadata
+ADD COLUMN IF NOT EXISTS processing_state VARCHAR(20);
+
+ALTER TABLE file_metadata
+ADD COLUMN IF NOT EXISTS processing_attempts INTEGER NOT NULL DEFAULT 0;
+
+-- Owner and time of a PROCESSING claim, so only stale claims (of dead nodes) are taken over
+ALTER TABLE file_metadata
+ADD COLUMN IF NOT EXISTS processing_claimed_by VARCHAR(64);
+
+ALTER TABLE file_metadata
+ADD COLUMN IF NOT EXISTS processing_claimed_at TIMESTAMP(6);
+
+-- Oldest-first polling of PENDING/PROCESSING files by the processing pipeline
+CREATE INDEX IF NOT EXISTS idx_file_metadata_processing
+ON file_metadata (processing_state, upload_date);
+
+-- Resumable upload sessions and the chunks received for them
+CREATE TABLE IF NOT EXISTS upload_session (
+    id VARCHAR(255) PRIMARY KEY,
+    filename VARCHAR(255),
+    mime_type VARCHAR(255),
+    total_size BIGINT NOT NULL,
+    created_at TIMESTAMP(6),
+    expires_at TIMESTAMP(6),
+    received_bytes BIGINT NOT NULL DEFAULT 0,
+    status VARCHAR(20) NOT NULL DEFAULT 'OPEN',
+    user_id BIGINT REFERENCES users(id)
+);
+
+CREATE TABLE IF NOT EXISTS upload_chunk (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    session_id VARCHAR(255) NOT NULL,
+    chunk_offset BIGINT NOT NULL,
+    chunk_length BIGINT NOT NULL,
+    sha256 VARCHAR(64)
+);
+
+CREATE INDEX IF NOT EXISTS idx_upload_chunk_session
+ON upload_chunk (session_id);
+
+-- Upload sessions: distinct bytes received (taken off the disk space reservation once) and a
+-- status that one complete request claims before assembling the file
+ALTER TABLE upload_session
+ADD COLUMN IF NOT EXISTS received_bytes BIGINT NOT NULL DEFAULT 0;
+
+ALTER TABLE upload_session
+ADD COLUMN IF NOT EXISTS status VARCHAR(20) NOT NULL DEFAULT 'OPEN';
+
+-- Per-user usage counters (quotas, /user/stats); rows are created from file_metadata on first
+-- use and recomputed nightly, so existing users need no backfill
+CREATE TABLE IF NOT EXISTS user_usage (
+    user_id BIGINT PRIMARY KEY,
+    bytes_stored BIGINT NOT NULL DEFAULT 0,
+    file_count BIGINT NOT NULL DEFAULT 0,
+    reconciled_at TIMESTAMP(6)
+);
+
+-- Downloads are no longer counted per user (every download updated the owner's row)
+ALTER TABLE user_usage
+DROP COLUMN IF EXISTS downloads_served;
+
+-- Keyset pagination of a user's files: newest first, uuid breaking ties
+CREATE INDEX IF NOT EXISTS idx_file_metadata_owner_upload
+ON file_metadata (user_id, upload_date DESC, uuid DESC);
+
+-- Filtered and sorted file search, each led by the owner
+CREATE INDEX IF NOT EXISTS idx_file_metadata_owner_expiry
+ON file_metadata (user_id, expiry_date);
+
+CREATE INDEX IF NOT EXISTS idx_file_metadata_owner_size
+ON file_metadata (user_id, size);
+
+CREATE INDEX IF NOT EXISTS idx_file_metadata_owner_mime
+ON file_metadata (user_id, mime_type);
+
+-- Open upload sessions per client (user:<id> or anon:<address>), limited at session creation
+ALTER TABLE upload_session
+ADD COLUMN IF NOT EXISTS client_key VARCHAR(64);
+
+CREATE INDEX IF NOT EXISTS idx_upload_session_client
+ON upload_session (client_key, expires_at);
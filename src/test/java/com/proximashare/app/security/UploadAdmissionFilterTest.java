@@ -0,0 +1,179 @@
+package com.proximashare.app.security;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.proximashare.app.config.UploadAdmissionConfig;
+import com.proximashare.repository.UploadSessionRepository;
+import com.proximashare.service.UploadAdmissionService;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("UploadAdmissionFilter Unit Tests")
+class UploadAdmissionFilterTest {
+
+    @Mock
+    private UploadAdmissionService admissionService;
+
+    @Mock
+    private UploadAdmissionService.Permit permit;
+
+    private UploadAdmissionFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        UploadAdmissionConfig admissionConfig = new UploadAdmissionConfig();
+        admissionConfig.setRetryAfterSeconds(7);
+        filter = new UploadAdmissionFilter(admissionService, admissionConfig, new ObjectMapper());
+    }
+
+    @Test
+    @DisplayName("Should answer 503 with Retry-After without calling the controller")
+    void shouldRejectWithRetryAfter() throws Exception {
+        // Arrange
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/public/files/upload");
+        request.setRemoteAddr("10.0.0.1");
+        request.setContent(new byte[100]);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        FilterChain chain = mock(FilterChain.class);
+        when(admissionService.tryAcquire("10.0.0.1", 100)).thenReturn(
+                new UploadAdmissionService.Admission(null, UploadAdmissionService.RejectReason.BYTES_IN_FLIGHT));
+
+        // Act
+        filter.doFilter(request, response, chain);
+
+        // Assert
+        assertEquals(503, response.getStatus());
+        assertEquals("7", response.getHeader("Retry-After"));
+        assertTrue(response.getContentAsString().contains("retry later"));
+        verifyNoInteractions(chain);
+    }
+
+    @Test
+    @DisplayName("Should hold the permit for the duration of an admitted upload")
+    void shouldReleasePermitAfterUpload() throws Exception {
+        // Arrange
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/user/files/upload/batch");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        when(admissionService.tryAcquire(anyString(), anyLong()))
+                .thenReturn(new UploadAdmissionService.Admission(permit, null));
+
+        // Act
+        filter.doFilter(request, response, new MockFilterChain());
+
+        // Assert
+        assertEquals(200, response.getStatus());
+        verify(permit).close();
+    }
+
+    @Test
+    @DisplayName("Should admit parallel chunk uploads of one client beyond its upload cap")
+    @SuppressWarnings("unchecked")
+    void shouldAdmitParallelChunks() throws Exception {
+        // Arrange - the shipped limits: 2 uploads per client, 8 chunks per session, 16 chunks per client
+        UploadAdmissionConfig admissionConfig = new UploadAdmissionConfig();
+        UploadSessionRepository uploadSessionRepository = mock(UploadSessionRepository.class);
+        when(uploadSessionRepository.existsById("session-1")).thenReturn(true);
+        UploadAdmissionService realService = new UploadAdmissionService(admissionConfig, uploadSessionRepository,
+                mock(ObjectProvider.class));
+        UploadAdmissionFilter realFilter = new UploadAdmissionFilter(realService, admissionConfig, new ObjectMapper());
+
+        int chunks = 6;
+        CountDownLatch allInside = new CountDownLatch(chunks);
+        FilterChain chain = (req, res) -> {
+            allInside.countDown();
+            try {
+                // Every chunk stays in flight until all of them were admitted
+                assertTrue(allInside.await(5, TimeUnit.SECONDS), "all chunks should be in flight at once");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+        ExecutorService executor = Executors.newFixedThreadPool(chunks);
+
+        // Act
+        List<Future<MockHttpServletResponse>> results = new ArrayList<>();
+        for (int i = 0; i < chunks; i++) {
+            results.add(executor.submit(() -> {
+                MockHttpServletRequest request = new MockHttpServletRequest("PUT", "/user/files/upload-sessions/session-1");
+                request.setRemoteAddr("10.0.0.1");
+                request.setContent(new byte[1024]);
+                MockHttpServletResponse response = new MockHttpServletResponse();
+                realFilter.doFilter(request, response, chain);
+                return response;
+            }));
+        }
+
+        // Assert
+        for (Future<MockHttpServletResponse> result : results) {
+            assertEquals(200, result.get(10, TimeUnit.SECONDS).getStatus());
+        }
+        executor.shutdown();
+        assertEquals(0, realService.getActiveUploads());
+
+        // The client cap still applies to whole-file uploads
+        MockHttpServletRequest upload = new MockHttpServletRequest("POST", "/user/files/upload");
+        upload.setRemoteAddr("10.0.0.1");
+        try (UploadAdmissionService.Permit first = realService.tryAcquire("10.0.0.1", 1).permit();
+             UploadAdmissionService.Permit second = realService.tryAcquire("10.0.0.1", 1).permit()) {
+            MockHttpServletResponse rejected = new MockHttpServletResponse();
+            realFilter.doFilter(upload, rejected, new MockFilterChain());
+            assertEquals(503, rejected.getStatus());
+        }
+    }
+
+    @Test
+    @DisplayName("Should put upload session creation under the client's cap")
+    void shouldAdmitSessionCreation() throws Exception {
+        // Arrange
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/public/files/upload-sessions");
+        request.setRemoteAddr("10.0.0.1");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        when(admissionService.tryAcquire(eq("10.0.0.1"), anyLong())).thenReturn(
+                new UploadAdmissionService.Admission(null, UploadAdmissionService.RejectReason.CLIENT_UPLOADS));
+
+        // Act
+        filter.doFilter(request, response, new MockFilterChain());
+
+        // Assert
+        assertEquals(503, response.getStatus());
+    }
+
+    @Test
+    @DisplayName("Should leave metadata and download requests alone")
+    void shouldSkipNonUploadRequests() throws Exception {
+        // Arrange
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/public/files/download/some-uuid");
+        MockFilterChain chain = new MockFilterChain();
+
+        // Act
+        filter.doFilter(request, new MockHttpServletResponse(), chain);
+
+        // Assert
+        assertNotNull(chain.getRequest());
+        verifyNoInteractions(admissionService);
+    }
+}
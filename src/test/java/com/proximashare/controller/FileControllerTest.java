@@ -1,5 +1,7 @@
 package com.proximashare.controller;
 
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.startsWith;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
@@ -24,14 +26,26 @@ import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.TestPropertySource;
 import org.springframework.test.web.servlet.MockMvc;
 
+import com.proximashare.app.config.DownloadConfig;
 import com.proximashare.entity.FileMetadata;
+import com.proximashare.dto.DownloadTicketResponse;
+import com.proximashare.dto.FileMetadataResponse;
+import com.proximashare.service.BandwidthShaper;
+import com.proximashare.service.DownloadTicketService;
+import com.proximashare.service.FileDownloadWriter;
+import com.proximashare.service.HotFileCache;
 import com.proximashare.service.FileService;
+import com.proximashare.entity.ProcessingState;
+import com.proximashare.service.UploadSessionService;
+import com.proximashare.service.processing.PostUploadPipeline;
+import com.proximashare.exception.DownloadBusyException;
 import com.proximashare.exception.GlobalExceptionHandler;
 
 @WebMvcTest(controllers = FileController.class,
         excludeAutoConfiguration = org.springframework.boot.autoconfigure.security.servlet.SecurityAutoConfiguration.class)
-@ContextConfiguration(classes = {FileController.class, GlobalExceptionHandler.class})
+@ContextConfiguration(classes = {FileController.class, GlobalExceptionHandler.class, FileDownloadWriter.class, HotFileCache.class, BandwidthShaper.class, DownloadTicketService.class, DownloadConfig.class})
 @TestPropertySource(properties = {
+        "application.security.jwt.secret=testSecretKeyForJwtTokenGenerationAndValidationTesting123456",
         "app.environment.production=false",
         "app.error.include-stacktrace=false"
 })
@@ -41,9 +55,18 @@ class FileControllerTest {
     @Autowired
     private MockMvc mockMvc;
 
+    @Autowired
+    private DownloadTicketService downloadTicketService;
+
     @MockBean
     private FileService fileService;
 
+    @MockBean
+    private UploadSessionService uploadSessionService;
+
+    @MockBean
+    private PostUploadPipeline postUploadPipeline;
+
     @TempDir
     Path tempDir;
 
@@ -180,15 +203,72 @@ class FileControllerTest {
         }
     }
 
+    @Nested
+    @DisplayName("POST /api/public/files/upload/stream")
+    class StreamUploadTests {
+
+        @Test
+        @DisplayName("Should stream raw request body to the service")
+        void shouldStreamRawBody() throws Exception {
+            // Arrange
+            when(fileService.uploadFileStream(any(), eq("test-document.pdf"), eq(MediaType.APPLICATION_OCTET_STREAM_VALUE),
+                    anyLong(), isNull())).thenReturn(sampleMetadata);
+
+            // Act & Assert
+            mockMvc.perform(post("/api/public/files/upload/stream")
+                            .param("filename", "test-document.pdf")
+                            .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                            .content("Test file content".getBytes()))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.uuid").value("test-uuid-123"));
+        }
+
+        @Test
+        @DisplayName("Should return 400 when streamed body exceeds the limit")
+        void shouldReturnBadRequestWhenTooLarge() throws Exception {
+            // Arrange
+            when(fileService.uploadFileStream(any(), anyString(), any(), anyLong(), isNull()))
+                    .thenThrow(new IllegalArgumentException("File size exceeds 1GB limit"));
+
+            // Act & Assert
+            mockMvc.perform(post("/api/public/files/upload/stream")
+                            .param("filename", "huge.iso")
+                            .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                            .content(new byte[16]))
+                    .andExpect(status().isBadRequest())
+                    .andExpect(jsonPath("$.message").value("File size exceeds 1GB limit"));
+        }
+    }
+
     @Nested
     @DisplayName("GET /api/public/files/{uuid}")
     class GetFileMetadataTests {
 
+        @Test
+        @DisplayName("Should send an ETag and answer a matching If-None-Match with 304")
+        void shouldRevalidateMetadata() throws Exception {
+            // Arrange
+            when(fileService.getFileMetadataResponse("test-uuid-123")).thenAnswer(invocation -> FileMetadataResponse.from(sampleMetadata));
+            String entityTag = mockMvc.perform(get("/api/public/files/test-uuid-123"))
+                    .andExpect(status().isOk())
+                    .andExpect(header().string("ETag", startsWith("W/\"")))
+                    .andReturn().getResponse().getHeader("ETag");
+
+            // Act & Assert
+            mockMvc.perform(get("/api/public/files/test-uuid-123").header("If-None-Match", entityTag))
+                    .andExpect(status().isNotModified())
+                    .andExpect(content().string(""));
+
+            sampleMetadata.setDownloadCount(1);
+            mockMvc.perform(get("/api/public/files/test-uuid-123").header("If-None-Match", entityTag))
+                    .andExpect(status().isOk());
+        }
+
         @Test
         @DisplayName("Should return file metadata for valid UUID")
         void shouldReturnMetadataForValidUuid() throws Exception {
             // Arrange
-            when(fileService.getFileMetadata("test-uuid-123")).thenReturn(sampleMetadata);
+            when(fileService.getFileMetadataResponse("test-uuid-123")).thenAnswer(invocation -> FileMetadataResponse.from(sampleMetadata));
 
             // Act & Assert
             mockMvc.perform(get("/api/public/files/test-uuid-123"))
@@ -198,14 +278,14 @@ class FileControllerTest {
                     .andExpect(jsonPath("$.size").value(1024))
                     .andExpect(jsonPath("$.downloadCount").value(0));
 
-            verify(fileService).getFileMetadata("test-uuid-123");
+            verify(fileService).getFileMetadataResponse("test-uuid-123");
         }
 
         @Test
         @DisplayName("Should return 404 when file not found")
         void shouldReturn404WhenFileNotFound() throws Exception {
             // Arrange
-            when(fileService.getFileMetadata("non-existent-uuid"))
+            when(fileService.getFileMetadataResponse("non-existent-uuid"))
                     .thenThrow(new FileNotFoundException("File not found or expired"));
 
             // Act & Assert
@@ -213,14 +293,14 @@ class FileControllerTest {
                     .andExpect(status().isNotFound())
                     .andExpect(jsonPath("$.message").value("File not found or expired"));
 
-            verify(fileService).getFileMetadata("non-existent-uuid");
+            verify(fileService).getFileMetadataResponse("non-existent-uuid");
         }
 
         @Test
         @DisplayName("Should return 400 when file is expired")
         void shouldReturn400WhenFileExpired() throws Exception {
             // Arrange
-            when(fileService.getFileMetadata("expired-uuid"))
+            when(fileService.getFileMetadataResponse("expired-uuid"))
                     .thenThrow(new IllegalArgumentException("File expired"));
 
             // Act & Assert
@@ -228,7 +308,7 @@ class FileControllerTest {
                     .andExpect(status().isBadRequest())
                     .andExpect(jsonPath("$.message").value("File expired"));
 
-            verify(fileService).getFileMetadata("expired-uuid");
+            verify(fileService).getFileMetadataResponse("expired-uuid");
         }
 
         @Test
@@ -244,7 +324,7 @@ class FileControllerTest {
                     LocalDateTime.now().plusDays(1),
                     0
             );
-            when(fileService.getFileMetadata(complexUuid)).thenReturn(metadata);
+            when(fileService.getFileMetadataResponse(complexUuid)).thenAnswer(invocation -> FileMetadataResponse.from(metadata));
 
             // Act & Assert
             mockMvc.perform(get("/api/public/files/" + complexUuid))
@@ -253,6 +333,36 @@ class FileControllerTest {
         }
     }
 
+    @Nested
+    @DisplayName("GET /api/public/files/{uuid}/status")
+    class ProcessingStatusTests {
+
+        @Test
+        @DisplayName("Should return the processing state of the file")
+        void shouldReturnProcessingState() throws Exception {
+            // Arrange
+            when(postUploadPipeline.getState("test-uuid-123")).thenReturn(ProcessingState.PROCESSING);
+
+            // Act & Assert
+            mockMvc.perform(get("/api/public/files/test-uuid-123/status"))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.uuid").value("test-uuid-123"))
+                    .andExpect(jsonPath("$.processingState").value("PROCESSING"));
+        }
+
+        @Test
+        @DisplayName("Should return 404 for an unknown file")
+        void shouldReturn404ForUnknownFile() throws Exception {
+            // Arrange
+            when(postUploadPipeline.getState("missing"))
+                    .thenThrow(new FileNotFoundException("File not found or expired"));
+
+            // Act & Assert
+            mockMvc.perform(get("/api/public/files/missing/status"))
+                    .andExpect(status().isNotFound());
+        }
+    }
+
     @Nested
     @DisplayName("GET /api/public/files/download/{uuid}")
     class DownloadFileTests {
@@ -264,8 +374,8 @@ class FileControllerTest {
             File testFile = tempDir.resolve("test-uuid-123.pdf").toFile();
             Files.write(testFile.toPath(), "Test file content".getBytes());
 
-            when(fileService.downloadFile("test-uuid-123")).thenReturn(testFile);
-            when(fileService.getFileMetadata("test-uuid-123")).thenReturn(sampleMetadata);
+            when(fileService.authorizeDownload(eq("test-uuid-123"), isNull(), anyString())).thenReturn(sampleMetadata);
+            when(fileService.getStoredFile(sampleMetadata)).thenReturn(testFile);
 
             // Act & Assert
             mockMvc.perform(get("/api/public/files/download/test-uuid-123"))
@@ -274,15 +384,15 @@ class FileControllerTest {
                             "attachment; filename=\"test-document.pdf\""))
                     .andExpect(content().bytes("Test file content".getBytes()));
 
-            verify(fileService).downloadFile("test-uuid-123");
-            verify(fileService).getFileMetadata("test-uuid-123");
+            verify(fileService).authorizeDownload(eq("test-uuid-123"), isNull(), anyString());
+            verify(fileService, never()).getFileMetadata(anyString());
         }
 
         @Test
         @DisplayName("Should return 404 when file not found for download")
         void shouldReturn404WhenFileNotFoundForDownload() throws Exception {
             // Arrange
-            when(fileService.downloadFile("non-existent"))
+            when(fileService.authorizeDownload(eq("non-existent"), isNull(), anyString()))
                     .thenThrow(new FileNotFoundException("File not found or expired"));
 
             // Act & Assert
@@ -290,14 +400,14 @@ class FileControllerTest {
                     .andExpect(status().isNotFound())
                     .andExpect(jsonPath("$.message").value("File not found or expired"));
 
-            verify(fileService).downloadFile("non-existent");
+            verify(fileService).authorizeDownload(eq("non-existent"), isNull(), anyString());
         }
 
         @Test
         @DisplayName("Should return 403 when download limit exceeded")
         void shouldReturn403WhenDownloadLimitExceeded() throws Exception {
             // Arrange
-            when(fileService.downloadFile("limited-uuid"))
+            when(fileService.authorizeDownload(eq("limited-uuid"), isNull(), anyString()))
                     .thenThrow(new IllegalAccessException("File download limit reached for this file. (Max. 3 Times)"));
 
             // Act & Assert
@@ -305,7 +415,7 @@ class FileControllerTest {
                     .andExpect(status().isForbidden())
                     .andExpect(jsonPath("$.message").value("File download limit reached for this file. (Max. 3 Times)"));
 
-            verify(fileService).downloadFile("limited-uuid");
+            verify(fileService).authorizeDownload(eq("limited-uuid"), isNull(), anyString());
         }
 
         @Test
@@ -324,8 +434,8 @@ class FileControllerTest {
                     0
             );
 
-            when(fileService.downloadFile("special-uuid")).thenReturn(testFile);
-            when(fileService.getFileMetadata("special-uuid")).thenReturn(specialMetadata);
+            when(fileService.authorizeDownload(eq("special-uuid"), isNull(), anyString())).thenReturn(specialMetadata);
+            when(fileService.getStoredFile(specialMetadata)).thenReturn(testFile);
 
             // Act & Assert
             mockMvc.perform(get("/api/public/files/download/special-uuid"))
@@ -334,6 +444,76 @@ class FileControllerTest {
                             "attachment; filename=\"file with spaces & special.txt\""));
         }
 
+        @Test
+        @DisplayName("Should send a single range as 206 with Content-Range")
+        void shouldServeSingleRange() throws Exception {
+            // Arrange
+            File testFile = tempDir.resolve("range-uuid.txt").toFile();
+            Files.write(testFile.toPath(), "0123456789".getBytes());
+
+            when(fileService.authorizeDownload(eq("range-uuid"), isNull(), anyString())).thenReturn(sampleMetadata);
+            when(fileService.getStoredFile(sampleMetadata)).thenReturn(testFile);
+
+            // Act & Assert
+            mockMvc.perform(get("/api/public/files/download/range-uuid").header("Range", "bytes=2-5"))
+                    .andExpect(status().isPartialContent())
+                    .andExpect(header().string("Content-Range", "bytes 2-5/10"))
+                    .andExpect(header().string("Accept-Ranges", "bytes"))
+                    .andExpect(content().bytes("2345".getBytes()));
+        }
+
+        @Test
+        @DisplayName("Should send several ranges as multipart/byteranges")
+        void shouldServeMultipleRanges() throws Exception {
+            // Arrange
+            File testFile = tempDir.resolve("multi-uuid.txt").toFile();
+            Files.write(testFile.toPath(), "0123456789".getBytes());
+
+            when(fileService.authorizeDownload(eq("multi-uuid"), isNull(), anyString())).thenReturn(sampleMetadata);
+            when(fileService.getStoredFile(sampleMetadata)).thenReturn(testFile);
+
+            // Act & Assert
+            mockMvc.perform(get("/api/public/files/download/multi-uuid").header("Range", "bytes=0-1,-2"))
+                    .andExpect(status().isPartialContent())
+                    .andExpect(header().string("Content-Type", startsWith("multipart/byteranges; boundary=")))
+                    .andExpect(content().string(containsString("Content-Range: bytes 0-1/10")))
+                    .andExpect(content().string(containsString("Content-Range: bytes 8-9/10")));
+        }
+
+        @Test
+        @DisplayName("Should return 416 when no range is satisfiable")
+        void shouldRejectUnsatisfiableRange() throws Exception {
+            // Arrange
+            File testFile = tempDir.resolve("short-uuid.txt").toFile();
+            Files.write(testFile.toPath(), "0123456789".getBytes());
+
+            when(fileService.authorizeDownload(eq("short-uuid"), isNull(), anyString())).thenReturn(sampleMetadata);
+            when(fileService.getStoredFile(sampleMetadata)).thenReturn(testFile);
+
+            // Act & Assert
+            mockMvc.perform(get("/api/public/files/download/short-uuid").header("Range", "bytes=50-60"))
+                    .andExpect(status().isRequestedRangeNotSatisfiable())
+                    .andExpect(header().string("Content-Range", "bytes */10"));
+        }
+
+        @Test
+        @DisplayName("Should send the whole file when If-Range no longer matches")
+        void shouldIgnoreRangeWhenIfRangeDoesNotMatch() throws Exception {
+            // Arrange
+            File testFile = tempDir.resolve("changed-uuid.txt").toFile();
+            Files.write(testFile.toPath(), "0123456789".getBytes());
+
+            when(fileService.authorizeDownload(eq("changed-uuid"), isNull(), anyString())).thenReturn(sampleMetadata);
+            when(fileService.getStoredFile(sampleMetadata)).thenReturn(testFile);
+
+            // Act & Assert
+            mockMvc.perform(get("/api/public/files/download/changed-uuid")
+                            .header("Range", "bytes=2-5")
+                            .header("If-Range", "\"some-other-version\""))
+                    .andExpect(status().isOk())
+                    .andExpect(content().bytes("0123456789".getBytes()));
+        }
+
         @Test
         @DisplayName("Should increment download count on successful download")
         void shouldIncrementDownloadCount() throws Exception {
@@ -341,16 +521,127 @@ class FileControllerTest {
             File testFile = tempDir.resolve("count-uuid.txt").toFile();
             Files.write(testFile.toPath(), "content".getBytes());
 
-            when(fileService.downloadFile("count-uuid")).thenReturn(testFile);
-            when(fileService.getFileMetadata("count-uuid")).thenReturn(sampleMetadata);
+            when(fileService.authorizeDownload(eq("count-uuid"), isNull(), anyString())).thenReturn(sampleMetadata);
+            when(fileService.getStoredFile(sampleMetadata)).thenReturn(testFile);
 
             // Act
             mockMvc.perform(get("/api/public/files/download/count-uuid"))
                     .andExpect(status().isOk());
 
-            // Assert - Verify the service methods were called in correct order
-            verify(fileService).downloadFile("count-uuid");
-            verify(fileService).getFileMetadata("count-uuid");
+            // Assert - counted by the service, without a second metadata lookup
+            verify(fileService).authorizeDownload(eq("count-uuid"), isNull(), anyString());
+            verify(fileService, never()).getFileMetadata(anyString());
+        }
+
+        @Test
+        @DisplayName("Should return 503 with Retry-After when the file has too many streams")
+        void shouldReturn503WhenFileIsBusy() throws Exception {
+            // Arrange
+            when(fileService.authorizeDownload(eq("busy-uuid"), isNull(), anyString()))
+                    .thenThrow(new DownloadBusyException("Too many downloads of this file in progress, please retry later", 5));
+
+            // Act & Assert
+            mockMvc.perform(get("/api/public/files/download/busy-uuid"))
+                    .andExpect(status().isServiceUnavailable())
+                    .andExpect(header().string("Retry-After", "5"));
+        }
+
+        @Test
+        @DisplayName("Should answer a revalidation with 304 without counting a download")
+        void shouldRevalidateDownloadWithoutCounting() throws Exception {
+            // Arrange
+            when(fileService.getDownloadMetadata("test-uuid-123", null)).thenReturn(sampleMetadata);
+
+            // Act & Assert
+            mockMvc.perform(get("/api/public/files/download/test-uuid-123")
+                            .header("If-None-Match", "\"test-uuid-123\""))
+                    .andExpect(status().isNotModified())
+                    .andExpect(header().string("ETag", "\"test-uuid-123\""));
+
+            verify(fileService, never()).authorizeDownload(anyString(), any(), any());
+            verify(fileService, never()).getStoredFile(any());
+        }
+
+        @Test
+        @DisplayName("Should answer HEAD with size and type without reading or counting")
+        void shouldAnswerHeadFromMetadata() throws Exception {
+            // Arrange
+            sampleMetadata.setMimeType("application/pdf");
+            when(fileService.getDownloadMetadata("test-uuid-123", null)).thenReturn(sampleMetadata);
+
+            // Act & Assert
+            mockMvc.perform(head("/api/public/files/download/test-uuid-123"))
+                    .andExpect(status().isOk())
+                    .andExpect(header().longValue("Content-Length", 1024L))
+                    .andExpect(header().string("Content-Type", "application/pdf"))
+                    .andExpect(header().string("ETag", "\"test-uuid-123\""));
+
+            verify(fileService, never()).authorizeDownload(anyString(), any(), any());
+            verify(fileService, never()).getStoredFile(any());
+        }
+    }
+
+    @Nested
+    @DisplayName("GET /api/public/files/download/ticket/{ticket}")
+    class TicketDownloadTests {
+
+        private void storedFile() throws Exception {
+            File testFile = tempDir.resolve("test-uuid-123.pdf").toFile();
+            Files.write(testFile.toPath(), "Test file content".getBytes());
+            when(fileService.authorizeDownload(any(FileMetadata.class), eq("alice"), anyString()))
+                    .thenAnswer(invocation -> invocation.getArgument(0));
+            when(fileService.getStoredFile(any())).thenReturn(testFile);
+        }
+
+        @Test
+        @DisplayName("Should serve a ticket with only the download count reserved")
+        void shouldDownloadWithTicket() throws Exception {
+            // Arrange
+            storedFile();
+            DownloadTicketResponse ticket = downloadTicketService.mint(sampleMetadata, "alice", null, null);
+
+            // Act & Assert
+            mockMvc.perform(get(ticket.getDownloadUrl()))
+                    .andExpect(status().isOk())
+                    .andExpect(header().string("Content-Disposition",
+                            "attachment; filename=\"test-document.pdf\""))
+                    .andExpect(content().bytes("Test file content".getBytes()));
+
+            verify(fileService).authorizeDownload(any(FileMetadata.class), eq("alice"), anyString());
+            verify(fileService, never()).getFileMetadata(anyString());
+            verify(fileService, never()).getDownloadMetadata(anyString(), any());
+        }
+
+        @Test
+        @DisplayName("Should return 403 for a tampered ticket without counting")
+        void shouldRejectTamperedTicket() throws Exception {
+            // Arrange
+            String ticket = downloadTicketService.mint(sampleMetadata, "alice", null, null).getTicket();
+            String tampered = ticket.substring(0, ticket.length() - 2) + (ticket.endsWith("AA") ? "BB" : "AA");
+
+            // Act & Assert
+            mockMvc.perform(get(DownloadTicketService.DOWNLOAD_PATH + tampered))
+                    .andExpect(status().isForbidden())
+                    .andExpect(jsonPath("$.message").value("Invalid download ticket"));
+
+            verify(fileService, never()).authorizeDownload(any(FileMetadata.class), any(), any());
+        }
+
+        @Test
+        @DisplayName("Should serve only the range a ticket allows")
+        void shouldRestrictTicketToRange() throws Exception {
+            // Arrange
+            storedFile();
+            sampleMetadata.setSize("Test file content".length());
+            DownloadTicketResponse ticket = downloadTicketService.mint(sampleMetadata, "alice", 0L, 3L);
+
+            // Act & Assert
+            mockMvc.perform(get(ticket.getDownloadUrl()))
+                    .andExpect(status().isPartialContent())
+                    .andExpect(header().string("Content-Range", "bytes 0-3/17"))
+                    .andExpect(content().bytes("Test".getBytes()));
+            mockMvc.perform(get(ticket.getDownloadUrl()).header("Range", "bytes=5-8"))
+                    .andExpect(status().isForbidden());
         }
     }
 
@@ -362,7 +653,7 @@ class FileControllerTest {
         @DisplayName("Should handle malformed UUID gracefully")
         void shouldHandleMalformedUuid() throws Exception {
             // Arrange
-            when(fileService.getFileMetadata(anyString()))
+            when(fileService.getFileMetadataResponse(anyString()))
                     .thenThrow(new FileNotFoundException("File not found or expired"));
 
             // Act & Assert
@@ -1,19 +1,31 @@
 package com.proximashare.controller;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.proximashare.app.config.DownloadConfig;
 import com.proximashare.config.TestSecurityConfig;
+import com.proximashare.dto.BatchUploadResponse;
+import com.proximashare.dto.DownloadTicketResponse;
 import com.proximashare.dto.FileMetadataResponse;
+import com.proximashare.dto.FileSearchRequest;
 import com.proximashare.entity.FileMetadata;
 import com.proximashare.entity.User;
 import com.proximashare.exception.GlobalExceptionHandler;
 import com.proximashare.repository.UserRepository;
+import com.proximashare.service.BandwidthShaper;
+import com.proximashare.service.BatchUploadService;
+import com.proximashare.service.DownloadTicketService;
+import com.proximashare.service.FileDownloadWriter;
+import com.proximashare.service.HotFileCache;
 import com.proximashare.service.FileService;
 import com.proximashare.service.JwtService;
+import com.proximashare.service.UploadSessionService;
+import com.proximashare.service.ZipDownloadService;
 import com.proximashare.utils.TestAuthHelper;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
@@ -36,14 +48,17 @@ import java.util.List;
 import java.util.Optional;
 
 import static org.hamcrest.Matchers.hasSize;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 @WebMvcTest(controllers = UserFileController.class)
-@Import({TestSecurityConfig.class, GlobalExceptionHandler.class})
+@Import({TestSecurityConfig.class, GlobalExceptionHandler.class, FileDownloadWriter.class, HotFileCache.class, BandwidthShaper.class, DownloadConfig.class})
 @ActiveProfiles("test")
 @TestPropertySource(properties = {
         "application.security.jwt.secret=testSecretKeyForJwtTokenGenerationAndValidationTesting123456",
@@ -66,6 +81,18 @@ class UserFileControllerTest {
     @MockBean
     private UserRepository userRepository;
 
+    @MockBean
+    private UploadSessionService uploadSessionService;
+
+    @MockBean
+    private BatchUploadService batchUploadService;
+
+    @MockBean
+    private ZipDownloadService zipDownloadService;
+
+    @MockBean
+    private DownloadTicketService downloadTicketService;
+
     @MockBean
     private JwtService jwtService;
 
@@ -205,6 +232,38 @@ class UserFileControllerTest {
         }
     }
 
+    @Nested
+    @DisplayName("POST /user/files/upload/batch")
+    class BatchUploadTests {
+
+        @Test
+        @WithMockUser(username = "testFileUploader", roles = {"USER"})
+        @DisplayName("Should return a result per file")
+        void shouldReturnResultPerFile() throws Exception {
+            // Arrange
+            MockMultipartFile first = new MockMultipartFile("files", "a.txt", "text/plain", "first".getBytes());
+            MockMultipartFile second = new MockMultipartFile("files", "b.txt", "text/plain", "second".getBytes());
+
+            when(userRepository.findByUsername("testFileUploader")).thenReturn(Optional.of(testUser));
+            when(batchUploadService.uploadFilesForUser(any(), eq(testUser))).thenReturn(new BatchUploadResponse(List.of(
+                    BatchUploadResponse.FileResult.uploaded("a.txt", "uuid-a"),
+                    BatchUploadResponse.FileResult.failed("b.txt", "File size exceeds 5GB limit"))));
+
+            // Act & Assert
+            mockMvc.perform(multipart("/user/files/upload/batch")
+                            .file(first)
+                            .file(second))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.uploaded").value(1))
+                    .andExpect(jsonPath("$.failed").value(1))
+                    .andExpect(jsonPath("$.results", hasSize(2)))
+                    .andExpect(jsonPath("$.results[0].uuid").value("uuid-a"))
+                    .andExpect(jsonPath("$.results[1].message").value("File size exceeds 5GB limit"));
+
+            verify(batchUploadService).uploadFilesForUser(argThat(files -> files.size() == 2), eq(testUser));
+        }
+    }
+
     @Nested
     @DisplayName("GET /user/files")
     class GetUserFilesTests {
@@ -228,10 +287,10 @@ class UserFileControllerTest {
 //            file2.setMimeType("application/pdf");
             file2.setUploadDate(LocalDateTime.now());
 
-            List<FileMetadata> files = Arrays.asList(file1, file2);
+            List<FileMetadataResponse> files = Arrays.asList(FileMetadataResponse.from(file1), FileMetadataResponse.from(file2));
 
             when(userRepository.findByUsername("testFileUploader")).thenReturn(Optional.of(testUser));
-            when(fileService.getUserFiles(testUser)).thenReturn(files);
+            when(fileService.getUserFiles(testUser, null, null)).thenReturn(new FileService.FilePage(files, null));
 
             // Act & Assert
             mockMvc.perform(get("/user/files"))
@@ -240,9 +299,83 @@ class UserFileControllerTest {
                     .andExpect(jsonPath("$[0].uuid").value("uuid-1"))
                     .andExpect(jsonPath("$[0].filename").value("file1.txt"))
                     .andExpect(jsonPath("$[1].uuid").value("uuid-2"))
-                    .andExpect(jsonPath("$[1].filename").value("file2.pdf"));
+                    .andExpect(jsonPath("$[1].filename").value("file2.pdf"))
+                    .andExpect(header().doesNotExist("Link"));
+
+            verify(fileService).getUserFiles(testUser, null, null);
+        }
+
+        @Test
+        @WithMockUser(username = "testFileUploader", roles = {"USER"})
+        @DisplayName("Should link to the next page when there is one")
+        void shouldLinkNextPage() throws Exception {
+            // Arrange
+            when(userRepository.findByUsername("testFileUploader")).thenReturn(Optional.of(testUser));
+            when(fileService.getUserFiles(testUser, "c1", 1))
+                    .thenReturn(new FileService.FilePage(List.of(FileMetadataResponse.from(testFileMetadata)), "c2"));
+
+            // Act & Assert
+            mockMvc.perform(get("/user/files").param("cursor", "c1").param("limit", "1"))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$", hasSize(1)))
+                    .andExpect(header().string("Link", "<http://localhost/user/files?limit=1&cursor=c2>; rel=\"next\""));
+        }
+
+        @Test
+        @WithMockUser(username = "testFileUploader", roles = {"USER"})
+        @DisplayName("Should return 400 for a cursor that cannot be decoded")
+        void shouldRejectInvalidCursor() throws Exception {
+            // Arrange
+            when(userRepository.findByUsername("testFileUploader")).thenReturn(Optional.of(testUser));
+            when(fileService.getUserFiles(testUser, "garbage", null))
+                    .thenThrow(new IllegalArgumentException("Invalid cursor"));
+
+            // Act & Assert
+            mockMvc.perform(get("/user/files").param("cursor", "garbage"))
+                    .andExpect(status().isBadRequest());
+        }
+
+        @Test
+        @WithMockUser(username = "testFileUploader", roles = {"USER"})
+        @DisplayName("Should bind search filters and sort from the query string")
+        void shouldSearchUserFiles() throws Exception {
+            // Arrange
+            when(userRepository.findByUsername("testFileUploader")).thenReturn(Optional.of(testUser));
+            when(fileService.searchUserFiles(eq(testUser), any(FileSearchRequest.class)))
+                    .thenReturn(List.of(testFileMetadata));
+
+            // Act & Assert
+            mockMvc.perform(get("/user/files/search")
+                            .param("mimeType", "image/*")
+                            .param("minSize", "1024")
+                            .param("expiresBefore", "2026-12-31T23:59:00")
+                            .param("sort", "size")
+                            .param("direction", "asc"))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$", hasSize(1)));
+
+            ArgumentCaptor<FileSearchRequest> captor = ArgumentCaptor.forClass(FileSearchRequest.class);
+            verify(fileService).searchUserFiles(eq(testUser), captor.capture());
+            assertEquals("image/*", captor.getValue().getMimeType());
+            assertEquals(1024L, captor.getValue().getMinSize());
+            assertNull(captor.getValue().getMaxSize());
+            assertEquals(LocalDateTime.of(2026, 12, 31, 23, 59), captor.getValue().getExpiresBefore());
+            assertEquals("size", captor.getValue().getSort());
+            assertEquals("asc", captor.getValue().getDirection());
+        }
 
-            verify(fileService).getUserFiles(testUser);
+        @Test
+        @WithMockUser(username = "testFileUploader", roles = {"USER"})
+        @DisplayName("Should return 400 for a search the service rejects")
+        void shouldRejectInvalidSearch() throws Exception {
+            // Arrange
+            when(userRepository.findByUsername("testFileUploader")).thenReturn(Optional.of(testUser));
+            when(fileService.searchUserFiles(eq(testUser), any(FileSearchRequest.class)))
+                    .thenThrow(new IllegalArgumentException("Cannot sort by downloadCount"));
+
+            // Act & Assert
+            mockMvc.perform(get("/user/files/search").param("sort", "downloadCount"))
+                    .andExpect(status().isBadRequest());
         }
 
         @Test
@@ -251,14 +384,15 @@ class UserFileControllerTest {
         void shouldReturnEmptyListWhenUserHasNoFiles() throws Exception {
             // Arrange
             when(userRepository.findByUsername("testFileUploader")).thenReturn(Optional.of(testUser));
-            when(fileService.getUserFiles(testUser)).thenReturn(Collections.emptyList());
+            when(fileService.getUserFiles(testUser, null, null))
+                    .thenReturn(new FileService.FilePage(Collections.emptyList(), null));
 
             // Act & Assert
             mockMvc.perform(get("/user/files"))
                     .andExpect(status().isOk())
                     .andExpect(jsonPath("$", hasSize(0)));
 
-            verify(fileService).getUserFiles(testUser);
+            verify(fileService).getUserFiles(testUser, null, null);
         }
 
         @Test
@@ -268,7 +402,7 @@ class UserFileControllerTest {
             mockMvc.perform(get("/user/files"))
                     .andExpect(status().isForbidden());
 
-            verify(fileService, never()).getUserFiles(any());
+            verify(fileService, never()).getUserFiles(any(), any(), any());
         }
 
         @Test
@@ -282,7 +416,7 @@ class UserFileControllerTest {
             mockMvc.perform(get("/user/files"))
                     .andExpect(status().isForbidden());
 
-            verify(fileService, never()).getUserFiles(any());
+            verify(fileService, never()).getUserFiles(any(), any(), any());
         }
     }
 
@@ -295,7 +429,7 @@ class UserFileControllerTest {
         @DisplayName("Should return file metadata by UUID")
         void shouldReturnFileMetadataByUuid() throws Exception {
             // Arrange
-            when(fileService.getFileMetadata("test-uuid-123")).thenReturn(testFileMetadata);
+            when(fileService.getFileMetadataResponse("test-uuid-123")).thenAnswer(invocation -> FileMetadataResponse.from(testFileMetadata));
 
             // Act & Assert
             mockMvc.perform(get("/user/files/{uuid}", "test-uuid-123"))
@@ -305,7 +439,7 @@ class UserFileControllerTest {
                     .andExpect(jsonPath("$.size").value(1024))
                     .andExpect(jsonPath("$.mimeType").value("text/plain"));
 
-            verify(fileService).getFileMetadata("test-uuid-123");
+            verify(fileService).getFileMetadataResponse("test-uuid-123");
         }
 
         @Test
@@ -313,14 +447,14 @@ class UserFileControllerTest {
         @DisplayName("Should return 404 when file not found")
         void shouldReturn404WhenFileNotFound() throws Exception {
             // Arrange
-            when(fileService.getFileMetadata("non-existent-uuid"))
+            when(fileService.getFileMetadataResponse("non-existent-uuid"))
                     .thenThrow(new FileNotFoundException("File not found"));
 
             // Act & Assert
             mockMvc.perform(get("/user/files/{uuid}", "non-existent-uuid"))
                     .andExpect(status().isNotFound());
 
-            verify(fileService).getFileMetadata("non-existent-uuid");
+            verify(fileService).getFileMetadataResponse("non-existent-uuid");
         }
 
         @Test
@@ -328,14 +462,106 @@ class UserFileControllerTest {
         @DisplayName("Should allow anonymous access to file metadata")
         void shouldAllowAnonymousAccessToFileMetadata() throws Exception {
             // Arrange
-            when(fileService.getFileMetadata("test-uuid-123")).thenReturn(testFileMetadata);
+            when(fileService.getFileMetadataResponse("test-uuid-123")).thenAnswer(invocation -> FileMetadataResponse.from(testFileMetadata));
 
             // Act & Assert
             mockMvc.perform(get("/user/files/{uuid}", "test-uuid-123"))
                     .andExpect(status().isOk())
                     .andExpect(jsonPath("$.uuid").value("test-uuid-123"));
 
-            verify(fileService).getFileMetadata("test-uuid-123");
+            verify(fileService).getFileMetadataResponse("test-uuid-123");
+        }
+    }
+
+    @Nested
+    @DisplayName("POST /user/files/{uuid}/ticket")
+    class DownloadTicketTests {
+
+        @Test
+        @WithMockUser(username = "testFileUploader", roles = {"USER"})
+        @DisplayName("Should mint a ticket for a file the caller may download")
+        void shouldMintTicket() throws Exception {
+            // Arrange
+            when(fileService.getDownloadMetadata("test-uuid-123", "testFileUploader")).thenReturn(testFileMetadata);
+            when(downloadTicketService.mint(testFileMetadata, "testFileUploader", 0L, 511L))
+                    .thenReturn(new DownloadTicketResponse("abc.def",
+                            DownloadTicketService.DOWNLOAD_PATH + "abc.def", LocalDateTime.now().plusMinutes(5)));
+
+            // Act & Assert
+            mockMvc.perform(post("/user/files/test-uuid-123/ticket")
+                            .param("first", "0")
+                            .param("last", "511"))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.ticket").value("abc.def"))
+                    .andExpect(jsonPath("$.downloadUrl").value("/api/public/files/download/ticket/abc.def"));
+
+            verify(userRepository, never()).findByUsername(any());
+        }
+
+        @Test
+        @WithMockUser(username = "testFileUploader", roles = {"USER"})
+        @DisplayName("Should return 403 and mint nothing for another user's file")
+        void shouldRefuseForeignFile() throws Exception {
+            // Arrange
+            when(fileService.getDownloadMetadata("foreign-uuid", "testFileUploader"))
+                    .thenThrow(new IllegalAccessException("Not authorized to download this file"));
+
+            // Act & Assert
+            mockMvc.perform(post("/user/files/foreign-uuid/ticket"))
+                    .andExpect(status().isForbidden());
+
+            verify(downloadTicketService, never()).mint(any(), any(), any(), any());
+        }
+    }
+
+    @Nested
+    @DisplayName("GET /user/files/download/zip")
+    class DownloadZipTests {
+
+        @Test
+        @WithMockUser(username = "testFileUploader", roles = {"USER"})
+        @DisplayName("Should archive all of the caller's files when none are listed")
+        void shouldZipAllUserFiles() throws Exception {
+            // Arrange
+            when(userRepository.findByUsername("testFileUploader")).thenReturn(Optional.of(testUser));
+            when(fileService.getUserFiles(testUser)).thenReturn(List.of(testFileMetadata));
+
+            // Act & Assert
+            mockMvc.perform(get("/user/files/download/zip"))
+                    .andExpect(status().isOk());
+
+            verify(zipDownloadService).write(any(), any(), eq(List.of(testFileMetadata)), eq("testFileUploader"), anyString());
+        }
+
+        @Test
+        @WithMockUser(username = "testFileUploader", roles = {"USER"})
+        @DisplayName("Should archive only the listed files")
+        void shouldZipListedFiles() throws Exception {
+            // Arrange
+            when(zipDownloadService.resolveFiles(List.of("a", "b"), "testFileUploader"))
+                    .thenReturn(List.of(testFileMetadata));
+
+            // Act & Assert
+            mockMvc.perform(get("/user/files/download/zip").param("uuids", "a", "b"))
+                    .andExpect(status().isOk());
+
+            verify(zipDownloadService).write(any(), any(), eq(List.of(testFileMetadata)), eq("testFileUploader"), anyString());
+            verify(userRepository, never()).findByUsername(any());
+        }
+
+        @Test
+        @WithMockUser(username = "testFileUploader", roles = {"USER"})
+        @DisplayName("Should return 403 before streaming when a listed file is not the caller's")
+        void shouldRejectForeignFile() throws Exception {
+            // Arrange
+            when(zipDownloadService.resolveFiles(List.of("foreign"), "testFileUploader"))
+                    .thenThrow(new IllegalAccessException("Not authorized to download this file"));
+
+            // Act & Assert
+            mockMvc.perform(get("/user/files/download/zip").param("uuids", "foreign"))
+                    .andExpect(status().isForbidden());
+
+            verify(zipDownloadService, never()).write(any(), any(), any(), any(), any());
         }
     }
 
@@ -351,9 +577,9 @@ class UserFileControllerTest {
             File tempFile = File.createTempFile("test", ".txt");
             tempFile.deleteOnExit();
 
-            when(userRepository.findByUsername("testFileUploader")).thenReturn(Optional.of(testUser));
-            when(fileService.downloadFile("test-uuid-123")).thenReturn(tempFile);
-            when(fileService.getFileMetadata("test-uuid-123")).thenReturn(testFileMetadata);
+            when(fileService.authorizeDownload(eq("test-uuid-123"), eq("testFileUploader"), anyString()))
+                    .thenReturn(testFileMetadata);
+            when(fileService.getStoredFile(testFileMetadata)).thenReturn(tempFile);
 
             // Act & Assert
             mockMvc.perform(get("/user/files/download/{uuid}", "test-uuid-123"))
@@ -361,8 +587,8 @@ class UserFileControllerTest {
                     .andExpect(header().string("Content-Disposition",
                             "attachment; filename=\"test-file.txt\""));
 
-            verify(fileService).downloadFile("test-uuid-123");
-            verify(fileService).getFileMetadata("test-uuid-123");
+            verify(fileService).authorizeDownload(eq("test-uuid-123"), eq("testFileUploader"), anyString());
+            verify(userRepository, never()).findByUsername(any());
         }
 
         @Test
@@ -370,14 +596,14 @@ class UserFileControllerTest {
         @DisplayName("Should return 404 when file not found for download")
         void shouldReturn404WhenFileNotFoundForDownload() throws Exception {
             // Arrange
-            when(fileService.downloadFile("non-existent-uuid"))
+            when(fileService.authorizeDownload(eq("non-existent-uuid"), eq("testFileUploader"), anyString()))
                     .thenThrow(new FileNotFoundException("File not found"));
 
             // Act & Assert
             mockMvc.perform(get("/user/files/download/{uuid}", "non-existent-uuid"))
                     .andExpect(status().isNotFound());
 
-            verify(fileService).downloadFile("non-existent-uuid");
+            verify(fileService).authorizeDownload(eq("non-existent-uuid"), eq("testFileUploader"), anyString());
         }
 
         @Test
@@ -385,14 +611,14 @@ class UserFileControllerTest {
         @DisplayName("Should return 403 when access is denied")
         void shouldReturn403WhenAccessDenied() throws Exception {
             // Arrange
-            when(fileService.downloadFile("test-uuid-123"))
+            when(fileService.authorizeDownload(eq("test-uuid-123"), eq("testFileUploader"), anyString()))
                     .thenThrow(new IllegalAccessException("Access denied"));
 
             // Act & Assert
             mockMvc.perform(get("/user/files/download/{uuid}", "test-uuid-123"))
                     .andExpect(status().isForbidden());
 
-            verify(fileService).downloadFile("test-uuid-123");
+            verify(fileService).authorizeDownload(eq("test-uuid-123"), eq("testFileUploader"), anyString());
         }
 
         @Test
@@ -405,14 +631,15 @@ class UserFileControllerTest {
             tempFile.deleteOnExit();
             testFileMetadata.setPublic(true);
             testFileMetadata.setOwner(tempUser);
-            when(fileService.downloadFile("test-uuid-123")).thenReturn(tempFile);
-            when(fileService.getFileMetadata("test-uuid-123")).thenReturn(testFileMetadata);
+            when(fileService.authorizeDownload(eq("test-uuid-123"), eq("testFileUploader"), anyString()))
+                    .thenReturn(testFileMetadata);
+            when(fileService.getStoredFile(testFileMetadata)).thenReturn(tempFile);
 
             // Act & Assert
             mockMvc.perform(get("/user/files/download/{uuid}", "test-uuid-123"))
                     .andExpect(status().isOk());
 
-            verify(fileService).downloadFile("test-uuid-123");
+            verify(fileService).authorizeDownload(eq("test-uuid-123"), eq("testFileUploader"), anyString());
         }
     }
 
@@ -0,0 +1,242 @@
+package com.proximashare.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+import java.io.OutputStream;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import com.proximashare.app.config.DownloadConfig;
+import com.proximashare.exception.DownloadBusyException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Rate harness: pushes bytes through shaped streams into a null sink and compares the
+ * achieved throughput with the configured rates. Rates are small so each case takes about
+ * two seconds; the tolerance absorbs the initial burst and scheduler jitter.
+ */
+@DisplayName("BandwidthShaper Unit Tests")
+class BandwidthShaperTest {
+    private static final long RATE = 256 * 1024;  // bytes/second
+    private static final double TOLERANCE = 0.25;
+
+    private DownloadConfig downloadConfig;
+    private SimpleMeterRegistry meterRegistry;
+    private BandwidthShaper shaper;
+    private ExecutorService executor;
+    private double elapsedSeconds;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        downloadConfig = new DownloadConfig();
+        downloadConfig.setShapingEnabled(true);
+        downloadConfig.setShapingBurst(16 * 1024);
+
+        meterRegistry = new SimpleMeterRegistry();
+        ObjectProvider<MeterRegistry> provider = mock(ObjectProvider.class);
+        doAnswer(invocation -> {
+            invocation.<java.util.function.Consumer<MeterRegistry>>getArgument(0).accept(meterRegistry);
+            return null;
+        }).when(provider).ifAvailable(any());
+        shaper = new BandwidthShaper(downloadConfig, provider);
+        executor = Executors.newFixedThreadPool(4);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    private MockHttpServletRequest anonymous(String address) {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setRemoteAddr(address);
+        return request;
+    }
+
+    private MockHttpServletRequest user(String username) {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setUserPrincipal(() -> username);
+        return request;
+    }
+
+    // Bytes written through the request's shaped stream until the deadline
+    private long pump(MockHttpServletRequest request, long deadlineNanos) throws Exception {
+        byte[] chunk = new byte[64 * 1024];
+        long written = 0;
+        try (BandwidthShaper.Stream stream = shaper.open(null, request)) {
+            OutputStream out = BandwidthShaper.shape(request, OutputStream.nullOutputStream());
+            while (System.nanoTime() < deadlineNanos) {
+                out.write(chunk);
+                written += chunk.length;
+            }
+        }
+        return written;
+    }
+
+    private long[] pumpConcurrently(long seconds, MockHttpServletRequest... requests) throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        Future<?>[] futures = new Future<?>[requests.length];
+        for (int i = 0; i < requests.length; i++) {
+            MockHttpServletRequest request = requests[i];
+            futures[i] = executor.submit(() -> {
+                start.await();
+                return pump(request, deadline);
+            });
+        }
+        long started = System.nanoTime();
+        start.countDown();
+        long[] written = new long[requests.length];
+        for (int i = 0; i < requests.length; i++) {
+            written[i] = (Long) futures[i].get(10, TimeUnit.SECONDS);
+        }
+        // The last write of each stream may finish after the deadline; it counts, and so does its time
+        elapsedSeconds = (System.nanoTime() - started) / 1e9;
+        return written;
+    }
+
+    private void assertRate(long expectedBytesPerSecond, long bytes) {
+        double achieved = bytes / elapsedSeconds;
+        assertTrue(Math.abs(achieved - expectedBytesPerSecond) <= expectedBytesPerSecond * TOLERANCE,
+                "achieved " + (long) achieved + " B/s, expected about " + expectedBytesPerSecond + " B/s");
+    }
+
+    @Test
+    @DisplayName("Should hold one download to the per-connection rate")
+    void shouldLimitConnection() throws Exception {
+        // Arrange
+        downloadConfig.setConnectionRate(RATE);
+
+        // Act
+        long written = pumpConcurrently(2, anonymous("10.0.0.1"))[0];
+
+        // Assert
+        assertRate(RATE, written);
+    }
+
+    @Test
+    @DisplayName("Should share the per-user rate across all of a user's downloads")
+    void shouldLimitUserAcrossDownloads() throws Exception {
+        // Arrange
+        downloadConfig.setUserRate(RATE);
+
+        // Act
+        long[] written = pumpConcurrently(2, user("alice"), user("alice"));
+
+        // Assert
+        assertRate(RATE, written[0] + written[1]);
+    }
+
+    @Test
+    @DisplayName("Should give anonymous addresses their own tier rate")
+    void shouldLimitAnonymousAddressesSeparately() throws Exception {
+        // Arrange
+        downloadConfig.setAnonymousRate(RATE);
+
+        // Act
+        long[] written = pumpConcurrently(2, anonymous("10.0.0.1"), anonymous("10.0.0.2"));
+
+        // Assert
+        assertRate(RATE, written[0]);
+        assertRate(RATE, written[1]);
+    }
+
+    @Test
+    @DisplayName("Should split the node rate fairly between competing downloads")
+    void shouldShareNodeRateFairly() throws Exception {
+        // Arrange
+        downloadConfig.setNodeRate(RATE);
+
+        // Act
+        long[] written = pumpConcurrently(2, anonymous("10.0.0.1"), user("bob"), anonymous("10.0.0.3"));
+
+        // Assert
+        assertRate(RATE, written[0] + written[1] + written[2]);
+        long min = Math.min(written[0], Math.min(written[1], written[2]));
+        long max = Math.max(written[0], Math.max(written[1], written[2]));
+        assertTrue(min >= max * 0.7, "unfair split: " + min + " vs " + max);
+    }
+
+    @Test
+    @DisplayName("Should refuse a stream beyond the per-file cap until one closes")
+    void shouldCapStreamsPerFile() {
+        // Arrange
+        downloadConfig.setMaxStreamsPerFile(1);
+        BandwidthShaper.Stream first = shaper.open("file-1", anonymous("10.0.0.1"));
+
+        // Act & Assert
+        DownloadBusyException busy = assertThrows(DownloadBusyException.class,
+                () -> shaper.open("file-1", anonymous("10.0.0.2")));
+        assertEquals(5, busy.getRetryAfterSeconds());
+        shaper.open("file-2", anonymous("10.0.0.2")).close();
+
+        first.close();
+        shaper.open("file-1", anonymous("10.0.0.2")).close();
+        assertEquals(0, shaper.getActiveStreams());
+    }
+
+    @Test
+    @DisplayName("Should leave the body stream alone when shaping is off")
+    void shouldNotShapeWhenDisabled() {
+        // Arrange
+        downloadConfig.setShapingEnabled(false);
+        downloadConfig.setConnectionRate(RATE);
+        MockHttpServletRequest request = anonymous("10.0.0.1");
+        OutputStream sink = OutputStream.nullOutputStream();
+
+        // Act
+        try (BandwidthShaper.Stream stream = shaper.open("file-1", request)) {
+            // Assert
+            assertSame(sink, BandwidthShaper.shape(request, sink));
+            assertFalse(BandwidthShaper.isShaped(request));
+        }
+    }
+
+    @Test
+    @DisplayName("Should keep a body holding a file slot off sendfile")
+    void shouldTreatFileSlotAsShaped() {
+        // Arrange
+        downloadConfig.setShapingEnabled(false);
+        downloadConfig.setMaxStreamsPerFile(2);
+        MockHttpServletRequest request = anonymous("10.0.0.1");
+
+        // Act
+        try (BandwidthShaper.Stream stream = shaper.open("file-1", request)) {
+            // Assert
+            assertTrue(BandwidthShaper.isShaped(request));
+        }
+    }
+
+    @Test
+    @DisplayName("Should meter a download at the user rate when the username is given")
+    void shouldMeterGivenUserAtUserRate() {
+        // Arrange - a ticket download carries no principal, only the ticket's username
+        downloadConfig.setUserRate(RATE);
+        MockHttpServletRequest request = anonymous("10.0.0.1");
+        OutputStream sink = OutputStream.nullOutputStream();
+
+        // Act
+        try (BandwidthShaper.Stream stream = shaper.open(null, "alice", request)) {
+            // Assert
+            assertNotSame(sink, BandwidthShaper.shape(request, sink));
+        }
+        MockHttpServletRequest anonymousRequest = anonymous("10.0.0.1");
+        try (BandwidthShaper.Stream stream = shaper.open(null, anonymousRequest)) {
+            assertSame(sink, BandwidthShaper.shape(anonymousRequest, sink));
+        }
+    }
+}
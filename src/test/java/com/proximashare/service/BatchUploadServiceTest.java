@@ -0,0 +1,182 @@
+package com.proximashare.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.web.multipart.MultipartFile;
+
+import com.proximashare.app.config.FileUploadConfig;
+import com.proximashare.dto.BatchUploadResponse;
+import com.proximashare.entity.FileMetadata;
+import com.proximashare.entity.User;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("BatchUploadService Unit Tests")
+class BatchUploadServiceTest {
+
+    @Mock
+    private FileService fileService;
+
+    private BatchUploadService batchUploadService;
+    private User testUser;
+
+    @BeforeEach
+    void setUp() {
+        FileUploadConfig uploadConfig = new FileUploadConfig();
+        uploadConfig.setBatchMaxFiles(3);
+        uploadConfig.setBatchParallelism(2);
+        batchUploadService = new BatchUploadService(fileService, uploadConfig);
+
+        testUser = new User();
+        testUser.setId(1L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        batchUploadService.shutdown();
+    }
+
+    @Test
+    @DisplayName("Should insert all prepared files with one saveAll")
+    void shouldSaveAllFilesInOneBatch() {
+        // Arrange
+        MultipartFile first = file("a.txt", "first");
+        MultipartFile second = file("b.txt", "second");
+        when(fileService.prepareUserUpload(any(), eq(testUser))).thenAnswer(invocation ->
+                metadata("uuid-" + ((MultipartFile) invocation.getArgument(0)).getOriginalFilename(),
+                        ((MultipartFile) invocation.getArgument(0)).getOriginalFilename()));
+        when(fileService.saveUploads(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        // Act
+        BatchUploadResponse response = batchUploadService.uploadFilesForUser(List.of(first, second), testUser);
+
+        // Assert
+        assertEquals(2, response.getUploaded());
+        assertEquals(0, response.getFailed());
+        assertEquals("uuid-a.txt", response.getResults().get(0).getUuid());
+        assertEquals("uuid-b.txt", response.getResults().get(1).getUuid());
+        verify(fileService).saveUploads(argThat(rows -> ((List<?>) rows).size() == 2));
+        verify(fileService, never()).saveUpload(any());
+    }
+
+    @Test
+    @DisplayName("Should write files on the request thread once the queue is full")
+    void shouldRunOnCallerWhenQueueIsFull() {
+        // Arrange
+        batchUploadService.shutdown();
+        FileUploadConfig uploadConfig = new FileUploadConfig();
+        uploadConfig.setBatchParallelism(1);
+        uploadConfig.setBatchQueueCapacity(1);
+        batchUploadService = new BatchUploadService(fileService, uploadConfig);
+
+        List<MultipartFile> files = List.of(file("a.txt", "a"), file("b.txt", "b"), file("c.txt", "c"), file("d.txt", "d"));
+        Thread caller = Thread.currentThread();
+        List<Thread> writers = new CopyOnWriteArrayList<>();
+        when(fileService.prepareUserUpload(any(), eq(testUser))).thenAnswer(invocation -> {
+            writers.add(Thread.currentThread());
+            Thread.sleep(50);
+            MultipartFile part = invocation.getArgument(0);
+            return metadata("uuid-" + part.getOriginalFilename(), part.getOriginalFilename());
+        });
+        when(fileService.saveUploads(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        // Act
+        BatchUploadResponse response = batchUploadService.uploadFilesForUser(files, testUser);
+
+        // Assert
+        assertEquals(4, response.getUploaded());
+        assertTrue(writers.contains(caller), "Files past the queue capacity are written by the request thread");
+    }
+
+    @Test
+    @DisplayName("Should report a failing file without aborting the others")
+    void shouldIsolateFailingFile() {
+        // Arrange
+        MultipartFile good = file("good.txt", "content");
+        MultipartFile tooLarge = file("huge.iso", "content");
+        when(fileService.prepareUserUpload(same(good), eq(testUser))).thenReturn(metadata("uuid-good", "good.txt"));
+        when(fileService.prepareUserUpload(same(tooLarge), eq(testUser)))
+                .thenThrow(new IllegalArgumentException("File size exceeds 5GB limit"));
+        when(fileService.saveUploads(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        // Act
+        BatchUploadResponse response = batchUploadService.uploadFilesForUser(List.of(good, tooLarge), testUser);
+
+        // Assert
+        assertEquals(1, response.getUploaded());
+        assertEquals(1, response.getFailed());
+        assertTrue(response.getResults().get(0).isSuccess());
+        assertFalse(response.getResults().get(1).isSuccess());
+        assertEquals("File size exceeds 5GB limit", response.getResults().get(1).getMessage());
+    }
+
+    @Test
+    @DisplayName("Should fall back to row-by-row saves when the batch insert fails")
+    void shouldFallBackWhenBatchInsertFails() {
+        // Arrange
+        MultipartFile first = file("a.txt", "first");
+        MultipartFile second = file("b.txt", "second");
+        FileMetadata firstMetadata = metadata("uuid-a", "a.txt");
+        FileMetadata secondMetadata = metadata("uuid-b", "b.txt");
+        when(fileService.prepareUserUpload(same(first), eq(testUser))).thenReturn(firstMetadata);
+        when(fileService.prepareUserUpload(same(second), eq(testUser))).thenReturn(secondMetadata);
+        when(fileService.saveUploads(anyList())).thenThrow(new DataIntegrityViolationException("duplicate"));
+        when(fileService.saveUpload(firstMetadata)).thenReturn(firstMetadata);
+        when(fileService.saveUpload(secondMetadata)).thenThrow(new DataIntegrityViolationException("duplicate"));
+
+        // Act
+        BatchUploadResponse response = batchUploadService.uploadFilesForUser(List.of(first, second), testUser);
+
+        // Assert
+        assertEquals(1, response.getUploaded());
+        assertTrue(response.getResults().get(0).isSuccess());
+        assertFalse(response.getResults().get(1).isSuccess());
+    }
+
+    @Test
+    @DisplayName("Should reject a batch over the file limit before storing anything")
+    void shouldRejectTooManyFiles() {
+        // Arrange
+        List<MultipartFile> files = List.of(file("1", "x"), file("2", "x"), file("3", "x"), file("4", "x"));
+
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> batchUploadService.uploadFilesForUser(files, testUser));
+        verifyNoInteractions(fileService);
+    }
+
+    @Test
+    @DisplayName("Should mark empty parts as failed")
+    void shouldFailEmptyPart() {
+        // Act
+        BatchUploadResponse response = batchUploadService.uploadFilesForUser(List.of(file("empty.txt", "")), testUser);
+
+        // Assert
+        assertEquals(1, response.getFailed());
+        assertEquals("File is missing", response.getResults().get(0).getMessage());
+        verify(fileService, never()).prepareUserUpload(any(), any());
+    }
+
+    private MultipartFile file(String name, String content) {
+        return new MockMultipartFile("files", name, "text/plain", content.getBytes());
+    }
+
+    private FileMetadata metadata(String uuid, String filename) {
+        FileMetadata metadata = new FileMetadata();
+        metadata.setUuid(uuid);
+        metadata.setFilename(filename);
+        return metadata;
+    }
+}
@@ -0,0 +1,211 @@
+package com.proximashare.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.io.ByteArrayInputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionSystemException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.proximashare.app.config.FileStorageConfig;
+import com.proximashare.entity.FileBlob;
+import com.proximashare.repository.FileBlobRepository;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("BlobStore Unit Tests")
+class BlobStoreTest {
+
+    // SHA-256 of "hello world"
+    private static final String HELLO_DIGEST = "b94d27b9934d3e08a52e52d7da7dabfac484efe37a5380ee9088f7ace2efcde9";
+
+    @Mock
+    private FileBlobRepository fileBlobRepository;
+
+    @TempDir
+    Path tempDir;
+
+    private FileStorageConfig storageConfig;
+    private BlobStore blobStore;
+
+    @BeforeEach
+    void setUp() {
+        storageConfig = new FileStorageConfig();
+        storageConfig.setTreeLeafSize(4);
+        storageConfig.setHashParallelism(2);
+        blobStore = new BlobStore(fileBlobRepository, storageConfig, new TreeHasher(storageConfig),
+                new StorageWriter(storageConfig), new TransactionTemplate(mock(PlatformTransactionManager.class)),
+                tempDir.toString());
+    }
+
+    @Test
+    @DisplayName("Should store new content once under its digest")
+    void shouldStoreNewContentUnderDigest() throws Exception {
+        // Arrange
+        when(fileBlobRepository.incrementRefCount(HELLO_DIGEST)).thenReturn(0);
+
+        // Act
+        BlobStore.StoredBlob blob = blobStore.store(new ByteArrayInputStream("hello world".getBytes()), 1024);
+
+        // Assert
+        assertEquals(HELLO_DIGEST, blob.digest());
+        assertEquals(11L, blob.size());
+        assertEquals("hello world", Files.readString(blobStore.resolve(HELLO_DIGEST)));
+        verify(fileBlobRepository).saveAndFlush(argThat((FileBlob saved) ->
+                saved.getDigest().equals(HELLO_DIGEST) && saved.getRefCount() == 1));
+    }
+
+    @Test
+    @DisplayName("Should only add a reference for duplicate content")
+    void shouldDeduplicateExistingContent() throws Exception {
+        // Arrange
+        when(fileBlobRepository.incrementRefCount(HELLO_DIGEST)).thenReturn(1);
+
+        // Act
+        BlobStore.StoredBlob blob = blobStore.store(new ByteArrayInputStream("hello world".getBytes()), 1024);
+
+        // Assert
+        assertEquals(HELLO_DIGEST, blob.digest());
+        assertFalse(Files.exists(blobStore.resolve(HELLO_DIGEST)), "Duplicate bytes should not be written again");
+        try (var incoming = Files.list(tempDir.resolve(".incoming"))) {
+            assertEquals(0, incoming.count(), "Temporary copy should be removed");
+        }
+        verify(fileBlobRepository, never()).saveAndFlush(any());
+    }
+
+    @Test
+    @DisplayName("Should cut off an oversized stream and remove the partial file")
+    void shouldCutOffOversizedStream() throws Exception {
+        // Act & Assert
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
+                () -> blobStore.store(new ByteArrayInputStream(new byte[100_000]), 10));
+
+        assertTrue(exception.getMessage().contains("File size exceeds"));
+        try (var incoming = Files.list(tempDir.resolve(".incoming"))) {
+            assertEquals(0, incoming.count());
+        }
+        verifyNoInteractions(fileBlobRepository);
+    }
+
+    @Test
+    @DisplayName("Should adopt a copy of a file and leave the original in place")
+    void shouldStoreCopyKeepingOriginal() throws Exception {
+        // Arrange
+        Path legacyFile = tempDir.resolve("legacy-uuid.txt");
+        Files.writeString(legacyFile, "hello world");
+        when(fileBlobRepository.incrementRefCount(HELLO_DIGEST)).thenReturn(0);
+
+        // Act
+        BlobStore.StoredBlob blob = blobStore.storeCopy(legacyFile);
+
+        // Assert
+        assertEquals(HELLO_DIGEST, blob.digest());
+        assertEquals("hello world", Files.readString(blobStore.resolve(HELLO_DIGEST)));
+        assertEquals("hello world", Files.readString(legacyFile), "The original must survive until its row is updated");
+        try (var incoming = Files.list(tempDir.resolve(".incoming"))) {
+            assertEquals(0, incoming.count());
+        }
+    }
+
+    @Test
+    @DisplayName("Should delete bytes only when the last reference is released")
+    void shouldDeleteOnLastRelease() throws Exception {
+        // Arrange
+        Path blobFile = blobStore.resolve(HELLO_DIGEST);
+        Files.createDirectories(blobFile.getParent());
+        Files.writeString(blobFile, "hello world");
+        when(fileBlobRepository.deleteIfUnreferenced(HELLO_DIGEST)).thenReturn(0, 1);
+
+        // Act & Assert - still referenced
+        blobStore.release(HELLO_DIGEST);
+        assertTrue(Files.exists(blobFile));
+
+        // Act & Assert - last reference
+        blobStore.release(HELLO_DIGEST);
+        assertFalse(Files.exists(blobFile));
+        verify(fileBlobRepository, times(2)).decrementRefCount(HELLO_DIGEST);
+    }
+
+    @Test
+    @DisplayName("Should put the bytes back when the row delete does not commit")
+    void shouldRestoreBlobWhenReleaseRollsBack() throws Exception {
+        // Arrange
+        PlatformTransactionManager failingCommit = mock(PlatformTransactionManager.class);
+        doThrow(new TransactionSystemException("Commit failed")).when(failingCommit).commit(any());
+        blobStore = new BlobStore(fileBlobRepository, storageConfig, new TreeHasher(storageConfig),
+                new StorageWriter(storageConfig), new TransactionTemplate(failingCommit), tempDir.toString());
+        Path blobFile = blobStore.resolve(HELLO_DIGEST);
+        Files.createDirectories(blobFile.getParent());
+        Files.writeString(blobFile, "hello world");
+        when(fileBlobRepository.deleteIfUnreferenced(HELLO_DIGEST)).thenReturn(1);
+
+        // Act & Assert
+        assertThrows(TransactionSystemException.class, () -> blobStore.release(HELLO_DIGEST));
+        assertEquals("hello world", Files.readString(blobFile));
+        try (var siblings = Files.list(blobFile.getParent())) {
+            assertEquals(1, siblings.count(), "Nothing should be left aside");
+        }
+        verify(fileBlobRepository).findForUpdate(HELLO_DIGEST);
+    }
+
+    @Test
+    @DisplayName("Should keep variants next to their blob and delete them with it")
+    void shouldStoreAndDeleteVariants() throws Exception {
+        // Arrange
+        Path blobFile = blobStore.resolve(HELLO_DIGEST);
+        Files.createDirectories(blobFile.getParent());
+        Files.writeString(blobFile, "hello world");
+        when(fileBlobRepository.deleteIfUnreferenced(HELLO_DIGEST)).thenReturn(1);
+
+        // Act
+        blobStore.storeVariant(HELLO_DIGEST, ContentCoding.GZIP, writeTemp("compressed"));
+
+        // Assert
+        Path variant = ContentCoding.GZIP.variantOf(blobFile);
+        assertEquals("compressed", Files.readString(variant));
+        blobStore.release(HELLO_DIGEST);
+        assertFalse(Files.exists(variant));
+
+        // A variant of a blob that is already gone is dropped
+        Path orphan = writeTemp("compressed");
+        blobStore.storeVariant(HELLO_DIGEST, ContentCoding.GZIP, orphan);
+        assertFalse(Files.exists(variant));
+        assertFalse(Files.exists(orphan));
+    }
+
+    @Test
+    @DisplayName("Should key tree-hashed content by its Merkle root and keep the leaf hashes")
+    void shouldStoreTreeHashedContent() throws Exception {
+        // Arrange
+        storageConfig.setHashMode(FileStorageConfig.HashMode.TREE);
+        when(fileBlobRepository.incrementRefCount(anyString())).thenReturn(0);
+        TreeHasher.TreeDigest expected = new TreeHasher(storageConfig).hash(writeTemp("hello world"));
+
+        // Act
+        BlobStore.StoredBlob blob = blobStore.store(new ByteArrayInputStream("hello world".getBytes()), 1024);
+
+        // Assert
+        assertEquals(expected.root(), blob.digest());
+        assertNotEquals(HELLO_DIGEST, blob.digest());
+        assertTrue(Files.exists(blobStore.resolve(blob.digest())));
+        verify(fileBlobRepository).saveAndFlush(argThat((FileBlob saved) ->
+                saved.getLeafSize() == 4 && saved.getLeafHashes().length == 3 * TreeHasher.HASH_LENGTH));
+    }
+
+    private Path writeTemp(String content) throws Exception {
+        Path file = Files.createTempFile(tempDir, "expected", ".bin");
+        Files.writeString(file, content);
+        return file;
+    }
+}
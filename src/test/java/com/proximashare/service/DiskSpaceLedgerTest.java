@@ -0,0 +1,91 @@
+package com.proximashare.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.proximashare.app.config.FileStorageConfig;
+import com.proximashare.exception.InsufficientStorageException;
+
+@DisplayName("DiskSpaceLedger Unit Tests")
+class DiskSpaceLedgerTest {
+
+    @TempDir
+    Path tempDir;
+
+    private DiskSpaceLedger ledger;
+
+    @BeforeEach
+    void setUp() {
+        FileStorageConfig storageConfig = new FileStorageConfig();
+        storageConfig.setMinFreeSpace(100);
+        ledger = spy(new DiskSpaceLedger(storageConfig, tempDir.toString()));
+        doReturn(1_000L).when(ledger).getUsableSpace();  // 900 bytes usable for uploads
+    }
+
+    @Test
+    @DisplayName("Should refuse a reservation that outstanding reservations leave no room for")
+    void shouldRefuseWhenReservedSpaceRunsOut() {
+        // Arrange
+        ledger.reserve(600);
+
+        // Act & Assert
+        assertThrows(InsufficientStorageException.class, () -> ledger.reserve(400));
+        assertDoesNotThrow(() -> ledger.reserve(300));
+        assertEquals(900, ledger.getOutstandingBytes());
+    }
+
+    @Test
+    @DisplayName("Should hand back the unwritten part of a reservation on close")
+    void shouldReleaseRemainderOnClose() {
+        // Arrange
+        DiskSpaceLedger.Reservation reservation = ledger.reserve(500);
+
+        // Act
+        reservation.consume(200);
+        assertEquals(300, ledger.getOutstandingBytes());
+        reservation.close();
+        reservation.close();
+
+        // Assert
+        assertEquals(0, ledger.getOutstandingBytes());
+    }
+
+    @Test
+    @DisplayName("Should consume the reservation as a tracked stream is read")
+    void shouldConsumeWhileReading() throws Exception {
+        // Arrange
+        DiskSpaceLedger.Reservation reservation = ledger.reserve(500);
+
+        // Act
+        try (InputStream in = reservation.track(new ByteArrayInputStream(new byte[120]))) {
+            in.readAllBytes();
+        }
+
+        // Assert
+        assertEquals(380, ledger.getOutstandingBytes());
+    }
+
+    @Test
+    @DisplayName("Should never consume more than was reserved")
+    void shouldNotConsumePastReservation() {
+        // Arrange
+        ledger.reserve("session-1", 100);
+
+        // Act
+        ledger.consume("session-1", 250);
+
+        // Assert
+        assertEquals(0, ledger.getOutstandingBytes());
+        ledger.release("session-1");
+        assertEquals(0, ledger.getOutstandingBytes());
+    }
+}
@@ -0,0 +1,139 @@
+package com.proximashare.service;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.proximashare.ProximaShareApplication;
+import com.proximashare.config.TestSecurityConfig;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+
+import com.proximashare.entity.FileMetadata;
+import com.proximashare.repository.FileMetadataRepository;
+
+@SpringBootTest(classes = ProximaShareApplication.class)
+@ActiveProfiles("test")
+@Import(TestSecurityConfig.class)
+@TestPropertySource(properties = {
+        "file.storage.path=${java.io.tmpdir}/download-count-integration-test",
+        "app.upload.public-max-downloads=5"
+})
+@DisplayName("Download Count Concurrency Integration Tests")
+class DownloadCountConcurrencyIntegrationTest {
+
+    private static final int THREADS = 32;
+    private static final int REQUESTS_PER_THREAD = 8;
+
+    @Autowired
+    private FileMetadataRepository fileMetadataRepository;
+
+    @Autowired
+    private FileService fileService;
+
+    @BeforeEach
+    void setUp() {
+        fileMetadataRepository.deleteAll();
+        fileMetadataRepository.flush();
+    }
+
+    @AfterEach
+    void tearDown() {
+        fileMetadataRepository.deleteAll();
+    }
+
+    @Test
+    @DisplayName("Should never count more downloads than the limit under concurrent requests")
+    void shouldNotOvershootLimitUnderContention() throws Exception {
+        // Arrange
+        FileMetadata metadata = new FileMetadata("hot-uuid", "hot.zip", 100L,
+                LocalDateTime.now(), LocalDateTime.now().plusDays(1), 0);
+        metadata.setPublic(true);
+        fileMetadataRepository.save(metadata);
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger granted = new AtomicInteger();
+        AtomicInteger refused = new AtomicInteger();
+
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            tasks.add(() -> {
+                start.await();
+                for (int r = 0; r < REQUESTS_PER_THREAD; r++) {
+                    try {
+                        fileService.authorizeDownload("hot-uuid", null, null);
+                        granted.incrementAndGet();
+                    } catch (IllegalAccessException e) {
+                        refused.incrementAndGet();
+                    }
+                }
+                return null;
+            });
+        }
+
+        // Act - release all threads at once against the same row
+        List<Future<Void>> futures = new ArrayList<>();
+        for (Callable<Void> task : tasks) {
+            futures.add(executor.submit(task));
+        }
+        start.countDown();
+        for (Future<Void> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        // Assert
+        assertThat(granted.get()).isEqualTo(5);
+        assertThat(refused.get()).isEqualTo(THREADS * REQUESTS_PER_THREAD - 5);
+        assertThat(fileMetadataRepository.findById("hot-uuid").orElseThrow().getDownloadCount()).isEqualTo(5);
+    }
+
+    @Test
+    @DisplayName("Should not count a refused download of someone else's private file")
+    void shouldNotCountUnauthorizedDownload() {
+        // Arrange
+        FileMetadata metadata = new FileMetadata("private-uuid", "private.txt", 100L,
+                LocalDateTime.now(), LocalDateTime.now().plusDays(1), 0);
+        metadata.setPublic(false);
+        fileMetadataRepository.save(metadata);
+
+        // Act & Assert
+        assertThatThrownBy(() -> fileService.authorizeDownload("private-uuid", null, null))
+                .isInstanceOf(IllegalAccessException.class);
+        assertThatThrownBy(() -> fileService.authorizeDownload("private-uuid", "someone-else", null))
+                .isInstanceOf(IllegalAccessException.class);
+        assertThat(fileMetadataRepository.findById("private-uuid").orElseThrow().getDownloadCount()).isZero();
+    }
+
+    @Test
+    @DisplayName("Should not count downloads of an expired file")
+    void shouldNotCountExpiredFile() {
+        // Arrange
+        FileMetadata metadata = new FileMetadata("expired-uuid", "old.txt", 100L,
+                LocalDateTime.now().minusDays(2), LocalDateTime.now().minusDays(1), 0);
+        fileMetadataRepository.save(metadata);
+
+        // Act & Assert
+        assertThatThrownBy(() -> fileService.authorizeDownload("expired-uuid", null, null))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("File expired");
+        assertThat(fileMetadataRepository.findById("expired-uuid").orElseThrow().getDownloadCount()).isZero();
+    }
+}
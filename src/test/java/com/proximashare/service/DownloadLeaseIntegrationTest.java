@@ -0,0 +1,128 @@
+package com.proximashare.service;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.proximashare.ProximaShareApplication;
+import com.proximashare.config.TestSecurityConfig;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+
+import com.proximashare.entity.FileMetadata;
+import com.proximashare.repository.FileMetadataRepository;
+
+@SpringBootTest(classes = ProximaShareApplication.class)
+@ActiveProfiles("test")
+@Import(TestSecurityConfig.class)
+@TestPropertySource(properties = {
+        "file.storage.path=${java.io.tmpdir}/download-lease-integration-test",
+        "app.upload.public-max-downloads=200",
+        "app.download.lease-enabled=true",
+        "app.download.lease-size=50",
+        "app.download.lease-hot-threshold=1",
+        "app.download.lease-ttl-seconds=60"
+})
+@DisplayName("Download Lease Integration Tests")
+class DownloadLeaseIntegrationTest {
+
+    private static final int THREADS = 32;
+    private static final int REQUESTS_PER_THREAD = 10;
+
+    @Autowired
+    private FileMetadataRepository fileMetadataRepository;
+
+    @Autowired
+    private FileService fileService;
+
+    @Autowired
+    private DownloadLeaseManager downloadLeaseManager;
+
+    @BeforeEach
+    void setUp() {
+        fileMetadataRepository.deleteAll();
+        fileMetadataRepository.flush();
+    }
+
+    @AfterEach
+    void tearDown() {
+        downloadLeaseManager.shutdown();
+        fileMetadataRepository.deleteAll();
+    }
+
+    @Test
+    @DisplayName("Should grant exactly the limit when hot downloads are served from leases")
+    void shouldNotOvershootLimitWithLeases() throws Exception {
+        // Arrange
+        FileMetadata metadata = new FileMetadata("viral-uuid", "viral.mp4", 100L,
+                LocalDateTime.now(), LocalDateTime.now().plusDays(1), 0);
+        metadata.setPublic(true);
+        fileMetadataRepository.save(metadata);
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger granted = new AtomicInteger();
+
+        // Act
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int r = 0; r < REQUESTS_PER_THREAD; r++) {
+                    try {
+                        fileService.authorizeDownload("viral-uuid", null, null);
+                        granted.incrementAndGet();
+                    } catch (IllegalAccessException e) {
+                        // limit reached
+                    }
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        // Assert - every lease was used up, so nothing is left to return
+        assertThat(granted.get()).isEqualTo(200);
+        downloadLeaseManager.shutdown();
+        assertThat(fileMetadataRepository.findById("viral-uuid").orElseThrow().getDownloadCount()).isEqualTo(200);
+    }
+
+    @Test
+    @DisplayName("Should give unused leased downloads back to the file")
+    void shouldReturnUnusedAllowance() throws Exception {
+        // Arrange
+        FileMetadata metadata = new FileMetadata("warm-uuid", "warm.mp4", 100L,
+                LocalDateTime.now(), LocalDateTime.now().plusDays(1), 0);
+        metadata.setPublic(true);
+        fileMetadataRepository.save(metadata);
+
+        // Act - the first download is counted directly and takes a lease of 50
+        fileService.authorizeDownload("warm-uuid", null, null);
+        fileService.authorizeDownload("warm-uuid", null, null);
+        int countWhileLeased = fileMetadataRepository.findById("warm-uuid").orElseThrow().getDownloadCount();
+        downloadLeaseManager.shutdown();
+
+        // Assert
+        assertThat(countWhileLeased).isEqualTo(51);
+        assertThat(fileMetadataRepository.findById("warm-uuid").orElseThrow().getDownloadCount()).isEqualTo(2);
+    }
+}
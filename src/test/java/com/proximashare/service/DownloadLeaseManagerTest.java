@@ -0,0 +1,186 @@
+package com.proximashare.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.time.LocalDateTime;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import com.proximashare.app.config.DownloadConfig;
+import com.proximashare.app.config.FileUploadConfig;
+import com.proximashare.entity.FileMetadata;
+import com.proximashare.repository.FileMetadataRepository;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("DownloadLeaseManager Unit Tests")
+class DownloadLeaseManagerTest {
+
+    @Mock
+    private FileMetadataRepository fileMetadataRepository;
+
+    private DownloadConfig downloadConfig;
+    private FileUploadConfig uploadConfig;
+    private DownloadLeaseManager leaseManager;
+
+    @BeforeEach
+    void setUp() {
+        downloadConfig = new DownloadConfig();
+        downloadConfig.setLeaseEnabled(true);
+        downloadConfig.setLeaseSize(10);
+        downloadConfig.setLeaseHotThreshold(2);
+        uploadConfig = new FileUploadConfig();
+        uploadConfig.setPublicMaxDownloads(1000);
+        leaseManager = new DownloadLeaseManager(fileMetadataRepository, downloadConfig, uploadConfig);
+    }
+
+    private FileMetadata publicFile(int downloadCount) {
+        FileMetadata metadata = new FileMetadata("hot-uuid", "hot.zip", 100L,
+                LocalDateTime.now(), LocalDateTime.now().plusDays(1), downloadCount);
+        metadata.setPublic(true);
+        return metadata;
+    }
+
+    @Test
+    @DisplayName("Should lease a block once a file is hot and serve it locally")
+    void shouldLeaseHotFile() {
+        // Arrange
+        FileMetadata metadata = publicFile(100);
+        when(fileMetadataRepository.leaseDownloads(eq("hot-uuid"), eq(10), eq(1000), any(LocalDateTime.class)))
+                .thenReturn(1);
+
+        // Act
+        leaseManager.onCounted(metadata);
+        assertNull(leaseManager.tryConsume("hot-uuid"));  // not hot yet
+        leaseManager.onCounted(metadata);
+
+        // Assert
+        for (int i = 0; i < 10; i++) {
+            assertSame(metadata, leaseManager.tryConsume("hot-uuid"));
+        }
+        assertNull(leaseManager.tryConsume("hot-uuid"));
+        assertEquals(0, leaseManager.getActiveLeases());
+        verify(fileMetadataRepository, never()).returnLeasedDownloads(any(), anyInt());
+    }
+
+    @Test
+    @DisplayName("Should never lease more than half of the remaining allowance")
+    void shouldCapBlockAtHalfOfRemaining() {
+        // Arrange
+        downloadConfig.setLeaseHotThreshold(1);
+        FileMetadata metadata = publicFile(990);
+        when(fileMetadataRepository.leaseDownloads(eq("hot-uuid"), eq(5), eq(1000), any(LocalDateTime.class)))
+                .thenReturn(1);
+
+        // Act
+        leaseManager.onCounted(metadata);
+
+        // Assert
+        verify(fileMetadataRepository).leaseDownloads(eq("hot-uuid"), eq(5), eq(1000), any(LocalDateTime.class));
+    }
+
+    @Test
+    @DisplayName("Should count the last downloads one by one")
+    void shouldNotLeaseNearTheLimit() {
+        // Arrange
+        downloadConfig.setLeaseHotThreshold(1);
+
+        // Act
+        leaseManager.onCounted(publicFile(997));
+
+        // Assert
+        verify(fileMetadataRepository, never()).leaseDownloads(any(), anyInt(), anyInt(), any());
+        assertEquals(0, leaseManager.getActiveLeases());
+    }
+
+    @Test
+    @DisplayName("Should never lease under the shipped public download limit")
+    void shouldNotLeaseWithDefaultLimits() {
+        // Arrange - public-max-downloads=3, hot threshold 5, minimum block 2
+        DownloadConfig defaults = new DownloadConfig();
+        defaults.setLeaseEnabled(true);
+        DownloadLeaseManager defaultManager = new DownloadLeaseManager(fileMetadataRepository, defaults, new FileUploadConfig());
+
+        // Act
+        for (int count = 0; count < 3; count++) {
+            defaultManager.onCounted(publicFile(count));
+        }
+
+        // Assert
+        assertFalse(defaultManager.isLeasePossible());
+        assertTrue(leaseManager.isLeasePossible());
+        verifyNoInteractions(fileMetadataRepository);
+    }
+
+    @Test
+    @DisplayName("Should lease blocks down to the configured minimum size")
+    void shouldHonorMinimumBlockSize() {
+        // Arrange
+        downloadConfig.setLeaseHotThreshold(1);
+        downloadConfig.setLeaseMinSize(1);
+        when(fileMetadataRepository.leaseDownloads(eq("hot-uuid"), eq(1), eq(1000), any(LocalDateTime.class)))
+                .thenReturn(1);
+
+        // Act
+        leaseManager.onCounted(publicFile(997));
+
+        // Assert
+        assertNotNull(leaseManager.tryConsume("hot-uuid"));
+        assertNull(leaseManager.tryConsume("hot-uuid"));
+    }
+
+    @Test
+    @DisplayName("Should not lease private files or when leases are disabled")
+    void shouldNotLeasePrivateFiles() {
+        // Arrange
+        downloadConfig.setLeaseHotThreshold(1);
+        FileMetadata privateFile = publicFile(0);
+        privateFile.setPublic(false);
+
+        // Act
+        leaseManager.onCounted(privateFile);
+        downloadConfig.setLeaseEnabled(false);
+        leaseManager.onCounted(publicFile(0));
+
+        // Assert
+        verifyNoInteractions(fileMetadataRepository);
+    }
+
+    @Test
+    @DisplayName("Should return unused allowance when the lease expires")
+    void shouldReturnUnusedOnExpiry() {
+        // Arrange
+        downloadConfig.setLeaseHotThreshold(1);
+        downloadConfig.setLeaseTtlSeconds(0);
+        when(fileMetadataRepository.leaseDownloads(eq("hot-uuid"), eq(10), eq(1000), any(LocalDateTime.class)))
+                .thenReturn(1);
+        leaseManager.onCounted(publicFile(0));
+
+        // Act
+        leaseManager.expireLeases();
+
+        // Assert
+        verify(fileMetadataRepository).returnLeasedDownloads("hot-uuid", 10);
+        assertNull(leaseManager.tryConsume("hot-uuid"));
+    }
+
+    @Test
+    @DisplayName("Should not hold a lease when the database refuses the block")
+    void shouldSkipLeaseWhenBlockDoesNotFit() {
+        // Arrange
+        downloadConfig.setLeaseHotThreshold(1);
+        when(fileMetadataRepository.leaseDownloads(any(), anyInt(), anyInt(), any())).thenReturn(0);
+
+        // Act
+        leaseManager.onCounted(publicFile(0));
+
+        // Assert
+        assertNull(leaseManager.tryConsume("hot-uuid"));
+    }
+}
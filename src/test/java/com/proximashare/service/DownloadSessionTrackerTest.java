@@ -0,0 +1,116 @@
+package com.proximashare.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import com.proximashare.app.config.DownloadConfig;
+
+@DisplayName("DownloadSessionTracker Unit Tests")
+class DownloadSessionTrackerTest {
+
+    private DownloadConfig downloadConfig;
+    private DownloadSessionTracker tracker;
+
+    @BeforeEach
+    void setUp() {
+        downloadConfig = new DownloadConfig();
+        tracker = new DownloadSessionTracker(downloadConfig);
+    }
+
+    @Test
+    @DisplayName("Should start a session on the first request only")
+    void shouldStartSessionOnce() {
+        // Act & Assert
+        assertTrue(tracker.touch("file-1", "client-a"));
+        assertFalse(tracker.touch("file-1", "client-a"));
+        assertTrue(tracker.touch("file-1", "client-b"));
+        assertTrue(tracker.touch("file-2", "client-a"));
+    }
+
+    @Test
+    @DisplayName("Should start a new session once the window has passed")
+    void shouldStartNewSessionAfterWindow() throws Exception {
+        // Arrange
+        downloadConfig.setSessionWindowMinutes(0);
+        tracker.touch("file-1", "client-a");
+        Thread.sleep(5);
+
+        // Act & Assert
+        assertTrue(tracker.touch("file-1", "client-a"));
+    }
+
+    @Test
+    @DisplayName("Should measure the window from the first request, not the latest")
+    void shouldNotSlideWindow() {
+        // Arrange
+        downloadConfig.setSessionWindowMinutes(1);
+
+        // Act & Assert - re-fetching every 40 seconds still starts a session every minute
+        assertTrue(tracker.touch("file-1", "client-a", 0));
+        assertFalse(tracker.touch("file-1", "client-a", 40_000));
+        assertTrue(tracker.touch("file-1", "client-a", 80_000));
+        assertFalse(tracker.touch("file-1", "client-a", 120_000));
+    }
+
+    @Test
+    @DisplayName("Should keep at most the configured number of sessions, dropping the oldest")
+    void shouldBoundTrackedSessions() {
+        // Arrange
+        downloadConfig.setMaxTrackedSessions(2);
+
+        // Act
+        tracker.touch("file-1", "client-a", 0);
+        tracker.touch("file-2", "client-a", 1);
+        tracker.touch("file-3", "client-a", 2);
+
+        // Assert
+        assertEquals(2, tracker.getTrackedSessions());
+        assertFalse(tracker.touch("file-3", "client-a", 3));
+        assertTrue(tracker.touch("file-1", "client-a", 4), "Dropped sessions are counted again");
+    }
+
+    @Test
+    @DisplayName("Should start a new session after a session is forgotten")
+    void shouldForgetSession() {
+        // Arrange
+        tracker.touch("file-1", "client-a");
+
+        // Act
+        tracker.forget("file-1", "client-a");
+
+        // Assert
+        assertTrue(tracker.touch("file-1", "client-a"));
+    }
+
+    @Test
+    @DisplayName("Should evict sessions older than the window")
+    void shouldEvictExpiredSessions() throws Exception {
+        // Arrange
+        downloadConfig.setSessionWindowMinutes(0);
+        tracker.touch("file-1", "client-a");
+        Thread.sleep(5);
+
+        // Act
+        tracker.evictExpired();
+
+        // Assert
+        assertEquals(0, tracker.getTrackedSessions());
+    }
+
+    @Test
+    @DisplayName("Should key authenticated users by name and anonymous clients by address and agent")
+    void shouldBuildClientKey() {
+        // Arrange
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setRemoteAddr("10.0.0.1");
+        request.addHeader("User-Agent", "curl/8.5");
+
+        // Act & Assert
+        assertEquals("user:alice", DownloadSessionTracker.clientKey(request, "alice"));
+        assertEquals("10.0.0.1|curl/8.5", DownloadSessionTracker.clientKey(request, null));
+    }
+}
@@ -0,0 +1,112 @@
+package com.proximashare.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.LocalDateTime;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import com.proximashare.app.config.DownloadConfig;
+import com.proximashare.dto.ByteRange;
+import com.proximashare.entity.FileMetadata;
+import jakarta.servlet.http.HttpServletRequest;
+
+@DisplayName("DownloadTicketService Unit Tests")
+class DownloadTicketServiceTest {
+    private static final String JWT_SECRET = "testSecretKeyForJwtTokenGenerationAndValidationTesting123456";
+
+    private DownloadConfig downloadConfig;
+    private DownloadTicketService ticketService;
+    private FileMetadata metadata;
+
+    @BeforeEach
+    void setUp() {
+        downloadConfig = new DownloadConfig();
+        ticketService = new DownloadTicketService(downloadConfig, JWT_SECRET);
+
+        metadata = new FileMetadata("file-uuid", "report\nfinal.pdf", 1000L,
+                LocalDateTime.of(2026, 1, 2, 3, 4, 5), LocalDateTime.now().plusDays(1), 0);
+        metadata.setBlobDigest("abc123");
+        metadata.setMimeType("application/pdf");
+    }
+
+    @Test
+    @DisplayName("Should carry the file, user and metadata through a minted ticket")
+    void shouldRoundTrip() throws Exception {
+        // Act
+        String ticket = ticketService.mint(metadata, "alice", null, null).getTicket();
+        DownloadTicketService.Ticket verified = ticketService.verify(ticket);
+
+        // Assert
+        assertEquals("alice", verified.username());
+        assertNull(verified.range());
+        assertEquals("file-uuid", verified.metadata().getUuid());
+        assertEquals("report\nfinal.pdf", verified.metadata().getFilename());
+        assertEquals(1000L, verified.metadata().getSize());
+        assertEquals(metadata.getUploadDate(), verified.metadata().getUploadDate());
+        assertEquals("abc123", verified.metadata().getBlobDigest());
+        assertEquals("application/pdf", verified.metadata().getMimeType());
+    }
+
+    @Test
+    @DisplayName("Should refuse tampered, foreign and expired tickets")
+    void shouldRejectInvalidTickets() {
+        // Arrange
+        String ticket = ticketService.mint(metadata, "alice", null, null).getTicket();
+        String otherPayload = ticketService.mint(metadata, "mallory", null, null).getTicket().split("\\.")[0];
+        String forged = otherPayload + ticket.substring(ticket.indexOf('.'));
+
+        DownloadConfig otherConfig = new DownloadConfig();
+        otherConfig.setTicketSecret("another-cluster-secret");
+        String foreign = new DownloadTicketService(otherConfig, JWT_SECRET).mint(metadata, "alice", null, null).getTicket();
+
+        downloadConfig.setTicketTtlSeconds(-1);
+        String expired = ticketService.mint(metadata, "alice", null, null).getTicket();
+
+        // Act & Assert
+        assertEquals("Invalid download ticket",
+                assertThrows(IllegalAccessException.class, () -> ticketService.verify(forged)).getMessage());
+        assertEquals("Invalid download ticket",
+                assertThrows(IllegalAccessException.class, () -> ticketService.verify(foreign)).getMessage());
+        assertEquals("Invalid download ticket",
+                assertThrows(IllegalAccessException.class, () -> ticketService.verify("not-a-ticket")).getMessage());
+        assertEquals("Download ticket expired",
+                assertThrows(IllegalAccessException.class, () -> ticketService.verify(expired)).getMessage());
+    }
+
+    @Test
+    @DisplayName("Should serve the allowed range by default and refuse ranges outside it")
+    void shouldRestrictRange() throws Exception {
+        // Arrange
+        DownloadTicketService.Ticket ticket = ticketService.verify(
+                ticketService.mint(metadata, "alice", 100L, 199L).getTicket());
+        MockHttpServletRequest plain = new MockHttpServletRequest();
+        MockHttpServletRequest inside = new MockHttpServletRequest();
+        inside.addHeader("Range", "bytes=150-160");
+        inside.addHeader("If-Range", "\"stale\"");
+        MockHttpServletRequest outside = new MockHttpServletRequest();
+        outside.addHeader("Range", "bytes=150-250");
+
+        // Act
+        HttpServletRequest defaulted = ticketService.restrictRange(plain, ticket);
+        HttpServletRequest kept = ticketService.restrictRange(inside, ticket);
+
+        // Assert
+        assertEquals(new ByteRange(100, 200), ticket.range());
+        assertEquals("bytes=100-199", defaulted.getHeader("Range"));
+        assertEquals("bytes=150-160", kept.getHeader("Range"));
+        assertNull(kept.getHeader("If-Range"));
+        assertThrows(IllegalAccessException.class, () -> ticketService.restrictRange(outside, ticket));
+    }
+
+    @Test
+    @DisplayName("Should refuse to mint a range beyond the end of the file")
+    void shouldRejectInvalidRange() {
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> ticketService.mint(metadata, "alice", 0L, 1000L));
+        assertThrows(IllegalArgumentException.class, () -> ticketService.mint(metadata, "alice", 500L, 400L));
+    }
+}
@@ -21,7 +21,10 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.junit.jupiter.api.io.TempDir;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import com.proximashare.entity.FileMetadata;
 import com.proximashare.repository.FileMetadataRepository;
@@ -33,6 +36,22 @@ class FileCleanupSchedulerTest {
     @Mock
     private FileMetadataRepository fileMetadataRepository;
 
+    @Mock
+    private BlobStore blobStore;
+
+    @Mock
+    private HotFileCache hotFileCache;
+
+    @Mock
+    private DownloadLeaseManager downloadLeaseManager;
+
+    @Mock
+    private UserUsageService userUsageService;
+
+    // Runs callbacks directly; the usage and file rows are mocks
+    @Spy
+    private TransactionTemplate transactionTemplate = new TransactionTemplate(mock(PlatformTransactionManager.class));
+
     @InjectMocks
     private FileCleanupScheduler fileCleanupScheduler;
 
@@ -81,10 +100,36 @@ class FileCleanupSchedulerTest {
 
             // Assert
             assertThat(expiredFile).doesNotExist(); // File should be deleted
+            verify(userUsageService).release(expiredMetadata);
+            verify(downloadLeaseManager).evict(expiredUuid);
             verify(fileMetadataRepository).delete(expiredMetadata);
             verify(fileMetadataRepository).findAll();
         }
 
+        @Test
+        @DisplayName("Should release the blob of an expired blob-backed file")
+        void shouldReleaseBlobOfExpiredFile() {
+            // Arrange
+            FileMetadata expiredMetadata = new FileMetadata(
+                    "expired-blob-uuid",
+                    "expired-blob.iso",
+                    1024L,
+                    LocalDateTime.now().minusDays(5),
+                    LocalDateTime.now().minusDays(1),
+                    0
+            );
+            expiredMetadata.setBlobDigest("expired-digest");
+
+            when(fileMetadataRepository.findAll()).thenReturn(Collections.singletonList(expiredMetadata));
+
+            // Act
+            fileCleanupScheduler.cleanupExpiredFiles();
+
+            // Assert
+            verify(fileMetadataRepository).delete(expiredMetadata);
+            verify(blobStore).release("expired-digest");
+        }
+
         @Test
         @DisplayName("Should not delete non-expired files")
         void shouldNotDeleteNonExpiredFiles() throws IOException {
@@ -0,0 +1,372 @@
+package com.proximashare.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import com.proximashare.app.config.DownloadConfig;
+import com.proximashare.dto.ByteRange;
+import com.proximashare.entity.FileMetadata;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+@DisplayName("FileDownloadWriter Unit Tests")
+class FileDownloadWriterTest {
+
+    @TempDir
+    Path tempDir;
+
+    private DownloadConfig downloadConfig;
+    private SimpleMeterRegistry meterRegistry;
+    private HotFileCache hotFileCache;
+    private FileDownloadWriter writer;
+    private FileMetadata metadata;
+    private File file;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() throws Exception {
+        downloadConfig = new DownloadConfig();
+        downloadConfig.setZeroCopyMinSize(4);
+
+        meterRegistry = new SimpleMeterRegistry();
+        ObjectProvider<MeterRegistry> provider = mock(ObjectProvider.class);
+        doAnswer(invocation -> {
+            invocation.<java.util.function.Consumer<MeterRegistry>>getArgument(0).accept(meterRegistry);
+            return null;
+        }).when(provider).ifAvailable(any());
+        hotFileCache = new HotFileCache(downloadConfig, provider);
+        writer = new FileDownloadWriter(downloadConfig, hotFileCache, provider);
+
+        metadata = new FileMetadata("file-1", "report.pdf", 10L,
+                LocalDateTime.now(), LocalDateTime.now().plusDays(1), 0);
+        metadata.setMimeType("application/pdf");
+        file = Files.write(tempDir.resolve("blob"), "0123456789".getBytes()).toFile();
+    }
+
+    private double bytesSent(String mode) {
+        return meterRegistry.get("proxima.download.bytes").tag("mode", mode).counter().count();
+    }
+
+    @Test
+    @DisplayName("Should hand the whole file to the container's sendfile when it supports it")
+    void shouldUseSendfileWhenSupported() throws Exception {
+        // Arrange
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setAttribute(FileDownloadWriter.SENDFILE_SUPPORTED_ATTR, Boolean.TRUE);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        // Act
+        writer.write(request, response, metadata, file);
+
+        // Assert
+        assertEquals(200, response.getStatus());
+        assertEquals(10, response.getContentLengthLong());
+        assertEquals("attachment; filename=\"report.pdf\"", response.getHeader("Content-Disposition"));
+        assertEquals(file.getCanonicalPath(), request.getAttribute(FileDownloadWriter.SENDFILE_FILENAME_ATTR));
+        assertEquals(0L, request.getAttribute(FileDownloadWriter.SENDFILE_START_ATTR));
+        assertEquals(10L, request.getAttribute(FileDownloadWriter.SENDFILE_END_ATTR));
+        assertEquals(0, response.getContentAsByteArray().length, "the container writes the body");
+        assertEquals(10.0, bytesSent("sendfile"));
+    }
+
+    @Test
+    @DisplayName("Should sendfile a single range with exclusive end offset")
+    void shouldSendfileSingleRange() throws Exception {
+        // Arrange
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setAttribute(FileDownloadWriter.SENDFILE_SUPPORTED_ATTR, Boolean.TRUE);
+        request.addHeader("Range", "bytes=2-7");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        // Act
+        writer.write(request, response, metadata, file);
+
+        // Assert
+        assertEquals(206, response.getStatus());
+        assertEquals("bytes 2-7/10", response.getHeader("Content-Range"));
+        assertEquals(2L, request.getAttribute(FileDownloadWriter.SENDFILE_START_ATTR));
+        assertEquals(8L, request.getAttribute(FileDownloadWriter.SENDFILE_END_ATTR));
+    }
+
+    @Test
+    @DisplayName("Should copy the body when the container has no sendfile support")
+    void shouldCopyWithoutSendfile() throws Exception {
+        // Arrange
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        // Act
+        writer.write(request, response, metadata, file);
+
+        // Assert
+        assertNull(request.getAttribute(FileDownloadWriter.SENDFILE_FILENAME_ATTR));
+        assertArrayEquals("0123456789".getBytes(), response.getContentAsByteArray());
+        assertEquals(10.0, bytesSent("copy"));
+    }
+
+    @Test
+    @DisplayName("Should copy bodies below the zero-copy threshold")
+    void shouldCopySmallBodies() throws Exception {
+        // Arrange
+        downloadConfig.setZeroCopyMinSize(1024);
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setAttribute(FileDownloadWriter.SENDFILE_SUPPORTED_ATTR, Boolean.TRUE);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        // Act
+        writer.write(request, response, metadata, file);
+
+        // Assert
+        assertNull(request.getAttribute(FileDownloadWriter.SENDFILE_FILENAME_ATTR));
+        assertArrayEquals("0123456789".getBytes(), response.getContentAsByteArray());
+    }
+
+    @Test
+    @DisplayName("Should always copy multipart responses")
+    void shouldCopyMultipartRanges() throws Exception {
+        // Arrange
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setAttribute(FileDownloadWriter.SENDFILE_SUPPORTED_ATTR, Boolean.TRUE);
+        request.addHeader("Range", "bytes=0-1,5-6");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        // Act
+        writer.write(request, response, metadata, file);
+
+        // Assert
+        assertEquals(206, response.getStatus());
+        assertNull(request.getAttribute(FileDownloadWriter.SENDFILE_FILENAME_ATTR));
+        assertEquals(response.getContentAsByteArray().length, response.getContentLengthLong());
+        assertEquals(4.0, bytesSent("copy"));
+    }
+
+    @Test
+    @DisplayName("Should parse closed, open-ended and suffix ranges")
+    void shouldParseRangeForms() {
+        // Act & Assert
+        assertEquals(List.of(new ByteRange(0, 100)), FileDownloadWriter.parseRanges("bytes=0-99", 1000, 16));
+        assertEquals(List.of(new ByteRange(900, 1000)), FileDownloadWriter.parseRanges("bytes=900-", 1000, 16));
+        assertEquals(List.of(new ByteRange(950, 1000)), FileDownloadWriter.parseRanges("bytes=-50", 1000, 16));
+    }
+
+    @Test
+    @DisplayName("Should clip ranges to the file length")
+    void shouldClipToLength() {
+        // Act & Assert
+        assertEquals(List.of(new ByteRange(990, 1000)), FileDownloadWriter.parseRanges("bytes=990-5000", 1000, 16));
+        assertEquals(List.of(new ByteRange(0, 1000)), FileDownloadWriter.parseRanges("bytes=-5000", 1000, 16));
+    }
+
+    @Test
+    @DisplayName("Should sort and coalesce overlapping and adjacent ranges")
+    void shouldCoalesceRanges() {
+        // Act
+        List<ByteRange> ranges = FileDownloadWriter.parseRanges("bytes=500-599,0-9,10-19,550-700", 1000, 16);
+
+        // Assert
+        assertEquals(List.of(new ByteRange(0, 20), new ByteRange(500, 701)), ranges);
+    }
+
+    @Test
+    @DisplayName("Should return no ranges when none is satisfiable")
+    void shouldReturnEmptyWhenUnsatisfiable() {
+        // Act & Assert
+        assertEquals(List.of(), FileDownloadWriter.parseRanges("bytes=1000-1100", 1000, 16));
+        assertEquals(List.of(), FileDownloadWriter.parseRanges("bytes=-0", 1000, 16));
+        assertEquals(List.of(), FileDownloadWriter.parseRanges("bytes=2000-", 1000, 16));
+    }
+
+    @Test
+    @DisplayName("Should ignore malformed headers and too many ranges")
+    void shouldIgnoreInvalidHeaders() {
+        // Act & Assert
+        assertNull(FileDownloadWriter.parseRanges("items=0-5", 1000, 16));
+        assertNull(FileDownloadWriter.parseRanges("bytes=5-2", 1000, 16));
+        assertNull(FileDownloadWriter.parseRanges("bytes=abc-", 1000, 16));
+        assertNull(FileDownloadWriter.parseRanges("bytes=0-1,2-3,4-5", 1000, 2));
+    }
+
+    @Test
+    @DisplayName("Should answer a matching If-None-Match with 304 and the validators")
+    void shouldReturnNotModifiedForMatchingEntityTag() {
+        // Arrange
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader("If-None-Match", "\"other\", W/\"file-1\"");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        // Act & Assert
+        assertTrue(FileDownloadWriter.isConditional(request));
+        assertTrue(writer.checkNotModified(request, response, metadata));
+        assertEquals(304, response.getStatus());
+        assertEquals("\"file-1\"", response.getHeader("ETag"));
+    }
+
+    @Test
+    @DisplayName("Should ignore If-Modified-Since when If-None-Match does not match")
+    void shouldPreferIfNoneMatchOverIfModifiedSince() {
+        // Arrange
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader("If-None-Match", "\"stale\"");
+        request.addHeader("If-Modified-Since", System.currentTimeMillis() + 60_000);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        // Act & Assert
+        assertFalse(writer.checkNotModified(request, response, metadata));
+        assertEquals(200, response.getStatus());
+    }
+
+    @Test
+    @DisplayName("Should answer If-Modified-Since at or after the upload with 304")
+    void shouldReturnNotModifiedSinceUpload() {
+        // Arrange
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader("If-Modified-Since", System.currentTimeMillis() + 60_000);
+        MockHttpServletRequest older = new MockHttpServletRequest();
+        older.addHeader("If-Modified-Since", System.currentTimeMillis() - 3_600_000);
+
+        // Act & Assert
+        assertTrue(writer.checkNotModified(request, new MockHttpServletResponse(), metadata));
+        assertFalse(writer.checkNotModified(older, new MockHttpServletResponse(), metadata));
+    }
+
+    @Test
+    @DisplayName("Should describe the file for HEAD from its metadata alone")
+    void shouldWriteHeadFromMetadata() {
+        // Arrange
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        // Act
+        writer.writeHead(response, metadata);
+
+        // Assert
+        assertEquals(200, response.getStatus());
+        assertEquals(10, response.getContentLengthLong());
+        assertEquals("application/pdf", response.getContentType());
+        assertEquals("bytes", response.getHeader("Accept-Ranges"));
+        assertEquals(0, response.getContentAsByteArray().length);
+    }
+
+    @Test
+    @DisplayName("Should serve cached bodies and ranges from memory")
+    void shouldServeFromHotFileCache() throws Exception {
+        // Arrange
+        downloadConfig.setCacheEnabled(true);
+        writer.write(new MockHttpServletRequest(), new MockHttpServletResponse(), metadata, file);
+        Files.write(file.toPath(), "XXXXXXXXXX".getBytes());  // the cached body is served, not the file
+
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setAttribute(FileDownloadWriter.SENDFILE_SUPPORTED_ATTR, Boolean.TRUE);
+        request.addHeader("Range", "bytes=2-5");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        // Act
+        writer.write(request, response, metadata, file);
+
+        // Assert
+        assertEquals(206, response.getStatus());
+        assertEquals("2345", response.getContentAsString());
+        assertNull(request.getAttribute(FileDownloadWriter.SENDFILE_FILENAME_ATTR));
+        assertEquals(14.0, bytesSent("memory"));
+    }
+
+    @Test
+    @DisplayName("Should serve a stored gzip variant of a whole file when the client accepts it")
+    void shouldServeCompressedVariant() throws Exception {
+        // Arrange
+        metadata.setMimeType("text/plain");
+        metadata.setBlobDigest("abc");
+        try (OutputStream out = ContentCoding.GZIP.encode(Files.newOutputStream(ContentCoding.GZIP.variantOf(file.toPath())))) {
+            out.write("0123456789".getBytes());
+        }
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader("Accept-Encoding", "br, gzip;q=0.8");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        // Act
+        writer.write(request, response, metadata, file);
+
+        // Assert
+        assertEquals(200, response.getStatus());
+        assertEquals("gzip", response.getHeader("Content-Encoding"));
+        assertEquals("\"abc-gzip\"", response.getHeader("ETag"));
+        assertEquals("Accept-Encoding", response.getHeader("Vary"));
+        assertEquals(response.getContentAsByteArray().length, response.getContentLengthLong());
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(response.getContentAsByteArray()))) {
+            assertEquals("0123456789", new String(in.readAllBytes()));
+        }
+    }
+
+    @Test
+    @DisplayName("Should send the uncompressed bytes for ranges and clients that refuse the coding")
+    void shouldServeIdentityWhenVariantDoesNotApply() throws Exception {
+        // Arrange
+        metadata.setMimeType("text/plain");
+        metadata.setBlobDigest("abc");
+        Files.write(ContentCoding.GZIP.variantOf(file.toPath()), "not used".getBytes());
+        MockHttpServletRequest ranged = new MockHttpServletRequest();
+        ranged.addHeader("Accept-Encoding", "gzip");
+        ranged.addHeader("Range", "bytes=0-3");
+        MockHttpServletRequest refusing = new MockHttpServletRequest();
+        refusing.addHeader("Accept-Encoding", "gzip;q=0, *");
+        MockHttpServletResponse rangedResponse = new MockHttpServletResponse();
+        MockHttpServletResponse refusingResponse = new MockHttpServletResponse();
+
+        // Act
+        writer.write(ranged, rangedResponse, metadata, file);
+        writer.write(refusing, refusingResponse, metadata, file);
+
+        // Assert
+        assertEquals(206, rangedResponse.getStatus());
+        assertEquals("0123", rangedResponse.getContentAsString());
+        assertNull(rangedResponse.getHeader("Content-Encoding"));
+        assertEquals("0123456789", refusingResponse.getContentAsString());
+        assertNull(refusingResponse.getHeader("Content-Encoding"));
+        assertEquals("\"abc\"", refusingResponse.getHeader("ETag"));
+    }
+
+    @Test
+    @DisplayName("Should revalidate a copy of an encoded variant by its own tag")
+    void shouldReturnNotModifiedForVariantTag() {
+        // Arrange
+        metadata.setBlobDigest("abc");
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader("If-None-Match", "W/\"abc-gzip\"");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        // Act & Assert
+        assertTrue(writer.checkNotModified(request, response, metadata));
+        assertEquals("\"abc-gzip\"", response.getHeader("ETag"));
+    }
+
+    @Test
+    @DisplayName("Should pick the first stored coding the client accepts")
+    void shouldNegotiateContentCoding() {
+        List<ContentCoding> stored = List.of(ContentCoding.GZIP, ContentCoding.DEFLATE);
+
+        assertEquals(ContentCoding.GZIP, ContentCoding.negotiate("gzip, deflate, br", stored));
+        assertEquals(ContentCoding.DEFLATE, ContentCoding.negotiate("deflate", stored));
+        assertEquals(ContentCoding.DEFLATE, ContentCoding.negotiate("gzip;q=0, *;q=0.5", stored));
+        assertNull(ContentCoding.negotiate("br, identity", stored));
+        assertNull(ContentCoding.negotiate(null, stored));
+        assertTrue(ContentCoding.isCompressible("application/vnd.api+json; charset=utf-8"));
+        assertFalse(ContentCoding.isCompressible("image/png"));
+    }
+}
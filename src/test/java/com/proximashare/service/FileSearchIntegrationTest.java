@@ -0,0 +1,173 @@
+package com.proximashare.service;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.proximashare.ProximaShareApplication;
+import com.proximashare.config.TestSecurityConfig;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+
+import com.proximashare.dto.FileMetadataResponse;
+import com.proximashare.dto.FileSearchRequest;
+import com.proximashare.entity.FileMetadata;
+import com.proximashare.entity.User;
+import com.proximashare.repository.UserRepository;
+
+@SpringBootTest(classes = ProximaShareApplication.class)
+@ActiveProfiles("test")
+@Import(TestSecurityConfig.class)
+@TestPropertySource(properties = {
+        "file.storage.path=${java.io.tmpdir}/file-search-integration-test"
+})
+@DisplayName("File Search Integration Tests")
+class FileSearchIntegrationTest {
+
+    // Enough rows, spread over two owners, for the optimizer to weigh the indexes on real statistics
+    private static final int ROWS = 20_000;
+    private static final String[] MIME_TYPES = {"image/png", "image/jpeg", "text/csv", "application/pdf", "video/mp4"};
+
+    @Autowired
+    private FileService fileService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private User owner;
+    private User other;
+
+    @BeforeEach
+    void setUp() {
+        owner = userRepository.save(user("search-owner"));
+        other = userRepository.save(user("search-other"));
+
+        LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+        List<Object[]> rows = new ArrayList<>(ROWS);
+        for (int i = 0; i < ROWS; i++) {
+            rows.add(new Object[]{
+                    "search-" + i,
+                    "file-" + i,
+                    (i * 7919L) % 10_000_000,
+                    MIME_TYPES[i % MIME_TYPES.length],
+                    Timestamp.valueOf(now.minusMinutes(i)),
+                    Timestamp.valueOf(now.plusHours(i % 720).plusMinutes(1)),
+                    i % 10 == 0 ? owner.getId() : other.getId()
+            });
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO file_metadata (uuid, filename, size, mime_type, upload_date, expiry_date, " +
+                "user_id, download_count, is_public, processing_attempts) VALUES (?, ?, ?, ?, ?, ?, ?, 0, false, 0)", rows);
+        jdbcTemplate.execute("ANALYZE TABLE file_metadata");
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("DELETE FROM file_metadata WHERE user_id IN (?, ?)", owner.getId(), other.getId());
+        userRepository.deleteAll(List.of(owner, other));
+    }
+
+    private User user(String username) {
+        User user = new User();
+        user.setUsername(username);
+        user.setAuthProvider("LOCAL");
+        user.setEmailVerified(true);
+        user.setActive(true);
+        return user;
+    }
+
+    private String plan(String where) {
+        return String.join("\n", jdbcTemplate.queryForList(
+                "EXPLAIN SELECT uuid FROM file_metadata WHERE user_id = " + owner.getId() + " AND " + where, String.class));
+    }
+
+    @Test
+    @DisplayName("Should return only the owner's files of a top-level type, smallest first")
+    void shouldFilterByTypeAndSortBySize() {
+        // Arrange
+        FileSearchRequest request = new FileSearchRequest();
+        request.setMimeType("image/*");
+        request.setSort("size");
+        request.setDirection("asc");
+        request.setLimit(FileService.MAX_PAGE_SIZE);
+
+        // Act
+        List<FileMetadata> files = fileService.searchUserFiles(owner, request);
+
+        // Assert
+        assertThat(files).hasSize(FileService.MAX_PAGE_SIZE);
+        assertThat(files).allSatisfy(file -> {
+            assertThat(file.getMimeType()).startsWith("image/");
+            // The owner holds every tenth row
+            assertThat(Integer.parseInt(file.getUuid().substring("search-".length())) % 10).isZero();
+        });
+        assertThat(files).extracting(FileMetadata::getSize).isSorted();
+    }
+
+    @Test
+    @DisplayName("Should list files about to expire within the window and above a size")
+    void shouldFilterByExpiryWindowAndSize() {
+        // Arrange
+        FileSearchRequest request = new FileSearchRequest();
+        request.setExpiringWithinHours(24);
+        request.setMinSize(1_000_000L);
+        request.setSort("expiryDate");
+        request.setDirection("asc");
+        LocalDateTime before = LocalDateTime.now();
+
+        // Act
+        List<FileMetadata> files = fileService.searchUserFiles(owner, request);
+
+        // Assert
+        LocalDateTime horizon = LocalDateTime.now().plusHours(24);
+        assertThat(files).isNotEmpty();
+        assertThat(files).allSatisfy(file -> {
+            assertThat(file.getExpiryDate()).isAfter(before).isBeforeOrEqualTo(horizon);
+            assertThat(file.getSize()).isGreaterThanOrEqualTo(1_000_000L);
+        });
+        assertThat(files).extracting(FileMetadata::getExpiryDate).isSorted();
+    }
+
+    @Test
+    @DisplayName("Should load the owner with the results so responses carry the owner's username")
+    void shouldFetchOwnerWithResults() {
+        // Arrange
+        FileSearchRequest request = new FileSearchRequest();
+        request.setLimit(10);
+
+        // Act
+        List<FileMetadata> files = fileService.searchUserFiles(owner, request);
+
+        // Assert
+        assertThat(files).isNotEmpty();
+        assertThat(files).extracting(FileMetadataResponse::from)
+                .extracting(FileMetadataResponse::getOwnerUsername)
+                .containsOnly("search-owner");
+    }
+
+    @Test
+    @DisplayName("Should answer each filter from its owner-led index rather than a scan")
+    void shouldUseOwnerLedIndexes() {
+        // Act & Assert
+        assertThat(plan("expiry_date > TIMESTAMP '2026-01-01 00:00:00' AND expiry_date <= TIMESTAMP '2026-01-02 00:00:00'"))
+                .containsIgnoringCase("idx_file_metadata_owner_expiry");
+        assertThat(plan("size BETWEEN 1000 AND 2000"))
+                .containsIgnoringCase("idx_file_metadata_owner_size");
+        assertThat(plan("mime_type LIKE 'image/%'"))
+                .containsIgnoringCase("idx_file_metadata_owner_mime");
+    }
+}
@@ -4,8 +4,10 @@ import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.LocalDateTime;
@@ -13,6 +15,7 @@ import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
+import java.util.UUID;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
@@ -22,18 +25,31 @@ import org.junit.jupiter.api.io.TempDir;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.ValueSource;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.data.domain.Limit;
 import org.springframework.web.multipart.MultipartFile;
 
+import com.proximashare.app.config.DownloadConfig;
+import com.proximashare.app.config.FileStorageConfig;
 import com.proximashare.app.config.FileUploadConfig;
+import com.proximashare.dto.FileMetadataResponse;
+import com.proximashare.dto.FileSearchRequest;
 import com.proximashare.entity.FileMetadata;
 import com.proximashare.entity.Role;
+import com.proximashare.entity.ProcessingState;
 import com.proximashare.entity.User;
+import com.proximashare.exception.InsufficientStorageException;
 import com.proximashare.repository.FileMetadataRepository;
+import com.proximashare.service.processing.FileUploadedEvent;
 
 @ExtendWith(MockitoExtension.class)
 @DisplayName("FileService Unit Tests")
@@ -45,6 +61,34 @@ class FileServiceTest {
     @Mock
     private FileUploadConfig uploadConfig;
 
+    @Mock
+    private BlobStore blobStore;
+
+    @Spy
+    private TimeOrderedIdGenerator idGenerator = new TimeOrderedIdGenerator();
+
+    @Spy
+    private DownloadSessionTracker downloadSessionTracker = new DownloadSessionTracker(new DownloadConfig());
+
+    @Mock
+    private DownloadLeaseManager downloadLeaseManager;
+
+    @Mock
+    private HotFileCache hotFileCache;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Spy
+    private DiskSpaceLedger diskSpaceLedger = new DiskSpaceLedger(new FileStorageConfig(), System.getProperty("java.io.tmpdir"));
+
+    @Mock
+    private UserUsageService userUsageService;
+
+    // Runs callbacks directly; the usage and file rows are mocks
+    @Spy
+    private TransactionTemplate transactionTemplate = new TransactionTemplate(mock(PlatformTransactionManager.class));
+
     @InjectMocks
     private FileService fileService;
 
@@ -63,6 +107,9 @@ class FileServiceTest {
         // Use ReflectionTestUtils to set the storage path
         ReflectionTestUtils.setField(fileService, "storagePath", storagePath);
 
+        // Plenty of free space unless a test says otherwise
+        lenient().doReturn(Long.MAX_VALUE / 4).when(diskSpaceLedger).getUsableSpace();
+
         // Create a sample valid file
         validFile = new MockMultipartFile(
                 "file",
@@ -79,6 +126,14 @@ class FileServiceTest {
         testUser.setRoles(Set.of(new Role(2L, "USER")));
     }
 
+    // Blob store reports the bytes it actually read from the upload
+    private void stubBlobStore() {
+        when(blobStore.store(any(), anyLong())).thenAnswer(invocation -> {
+            InputStream in = invocation.getArgument(0);
+            return new BlobStore.StoredBlob("content-digest", in.readAllBytes().length);
+        });
+    }
+
     @Nested
     @DisplayName("Public File Upload Tests")
     class PublicUploadFileTests {
@@ -87,9 +142,9 @@ class FileServiceTest {
         @DisplayName("Should successfully upload a valid public file")
         void shouldUploadValidPublicFile() {
             // Arrange
+            stubBlobStore();
             when(uploadConfig.getPublicMaxSize()).thenReturn(1_073_741_824L);
             when(uploadConfig.getPublicExpiryDays()).thenReturn(7);
-            when(fileMetadataRepository.existsById(anyString())).thenReturn(false);
             when(fileMetadataRepository.save(any(FileMetadata.class))).thenAnswer(invocation ->
                     invocation.getArgument(0)
             );
@@ -111,8 +166,90 @@ class FileServiceTest {
             assertTrue(result.getExpiryDate().isAfter(LocalDateTime.now().plusDays(6)));
             assertTrue(result.getExpiryDate().isBefore(LocalDateTime.now().plusDays(8)));
 
+            assertEquals("content-digest", result.getBlobDigest());
+
             verify(fileMetadataRepository).save(any(FileMetadata.class));
-            verify(fileMetadataRepository, atLeastOnce()).existsById(anyString());
+        }
+
+        @Test
+        @DisplayName("Should refuse an upload the storage volume has no room for")
+        void shouldRefuseUploadWithoutFreeSpace() {
+            // Arrange
+            doReturn(0L).when(diskSpaceLedger).getUsableSpace();
+            when(uploadConfig.getPublicMaxSize()).thenReturn(1_073_741_824L);
+
+            // Act & Assert
+            assertThrows(InsufficientStorageException.class, () -> fileService.uploadFile(validFile));
+            verifyNoInteractions(blobStore);
+            verify(fileMetadataRepository, never()).save(any());
+        }
+
+        @Test
+        @DisplayName("Should give the reservation back once the upload is stored")
+        void shouldReleaseReservationAfterUpload() {
+            // Arrange
+            stubBlobStore();
+            when(uploadConfig.getPublicMaxSize()).thenReturn(1_073_741_824L);
+            when(uploadConfig.getPublicExpiryDays()).thenReturn(7);
+            when(fileMetadataRepository.save(any(FileMetadata.class))).thenAnswer(invocation ->
+                    invocation.getArgument(0)
+            );
+
+            // Act
+            fileService.uploadFile(validFile);
+
+            // Assert
+            verify(diskSpaceLedger).reserve(validFile.getSize());
+            assertEquals(0L, diskSpaceLedger.getOutstandingBytes());
+        }
+
+        @Test
+        @DisplayName("Should release the blob when saving metadata fails")
+        void shouldReleaseBlobWhenSaveFails() {
+            // Arrange
+            stubBlobStore();
+            when(uploadConfig.getPublicMaxSize()).thenReturn(1_073_741_824L);
+            when(uploadConfig.getPublicExpiryDays()).thenReturn(7);
+            when(fileMetadataRepository.save(any(FileMetadata.class)))
+                    .thenThrow(new RuntimeException("Database unavailable"));
+
+            // Act & Assert
+            assertThrows(RuntimeException.class, () -> fileService.uploadFile(validFile));
+            verify(blobStore).release("content-digest");
+        }
+
+        @Test
+        @DisplayName("Should save the file as pending and hand it to the processing pipeline")
+        void shouldPublishUploadedEventAfterSave() {
+            // Arrange
+            stubBlobStore();
+            when(uploadConfig.getPublicMaxSize()).thenReturn(1_073_741_824L);
+            when(uploadConfig.getPublicExpiryDays()).thenReturn(7);
+            when(fileMetadataRepository.save(any(FileMetadata.class))).thenAnswer(invocation ->
+                    invocation.getArgument(0)
+            );
+
+            // Act
+            FileMetadata result = fileService.uploadFile(validFile);
+
+            // Assert
+            assertEquals(ProcessingState.PENDING, result.getProcessingState());
+            verify(eventPublisher).publishEvent(new FileUploadedEvent(result.getUuid()));
+        }
+
+        @Test
+        @DisplayName("Should not hand a file to the pipeline when its metadata was not saved")
+        void shouldNotPublishWhenSaveFails() {
+            // Arrange
+            stubBlobStore();
+            when(uploadConfig.getPublicMaxSize()).thenReturn(1_073_741_824L);
+            when(uploadConfig.getPublicExpiryDays()).thenReturn(7);
+            when(fileMetadataRepository.save(any(FileMetadata.class)))
+                    .thenThrow(new RuntimeException("Database unavailable"));
+
+            // Act & Assert
+            assertThrows(RuntimeException.class, () -> fileService.uploadFile(validFile));
+            verifyNoInteractions(eventPublisher);
         }
 
         @Test
@@ -137,31 +274,31 @@ class FileServiceTest {
         }
 
         @Test
-        @DisplayName("Should handle UUID collision by generating new UUID")
-        void shouldHandleUuidCollision() {
+        @DisplayName("Should assign time-ordered ids without querying the repository")
+        void shouldAssignTimeOrderedIdsWithoutLookup() {
             // Arrange
+            stubBlobStore();
             when(uploadConfig.getPublicMaxSize()).thenReturn(1_073_741_824L);
             when(uploadConfig.getPublicExpiryDays()).thenReturn(7);
-            when(fileMetadataRepository.existsById(anyString()))
-                    .thenReturn(true)   // First UUID exists
-                    .thenReturn(false); // Second UUID doesn't exist
             when(fileMetadataRepository.save(any(FileMetadata.class))).thenAnswer(invocation ->
                     invocation.getArgument(0)
             );
 
             // Act
-            FileMetadata result = fileService.uploadFile(validFile);
+            FileMetadata first = fileService.uploadFile(validFile);
+            FileMetadata second = fileService.uploadFile(validFile);
 
             // Assert
-            assertNotNull(result);
-            verify(fileMetadataRepository, times(2)).existsById(anyString());
-            verify(fileMetadataRepository).save(any(FileMetadata.class));
+            assertEquals(7, UUID.fromString(first.getUuid()).version());
+            assertTrue(first.getUuid().compareTo(second.getUuid()) < 0, "Later uploads should sort after earlier ones");
+            verify(fileMetadataRepository, never()).existsById(anyString());
         }
 
         @Test
         @DisplayName("Should handle file with no extension")
         void shouldHandleFileWithoutExtension() {
             // Arrange
+            stubBlobStore();
             when(uploadConfig.getPublicMaxSize()).thenReturn(1_073_741_824L);
             when(uploadConfig.getPublicExpiryDays()).thenReturn(7);
             MultipartFile fileWithoutExtension = new MockMultipartFile(
@@ -170,7 +307,6 @@ class FileServiceTest {
                     "text/plain",
                     "Sample content".getBytes()
             );
-            when(fileMetadataRepository.existsById(anyString())).thenReturn(false);
             when(fileMetadataRepository.save(any(FileMetadata.class))).thenAnswer(invocation ->
                     invocation.getArgument(0)
             );
@@ -188,6 +324,7 @@ class FileServiceTest {
         @DisplayName("Should handle files with blank/null names")
         void shouldHandleBlankFilename(String filename) {
             // Arrange
+            stubBlobStore();
             when(uploadConfig.getPublicMaxSize()).thenReturn(1_073_741_824L);
             when(uploadConfig.getPublicExpiryDays()).thenReturn(7);
             MultipartFile blankNameFile = new MockMultipartFile(
@@ -196,7 +333,6 @@ class FileServiceTest {
                     "text/plain",
                     "content".getBytes()
             );
-            when(fileMetadataRepository.existsById(anyString())).thenReturn(false);
             when(fileMetadataRepository.save(any(FileMetadata.class))).thenAnswer(invocation ->
                     invocation.getArgument(0)
             );
@@ -217,13 +353,31 @@ class FileServiceTest {
     @DisplayName("User File Upload Tests")
     class UserUploadFileTests {
 
+        @Test
+        @DisplayName("Should store the bytes but leave saving to the caller when preparing an upload")
+        void shouldPrepareUploadWithoutSaving() {
+            // Arrange
+            stubBlobStore();
+            when(uploadConfig.getUserMaxSize()).thenReturn(5_368_709_120L);
+            when(uploadConfig.getUserExpiryDays()).thenReturn(30);
+
+            // Act
+            FileMetadata result = fileService.prepareUserUpload(validFile, testUser);
+
+            // Assert
+            assertEquals("content-digest", result.getBlobDigest());
+            assertEquals(testUser, result.getOwner());
+            assertTrue(result.isNew(), "Prepared metadata should be inserted, not merged");
+            verify(fileMetadataRepository, never()).save(any());
+        }
+
         @Test
         @DisplayName("Should successfully upload file for authenticated user")
         void shouldUploadFileForUser() {
             // Arrange
+            stubBlobStore();
             when(uploadConfig.getUserMaxSize()).thenReturn(5_368_709_120L);
             when(uploadConfig.getUserExpiryDays()).thenReturn(30);
-            when(fileMetadataRepository.existsById(anyString())).thenReturn(false);
             when(fileMetadataRepository.save(any(FileMetadata.class))).thenAnswer(invocation ->
                     invocation.getArgument(0)
             );
@@ -277,9 +431,10 @@ class FileServiceTest {
             MultipartFile largeFile = mock(MultipartFile.class);
             when(largeFile.getSize()).thenReturn(2_147_483_648L); // 2GB
             when(largeFile.getOriginalFilename()).thenReturn("large-user-file.zip");
+            when(blobStore.store(any(), anyLong()))
+                    .thenReturn(new BlobStore.StoredBlob("large-digest", 2_147_483_648L));
 //            when(largeFile.isEmpty()).thenReturn(false);
 
-            when(fileMetadataRepository.existsById(anyString())).thenReturn(false);
             when(fileMetadataRepository.save(any(FileMetadata.class))).thenAnswer(invocation ->
                     invocation.getArgument(0)
             );
@@ -293,6 +448,132 @@ class FileServiceTest {
             assertEquals(testUser, result.getOwner());
             verify(fileMetadataRepository).save(any(FileMetadata.class));
         }
+
+        @Test
+        @DisplayName("Should count the upload against the owner's usage in the transaction that inserts it")
+        void shouldReserveUsageBeforeInsert() {
+            // Arrange
+            stubBlobStore();
+            when(uploadConfig.getUserMaxSize()).thenReturn(5_368_709_120L);
+            when(uploadConfig.getUserExpiryDays()).thenReturn(30);
+            when(fileMetadataRepository.save(any(FileMetadata.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+            // Act
+            fileService.uploadFileForUser(validFile, testUser);
+
+            // Assert
+            InOrder inOrder = inOrder(userUsageService, blobStore, fileMetadataRepository);
+            inOrder.verify(userUsageService).checkQuota(testUser, validFile.getSize());
+            inOrder.verify(blobStore).store(any(), anyLong());
+            inOrder.verify(userUsageService).reserve(testUser, validFile.getSize(), 1);
+            inOrder.verify(fileMetadataRepository).save(any(FileMetadata.class));
+        }
+
+        @Test
+        @DisplayName("Should refuse an upload over quota before storing it")
+        void shouldRefuseUploadOverQuota() {
+            // Arrange
+            when(uploadConfig.getUserMaxSize()).thenReturn(5_368_709_120L);
+            doThrow(new InsufficientStorageException("Storage quota exceeded"))
+                    .when(userUsageService).checkQuota(testUser, validFile.getSize());
+
+            // Act & Assert
+            assertThrows(InsufficientStorageException.class, () -> fileService.uploadFileForUser(validFile, testUser));
+            verifyNoInteractions(blobStore);
+            verify(fileMetadataRepository, never()).save(any());
+        }
+
+        @Test
+        @DisplayName("Should release the stored blob when the quota fills up before the insert")
+        void shouldReleaseBlobWhenReserveFails() {
+            // Arrange
+            stubBlobStore();
+            when(uploadConfig.getUserMaxSize()).thenReturn(5_368_709_120L);
+            when(uploadConfig.getUserExpiryDays()).thenReturn(30);
+            doThrow(new InsufficientStorageException("Storage quota exceeded"))
+                    .when(userUsageService).reserve(eq(testUser), anyLong(), eq(1));
+
+            // Act & Assert
+            assertThrows(InsufficientStorageException.class, () -> fileService.uploadFileForUser(validFile, testUser));
+            verify(blobStore).release("content-digest");
+            verify(fileMetadataRepository, never()).save(any());
+            verifyNoInteractions(eventPublisher);
+        }
+    }
+
+    @Nested
+    @DisplayName("Streaming Upload Tests")
+    class StreamingUploadTests {
+
+        @Test
+        @DisplayName("Should stream request body straight into the blob store")
+        void shouldStreamBodyIntoStorage() throws Exception {
+            // Arrange
+            stubBlobStore();
+            when(uploadConfig.getPublicMaxSize()).thenReturn(1_073_741_824L);
+            when(uploadConfig.getPublicExpiryDays()).thenReturn(7);
+            when(fileMetadataRepository.save(any(FileMetadata.class))).thenAnswer(invocation ->
+                    invocation.getArgument(0)
+            );
+            byte[] content = "Streamed file content".getBytes();
+
+            // Act
+            FileMetadata result = fileService.uploadFileStream(
+                    new ByteArrayInputStream(content), "stream.txt", "text/plain", content.length, null);
+
+            // Assert
+            assertEquals("stream.txt", result.getFilename());
+            assertEquals(content.length, result.getSize());
+            assertEquals("text/plain", result.getMimeType());
+            assertEquals("content-digest", result.getBlobDigest());
+            assertTrue(result.isPublic());
+            verify(blobStore).store(any(), eq(1_073_741_824L));
+        }
+
+        @Test
+        @DisplayName("Should reject declared oversized body before reading it")
+        void shouldRejectDeclaredOversizedBody() {
+            // Arrange
+            when(uploadConfig.getUserMaxSize()).thenReturn(10L);
+            InputStream body = mock(InputStream.class);
+
+            // Act & Assert
+            assertThrows(IllegalArgumentException.class, () ->
+                    fileService.uploadFileStream(body, "big.bin", "application/octet-stream", 11L, testUser));
+            verifyNoInteractions(body);
+            verify(fileMetadataRepository, never()).save(any());
+        }
+
+        @Test
+        @DisplayName("Should reject an empty body")
+        void shouldRejectEmptyBody() {
+            // Arrange
+            stubBlobStore();
+            when(uploadConfig.getUserMaxSize()).thenReturn(10L);
+
+            // Act & Assert
+            assertThrows(IllegalArgumentException.class, () ->
+                    fileService.uploadFileStream(new ByteArrayInputStream(new byte[0]),
+                            "empty.bin", "application/octet-stream", -1L, testUser));
+            verify(blobStore).release("content-digest");
+            verify(fileMetadataRepository, never()).save(any());
+        }
+
+        @Test
+        @DisplayName("Should refuse an assembled file over quota before the blob store adopts it")
+        void shouldCheckAssembledFileBeforeAdopting() throws Exception {
+            // Arrange
+            when(uploadConfig.getUserMaxSize()).thenReturn(100L);
+            doThrow(new InsufficientStorageException("Storage quota exceeded"))
+                    .when(userUsageService).checkQuota(testUser, 10L);
+            Path assembled = Files.write(tempDir.resolve("session.part"), new byte[10]);
+
+            // Act & Assert
+            assertThrows(InsufficientStorageException.class, () ->
+                    fileService.storeAssembledFile(assembled, "video.mp4", "video/mp4", testUser));
+            verifyNoInteractions(blobStore);
+            assertTrue(Files.exists(assembled));
+        }
     }
 
     @Nested
@@ -343,6 +624,69 @@ class FileServiceTest {
             assertTrue(result.isEmpty());
         }
 
+        @Test
+        @DisplayName("Should page a user's files and hand out a cursor only when more are left")
+        void shouldPageUserFiles() {
+            // Arrange
+            LocalDateTime uploaded = LocalDateTime.of(2026, 5, 1, 12, 0);
+            List<FileMetadataResponse> rows = List.of(
+                    FileMetadataResponse.from(new FileMetadata("uuid3", "c.txt", 1L, uploaded, uploaded.plusDays(30), 0, testUser, false)),
+                    FileMetadataResponse.from(new FileMetadata("uuid2", "b.txt", 1L, uploaded, uploaded.plusDays(30), 0, testUser, false)),
+                    FileMetadataResponse.from(new FileMetadata("uuid1", "a.txt", 1L, uploaded.minusDays(1), uploaded.plusDays(30), 0, testUser, false)));
+            when(fileMetadataRepository.findResponsesByOwner(testUser, Limit.of(3)))
+                    .thenReturn(rows);
+            when(fileMetadataRepository.findResponsesByOwnerAfter(testUser, uploaded, "uuid2", Limit.of(3)))
+                    .thenReturn(rows.subList(2, 3));
+
+            // Act
+            FileService.FilePage first = fileService.getUserFiles(testUser, null, 2);
+            FileService.FilePage last = fileService.getUserFiles(testUser, first.nextCursor(), 2);
+
+            // Assert
+            assertEquals(List.of("uuid3", "uuid2"), first.files().stream().map(FileMetadataResponse::getUuid).toList());
+            assertNotNull(first.nextCursor());
+            assertEquals(List.of("uuid1"), last.files().stream().map(FileMetadataResponse::getUuid).toList());
+            assertNull(last.nextCursor());
+            verify(fileMetadataRepository, never()).findByOwnerOrderByUploadDateDesc(any());
+        }
+
+        @Test
+        @DisplayName("Should cap the page size and reject cursors it did not issue")
+        void shouldCapPageSizeAndRejectBadCursors() {
+            // Arrange
+            when(fileMetadataRepository.findResponsesByOwner(eq(testUser), any(Limit.class)))
+                    .thenReturn(List.of());
+
+            // Act
+            fileService.getUserFiles(testUser, null, 10_000);
+
+            // Assert
+            verify(fileMetadataRepository).findResponsesByOwner(testUser,
+                    Limit.of(FileService.MAX_PAGE_SIZE + 1));
+            assertThrows(IllegalArgumentException.class, () -> fileService.getUserFiles(testUser, "not-a-cursor", null));
+        }
+
+        @ParameterizedTest
+        @ValueSource(strings = {"sort=downloadCount", "direction=sideways", "size=10..5", "hours=0"})
+        @DisplayName("Should reject searches that cannot be answered from an index before querying")
+        void shouldRejectInvalidSearches(String invalid) {
+            // Arrange
+            FileSearchRequest request = new FileSearchRequest();
+            switch (invalid) {
+                case "sort=downloadCount" -> request.setSort("downloadCount");
+                case "direction=sideways" -> request.setDirection("sideways");
+                case "size=10..5" -> {
+                    request.setMinSize(10L);
+                    request.setMaxSize(5L);
+                }
+                default -> request.setExpiringWithinHours(0);
+            }
+
+            // Act & Assert
+            assertThrows(IllegalArgumentException.class, () -> fileService.searchUserFiles(testUser, request));
+            verifyNoInteractions(fileMetadataRepository);
+        }
+
         @Test
         @DisplayName("Should delete user's own file successfully")
         void shouldDeleteUserFile() throws Exception {
@@ -366,7 +710,32 @@ class FileServiceTest {
 
             // Assert
             assertFalse(physicalFile.exists(), "Physical file should be deleted");
+            InOrder inOrder = inOrder(userUsageService, fileMetadataRepository);
+            inOrder.verify(userUsageService).release(metadata);
+            inOrder.verify(fileMetadataRepository).delete(metadata);
+            verify(hotFileCache).invalidate(uuid);
+        }
+
+        @Test
+        @DisplayName("Should release the shared blob when deleting a blob-backed file")
+        void shouldReleaseBlobOnDelete() throws Exception {
+            // Arrange
+            String uuid = "blob-uuid";
+            FileMetadata metadata = new FileMetadata(
+                    uuid, "shared.iso", 1000L,
+                    LocalDateTime.now(), LocalDateTime.now().plusDays(30),
+                    0, testUser, false
+            );
+            metadata.setBlobDigest("shared-digest");
+            when(fileMetadataRepository.findByUuidAndOwner(uuid, testUser))
+                    .thenReturn(Optional.of(metadata));
+
+            // Act
+            fileService.deleteUserFile(uuid, testUser);
+
+            // Assert
             verify(fileMetadataRepository).delete(metadata);
+            verify(blobStore).release("shared-digest");
         }
 
         @Test
@@ -479,63 +848,138 @@ class FileServiceTest {
 
             assertEquals("File expired", exception.getMessage());
         }
+
+        @Test
+        @DisplayName("Should answer the metadata endpoints from the projection, with the same expiry check")
+        void shouldReturnMetadataResponseFromProjection() throws FileNotFoundException {
+            // Arrange
+            FileMetadataResponse live = new FileMetadataResponse("live-uuid", "live.pdf", 1000L,
+                    LocalDateTime.now(), LocalDateTime.now().plusDays(1), 2, false, "testuser", "application/pdf", null);
+            FileMetadataResponse expired = new FileMetadataResponse("expired-uuid", "expired.pdf", 1000L,
+                    LocalDateTime.now().minusDays(5), LocalDateTime.now().minusDays(1), 0, true, null, null, null);
+            when(fileMetadataRepository.findResponseById("live-uuid")).thenReturn(Optional.of(live));
+            when(fileMetadataRepository.findResponseById("expired-uuid")).thenReturn(Optional.of(expired));
+            when(fileMetadataRepository.findResponseById("missing-uuid")).thenReturn(Optional.empty());
+
+            // Act
+            FileMetadataResponse result = fileService.getFileMetadataResponse("live-uuid");
+
+            // Assert
+            assertEquals("testuser", result.getOwnerUsername());
+            assertEquals(ProcessingState.READY, result.getProcessingState());
+            assertThrows(IllegalArgumentException.class, () -> fileService.getFileMetadataResponse("expired-uuid"));
+            assertThrows(FileNotFoundException.class, () -> fileService.getFileMetadataResponse("missing-uuid"));
+            verify(fileMetadataRepository, never()).findByIdWithOwner(any());
+        }
     }
 
     @Nested
     @DisplayName("Download File Tests")
     class DownloadFileTests {
 
-        @Test
-        @DisplayName("Should download public file and increment count")
-        void shouldDownloadPublicFile() throws Exception {
-            // Arrange
-            when(uploadConfig.getPublicMaxDownloads()).thenReturn(3);
-            String uuid = "public-download-uuid";
+        private FileMetadata publicFile(String uuid, int downloadCount) {
             FileMetadata metadata = new FileMetadata(
                     uuid, "public-file.txt", 1000L,
                     LocalDateTime.now(), LocalDateTime.now().plusDays(1),
-                    0
+                    downloadCount
             );
             metadata.setPublic(true);
+            return metadata;
+        }
 
-            File expectedFile = new File(tempDir.toFile(), uuid + ".txt");
-            Files.write(expectedFile.toPath(), "test content".getBytes());
+        private void stubLimits() {
+            lenient().when(uploadConfig.getPublicMaxDownloads()).thenReturn(3);
+            lenient().when(uploadConfig.getUserMaxDownloads()).thenReturn(100);
+        }
 
-            when(fileMetadataRepository.findByIdWithOwner(uuid))
-                    .thenReturn(Optional.of(metadata));
-            when(fileMetadataRepository.save(any(FileMetadata.class)))
-                    .thenReturn(metadata);
+        @Test
+        @DisplayName("Should count a public download with one conditional update")
+        void shouldDownloadPublicFile() throws Exception {
+            // Arrange
+            stubLimits();
+            String uuid = "public-download-uuid";
+            FileMetadata metadata = publicFile(uuid, 1);
+            when(fileMetadataRepository.reserveDownload(eq(uuid), any(LocalDateTime.class), eq(3), eq(100), isNull()))
+                    .thenReturn(1);
+            when(fileMetadataRepository.findByIdWithOwner(uuid)).thenReturn(Optional.of(metadata));
 
             // Act
-            File result = fileService.downloadFile(uuid);
+            FileMetadata result = fileService.authorizeDownload(uuid, null, null);
 
             // Assert
-            assertNotNull(result);
-            assertEquals(expectedFile.getAbsolutePath(), result.getAbsolutePath());
-            verify(fileMetadataRepository).save(argThat(savedMetadata ->
-                    savedMetadata.getDownloadCount() == 1
-            ));
+            assertSame(metadata, result);
+            verify(fileMetadataRepository, never()).save(any());
+            assertEquals(new File(storagePath, uuid + ".txt").getAbsolutePath(),
+                    fileService.getStoredFile(result).getAbsolutePath());
+        }
+
+        @Test
+        @DisplayName("Should serve a leased hot file without a database write")
+        void shouldServeFromLease() throws Exception {
+            // Arrange
+            String uuid = "leased-uuid";
+            FileMetadata metadata = publicFile(uuid, 40);
+            when(downloadLeaseManager.tryConsume(uuid)).thenReturn(metadata);
+
+            // Act
+            FileMetadata result = fileService.authorizeDownload(uuid, null, null);
+
+            // Assert
+            assertSame(metadata, result);
+            verify(fileMetadataRepository, never()).reserveDownload(any(), any(), anyInt(), anyInt(), any());
+            verify(downloadLeaseManager, never()).onCounted(any());
+        }
+
+        @Test
+        @DisplayName("Should report a directly counted download to the lease manager")
+        void shouldReportCountedDownload() throws Exception {
+            // Arrange
+            stubLimits();
+            String uuid = "counted-uuid";
+            FileMetadata metadata = publicFile(uuid, 1);
+            when(fileMetadataRepository.reserveDownload(eq(uuid), any(LocalDateTime.class), eq(3), eq(100), isNull()))
+                    .thenReturn(1);
+            when(fileMetadataRepository.findByIdWithOwner(uuid)).thenReturn(Optional.of(metadata));
+
+            // Act
+            fileService.authorizeDownload(uuid, null, null);
+
+            // Assert
+            verify(downloadLeaseManager).onCounted(metadata);
+            verifyNoInteractions(userUsageService);
+        }
+
+        @Test
+        @DisplayName("Should return metadata for HEAD and revalidation without counting")
+        void shouldGetDownloadMetadataWithoutCounting() throws Exception {
+            // Arrange
+            FileMetadata privateFile = publicFile("private-head-uuid", 0);
+            privateFile.setPublic(false);
+            when(fileMetadataRepository.findByIdWithOwner("public-head-uuid"))
+                    .thenReturn(Optional.of(publicFile("public-head-uuid", 0)));
+            when(fileMetadataRepository.findByIdWithOwner("private-head-uuid")).thenReturn(Optional.of(privateFile));
+
+            // Act & Assert
+            assertEquals("public-head-uuid", fileService.getDownloadMetadata("public-head-uuid", null).getUuid());
+            assertThrows(IllegalAccessException.class,
+                    () -> fileService.getDownloadMetadata("private-head-uuid", null));
+            verify(fileMetadataRepository, never()).reserveDownload(any(), any(), anyInt(), anyInt(), any());
         }
 
         @Test
         @DisplayName("Should reject public file download when limit exceeded (>3)")
         void shouldRejectPublicDownloadWhenLimitExceeded() {
             // Arrange
-            when(uploadConfig.getPublicMaxDownloads()).thenReturn(3);
+            stubLimits();
             String uuid = "limit-exceeded-uuid";
-            FileMetadata metadata = new FileMetadata(
-                    uuid, "limited-file.txt", 1000L,
-                    LocalDateTime.now(), LocalDateTime.now().plusDays(1),
-                    3 // At limit
-            );
-            metadata.setPublic(true);
-            when(fileMetadataRepository.findByIdWithOwner(uuid))
-                    .thenReturn(Optional.of(metadata));
+            when(fileMetadataRepository.reserveDownload(eq(uuid), any(LocalDateTime.class), anyInt(), anyInt(), isNull()))
+                    .thenReturn(0);
+            when(fileMetadataRepository.findByIdWithOwner(uuid)).thenReturn(Optional.of(publicFile(uuid, 3)));
 
             // Act & Assert
             IllegalAccessException exception = assertThrows(
                     IllegalAccessException.class,
-                    () -> fileService.downloadFile(uuid)
+                    () -> fileService.authorizeDownload(uuid, null, null)
             );
 
             assertTrue(exception.getMessage().contains("File download limit reached"));
@@ -544,65 +988,193 @@ class FileServiceTest {
         }
 
         @Test
-        @DisplayName("Should allow user file download with higher limit (100)")
+        @DisplayName("Should let the owner download a private file with the user limit (100)")
         void shouldAllowUserFileDownloadWithHigherLimit() throws Exception {
             // Arrange
-            when(uploadConfig.getUserMaxDownloads()).thenReturn(100);
+            stubLimits();
             String uuid = "user-file-uuid";
             FileMetadata metadata = new FileMetadata(
                     uuid, "user-file.txt", 1000L,
                     LocalDateTime.now(), LocalDateTime.now().plusDays(30),
-                    50, testUser, false // 50 downloads, still under 100 limit
+                    50, testUser, false
             );
-
-            File expectedFile = new File(tempDir.toFile(), uuid + ".txt");
-            Files.write(expectedFile.toPath(), "user content".getBytes());
-
-            when(fileMetadataRepository.findByIdWithOwner(uuid))
-                    .thenReturn(Optional.of(metadata));
-            when(fileMetadataRepository.save(any(FileMetadata.class)))
-                    .thenReturn(metadata);
+            when(fileMetadataRepository.reserveDownload(eq(uuid), any(LocalDateTime.class), eq(3), eq(100), eq("testuser")))
+                    .thenReturn(1);
+            when(fileMetadataRepository.findByIdWithOwner(uuid)).thenReturn(Optional.of(metadata));
 
             // Act
-            File result = fileService.downloadFile(uuid);
+            FileMetadata result = fileService.authorizeDownload(uuid, "testuser", null);
 
             // Assert
-            assertNotNull(result);
-            verify(fileMetadataRepository).save(argThat(savedMetadata ->
-                    savedMetadata.getDownloadCount() == 51
-            ));
+            assertSame(metadata, result);
         }
 
         @Test
         @DisplayName("Should reject user file download when limit exceeded (>=100)")
         void shouldRejectUserFileDownloadWhenLimitExceeded() {
             // Arrange
-            when(uploadConfig.getUserMaxDownloads()).thenReturn(100);
+            stubLimits();
             String uuid = "user-limit-exceeded";
             FileMetadata metadata = new FileMetadata(
                     uuid, "user-limited.txt", 1000L,
                     LocalDateTime.now(), LocalDateTime.now().plusDays(30),
                     100, testUser, false // At limit
             );
-
-            when(fileMetadataRepository.findByIdWithOwner(uuid))
-                    .thenReturn(Optional.of(metadata));
+            when(fileMetadataRepository.reserveDownload(eq(uuid), any(LocalDateTime.class), anyInt(), anyInt(), eq("testuser")))
+                    .thenReturn(0);
+            when(fileMetadataRepository.findByIdWithOwner(uuid)).thenReturn(Optional.of(metadata));
 
             // Act & Assert
             IllegalAccessException exception = assertThrows(
                     IllegalAccessException.class,
-                    () -> fileService.downloadFile(uuid)
+                    () -> fileService.authorizeDownload(uuid, "testuser", null)
             );
 
             assertTrue(exception.getMessage().contains("File download limit reached"));
             assertTrue(exception.getMessage().contains("Max. 100 Times"));
-            verify(fileMetadataRepository, never()).save(any());
         }
 
         @Test
-        @DisplayName("Should propagate FileNotFoundException from getFileMetadata")
+        @DisplayName("Should refuse a private file to other users without counting it")
+        void shouldRefuseOtherUsersPrivateFile() {
+            // Arrange
+            stubLimits();
+            String uuid = "private-uuid";
+            FileMetadata metadata = new FileMetadata(
+                    uuid, "private.txt", 1000L,
+                    LocalDateTime.now(), LocalDateTime.now().plusDays(30),
+                    0, testUser, false
+            );
+            when(fileMetadataRepository.reserveDownload(eq(uuid), any(LocalDateTime.class), anyInt(), anyInt(), eq("intruder")))
+                    .thenReturn(0);
+            when(fileMetadataRepository.findByIdWithOwner(uuid)).thenReturn(Optional.of(metadata));
+
+            // Act & Assert
+            IllegalAccessException exception = assertThrows(
+                    IllegalAccessException.class,
+                    () -> fileService.authorizeDownload(uuid, "intruder", null)
+            );
+            assertEquals("Not authorized to download this file", exception.getMessage());
+        }
+
+        @Test
+        @DisplayName("Should require authentication for a private file")
+        void shouldRequireAuthenticationForPrivateFile() {
+            // Arrange
+            stubLimits();
+            String uuid = "private-uuid";
+            FileMetadata metadata = new FileMetadata(
+                    uuid, "private.txt", 1000L,
+                    LocalDateTime.now(), LocalDateTime.now().plusDays(30),
+                    0, testUser, false
+            );
+            when(fileMetadataRepository.reserveDownload(eq(uuid), any(LocalDateTime.class), anyInt(), anyInt(), isNull()))
+                    .thenReturn(0);
+            when(fileMetadataRepository.findByIdWithOwner(uuid)).thenReturn(Optional.of(metadata));
+
+            // Act & Assert
+            IllegalAccessException exception = assertThrows(
+                    IllegalAccessException.class,
+                    () -> fileService.authorizeDownload(uuid, null, null)
+            );
+            assertEquals("Authentication required to download this file", exception.getMessage());
+        }
+
+        @Test
+        @DisplayName("Should count the requests of one download session once")
+        void shouldCountDownloadSessionOnce() throws Exception {
+            // Arrange
+            stubLimits();
+            String uuid = "segmented-uuid";
+            when(fileMetadataRepository.reserveDownload(eq(uuid), any(LocalDateTime.class), anyInt(), anyInt(), isNull()))
+                    .thenReturn(1);
+            when(fileMetadataRepository.findByIdWithOwner(uuid)).thenReturn(Optional.of(publicFile(uuid, 0)));
+
+            // Act - first request plus three range requests of the same client
+            for (int i = 0; i < 4; i++) {
+                fileService.authorizeDownload(uuid, null, "10.0.0.1|player");
+            }
+
+            // Assert
+            verify(fileMetadataRepository, times(1))
+                    .reserveDownload(eq(uuid), any(LocalDateTime.class), anyInt(), anyInt(), isNull());
+        }
+
+        @Test
+        @DisplayName("Should count downloads of different clients separately")
+        void shouldCountEachClientSession() throws Exception {
+            // Arrange
+            stubLimits();
+            String uuid = "shared-uuid";
+            when(fileMetadataRepository.reserveDownload(eq(uuid), any(LocalDateTime.class), anyInt(), anyInt(), isNull()))
+                    .thenReturn(1);
+            when(fileMetadataRepository.findByIdWithOwner(uuid)).thenReturn(Optional.of(publicFile(uuid, 0)));
+
+            // Act
+            fileService.authorizeDownload(uuid, null, "10.0.0.1|curl");
+            fileService.authorizeDownload(uuid, null, "10.0.0.2|curl");
+
+            // Assert
+            verify(fileMetadataRepository, times(2))
+                    .reserveDownload(eq(uuid), any(LocalDateTime.class), anyInt(), anyInt(), isNull());
+        }
+
+        @Test
+        @DisplayName("Should not open a session for a download refused at the limit")
+        void shouldForgetRefusedSession() {
+            // Arrange
+            stubLimits();
+            String uuid = "refused-uuid";
+            when(fileMetadataRepository.reserveDownload(eq(uuid), any(LocalDateTime.class), anyInt(), anyInt(), isNull()))
+                    .thenReturn(0);
+            when(fileMetadataRepository.findByIdWithOwner(uuid)).thenReturn(Optional.of(publicFile(uuid, 3)));
+
+            // Act & Assert - a retry is refused again instead of riding on the first attempt
+            assertThrows(IllegalAccessException.class, () -> fileService.authorizeDownload(uuid, null, "10.0.0.1|curl"));
+            assertThrows(IllegalAccessException.class, () -> fileService.authorizeDownload(uuid, null, "10.0.0.1|curl"));
+            verify(fileMetadataRepository, times(2))
+                    .reserveDownload(eq(uuid), any(LocalDateTime.class), anyInt(), anyInt(), isNull());
+        }
+
+        @Test
+        @DisplayName("Should count a ticket download without reading the file's metadata")
+        void shouldCountTicketDownloadWithoutLookups() throws Exception {
+            // Arrange
+            stubLimits();
+            String uuid = "ticket-uuid";
+            FileMetadata fromTicket = publicFile(uuid, 0);
+            when(fileMetadataRepository.reserveDownload(eq(uuid), any(LocalDateTime.class), eq(3), eq(100), eq("testuser")))
+                    .thenReturn(1);
+
+            // Act
+            FileMetadata result = fileService.authorizeDownload(fromTicket, "testuser", null);
+
+            // Assert
+            assertSame(fromTicket, result);
+            verify(fileMetadataRepository, never()).findByIdWithOwner(any());
+        }
+
+        @Test
+        @DisplayName("Should explain a refused ticket download from the stored metadata")
+        void shouldExplainRefusedTicketDownload() {
+            // Arrange
+            stubLimits();
+            String uuid = "ticket-limit-uuid";
+            when(fileMetadataRepository.reserveDownload(eq(uuid), any(LocalDateTime.class), anyInt(), anyInt(), isNull()))
+                    .thenReturn(0);
+            when(fileMetadataRepository.findByIdWithOwner(uuid)).thenReturn(Optional.of(publicFile(uuid, 3)));
+
+            // Act & Assert
+            IllegalAccessException exception = assertThrows(IllegalAccessException.class,
+                    () -> fileService.authorizeDownload(publicFile(uuid, 0), null, null));
+            assertTrue(exception.getMessage().contains("Max. 3 Times"));
+        }
+
+        @Test
+        @DisplayName("Should propagate FileNotFoundException for an unknown file")
         void shouldPropagateFileNotFoundException() {
             // Arrange
+            stubLimits();
             String uuid = "non-existent-uuid";
             when(fileMetadataRepository.findByIdWithOwner(uuid))
                     .thenReturn(Optional.empty());
@@ -610,7 +1182,7 @@ class FileServiceTest {
             // Act & Assert
             assertThrows(
                     FileNotFoundException.class,
-                    () -> fileService.downloadFile(uuid)
+                    () -> fileService.authorizeDownload(uuid, null, null)
             );
         }
     }
@@ -623,12 +1195,12 @@ class FileServiceTest {
         @DisplayName("Should extract file extension correctly")
         void shouldExtractFileExtension() throws Exception {
             // Arrange
+            stubBlobStore();
             when(uploadConfig.getPublicMaxSize()).thenReturn(1_073_741_824L);
             when(uploadConfig.getPublicExpiryDays()).thenReturn(7);
             MultipartFile pdfFile = new MockMultipartFile(
                     "file", "document.pdf", "application/pdf", "content".getBytes()
             );
-            when(fileMetadataRepository.existsById(anyString())).thenReturn(false);
             when(fileMetadataRepository.save(any(FileMetadata.class))).thenAnswer(invocation ->
                     invocation.getArgument(0)
             );
@@ -644,12 +1216,12 @@ class FileServiceTest {
         @DisplayName("Should handle multiple dots in filename")
         void shouldHandleMultipleDotsInFilename() {
             // Arrange
+            stubBlobStore();
             when(uploadConfig.getPublicMaxSize()).thenReturn(1_073_741_824L);
             when(uploadConfig.getPublicExpiryDays()).thenReturn(7);
             MultipartFile complexFile = new MockMultipartFile(
                     "file", "my.backup.file.tar.gz", "application/gzip", "content".getBytes()
             );
-            when(fileMetadataRepository.existsById(anyString())).thenReturn(false);
             when(fileMetadataRepository.save(any(FileMetadata.class))).thenAnswer(invocation ->
                     invocation.getArgument(0)
             );
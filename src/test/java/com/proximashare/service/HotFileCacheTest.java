@@ -0,0 +1,149 @@
+package com.proximashare.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.ObjectProvider;
+
+import com.proximashare.app.config.DownloadConfig;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+@DisplayName("HotFileCache Unit Tests")
+class HotFileCacheTest {
+
+    @TempDir
+    Path tempDir;
+
+    private DownloadConfig downloadConfig;
+    private SimpleMeterRegistry meterRegistry;
+    private HotFileCache cache;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        downloadConfig = new DownloadConfig();
+        downloadConfig.setCacheEnabled(true);
+        downloadConfig.setCacheMaxBytes(100);
+        downloadConfig.setCacheMaxEntrySize(10);
+
+        meterRegistry = new SimpleMeterRegistry();
+        ObjectProvider<MeterRegistry> provider = mock(ObjectProvider.class);
+        doAnswer(invocation -> {
+            invocation.<java.util.function.Consumer<MeterRegistry>>getArgument(0).accept(meterRegistry);
+            return null;
+        }).when(provider).ifAvailable(any());
+        cache = new HotFileCache(downloadConfig, provider);
+    }
+
+    private File file(String name, String content) throws Exception {
+        return Files.writeString(tempDir.resolve(name), content).toFile();
+    }
+
+    private String read(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @Test
+    @DisplayName("Should load a body on a miss and serve it from memory afterwards")
+    void shouldServeFromMemoryAfterMiss() throws Exception {
+        // Arrange
+        File file = file("a", "0123456789");
+
+        // Act
+        ByteBuffer first = cache.get("a", file);
+        Files.writeString(file.toPath(), "XXXXXXXXXX");
+        ByteBuffer second = cache.get("a", file);
+
+        // Assert
+        assertEquals("0123456789", read(first));
+        assertEquals("0123456789", read(second));
+        assertTrue(second.isDirect());
+        assertEquals(0.5, cache.getHitRatio());
+        assertEquals(10L, cache.getCachedBytes());
+        assertEquals(1.0, meterRegistry.get("proxima.download.cache.requests").tag("result", "hit").functionCounter().count());
+    }
+
+    @Test
+    @DisplayName("Should keep popular bodies when a stream of one-off downloads passes through")
+    void shouldNotLetOneOffDownloadsEvictPopularOnes() throws Exception {
+        // Arrange - ten popular files fill most of the budget
+        for (int round = 0; round < 3; round++) {
+            for (int i = 0; i < 10; i++) {
+                cache.get("popular-" + i, file("popular-" + i, "popular-" + i));
+            }
+        }
+
+        // Act - twenty files requested once each
+        for (int i = 0; i < 20; i++) {
+            cache.get("once-" + i, file("once-" + i, "once-file" + i % 10));
+        }
+
+        // Assert - the popular files are all still served from memory
+        double hitsBefore = meterRegistry.get("proxima.download.cache.requests").tag("result", "hit").functionCounter().count();
+        for (int i = 0; i < 9; i++) {
+            cache.get("popular-" + i, file("popular-" + i, "popular-" + i));
+        }
+        double hitsAfter = meterRegistry.get("proxima.download.cache.requests").tag("result", "hit").functionCounter().count();
+        assertEquals(9.0, hitsAfter - hitsBefore);
+        assertTrue(cache.getCachedBytes() <= 100);
+    }
+
+    @Test
+    @DisplayName("Should serve a body that is not admitted from the file without loading it")
+    void shouldNotLoadRefusedBodies() throws Exception {
+        // Arrange - popular files fill the cache
+        for (int round = 0; round < 2; round++) {
+            for (int i = 0; i < 10; i++) {
+                cache.get("popular-" + i, file("popular-" + i, "popular-" + i));
+            }
+        }
+        long cachedBefore = cache.getCachedBytes();
+
+        // Act
+        ByteBuffer once = cache.get("once", file("once", "0123456789"));
+
+        // Assert
+        assertNull(once);
+        assertEquals(cachedBefore, cache.getCachedBytes());
+        assertEquals(10, cache.getEntries());
+        assertEquals(1.0, meterRegistry.get("proxima.download.cache.evictions").functionCounter().count());
+    }
+
+    @Test
+    @DisplayName("Should drop an invalidated body")
+    void shouldInvalidate() throws Exception {
+        // Arrange
+        cache.get("a", file("a", "0123456789"));
+
+        // Act
+        cache.invalidate("a");
+
+        // Assert
+        assertEquals(0L, cache.getCachedBytes());
+        assertEquals(0, cache.getEntries());
+    }
+
+    @Test
+    @DisplayName("Should not cache files above the entry size, or anything when disabled")
+    void shouldSkipUncacheableFiles() throws Exception {
+        // Act & Assert
+        assertNull(cache.get("big", file("big", "01234567890")));
+        downloadConfig.setCacheEnabled(false);
+        assertNull(cache.get("a", file("a", "0123456789")));
+        assertEquals(0, cache.getEntries());
+    }
+}
@@ -0,0 +1,134 @@
+package com.proximashare.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.Random;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.proximashare.app.config.FileStorageConfig;
+
+@DisplayName("StorageWriter Unit Tests")
+class StorageWriterTest {
+
+    @TempDir
+    Path tempDir;
+
+    private FileStorageConfig storageConfig;
+    private StorageWriter storageWriter;
+    private byte[] content;
+
+    @BeforeEach
+    void setUp() {
+        storageConfig = new FileStorageConfig();
+        storageConfig.setWriteBufferSize(1000);  // not a multiple of the read size, to exercise partial fills
+        storageWriter = new StorageWriter(storageConfig);
+
+        content = new byte[300_000];
+        new Random(7).nextBytes(content);
+    }
+
+    @Test
+    @DisplayName("Should write every byte at the requested position and hash it")
+    void shouldWriteAndHash() throws Exception {
+        // Arrange
+        Path file = tempDir.resolve("out.bin");
+        Files.write(file, new byte[10]);
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+
+        // Act
+        long written;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            written = storageWriter.write(new ByteArrayInputStream(content), channel, 10, Long.MAX_VALUE, digest);
+        }
+
+        // Assert
+        assertEquals(content.length, written);
+        byte[] stored = Files.readAllBytes(file);
+        assertEquals(10 + content.length, stored.length);
+        assertArrayEquals(content, java.util.Arrays.copyOfRange(stored, 10, stored.length));
+        assertArrayEquals(MessageDigest.getInstance("SHA-256").digest(content), digest.digest());
+    }
+
+    @Test
+    @DisplayName("Should stop once the input passes the size limit")
+    void shouldEnforceSizeLimit() throws Exception {
+        // Arrange
+        Path file = tempDir.resolve("limited.bin");
+
+        // Act & Assert
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            assertThrows(StorageWriter.SizeLimitExceededException.class, () ->
+                    storageWriter.write(new ByteArrayInputStream(content), channel, 0, content.length - 1, null));
+        }
+    }
+
+    @Test
+    @DisplayName("Should not fsync with policy NONE")
+    void shouldNotSyncWithPolicyNone() throws Exception {
+        // Arrange
+        storageConfig.setSyncPolicy(FileStorageConfig.SyncPolicy.NONE);
+        FileChannel channel = acceptingChannel();
+
+        // Act
+        storageWriter.write(new ByteArrayInputStream(content), channel, 0, Long.MAX_VALUE, null);
+
+        // Assert
+        verify(channel, never()).force(anyBoolean());
+    }
+
+    @Test
+    @DisplayName("Should fsync once when the write completes with policy ON_CLOSE")
+    void shouldSyncOnceWithPolicyOnClose() throws Exception {
+        // Arrange
+        storageConfig.setSyncPolicy(FileStorageConfig.SyncPolicy.ON_CLOSE);
+        FileChannel channel = acceptingChannel();
+
+        // Act
+        storageWriter.write(new ByteArrayInputStream(content), channel, 0, Long.MAX_VALUE, null);
+
+        // Assert
+        verify(channel, times(1)).force(false);
+    }
+
+    @Test
+    @DisplayName("Should fsync every N MB and at the end with policy EVERY_N_MB")
+    void shouldSyncPeriodicallyWithPolicyEveryNMb() throws Exception {
+        // Arrange - 3.5MB with a 1MB interval: 3 periodic syncs plus the final one
+        storageConfig.setSyncPolicy(FileStorageConfig.SyncPolicy.EVERY_N_MB);
+        storageConfig.setSyncIntervalMb(1);
+        storageConfig.setWriteBufferSize(64 * 1024);
+        byte[] large = new byte[3 * 1024 * 1024 + 512 * 1024];
+        FileChannel channel = acceptingChannel();
+
+        // Act
+        storageWriter.write(new ByteArrayInputStream(large), channel, 0, Long.MAX_VALUE, null);
+
+        // Assert
+        verify(channel, times(4)).force(false);
+    }
+
+    // Channel that accepts every write, so only the force() calls are of interest
+    private FileChannel acceptingChannel() throws Exception {
+        FileChannel channel = mock(FileChannel.class);
+        when(channel.write(any(ByteBuffer.class), anyLong())).thenAnswer(invocation -> {
+            ByteBuffer buffer = invocation.getArgument(0);
+            int length = buffer.remaining();
+            buffer.position(buffer.limit());
+            return length;
+        });
+        return channel;
+    }
+}
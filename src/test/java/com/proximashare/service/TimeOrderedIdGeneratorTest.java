@@ -0,0 +1,122 @@
+package com.proximashare.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("TimeOrderedIdGenerator Unit Tests")
+class TimeOrderedIdGeneratorTest {
+
+    @Test
+    @DisplayName("Should produce version 7 UUIDs carrying the current time")
+    void shouldProduceVersion7Uuids() {
+        // Arrange
+        TimeOrderedIdGenerator generator = new TimeOrderedIdGenerator();
+        long before = System.currentTimeMillis();
+
+        // Act
+        UUID id = UUID.fromString(generator.generate());
+
+        // Assert
+        assertEquals(7, id.version());
+        assertEquals(2, id.variant());
+        long millis = id.getMostSignificantBits() >>> 16;
+        assertTrue(millis >= before && millis <= System.currentTimeMillis());
+    }
+
+    @Test
+    @DisplayName("Should sort by creation millisecond")
+    void shouldBeTimeOrdered() {
+        // Arrange
+        TimeOrderedIdGenerator generator = new TimeOrderedIdGenerator();
+        List<UUID> ids = new ArrayList<>();
+
+        // Act
+        for (int i = 0; i < 20_000; i++) {
+            ids.add(UUID.fromString(generator.generate()));
+        }
+
+        // Assert
+        for (int i = 1; i < ids.size(); i++) {
+            assertTrue(ids.get(i - 1).getMostSignificantBits() >>> 16 <= ids.get(i).getMostSignificantBits() >>> 16,
+                    "ids of a later millisecond should sort after earlier ones");
+        }
+    }
+
+    @Test
+    @DisplayName("Should order ids of the same millisecond by their counter")
+    void shouldBeMonotonic() {
+        // Arrange
+        TimeOrderedIdGenerator generator = new TimeOrderedIdGenerator();
+        List<String> ids = new ArrayList<>();
+
+        // Act
+        for (int i = 0; i < 100_000; i++) {
+            ids.add(generator.generate());
+        }
+
+        // Assert - the hex form sorts like the 128-bit value
+        for (int i = 1; i < ids.size(); i++) {
+            assertTrue(ids.get(i - 1).compareTo(ids.get(i)) < 0, "each id should sort after the previous one");
+        }
+    }
+
+    @Test
+    @DisplayName("Should seed the counter at random and fill the tail at random")
+    void shouldKeepRandomBits() {
+        // Arrange
+        TimeOrderedIdGenerator generator = new TimeOrderedIdGenerator();
+        Set<Long> millis = new HashSet<>();
+        long randA = 0;
+        long randB = 0;
+
+        // Act - OR together ids of enough milliseconds that every seeded and random bit is set at least once
+        while (millis.size() < 200) {
+            UUID id = UUID.fromString(generator.generate());
+            millis.add(id.getMostSignificantBits() >>> 16);
+            randA |= id.getMostSignificantBits() & 0xFFFL;
+            randB |= id.getLeastSignificantBits() & ((1L << 62) - 1);
+        }
+
+        // Assert - the counter's top bit is kept clear for overflow headroom
+        assertEquals(0x7FFL, randA);
+        assertEquals((1L << 62) - 1, randB);
+    }
+
+    @Test
+    @DisplayName("Should never repeat an id across concurrent callers")
+    void shouldBeUniqueUnderConcurrency() throws Exception {
+        // Arrange
+        TimeOrderedIdGenerator generator = new TimeOrderedIdGenerator();
+        Set<String> ids = ConcurrentHashMap.newKeySet();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+
+        // Act
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    ids.add(generator.generate());
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        // Assert
+        assertEquals(80_000, ids.size());
+    }
+}
@@ -0,0 +1,126 @@
+package com.proximashare.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.Random;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.proximashare.app.config.FileStorageConfig;
+
+@DisplayName("TreeHasher Unit Tests")
+class TreeHasherTest {
+
+    private static final int LEAF_SIZE = 1024;
+
+    @TempDir
+    Path tempDir;
+
+    private TreeHasher treeHasher;
+
+    @BeforeEach
+    void setUp() {
+        FileStorageConfig storageConfig = new FileStorageConfig();
+        storageConfig.setTreeLeafSize(LEAF_SIZE);
+        storageConfig.setHashParallelism(4);
+        treeHasher = new TreeHasher(storageConfig);
+    }
+
+    @AfterEach
+    void tearDown() {
+        treeHasher.shutdown();
+    }
+
+    @Test
+    @DisplayName("Should use the leaf hash as root for a single-leaf file")
+    void shouldUseLeafHashForSingleLeaf() throws Exception {
+        // Arrange
+        byte[] content = "hello world".getBytes();
+        Path file = write(content);
+
+        // Act
+        TreeHasher.TreeDigest digest = treeHasher.hash(file);
+
+        // Assert
+        assertEquals(1, digest.leafCount());
+        assertEquals(HexFormat.of().formatHex(TreeHasher.leafHash(content, 0, content.length)), digest.root());
+    }
+
+    @Test
+    @DisplayName("Should hash each leaf independently so any segment can be verified")
+    void shouldHashEveryLeaf() throws Exception {
+        // Arrange - 3.5 leaves
+        byte[] content = randomBytes(LEAF_SIZE * 3 + LEAF_SIZE / 2);
+        Path file = write(content);
+
+        // Act
+        TreeHasher.TreeDigest digest = treeHasher.hash(file);
+
+        // Assert
+        assertEquals(4, digest.leafCount());
+        for (int leaf = 0; leaf < 4; leaf++) {
+            int offset = leaf * LEAF_SIZE;
+            int length = Math.min(LEAF_SIZE, content.length - offset);
+            byte[] stored = Arrays.copyOfRange(digest.leafHashes(),
+                    leaf * TreeHasher.HASH_LENGTH, (leaf + 1) * TreeHasher.HASH_LENGTH);
+            assertArrayEquals(TreeHasher.leafHash(content, offset, length), stored, "leaf " + leaf);
+        }
+    }
+
+    @Test
+    @DisplayName("Should combine leaves pairwise and promote an odd leaf")
+    void shouldCombineLeavesIntoRoot() throws Exception {
+        // Arrange - 3 leaves: root = node(node(l0, l1), l2)
+        byte[] content = randomBytes(LEAF_SIZE * 3);
+        byte[] l0 = TreeHasher.leafHash(content, 0, LEAF_SIZE);
+        byte[] l1 = TreeHasher.leafHash(content, LEAF_SIZE, LEAF_SIZE);
+        byte[] l2 = TreeHasher.leafHash(content, LEAF_SIZE * 2, LEAF_SIZE);
+        byte[] expectedRoot = node(node(l0, l1), l2);
+
+        // Act
+        TreeHasher.TreeDigest digest = treeHasher.hash(write(content));
+
+        // Assert
+        assertEquals(HexFormat.of().formatHex(expectedRoot), digest.root());
+    }
+
+    @Test
+    @DisplayName("Should give an empty file one empty leaf")
+    void shouldHashEmptyFile() throws Exception {
+        // Act
+        TreeHasher.TreeDigest digest = treeHasher.hash(write(new byte[0]));
+
+        // Assert
+        assertEquals(1, digest.leafCount());
+        assertEquals(HexFormat.of().formatHex(TreeHasher.leafHash(new byte[0], 0, 0)), digest.root());
+    }
+
+    private byte[] node(byte[] left, byte[] right) throws Exception {
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        digest.update((byte) 0x01);
+        digest.update(left);
+        digest.update(right);
+        return digest.digest();
+    }
+
+    private byte[] randomBytes(int length) {
+        byte[] bytes = new byte[length];
+        new Random(42).nextBytes(bytes);
+        return bytes;
+    }
+
+    private Path write(byte[] content) throws Exception {
+        Path file = Files.createTempFile(tempDir, "tree", ".bin");
+        Files.write(file, content);
+        return file;
+    }
+}
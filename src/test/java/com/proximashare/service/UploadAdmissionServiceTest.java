@@ -0,0 +1,193 @@
+package com.proximashare.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+
+import com.proximashare.app.config.UploadAdmissionConfig;
+import com.proximashare.repository.UploadSessionRepository;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+@DisplayName("UploadAdmissionService Unit Tests")
+class UploadAdmissionServiceTest {
+
+    private UploadAdmissionConfig admissionConfig;
+    private SimpleMeterRegistry meterRegistry;
+    private UploadSessionRepository uploadSessionRepository;
+    private UploadAdmissionService admissionService;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        admissionConfig = new UploadAdmissionConfig();
+        admissionConfig.setMaxConcurrentUploads(3);
+        admissionConfig.setMaxBytesInFlight(1_000);
+        admissionConfig.setMaxUploadsPerClient(2);
+        admissionConfig.setUnknownLengthBytes(400);
+
+        meterRegistry = new SimpleMeterRegistry();
+        ObjectProvider<MeterRegistry> provider = mock(ObjectProvider.class);
+        doAnswer(invocation -> {
+            invocation.<java.util.function.Consumer<MeterRegistry>>getArgument(0).accept(meterRegistry);
+            return null;
+        }).when(provider).ifAvailable(any());
+
+        uploadSessionRepository = mock(UploadSessionRepository.class);
+        when(uploadSessionRepository.existsById(startsWith("session-"))).thenReturn(true);
+        admissionService = new UploadAdmissionService(admissionConfig, uploadSessionRepository, provider);
+    }
+
+    @Test
+    @DisplayName("Should admit uploads within the limits and give capacity back on close")
+    void shouldAdmitAndRelease() {
+        // Act
+        UploadAdmissionService.Admission admission = admissionService.tryAcquire("10.0.0.1", 300);
+
+        // Assert
+        assertTrue(admission.isAdmitted());
+        assertEquals(1, admissionService.getActiveUploads());
+        assertEquals(300, admissionService.getBytesInFlight());
+        assertEquals(300.0, meterRegistry.get("proxima.upload.admission.bytes.in.flight").gauge().value());
+
+        admission.permit().close();
+        admission.permit().close();  // closing twice must not release twice
+        assertEquals(0, admissionService.getActiveUploads());
+        assertEquals(0, admissionService.getBytesInFlight());
+        assertEquals(0, admissionService.getActiveClients());
+    }
+
+    @Test
+    @DisplayName("Should reject once the global concurrency cap is reached")
+    void shouldRejectOverConcurrencyCap() {
+        // Arrange
+        admissionService.tryAcquire("10.0.0.1", 1);
+        admissionService.tryAcquire("10.0.0.2", 1);
+        admissionService.tryAcquire("10.0.0.3", 1);
+
+        // Act
+        UploadAdmissionService.Admission admission = admissionService.tryAcquire("10.0.0.4", 1);
+
+        // Assert
+        assertFalse(admission.isAdmitted());
+        assertEquals(UploadAdmissionService.RejectReason.CONCURRENT_UPLOADS, admission.rejectReason());
+        assertEquals(3, admissionService.getActiveUploads());
+        assertEquals(1.0, meterRegistry.get("proxima.upload.admission.rejected")
+                .tag("reason", "concurrent_uploads").counter().count());
+    }
+
+    @Test
+    @DisplayName("Should reject when declared bytes would exceed the in-flight budget")
+    void shouldRejectOverByteBudget() {
+        // Arrange
+        admissionService.tryAcquire("10.0.0.1", 800);
+
+        // Act
+        UploadAdmissionService.Admission admission = admissionService.tryAcquire("10.0.0.2", 300);
+
+        // Assert
+        assertEquals(UploadAdmissionService.RejectReason.BYTES_IN_FLIGHT, admission.rejectReason());
+        assertEquals(800, admissionService.getBytesInFlight());
+        assertEquals(1, admissionService.getActiveUploads());
+    }
+
+    @Test
+    @DisplayName("Should admit a single body larger than the budget when nothing else is in flight")
+    void shouldAdmitOversizedBodyWhenIdle() {
+        // Act & Assert
+        assertTrue(admissionService.tryAcquire("10.0.0.1", 5_000).isAdmitted());
+    }
+
+    @Test
+    @DisplayName("Should count bodies without Content-Length at the configured size")
+    void shouldCountUnknownLength() {
+        // Act
+        admissionService.tryAcquire("10.0.0.1", -1);
+
+        // Assert
+        assertEquals(400, admissionService.getBytesInFlight());
+    }
+
+    @Test
+    @DisplayName("Should cap uploads per client without affecting other clients")
+    void shouldRejectOverPerClientCap() {
+        // Arrange
+        admissionService.tryAcquire("10.0.0.1", 1);
+        admissionService.tryAcquire("10.0.0.1", 1);
+
+        // Act
+        UploadAdmissionService.Admission sameClient = admissionService.tryAcquire("10.0.0.1", 1);
+        UploadAdmissionService.Admission otherClient = admissionService.tryAcquire("10.0.0.2", 1);
+
+        // Assert
+        assertEquals(UploadAdmissionService.RejectReason.CLIENT_UPLOADS, sameClient.rejectReason());
+        assertTrue(otherClient.isAdmitted());
+        assertEquals(3, admissionService.getActiveUploads());
+        assertEquals(3, admissionService.getBytesInFlight());
+    }
+
+    @Test
+    @DisplayName("Should cap chunks per session instead of by the client's upload cap")
+    void shouldCapChunksPerSession() {
+        // Arrange
+        admissionConfig.setMaxConcurrentUploads(5);
+        admissionConfig.setMaxChunksPerSession(2);
+        admissionService.tryAcquire("10.0.0.1", 1);
+        admissionService.tryAcquire("10.0.0.1", 1);
+
+        // Act
+        UploadAdmissionService.Admission first = admissionService.tryAcquireChunk("10.0.0.1", "session-1", 1);
+        UploadAdmissionService.Admission second = admissionService.tryAcquireChunk("10.0.0.1", "session-1", 1);
+        UploadAdmissionService.Admission third = admissionService.tryAcquireChunk("10.0.0.1", "session-1", 1);
+        UploadAdmissionService.Admission otherSession = admissionService.tryAcquireChunk("10.0.0.1", "session-2", 1);
+
+        // Assert
+        assertTrue(first.isAdmitted(), "a client at its upload cap can still send chunks");
+        assertTrue(second.isAdmitted());
+        assertEquals(UploadAdmissionService.RejectReason.SESSION_CHUNKS, third.rejectReason());
+        assertTrue(otherSession.isAdmitted());
+        assertEquals(5, admissionService.getActiveUploads());
+    }
+
+    @Test
+    @DisplayName("Should cap one client's chunks across all of its sessions")
+    void shouldCapChunksPerClient() {
+        // Arrange
+        admissionConfig.setMaxConcurrentUploads(10);
+        admissionConfig.setMaxChunksPerSession(2);
+        admissionConfig.setMaxChunksPerClient(3);
+
+        // Act
+        admissionService.tryAcquireChunk("10.0.0.1", "session-1", 1);
+        admissionService.tryAcquireChunk("10.0.0.1", "session-2", 1);
+        UploadAdmissionService.Admission third = admissionService.tryAcquireChunk("10.0.0.1", "session-3", 1);
+        UploadAdmissionService.Admission fourth = admissionService.tryAcquireChunk("10.0.0.1", "session-4", 1);
+        UploadAdmissionService.Admission otherClient = admissionService.tryAcquireChunk("10.0.0.2", "session-4", 1);
+
+        // Assert
+        assertTrue(third.isAdmitted());
+        assertEquals(UploadAdmissionService.RejectReason.CLIENT_CHUNKS, fourth.rejectReason());
+        assertTrue(otherClient.isAdmitted(), "the refused chunk must not keep a slot of its session");
+        assertEquals(4, admissionService.getActiveUploads());
+    }
+
+    @Test
+    @DisplayName("Should count chunks of unknown sessions as regular uploads of the client")
+    void shouldNotGiveSlotsToUnknownSessions() {
+        // Arrange
+        admissionConfig.setMaxConcurrentUploads(10);
+
+        // Act
+        admissionService.tryAcquireChunk("10.0.0.1", "made-up-1", 1);
+        admissionService.tryAcquireChunk("10.0.0.1", "made-up-2", 1);
+        UploadAdmissionService.Admission third = admissionService.tryAcquireChunk("10.0.0.1", "made-up-3", 1);
+
+        // Assert
+        assertEquals(UploadAdmissionService.RejectReason.CLIENT_UPLOADS, third.rejectReason());
+    }
+}
@@ -0,0 +1,483 @@
+package com.proximashare.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileNotFoundException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.proximashare.app.config.FileStorageConfig;
+import com.proximashare.app.config.FileUploadConfig;
+import com.proximashare.dto.ByteRange;
+import com.proximashare.dto.UploadSessionRequest;
+import com.proximashare.dto.UploadSessionResponse;
+import com.proximashare.entity.FileMetadata;
+import com.proximashare.entity.UploadChunk;
+import com.proximashare.entity.UploadSession;
+import com.proximashare.entity.UploadSessionStatus;
+import com.proximashare.entity.User;
+import com.proximashare.exception.InsufficientStorageException;
+import com.proximashare.repository.UploadChunkRepository;
+import com.proximashare.repository.UploadSessionRepository;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("UploadSessionService Unit Tests")
+class UploadSessionServiceTest {
+
+    @Mock
+    private UploadSessionRepository uploadSessionRepository;
+
+    @Mock
+    private UploadChunkRepository uploadChunkRepository;
+
+    @Mock
+    private FileService fileService;
+
+    @Mock
+    private FileUploadConfig uploadConfig;
+
+    @TempDir
+    Path tempDir;
+
+    private DiskSpaceLedger diskSpaceLedger;
+    private UploadSessionService uploadSessionService;
+    private User testUser;
+
+    @BeforeEach
+    void setUp() {
+        FileStorageConfig storageConfig = new FileStorageConfig();
+        storageConfig.setMinFreeSpace(0);
+        diskSpaceLedger = new DiskSpaceLedger(storageConfig, tempDir.toString());
+        uploadSessionService = new UploadSessionService(uploadSessionRepository, uploadChunkRepository,
+                fileService, uploadConfig, diskSpaceLedger, new StorageWriter(storageConfig),
+                new TransactionTemplate(mock(PlatformTransactionManager.class)), tempDir.toString());
+
+        testUser = new User();
+        testUser.setId(1L);
+        testUser.setUsername("testuser");
+    }
+
+    private UploadSession createStoredSession(String id, long size, User owner) throws Exception {
+        UploadSession session = new UploadSession();
+        session.setId(id);
+        session.setFilename("video.mp4");
+        session.setMimeType("video/mp4");
+        session.setTotalSize(size);
+        session.setOwner(owner);
+        session.setCreatedAt(LocalDateTime.now());
+        session.setExpiresAt(LocalDateTime.now().plusHours(1));
+
+        Path partFile = tempDir.resolve(".upload-sessions").resolve(id + ".part");
+        Files.createDirectories(partFile.getParent());
+        Files.write(partFile, new byte[(int) size]);
+
+        when(uploadSessionRepository.findById(id)).thenReturn(Optional.of(session));
+        return session;
+    }
+
+    @Nested
+    @DisplayName("Create Session Tests")
+    class CreateSessionTests {
+
+        @Test
+        @DisplayName("Should create session and preallocate part file")
+        void shouldCreateSession() throws Exception {
+            // Arrange
+            when(uploadConfig.getSessionExpiryHours()).thenReturn(24);
+            when(uploadConfig.getSessionMaxOpenPerClient()).thenReturn(4);
+            UploadSessionRequest request = new UploadSessionRequest();
+            request.setFilename("video.mp4");
+            request.setMimeType("video/mp4");
+            request.setSize(1024L);
+
+            // Act
+            UploadSessionResponse response = uploadSessionService.createSession(request, testUser, "10.0.0.1");
+
+            // Assert
+            assertNotNull(response.getSessionId());
+            assertEquals(1024L, response.getSize());
+            assertEquals(0L, response.getReceivedBytes());
+            assertFalse(response.isComplete());
+
+            Path partFile = tempDir.resolve(".upload-sessions").resolve(response.getSessionId() + ".part");
+            assertEquals(1024L, Files.size(partFile));
+            assertEquals(1024L, diskSpaceLedger.getOutstandingBytes(), "Declared size should be reserved");
+            verify(fileService).validateUploadSize(1024L, testUser);
+            verify(uploadSessionRepository).save(argThat((UploadSession saved) -> "user:1".equals(saved.getClientKey())));
+        }
+
+        @Test
+        @DisplayName("Should reject oversized session before any bytes are sent")
+        void shouldRejectOversizedSession() {
+            // Arrange
+            UploadSessionRequest request = new UploadSessionRequest();
+            request.setFilename("huge.iso");
+            request.setSize(10_000_000_000L);
+            doThrow(new IllegalArgumentException("File size exceeds 1GB limit"))
+                    .when(fileService).validateUploadSize(10_000_000_000L, null);
+
+            // Act & Assert
+            assertThrows(IllegalArgumentException.class,
+                    () -> uploadSessionService.createSession(request, null, "10.0.0.1"));
+            verify(uploadSessionRepository, never()).save(any());
+        }
+
+        @Test
+        @DisplayName("Should refuse a session beyond the client's open sessions")
+        void shouldLimitOpenSessionsPerClient() {
+            // Arrange
+            UploadSessionRequest request = new UploadSessionRequest();
+            request.setFilename("video.mp4");
+            request.setSize(1024L);
+            when(uploadConfig.getSessionMaxOpenPerClient()).thenReturn(4);
+            when(uploadSessionRepository.countByClientKeyAndExpiresAtAfter(eq("user:1"), any())).thenReturn(4L);
+
+            // Act & Assert
+            assertThrows(InsufficientStorageException.class,
+                    () -> uploadSessionService.createSession(request, testUser, "10.0.0.1"));
+            assertEquals(0L, diskSpaceLedger.getOutstandingBytes(), "Nothing should be reserved");
+            verify(uploadSessionRepository, never()).save(any());
+        }
+
+        @Test
+        @DisplayName("Should refuse a public session once the address holds too much space")
+        void shouldLimitReservedBytesPerAddress() {
+            // Arrange
+            UploadSessionRequest request = new UploadSessionRequest();
+            request.setFilename("video.mp4");
+            request.setSize(1024L);
+            when(uploadConfig.getSessionMaxOpenPerClient()).thenReturn(4);
+            when(uploadConfig.getPublicSessionMaxBytesPerClient()).thenReturn(2048L);
+            when(uploadSessionRepository.countByClientKeyAndExpiresAtAfter(eq("anon:10.0.0.1"), any())).thenReturn(1L);
+            when(uploadSessionRepository.sumReservedBytes(eq("anon:10.0.0.1"), any())).thenReturn(1500L);
+
+            // Act & Assert
+            assertThrows(InsufficientStorageException.class,
+                    () -> uploadSessionService.createSession(request, null, "10.0.0.1"));
+            assertEquals(0L, diskSpaceLedger.getOutstandingBytes(), "Nothing should be reserved");
+        }
+    }
+
+    @Nested
+    @DisplayName("Chunk Upload Tests")
+    class ChunkUploadTests {
+
+        @Test
+        @DisplayName("Should write chunk at offset and record it")
+        void shouldWriteChunkAtOffset() throws Exception {
+            // Arrange
+            UploadSession session = createStoredSession("session-1", 10, null);
+            when(uploadSessionRepository.findForUpdate("session-1")).thenReturn(Optional.of(session));
+            when(uploadChunkRepository.findBySessionIdOrderByChunkOffsetAsc("session-1"))
+                    .thenReturn(List.of(new UploadChunk("session-1", 5, 5)));
+
+            // Act
+            UploadSessionResponse response = uploadSessionService.writeChunk(
+                    "session-1", 5, new ByteArrayInputStream("world".getBytes()), null, null);
+
+            // Assert
+            byte[] content = Files.readAllBytes(tempDir.resolve(".upload-sessions").resolve("session-1.part"));
+            assertEquals("world", new String(content, 5, 5));
+            assertEquals(5L, response.getReceivedBytes());
+            verify(uploadChunkRepository).save(argThat(chunk ->
+                    chunk.getChunkOffset() == 5 && chunk.getChunkLength() == 5));
+        }
+
+        @Test
+        @DisplayName("Should reject chunk running past the declared size")
+        void shouldRejectChunkPastDeclaredSize() throws Exception {
+            // Arrange
+            createStoredSession("session-2", 4, null);
+
+            // Act & Assert
+            assertThrows(IllegalArgumentException.class, () -> uploadSessionService.writeChunk(
+                    "session-2", 0, new ByteArrayInputStream("too long".getBytes()), null, null));
+            verify(uploadChunkRepository, never()).save(any());
+        }
+
+        @Test
+        @DisplayName("Should record chunk whose checksum matches")
+        void shouldAcceptMatchingChunkChecksum() throws Exception {
+            // Arrange - SHA-256 of "world"
+            String worldSha256 = "486ea46224d1bb4fb680f34f7c9ad96a8f24ec88be73ea8e5a6c65260e9cb8a7";
+            UploadSession session = createStoredSession("session-5", 5, null);
+            when(uploadSessionRepository.findForUpdate("session-5")).thenReturn(Optional.of(session));
+            when(uploadChunkRepository.findBySessionIdOrderByChunkOffsetAsc("session-5"))
+                    .thenReturn(List.of(new UploadChunk("session-5", 0, 5)));
+
+            // Act
+            uploadSessionService.writeChunk(
+                    "session-5", 0, new ByteArrayInputStream("world".getBytes()), worldSha256.toUpperCase(), null);
+
+            // Assert
+            verify(uploadChunkRepository).save(argThat(chunk -> worldSha256.equals(chunk.getSha256())));
+        }
+
+        @Test
+        @DisplayName("Should not record chunk whose checksum does not match")
+        void shouldRejectMismatchedChunkChecksum() throws Exception {
+            // Arrange
+            createStoredSession("session-6", 5, null);
+
+            // Act & Assert
+            IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
+                    () -> uploadSessionService.writeChunk(
+                            "session-6", 0, new ByteArrayInputStream("world".getBytes()), "0".repeat(64), null));
+
+            assertTrue(exception.getMessage().contains("checksum mismatch"));
+            verify(uploadChunkRepository, never()).save(any());
+        }
+
+        @Test
+        @DisplayName("Should take re-sent and overlapping chunks off the reservation only once")
+        void shouldConsumeReservationOncePerByte() throws Exception {
+            // Arrange
+            UploadSession session = createStoredSession("session-7", 10, null);
+            when(uploadSessionRepository.findForUpdate("session-7")).thenReturn(Optional.of(session));
+            diskSpaceLedger.reserve("upload-session:session-7", 10);
+            when(uploadChunkRepository.findBySessionIdOrderByChunkOffsetAsc("session-7"))
+                    .thenReturn(List.of(new UploadChunk("session-7", 0, 5)))
+                    .thenReturn(List.of(new UploadChunk("session-7", 0, 5)))
+                    .thenReturn(List.of(new UploadChunk("session-7", 0, 5), new UploadChunk("session-7", 0, 5)))
+                    .thenReturn(List.of(new UploadChunk("session-7", 0, 5), new UploadChunk("session-7", 0, 5)))
+                    .thenReturn(List.of(new UploadChunk("session-7", 0, 5), new UploadChunk("session-7", 0, 5),
+                            new UploadChunk("session-7", 3, 4)));
+
+            // Act
+            uploadSessionService.writeChunk("session-7", 0, new ByteArrayInputStream("hello".getBytes()), null, null);
+            uploadSessionService.writeChunk("session-7", 0, new ByteArrayInputStream("hello".getBytes()), null, null);
+            uploadSessionService.writeChunk("session-7", 3, new ByteArrayInputStream("lo w".getBytes()), null, null);
+
+            // Assert
+            assertEquals(7L, session.getReceivedBytes());
+            assertEquals(3L, diskSpaceLedger.getOutstandingBytes(), "Only the 7 distinct bytes are taken off");
+        }
+
+        @Test
+        @DisplayName("Should refuse chunks while the session is being completed")
+        void shouldRejectChunkWhileCompleting() throws Exception {
+            // Arrange
+            UploadSession session = createStoredSession("session-8", 5, null);
+            session.setStatus(UploadSessionStatus.COMPLETING);
+
+            // Act & Assert
+            assertThrows(IllegalArgumentException.class, () -> uploadSessionService.writeChunk(
+                    "session-8", 0, new ByteArrayInputStream("hello".getBytes()), null, null));
+            verify(uploadChunkRepository, never()).save(any());
+        }
+
+        @Test
+        @DisplayName("Should reject access to another user's session")
+        void shouldRejectForeignSession() throws Exception {
+            // Arrange
+            createStoredSession("session-3", 4, testUser);
+            User otherUser = new User();
+            otherUser.setId(2L);
+
+            // Act & Assert
+            assertThrows(IllegalAccessException.class, () -> uploadSessionService.writeChunk(
+                    "session-3", 0, new ByteArrayInputStream("data".getBytes()), null, otherUser));
+        }
+
+        @Test
+        @DisplayName("Should throw FileNotFoundException for unknown session")
+        void shouldThrowForUnknownSession() {
+            // Arrange
+            when(uploadSessionRepository.findById("missing")).thenReturn(Optional.empty());
+
+            // Act & Assert
+            assertThrows(FileNotFoundException.class, () -> uploadSessionService.getSessionStatus("missing", null));
+        }
+    }
+
+    @Nested
+    @DisplayName("Complete Session Tests")
+    class CompleteSessionTests {
+
+        @Test
+        @DisplayName("Should refuse to complete a session with missing ranges")
+        void shouldRefuseIncompleteSession() throws Exception {
+            // Arrange
+            createStoredSession("session-4", 10, null);
+            when(uploadChunkRepository.findBySessionIdOrderByChunkOffsetAsc("session-4"))
+                    .thenReturn(List.of(new UploadChunk("session-4", 0, 4)));
+
+            // Act & Assert
+            IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
+                    () -> uploadSessionService.completeSession("session-4", null));
+            assertTrue(exception.getMessage().contains("received 4 of 10 bytes"));
+            verify(fileService, never()).storeAssembledFile(any(), any(), any(), any());
+        }
+
+        @Test
+        @DisplayName("Should register the assembled file and drop the session")
+        void shouldCompleteSession() throws Exception {
+            // Arrange
+            UploadSession session = createStoredSession("session-5", 10, testUser);
+            when(uploadChunkRepository.findBySessionIdOrderByChunkOffsetAsc("session-5"))
+                    .thenReturn(List.of(new UploadChunk("session-5", 0, 6), new UploadChunk("session-5", 6, 4)));
+            FileMetadata metadata = new FileMetadata();
+            metadata.setUuid("final-uuid");
+            when(uploadSessionRepository.transitionStatus("session-5", UploadSessionStatus.OPEN, UploadSessionStatus.COMPLETING))
+                    .thenReturn(1);
+            when(fileService.storeAssembledFile(any(), eq("video.mp4"), eq("video/mp4"), eq(testUser)))
+                    .thenReturn(metadata);
+
+            // Act
+            FileMetadata result = uploadSessionService.completeSession("session-5", testUser);
+
+            // Assert
+            assertEquals("final-uuid", result.getUuid());
+            verify(uploadChunkRepository).deleteBySessionId("session-5");
+            verify(uploadSessionRepository).delete(session);
+        }
+
+        @Test
+        @DisplayName("Should not assemble a session another request has already claimed")
+        void shouldRefuseConcurrentComplete() throws Exception {
+            // Arrange
+            createStoredSession("session-9", 10, testUser);
+            when(uploadChunkRepository.findBySessionIdOrderByChunkOffsetAsc("session-9"))
+                    .thenReturn(List.of(new UploadChunk("session-9", 0, 10)));
+            when(uploadSessionRepository.transitionStatus("session-9", UploadSessionStatus.OPEN, UploadSessionStatus.COMPLETING))
+                    .thenReturn(0);
+
+            // Act & Assert
+            IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
+                    () -> uploadSessionService.completeSession("session-9", testUser));
+            assertEquals("Upload session is already being completed", exception.getMessage());
+            verify(fileService, never()).storeAssembledFile(any(), any(), any(), any());
+            verify(uploadSessionRepository, never()).delete(any());
+        }
+
+        @Test
+        @DisplayName("Should hand the session back when storing the assembled file fails")
+        void shouldReopenSessionWhenStoreFails() throws Exception {
+            // Arrange
+            createStoredSession("session-10", 10, testUser);
+            when(uploadChunkRepository.findBySessionIdOrderByChunkOffsetAsc("session-10"))
+                    .thenReturn(List.of(new UploadChunk("session-10", 0, 10)));
+            when(uploadSessionRepository.transitionStatus("session-10", UploadSessionStatus.OPEN, UploadSessionStatus.COMPLETING))
+                    .thenReturn(1);
+            when(fileService.storeAssembledFile(any(), any(), any(), eq(testUser)))
+                    .thenThrow(new IllegalArgumentException("Storage quota exceeded"));
+
+            // Act & Assert
+            assertThrows(IllegalArgumentException.class, () -> uploadSessionService.completeSession("session-10", testUser));
+            verify(uploadSessionRepository).transitionStatus("session-10", UploadSessionStatus.COMPLETING, UploadSessionStatus.OPEN);
+            verify(uploadSessionRepository, never()).delete(any());
+        }
+
+        @Test
+        @DisplayName("Should fail the session and free its space when the adopted part file cannot be registered")
+        void shouldFailSessionWhenPartFileIsGone() throws Exception {
+            // Arrange
+            createStoredSession("session-11", 10, testUser);
+            diskSpaceLedger.reserve("upload-session:session-11", 10);
+            when(uploadChunkRepository.findBySessionIdOrderByChunkOffsetAsc("session-11"))
+                    .thenReturn(List.of(new UploadChunk("session-11", 0, 10)));
+            when(uploadSessionRepository.transitionStatus("session-11", UploadSessionStatus.OPEN, UploadSessionStatus.COMPLETING))
+                    .thenReturn(1);
+            when(fileService.storeAssembledFile(any(), any(), any(), eq(testUser))).thenAnswer(invocation -> {
+                Files.delete(invocation.getArgument(0));  // adopted by the blob store
+                throw new IllegalStateException("Database unavailable");
+            });
+
+            // Act & Assert
+            assertThrows(IllegalStateException.class, () -> uploadSessionService.completeSession("session-11", testUser));
+            verify(uploadSessionRepository).transitionStatus("session-11", UploadSessionStatus.COMPLETING, UploadSessionStatus.FAILED);
+            verify(uploadSessionRepository, never()).transitionStatus("session-11", UploadSessionStatus.COMPLETING, UploadSessionStatus.OPEN);
+            assertEquals(0L, diskSpaceLedger.getOutstandingBytes());
+        }
+
+        @Test
+        @DisplayName("Should wait for a chunk still being written before claiming the session")
+        void shouldWaitForInFlightChunk() throws Exception {
+            // Arrange - the chunk body blocks until released
+            UploadSession session = createStoredSession("session-12", 5, null);
+            when(uploadSessionRepository.findForUpdate("session-12")).thenReturn(Optional.of(session));
+            when(uploadChunkRepository.findBySessionIdOrderByChunkOffsetAsc("session-12"))
+                    .thenReturn(List.of(new UploadChunk("session-12", 0, 5)));
+            when(uploadSessionRepository.transitionStatus("session-12", UploadSessionStatus.OPEN, UploadSessionStatus.COMPLETING))
+                    .thenReturn(1);
+            when(fileService.storeAssembledFile(any(), any(), any(), isNull())).thenReturn(new FileMetadata());
+            CountDownLatch writing = new CountDownLatch(1);
+            CountDownLatch release = new CountDownLatch(1);
+            InputStream slowBody = new ByteArrayInputStream("hello".getBytes()) {
+                @Override
+                public synchronized int read(byte[] b, int off, int len) {
+                    writing.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return super.read(b, off, len);
+                }
+            };
+            ExecutorService executor = Executors.newFixedThreadPool(2);
+
+            try {
+                // Act
+                Future<UploadSessionResponse> chunk = executor.submit(
+                        () -> uploadSessionService.writeChunk("session-12", 0, slowBody, null, null));
+                assertTrue(writing.await(5, TimeUnit.SECONDS));
+                Future<FileMetadata> complete = executor.submit(
+                        () -> uploadSessionService.completeSession("session-12", null));
+                Thread.sleep(200);
+
+                // Assert - nothing is claimed while the chunk is landing
+                verify(uploadSessionRepository, never()).transitionStatus(any(), any(), any());
+                release.countDown();
+                chunk.get(5, TimeUnit.SECONDS);
+                complete.get(5, TimeUnit.SECONDS);
+                InOrder inOrder = inOrder(uploadChunkRepository, uploadSessionRepository);
+                inOrder.verify(uploadChunkRepository).save(any(UploadChunk.class));
+                inOrder.verify(uploadSessionRepository)
+                        .transitionStatus("session-12", UploadSessionStatus.OPEN, UploadSessionStatus.COMPLETING);
+            } finally {
+                release.countDown();
+                executor.shutdownNow();
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Should merge overlapping and adjacent chunks into ranges")
+    void shouldMergeRanges() {
+        List<UploadChunk> chunks = new ArrayList<>();
+        chunks.add(new UploadChunk("s", 0, 10));
+        chunks.add(new UploadChunk("s", 5, 10));
+        chunks.add(new UploadChunk("s", 15, 5));
+        chunks.add(new UploadChunk("s", 30, 10));
+
+        List<ByteRange> ranges = UploadSessionService.mergeRanges(chunks);
+
+        assertEquals(List.of(new ByteRange(0, 20), new ByteRange(30, 40)), ranges);
+    }
+}
@@ -0,0 +1,118 @@
+package com.proximashare.service;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import com.proximashare.ProximaShareApplication;
+import com.proximashare.config.TestSecurityConfig;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+
+import com.proximashare.dto.MimeTypeStats;
+import com.proximashare.dto.UserStats;
+import com.proximashare.entity.FileMetadata;
+import com.proximashare.entity.User;
+import com.proximashare.repository.FileMetadataRepository;
+import com.proximashare.repository.UserRepository;
+import com.proximashare.repository.UserUsageRepository;
+
+@SpringBootTest(classes = ProximaShareApplication.class)
+@ActiveProfiles("test")
+@Import(TestSecurityConfig.class)
+@TestPropertySource(properties = {
+        "file.storage.path=${java.io.tmpdir}/user-stats-integration-test"
+})
+@DisplayName("User Stats Integration Tests")
+class UserStatsIntegrationTest {
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private FileMetadataRepository fileMetadataRepository;
+
+    @Autowired
+    private UserUsageRepository userUsageRepository;
+
+    private User owner;
+    private User other;
+
+    @BeforeEach
+    void setUp() {
+        owner = userRepository.save(user("stats-owner"));
+        other = userRepository.save(user("stats-other"));
+    }
+
+    @AfterEach
+    void tearDown() {
+        fileMetadataRepository.deleteAll();
+        userUsageRepository.deleteAll();
+        userRepository.deleteAll(List.of(owner, other));
+    }
+
+    private User user(String username) {
+        User user = new User();
+        user.setUsername(username);
+        user.setAuthProvider("LOCAL");
+        user.setEmailVerified(true);
+        user.setActive(true);
+        return user;
+    }
+
+    private FileMetadata file(String uuid, User fileOwner, String mimeType, long size, int downloads) {
+        FileMetadata metadata = new FileMetadata(uuid, uuid + ".bin", size,
+                LocalDateTime.now(), LocalDateTime.now().plusDays(1), downloads, fileOwner, false);
+        metadata.setMimeType(mimeType);
+        return metadata;
+    }
+
+    @Test
+    @DisplayName("Should total the owner's files and break them down by MIME type in the database")
+    void shouldAggregateStatsPerMimeType() {
+        // Arrange
+        fileMetadataRepository.saveAll(List.of(
+                file("stats-1", owner, "image/png", 100, 1),
+                file("stats-2", owner, "image/png", 200, 2),
+                file("stats-3", owner, "text/csv", 50, 0),
+                file("stats-4", owner, null, 10, 4),
+                file("stats-5", other, "image/png", 1000, 9)));
+
+        // Act
+        UserStats stats = userService.getUserStats("stats-owner");
+
+        // Assert
+        assertThat(stats.getTotalFilesUploaded()).isEqualTo(4L);
+        assertThat(stats.getTotalStorageUsed()).isEqualTo(360L);
+        assertThat(stats.getTotalDownloads()).isEqualTo(7L);
+        assertThat(stats.getByMimeType()).first()
+                .isEqualTo(new MimeTypeStats("image/png", 2L, 300L, 3L));
+        assertThat(stats.getByMimeType()).hasSize(3)
+                .contains(new MimeTypeStats("text/csv", 1L, 50L, 0L), new MimeTypeStats(null, 1L, 10L, 4L));
+    }
+
+    @Test
+    @DisplayName("Should report zeros and no breakdown for a user without files")
+    void shouldReportEmptyStats() {
+        // Act
+        UserStats stats = userService.getUserStats("stats-other");
+
+        // Assert
+        assertThat(stats.getTotalFilesUploaded()).isZero();
+        assertThat(stats.getTotalStorageUsed()).isZero();
+        assertThat(stats.getTotalDownloads()).isZero();
+        assertThat(stats.getByMimeType()).isEmpty();
+        assertThat(stats.getStorageQuota()).isNull();
+    }
+}
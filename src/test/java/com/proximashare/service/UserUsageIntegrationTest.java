@@ -0,0 +1,131 @@
+package com.proximashare.service;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.util.List;
+
+import com.proximashare.ProximaShareApplication;
+import com.proximashare.config.TestSecurityConfig;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+
+import com.proximashare.entity.FileMetadata;
+import com.proximashare.entity.User;
+import com.proximashare.entity.UserUsage;
+import com.proximashare.exception.InsufficientStorageException;
+import com.proximashare.repository.FileMetadataRepository;
+import com.proximashare.repository.UserRepository;
+import com.proximashare.repository.UserUsageRepository;
+
+@SpringBootTest(classes = ProximaShareApplication.class)
+@ActiveProfiles("test")
+@Import(TestSecurityConfig.class)
+@TestPropertySource(properties = {
+        "file.storage.path=${java.io.tmpdir}/user-usage-integration-test",
+        "app.upload.user-file-quota=2",
+        "app.upload.user-storage-quota=1000"
+})
+@DisplayName("User Usage Integration Tests")
+class UserUsageIntegrationTest {
+
+    @Autowired
+    private FileService fileService;
+
+    @Autowired
+    private UserUsageService userUsageService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private UserUsageRepository userUsageRepository;
+
+    @Autowired
+    private FileMetadataRepository fileMetadataRepository;
+
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        user = new User();
+        user.setUsername("usage-user");
+        user.setAuthProvider("LOCAL");
+        user.setEmailVerified(true);
+        user.setActive(true);
+        user = userRepository.save(user);
+    }
+
+    @AfterEach
+    void tearDown() {
+        fileMetadataRepository.deleteAll();
+        userUsageRepository.deleteAll();
+        userRepository.deleteAll(List.of(user));
+    }
+
+    private FileMetadata upload(String name, int size) {
+        byte[] content = new byte[size];
+        content[0] = (byte) name.hashCode();
+        return fileService.uploadFileForUser(new MockMultipartFile("file", name, "text/plain", content), user);
+    }
+
+    @Test
+    @DisplayName("Should keep the counters in step with uploads and deletes and enforce the file quota")
+    void shouldEnforceQuotaFromCounters() throws Exception {
+        // Arrange
+        FileMetadata first = upload("first.txt", 100);
+        upload("second.txt", 200);
+
+        // Act & Assert
+        assertThatThrownBy(() -> upload("third.txt", 10))
+                .isInstanceOf(InsufficientStorageException.class)
+                .hasMessageContaining("File quota exceeded");
+
+        fileService.deleteUserFile(first.getUuid(), user);
+        upload("third.txt", 10);
+
+        UserUsage usage = userUsageRepository.findById(user.getId()).orElseThrow();
+        assertThat(usage.getFileCount()).isEqualTo(2);
+        assertThat(usage.getBytesStored()).isEqualTo(210);
+        assertThat(fileMetadataRepository.findByOwnerOrderByUploadDateDesc(user)).hasSize(2);
+    }
+
+    @Test
+    @DisplayName("Should refuse bytes beyond the storage quota")
+    void shouldEnforceStorageQuota() {
+        // Arrange
+        upload("big.txt", 900);
+
+        // Act & Assert
+        assertThatThrownBy(() -> upload("more.txt", 101))
+                .isInstanceOf(InsufficientStorageException.class)
+                .hasMessageContaining("Storage quota exceeded: 900 of 1000");
+    }
+
+    @Test
+    @DisplayName("Should put drifted counters right from file_metadata")
+    void shouldReconcileDrift() {
+        // Arrange
+        upload("kept.txt", 100);
+        UserUsage usage = userUsageRepository.findById(user.getId()).orElseThrow();
+        usage.setBytesStored(12345);
+        usage.setFileCount(42);
+        userUsageRepository.save(usage);
+
+        // Act
+        userUsageService.reconcileAll();
+
+        // Assert
+        UserUsage reconciled = userUsageRepository.findById(user.getId()).orElseThrow();
+        assertThat(reconciled.getBytesStored()).isEqualTo(100);
+        assertThat(reconciled.getFileCount()).isEqualTo(1);
+        assertThat(reconciled.getReconciledAt()).isNotNull();
+    }
+}
@@ -0,0 +1,209 @@
+package com.proximashare.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import com.proximashare.app.config.FileUploadConfig;
+import com.proximashare.dto.MimeTypeStats;
+import com.proximashare.entity.FileMetadata;
+import com.proximashare.entity.Role;
+import com.proximashare.entity.User;
+import com.proximashare.entity.UserUsage;
+import com.proximashare.exception.InsufficientStorageException;
+import com.proximashare.repository.FileMetadataRepository;
+import com.proximashare.repository.UserRepository;
+import com.proximashare.repository.UserUsageRepository;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("UserUsageService Unit Tests")
+class UserUsageServiceTest {
+
+    @Mock
+    private UserUsageRepository userUsageRepository;
+
+    @Mock
+    private FileMetadataRepository fileMetadataRepository;
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private FileUploadConfig uploadConfig;
+    private UserUsageService userUsageService;
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        uploadConfig = new FileUploadConfig();
+        userUsageService = new UserUsageService(userUsageRepository, fileMetadataRepository, userRepository,
+                uploadConfig, transactionManager);
+
+        user = new User();
+        user.setId(7L);
+        user.setUsername("quota-user");
+        user.setRoles(Set.of(new Role(2L, "ROLE_USER")));
+    }
+
+    private UserUsage usage(long bytes, long files) {
+        UserUsage usage = new UserUsage(user.getId());
+        usage.setBytesStored(bytes);
+        usage.setFileCount(files);
+        return usage;
+    }
+
+    @Test
+    @DisplayName("Should take the most generous quota among the user's roles, with 0 as unlimited")
+    void shouldResolveQuotaFromRoles() {
+        // Arrange
+        uploadConfig.setUserStorageQuota(10);
+        uploadConfig.setRoleStorageQuota(Map.of("USER", 100L, "PREMIUM", 1000L, "ADMIN", 0L));
+        uploadConfig.setRoleFileQuota(Map.of("USER", 5L));
+
+        User premium = new User();
+        premium.setRoles(Set.of(new Role(2L, "ROLE_USER"), new Role(3L, "PREMIUM")));
+        User admin = new User();
+        admin.setRoles(Set.of(new Role(1L, "ROLE_ADMIN"), new Role(3L, "PREMIUM")));
+        User guest = new User();
+        guest.setRoles(Set.of(new Role(4L, "ROLE_GUEST")));
+
+        // Act & Assert
+        assertEquals(new UserUsageService.Quota(100, 5), userUsageService.quotaFor(user));
+        assertEquals(new UserUsageService.Quota(1000, 5), userUsageService.quotaFor(premium));
+        assertEquals(new UserUsageService.Quota(0, 0), userUsageService.quotaFor(admin));
+        assertEquals(new UserUsageService.Quota(10, 0), userUsageService.quotaFor(guest));
+    }
+
+    @Test
+    @DisplayName("Should check an upload against the counter row without touching file_metadata")
+    void shouldCheckQuotaAgainstCounter() {
+        // Arrange
+        uploadConfig.setUserStorageQuota(1000);
+        when(userUsageRepository.findById(7L)).thenReturn(Optional.of(usage(900, 3)));
+
+        // Act & Assert
+        assertDoesNotThrow(() -> userUsageService.checkQuota(user, 100));
+        InsufficientStorageException exception = assertThrows(InsufficientStorageException.class,
+                () -> userUsageService.checkQuota(user, 101));
+        assertEquals("Storage quota exceeded: 900 of 1000 bytes used", exception.getMessage());
+        verifyNoInteractions(fileMetadataRepository);
+    }
+
+    @Test
+    @DisplayName("Should not read usage at all while no quota applies")
+    void shouldSkipCheckWithoutQuota() {
+        // Act
+        userUsageService.checkQuota(user, Long.MAX_VALUE / 2);
+
+        // Assert
+        verifyNoInteractions(userUsageRepository);
+    }
+
+    @Test
+    @DisplayName("Should refuse a reservation the conditional update did not apply")
+    void shouldRefuseReservationOverQuota() {
+        // Arrange
+        uploadConfig.setUserFileQuota(3);
+        when(userUsageRepository.reserve(7L, 10L, 1, Long.MAX_VALUE, 3L)).thenReturn(0);
+        when(userUsageRepository.findById(7L)).thenReturn(Optional.of(usage(50, 3)));
+
+        // Act & Assert
+        InsufficientStorageException exception = assertThrows(InsufficientStorageException.class,
+                () -> userUsageService.reserve(user, 10, 1));
+        assertEquals("File quota exceeded: 3 of 3 files stored", exception.getMessage());
+    }
+
+    @Test
+    @DisplayName("Should create a missing counter row from file_metadata and then reserve")
+    void shouldCreateCounterOnFirstReservation() {
+        // Arrange
+        when(userUsageRepository.reserve(eq(7L), eq(10L), eq(1), anyLong(), anyLong())).thenReturn(0, 1);
+        when(userUsageRepository.findById(7L)).thenReturn(Optional.empty());
+        when(userUsageRepository.findForUpdate(7L)).thenReturn(Optional.empty());
+        when(fileMetadataRepository.getMimeTypeStats(7L)).thenReturn(List.of(
+                new MimeTypeStats("text/csv", 2L, 300L, 4L),
+                new MimeTypeStats(null, 1L, 20L, 0L)));
+        when(userUsageRepository.saveAndFlush(any(UserUsage.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        // Act
+        userUsageService.reserve(user, 10, 1);
+
+        // Assert
+        ArgumentCaptor<UserUsage> captor = ArgumentCaptor.forClass(UserUsage.class);
+        verify(userUsageRepository).saveAndFlush(captor.capture());
+        assertEquals(320L, captor.getValue().getBytesStored());
+        assertEquals(3L, captor.getValue().getFileCount());
+        assertNotNull(captor.getValue().getReconciledAt());
+        verify(userUsageRepository, times(2)).reserve(eq(7L), eq(10L), eq(1), anyLong(), anyLong());
+    }
+
+    @Test
+    @DisplayName("Should overwrite drifted counters when reconciling")
+    void shouldReconcileDriftedCounters() {
+        // Arrange
+        UserUsage drifted = usage(999, 9);
+        when(userUsageRepository.findForUpdate(7L)).thenReturn(Optional.of(drifted));
+        when(fileMetadataRepository.getMimeTypeStats(7L)).thenReturn(List.of(new MimeTypeStats("image/png", 1L, 5L, 2L)));
+        when(userUsageRepository.save(drifted)).thenReturn(drifted);
+
+        // Act
+        UserUsage reconciled = userUsageService.reconcile(7L);
+
+        // Assert
+        assertEquals(5L, reconciled.getBytesStored());
+        assertEquals(1L, reconciled.getFileCount());
+    }
+
+    @Test
+    @DisplayName("Should reconcile the row another request created when its own insert loses")
+    void shouldRetryWhenCounterRowIsCreatedConcurrently() {
+        // Arrange
+        UserUsage concurrent = usage(0, 0);
+        when(userUsageRepository.findForUpdate(7L)).thenReturn(Optional.empty(), Optional.of(concurrent));
+        when(fileMetadataRepository.getMimeTypeStats(7L)).thenReturn(List.of(new MimeTypeStats("image/png", 1L, 5L, 2L)));
+        when(userUsageRepository.saveAndFlush(any(UserUsage.class)))
+                .thenThrow(new DataIntegrityViolationException("duplicate key"));
+        when(userUsageRepository.save(concurrent)).thenReturn(concurrent);
+
+        // Act
+        UserUsage reconciled = userUsageService.reconcile(7L);
+
+        // Assert
+        assertSame(concurrent, reconciled);
+        assertEquals(5L, reconciled.getBytesStored());
+        assertEquals(1L, reconciled.getFileCount());
+    }
+
+    @Test
+    @DisplayName("Should only release files that have an owner")
+    void shouldReleaseOwnedFilesOnly() {
+        // Arrange
+        FileMetadata owned = new FileMetadata("owned", "a.txt", 40L, null, null, 2, user, false);
+        FileMetadata anonymous = new FileMetadata("public", "b.txt", 40L, null, null, 2);
+
+        // Act
+        userUsageService.release(owned);
+        userUsageService.release(anonymous);
+
+        // Assert
+        verify(userUsageRepository).release("owned", 40L);
+        verifyNoMoreInteractions(userUsageRepository);
+    }
+}
@@ -0,0 +1,161 @@
+package com.proximashare.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import com.proximashare.app.config.DownloadConfig;
+import com.proximashare.entity.FileMetadata;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("ZipDownloadService Unit Tests")
+class ZipDownloadServiceTest {
+
+    @Mock
+    private FileService fileService;
+
+    @TempDir
+    Path tempDir;
+
+    private DownloadConfig downloadConfig;
+    private ZipDownloadService zipDownloadService;
+
+    @BeforeEach
+    void setUp() {
+        downloadConfig = new DownloadConfig();
+        zipDownloadService = new ZipDownloadService(fileService, downloadConfig);
+    }
+
+    private FileMetadata stored(String uuid, String filename, String mimeType, String content) throws Exception {
+        FileMetadata metadata = new FileMetadata(uuid, filename, content.length(),
+                LocalDateTime.now(), LocalDateTime.now().plusDays(1), 0);
+        metadata.setMimeType(mimeType);
+        File file = Files.writeString(tempDir.resolve(uuid), content).toFile();
+        when(fileService.authorizeDownload(uuid, "alice", "user:alice")).thenReturn(metadata);
+        when(fileService.getStoredFile(metadata)).thenReturn(file);
+        return metadata;
+    }
+
+    private List<ZipEntry> readEntries(MockHttpServletResponse response, List<String> contents) throws Exception {
+        List<ZipEntry> entries = new ArrayList<>();
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(response.getContentAsByteArray()))) {
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                entries.add(entry);
+                contents.add(new String(zip.readAllBytes()));
+            }
+        }
+        return entries;
+    }
+
+    @Test
+    @DisplayName("Should stream every file, storing already-compressed types and deflating the rest")
+    void shouldStreamArchive() throws Exception {
+        // Arrange
+        FileMetadata text = stored("t", "notes.txt", "text/plain", "hello hello hello hello");
+        FileMetadata image = stored("i", "photo.png", "image/png", "not really a png");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        // Act
+        zipDownloadService.write(new MockHttpServletRequest(), response, List.of(text, image), "alice", "user:alice");
+
+        // Assert
+        assertEquals("application/zip", response.getContentType());
+        List<String> contents = new ArrayList<>();
+        List<ZipEntry> entries = readEntries(response, contents);
+        assertEquals(List.of("notes.txt", "photo.png"), entries.stream().map(ZipEntry::getName).toList());
+        assertEquals(ZipEntry.DEFLATED, entries.get(0).getMethod());
+        assertEquals(ZipEntry.STORED, entries.get(1).getMethod());
+        assertEquals(List.of("hello hello hello hello", "not really a png"), contents);
+        verify(fileService).authorizeDownload("t", "alice", "user:alice");
+        verify(fileService).authorizeDownload("i", "alice", "user:alice");
+    }
+
+    @Test
+    @DisplayName("Should leave out refused files and list them in SKIPPED.txt")
+    void shouldSkipRefusedFiles() throws Exception {
+        // Arrange
+        FileMetadata ok = stored("ok", "a.txt", "text/plain", "a");
+        FileMetadata limited = new FileMetadata("limited", "b.txt", 1L,
+                LocalDateTime.now(), LocalDateTime.now().plusDays(1), 100);
+        when(fileService.authorizeDownload("limited", "alice", "user:alice"))
+                .thenThrow(new IllegalAccessException("File download limit reached for this file. (Max. 100 Times)"));
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        // Act
+        zipDownloadService.write(new MockHttpServletRequest(), response, List.of(ok, limited), "alice", "user:alice");
+
+        // Assert
+        List<String> contents = new ArrayList<>();
+        List<ZipEntry> entries = readEntries(response, contents);
+        assertEquals(List.of("a.txt", "SKIPPED.txt"), entries.stream().map(ZipEntry::getName).toList());
+        assertTrue(contents.get(1).contains("b.txt (limited): File download limit reached"));
+    }
+
+    @Test
+    @DisplayName("Should give files with the same name distinct entry names")
+    void shouldDeduplicateEntryNames() throws Exception {
+        // Arrange
+        FileMetadata first = stored("1", "report.pdf", "application/pdf", "one");
+        FileMetadata second = stored("2", "report.pdf", "application/pdf", "two");
+        FileMetadata nested = stored("3", "../etc/passwd", "text/plain", "three");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        // Act
+        zipDownloadService.write(new MockHttpServletRequest(), response, List.of(first, second, nested), "alice", "user:alice");
+
+        // Assert
+        List<ZipEntry> entries = readEntries(response, new ArrayList<>());
+        assertEquals(List.of("report.pdf", "report (2).pdf", ".._etc_passwd"),
+                entries.stream().map(ZipEntry::getName).toList());
+    }
+
+    @Test
+    @DisplayName("Should refuse empty and oversized archives before anything is sent")
+    void shouldRejectInvalidSelections() throws Exception {
+        // Arrange
+        downloadConfig.setZipMaxFiles(2);
+
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class,
+                () -> zipDownloadService.write(new MockHttpServletRequest(), new MockHttpServletResponse(), List.of(), "alice", "user:alice"));
+        assertThrows(IllegalArgumentException.class,
+                () -> zipDownloadService.resolveFiles(List.of("a", "b", "c"), "alice"));
+        verifyNoInteractions(fileService);
+    }
+
+    @Test
+    @DisplayName("Should resolve each listed file once, with its access check")
+    void shouldResolveDistinctFiles() throws Exception {
+        // Arrange
+        FileMetadata metadata = new FileMetadata("a", "a.txt", 1L,
+                LocalDateTime.now(), LocalDateTime.now().plusDays(1), 0);
+        when(fileService.getDownloadMetadata("a", "alice")).thenReturn(metadata);
+
+        // Act
+        List<FileMetadata> files = zipDownloadService.resolveFiles(List.of("a", "a"), "alice");
+
+        // Assert
+        assertEquals(List.of(metadata), files);
+        verify(fileService, times(1)).getDownloadMetadata("a", "alice");
+    }
+}
@@ -0,0 +1,141 @@
+package com.proximashare.service.processing;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.proximashare.app.config.FileStorageConfig;
+import com.proximashare.entity.FileMetadata;
+import com.proximashare.repository.FileBlobRepository;
+import com.proximashare.service.BlobStore;
+import com.proximashare.service.ContentCoding;
+import com.proximashare.service.StorageWriter;
+import com.proximashare.service.TreeHasher;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("CompressedVariantStage Unit Tests")
+class CompressedVariantStageTest {
+    private static final String DIGEST = "0123456789abcdef0123456789abcdef0123456789abcdef0123456789abcdef";
+
+    @Mock
+    private FileBlobRepository fileBlobRepository;
+
+    @TempDir
+    Path tempDir;
+
+    private FileStorageConfig storageConfig;
+    private BlobStore blobStore;
+    private CompressedVariantStage stage;
+
+    @BeforeEach
+    void setUp() {
+        storageConfig = new FileStorageConfig();
+        storageConfig.setVariantsEnabled(true);
+        blobStore = new BlobStore(fileBlobRepository, storageConfig, new TreeHasher(storageConfig),
+                new StorageWriter(storageConfig), new TransactionTemplate(mock(PlatformTransactionManager.class)),
+                tempDir.toString());
+        stage = new CompressedVariantStage(blobStore, storageConfig);
+    }
+
+    private ProcessingContext context(String mimeType, byte[] content) throws Exception {
+        Path blob = blobStore.resolve(DIGEST);
+        Files.createDirectories(blob.getParent());
+        Files.write(blob, content);
+
+        FileMetadata metadata = new FileMetadata("file-1", "data", content.length,
+                LocalDateTime.now(), LocalDateTime.now().plusDays(1), 0);
+        metadata.setBlobDigest(DIGEST);
+        metadata.setMimeType(mimeType);
+        return new ProcessingContext(metadata, blob);
+    }
+
+    private byte[] csv() {
+        StringBuilder rows = new StringBuilder("id,name,amount\n");
+        for (int i = 0; i < 2000; i++) {
+            rows.append(i).append(",customer-").append(i % 50).append(",").append(i * 3).append('\n');
+        }
+        return rows.toString().getBytes();
+    }
+
+    @Test
+    @DisplayName("Should store a variant per configured coding next to a compressible blob")
+    void shouldStoreVariants() throws Exception {
+        // Arrange
+        storageConfig.setVariantCodings(List.of(ContentCoding.GZIP, ContentCoding.DEFLATE));
+        byte[] content = csv();
+        ProcessingContext context = context("text/csv", content);
+
+        // Act
+        stage.process(context);
+
+        // Assert
+        Path gzip = ContentCoding.GZIP.variantOf(context.getFile());
+        Path deflate = ContentCoding.DEFLATE.variantOf(context.getFile());
+        assertTrue(Files.size(gzip) < content.length / 2);
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(gzip))) {
+            assertArrayEquals(content, in.readAllBytes());
+        }
+        try (InputStream in = new InflaterInputStream(Files.newInputStream(deflate))) {
+            assertArrayEquals(content, in.readAllBytes());
+        }
+        try (var files = Files.list(context.getFile().getParent())) {
+            assertEquals(3, files.count(), "no temporary files are left behind");
+        }
+    }
+
+    @Test
+    @DisplayName("Should skip incompressible content, other types and small files")
+    void shouldSkipFilesNotWorthCompressing() throws Exception {
+        // Arrange
+        byte[] random = new byte[32 * 1024];
+        new Random(42).nextBytes(random);
+
+        // Act & Assert
+        ProcessingContext noisy = context("text/plain", random);
+        stage.process(noisy);
+        assertFalse(Files.exists(ContentCoding.GZIP.variantOf(noisy.getFile())));
+
+        ProcessingContext image = context("image/png", csv());
+        stage.process(image);
+        assertFalse(Files.exists(ContentCoding.GZIP.variantOf(image.getFile())));
+
+        ProcessingContext tiny = context("text/plain", "a,b\n".getBytes());
+        stage.process(tiny);
+        assertFalse(Files.exists(ContentCoding.GZIP.variantOf(tiny.getFile())));
+    }
+
+    @Test
+    @DisplayName("Should use the sniffed type and do nothing while disabled")
+    void shouldFollowContextTypeAndSwitch() throws Exception {
+        // Arrange
+        ProcessingContext context = context("application/octet-stream", csv());
+        context.setMimeType("text/csv");
+        storageConfig.setVariantsEnabled(false);
+
+        // Act & Assert
+        stage.process(context);
+        assertFalse(Files.exists(ContentCoding.GZIP.variantOf(context.getFile())));
+
+        storageConfig.setVariantsEnabled(true);
+        stage.process(context);
+        assertTrue(Files.exists(ContentCoding.GZIP.variantOf(context.getFile())));
+    }
+}
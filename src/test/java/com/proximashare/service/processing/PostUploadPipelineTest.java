@@ -0,0 +1,223 @@
+package com.proximashare.service.processing;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import com.proximashare.app.config.FileUploadConfig;
+import com.proximashare.entity.FileMetadata;
+import com.proximashare.entity.ProcessingState;
+import com.proximashare.repository.FileMetadataRepository;
+import com.proximashare.service.FileService;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("PostUploadPipeline Unit Tests")
+class PostUploadPipelineTest {
+    private static final String NODE = "node-a";
+
+    @Mock
+    private FileMetadataRepository fileMetadataRepository;
+
+    @Mock
+    private FileService fileService;
+
+    @Mock
+    private PostUploadStage failingStage;
+
+    @TempDir
+    Path tempDir;
+
+    private FileUploadConfig uploadConfig;
+    private FileMetadata metadata;
+    private File storedFile;
+    private PostUploadPipeline pipeline;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        uploadConfig = new FileUploadConfig();
+        uploadConfig.setProcessingParallelism(1);
+        uploadConfig.setProcessingMaxAttempts(3);
+
+        metadata = new FileMetadata("file-1", "notes", 5L,
+                LocalDateTime.now(), LocalDateTime.now().plusDays(1), 0);
+        metadata.setMimeType("application/octet-stream");
+        metadata.setProcessingState(ProcessingState.PENDING);
+
+        storedFile = Files.writeString(tempDir.resolve("blob"), "%PDF-1.7 sample").toFile();
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (pipeline != null) {
+            pipeline.shutdown();
+        }
+    }
+
+    private PostUploadPipeline pipeline(List<PostUploadStage> stages) {
+        pipeline = new PostUploadPipeline(fileMetadataRepository, fileService, stages, uploadConfig, NODE);
+        return pipeline;
+    }
+
+    @Test
+    @DisplayName("Should claim the file, run the stages and mark it READY with their results")
+    void shouldProcessPendingFile() {
+        // Arrange
+        pipeline(List.of(new ContentTypeSniffingStage()));
+        when(fileMetadataRepository.claimProcessing(eq("file-1"), eq(NODE), any(),
+                eq(ProcessingState.PENDING), eq(ProcessingState.PROCESSING))).thenReturn(1);
+        when(fileMetadataRepository.renewProcessingClaim(eq("file-1"), eq(NODE), any(), eq(ProcessingState.PROCESSING)))
+                .thenReturn(1);
+        when(fileMetadataRepository.findById("file-1")).thenReturn(Optional.of(metadata));
+        when(fileService.getStoredFile(metadata)).thenReturn(storedFile);
+
+        // Act
+        pipeline.process("file-1");
+
+        // Assert
+        verify(fileMetadataRepository).completeProcessing(eq("file-1"), eq(NODE), eq(ProcessingState.READY), anyString());
+        verify(fileMetadataRepository, never()).recordFailedProcessingAttempt(any(), any(), any());
+    }
+
+    @Test
+    @DisplayName("Should skip a file another worker already claimed")
+    void shouldSkipClaimedFile() {
+        // Arrange
+        pipeline(List.of(failingStage));
+        when(fileMetadataRepository.claimProcessing(eq("file-1"), eq(NODE), any(),
+                eq(ProcessingState.PENDING), eq(ProcessingState.PROCESSING))).thenReturn(0);
+
+        // Act
+        pipeline.process("file-1");
+
+        // Assert
+        verify(fileMetadataRepository, never()).findById(any());
+        verifyNoInteractions(failingStage);
+    }
+
+    @Test
+    @DisplayName("Should put a failed file back to PENDING while attempts remain")
+    void shouldRetryFailedFile() throws Exception {
+        // Arrange
+        pipeline(List.of(failingStage));
+        when(fileMetadataRepository.claimProcessing(eq("file-1"), eq(NODE), any(),
+                eq(ProcessingState.PENDING), eq(ProcessingState.PROCESSING))).thenReturn(1);
+        when(fileMetadataRepository.renewProcessingClaim(eq("file-1"), eq(NODE), any(), eq(ProcessingState.PROCESSING)))
+                .thenReturn(1);
+        when(fileMetadataRepository.findById("file-1")).thenReturn(Optional.of(metadata));
+        when(fileService.getStoredFile(metadata)).thenReturn(storedFile);
+        doThrow(new IllegalStateException("scanner unavailable")).when(failingStage).process(any());
+
+        // Act
+        pipeline.process("file-1");
+
+        // Assert
+        verify(fileMetadataRepository).recordFailedProcessingAttempt("file-1", NODE, ProcessingState.PENDING);
+        verify(fileMetadataRepository, never()).completeProcessing(any(), any(), any(), any());
+    }
+
+    @Test
+    @DisplayName("Should mark the file FAILED on its last attempt")
+    void shouldFailAfterMaxAttempts() throws Exception {
+        // Arrange
+        pipeline(List.of(failingStage));
+        metadata.setProcessingAttempts(2);
+        when(fileMetadataRepository.claimProcessing(eq("file-1"), eq(NODE), any(),
+                eq(ProcessingState.PENDING), eq(ProcessingState.PROCESSING))).thenReturn(1);
+        when(fileMetadataRepository.renewProcessingClaim(eq("file-1"), eq(NODE), any(), eq(ProcessingState.PROCESSING)))
+                .thenReturn(1);
+        when(fileMetadataRepository.findById("file-1")).thenReturn(Optional.of(metadata));
+        when(fileService.getStoredFile(metadata)).thenReturn(storedFile);
+        doThrow(new IllegalStateException("scanner unavailable")).when(failingStage).process(any());
+
+        // Act
+        pipeline.process("file-1");
+
+        // Assert
+        verify(fileMetadataRepository).recordFailedProcessingAttempt("file-1", NODE, ProcessingState.FAILED);
+    }
+
+    @Test
+    @DisplayName("Should count a failure to open the stored file as an attempt instead of staying PROCESSING")
+    void shouldRecordAttemptWhenStoredFileFails() {
+        // Arrange
+        pipeline(List.of(failingStage));
+        when(fileMetadataRepository.claimProcessing(eq("file-1"), eq(NODE), any(),
+                eq(ProcessingState.PENDING), eq(ProcessingState.PROCESSING))).thenReturn(1);
+        when(fileMetadataRepository.findById("file-1")).thenReturn(Optional.of(metadata));
+        when(fileService.getStoredFile(metadata)).thenThrow(new IllegalStateException("volume not mounted"));
+
+        // Act
+        pipeline.process("file-1");
+
+        // Assert
+        verify(fileMetadataRepository).recordFailedProcessingAttempt("file-1", NODE, ProcessingState.PENDING);
+        verifyNoInteractions(failingStage);
+    }
+
+    @Test
+    @DisplayName("Should stop without a result once another node took the claim over")
+    void shouldStopAfterLosingClaim() {
+        // Arrange
+        pipeline(List.of(failingStage));
+        when(fileMetadataRepository.claimProcessing(eq("file-1"), eq(NODE), any(),
+                eq(ProcessingState.PENDING), eq(ProcessingState.PROCESSING))).thenReturn(1);
+        when(fileMetadataRepository.findById("file-1")).thenReturn(Optional.of(metadata));
+        when(fileService.getStoredFile(metadata)).thenReturn(storedFile);
+        when(fileMetadataRepository.renewProcessingClaim(eq("file-1"), eq(NODE), any(), eq(ProcessingState.PROCESSING)))
+                .thenReturn(0);
+
+        // Act
+        pipeline.process("file-1");
+
+        // Assert
+        verifyNoInteractions(failingStage);
+        verify(fileMetadataRepository, never()).completeProcessing(any(), any(), any(), any());
+        verify(fileMetadataRepository, never()).recordFailedProcessingAttempt(any(), any(), any());
+    }
+
+    @Test
+    @DisplayName("Should take back only this node's claims at startup and others' once stale")
+    void shouldOnlyReleaseOwnOrStaleClaims() {
+        // Arrange
+        uploadConfig.setProcessingClaimTimeoutMinutes(30);
+        pipeline(List.of());
+        LocalDateTime before = LocalDateTime.now().minusMinutes(30);
+
+        // Act
+        pipeline.resumeInterrupted();
+
+        // Assert
+        verify(fileMetadataRepository).releaseProcessingClaimsOf(NODE, ProcessingState.PENDING, ProcessingState.PROCESSING);
+        verify(fileMetadataRepository).releaseStaleProcessingClaims(
+                argThat(staleBefore -> !staleBefore.isBefore(before) && staleBefore.isBefore(LocalDateTime.now().minusMinutes(29))),
+                eq(ProcessingState.PENDING), eq(ProcessingState.PROCESSING));
+    }
+
+    @Test
+    @DisplayName("Should report files from before the pipeline as READY")
+    void shouldTreatLegacyFilesAsReady() throws Exception {
+        // Arrange
+        pipeline(List.of());
+        metadata.setProcessingState(null);
+        when(fileService.getFileMetadata("file-1")).thenReturn(metadata);
+
+        // Act & Assert
+        assertEquals(ProcessingState.READY, pipeline.getState("file-1"));
+    }
+}